@@ -0,0 +1,61 @@
+/**
+ * File: AlchemyApiException.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api;
+
+import com.likethecolor.alchemy.api.entity.Response;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the Alchemy API answers a call with a status other than OK.
+ * The statusInfo (e.g., daily-transaction-limit-exceeded) tells what went
+ * wrong; the json that was returned is kept for logging rather than being put
+ * in the message.
+ */
+public class AlchemyApiException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final Response.STATUS status;
+  private final String statusInfo;
+  private final String jsonString;
+
+  public AlchemyApiException(final Response.STATUS status, final String statusInfo, final String jsonString) {
+    super("Error making API call: " + (statusInfo == null || statusInfo.trim().length() == 0 ? status : statusInfo));
+    this.status = status;
+    this.statusInfo = statusInfo;
+    this.jsonString = jsonString;
+  }
+
+  public Response.STATUS getStatus() {
+    return status;
+  }
+
+  /**
+   * @return reason the call failed as reported by the API; may be null
+   */
+  public String getStatusInfo() {
+    return statusInfo;
+  }
+
+  /**
+   * @return json returned by the API
+   */
+  public String getJsonString() {
+    return jsonString;
+  }
+}
@@ -5,32 +5,108 @@
  */
 package com.likethecolor.alchemy.api;
 
+import com.likethecolor.alchemy.api.async.CallFuture;
+import com.likethecolor.alchemy.api.async.CallListener;
+import com.likethecolor.alchemy.api.async.DaemonThreadFactory;
+import com.likethecolor.alchemy.api.async.SingleFlight;
+import com.likethecolor.alchemy.api.breaker.CircuitBreaker;
+import com.likethecolor.alchemy.api.breaker.CircuitOpenException;
+import com.likethecolor.alchemy.api.cache.DiskResponseCache;
+import com.likethecolor.alchemy.api.cache.NegativeCache;
+import com.likethecolor.alchemy.api.cache.ResponseCache;
 import com.likethecolor.alchemy.api.call.AbstractCall;
 import com.likethecolor.alchemy.api.entity.AbstractAlchemyEntity;
 import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.hedge.HedgePolicy;
+import com.likethecolor.alchemy.api.limit.AdaptiveConcurrencyLimiter;
 import com.likethecolor.alchemy.api.params.Params;
+import com.likethecolor.alchemy.api.ratelimit.RateLimiter;
+import com.likethecolor.alchemy.api.retry.RetryPolicy;
+import com.likethecolor.alchemy.api.transport.CountingInputStream;
+import com.likethecolor.alchemy.api.transport.Deadline;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+import com.likethecolor.alchemy.api.transport.HttpRequest;
+import com.likethecolor.alchemy.api.transport.HttpResponse;
+import com.likethecolor.alchemy.api.transport.PooledHttpTransport;
+import com.likethecolor.alchemy.api.transport.RequestBody;
+import com.likethecolor.alchemy.api.transport.ResponseBuffer;
+import com.likethecolor.alchemy.api.transport.Transport;
 import com.likethecolor.alchemy.api.validator.ApiKeyValidator;
+import com.likethecolor.alchemy.api.validator.OutputDocumentValidator;
 import com.likethecolor.alchemy.api.validator.OutputStatusValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 public class Client {
   private static final Logger LOGGER = LoggerFactory.getLogger(Client.class);
   private static final String API_KEY = "apikey";
   private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+  private static final String HEADER_CONTENT_TYPE = "Content-Type";
+  private static final String CONTENT_TYPE_FORM = "application/x-www-form-urlencoded";
+  private static final String CHARSET_PARAMETER = "charset=";
+  private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+  private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  private static final String ENCODING_GZIP = "gzip";
+  private static final String ENCODING_DEFLATE = "deflate";
+  private static final String ACCEPT_ENCODING = ENCODING_GZIP + ", " + ENCODING_DEFLATE;
+  private static final int INFLATER_BUFFER_SIZE = 8192;
+  private static final int ZLIB_METHOD_DEFLATE = 8;
   private static final String DEFAULT_URL = "http://access.alchemyapi.com/calls/";
+  private static final String THREAD_NAME_PREFIX = "alchemy-client";
+  private static final String HEDGE_THREAD_NAME_PREFIX = "alchemy-hedge";
+  public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+  public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+  public static final int DEFAULT_READ_TIMEOUT_MILLIS = 60000;
 
   private String apiKey;
   private String requestUri = DEFAULT_URL;
+  private Transport transport = new PooledHttpTransport();
+  private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+  private ExecutorService executorService;
+  private boolean isDefaultExecutorService;
+  private ExecutorService hedgeExecutorService;
+  private volatile boolean isCompressionEnabled = true;
+  private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+  private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+  private volatile long callTimeoutMillis;
+  private volatile RetryPolicy retryPolicy;
+  private volatile RateLimiter rateLimiter;
+  private volatile HedgePolicy hedgePolicy;
+  private volatile CircuitBreaker circuitBreaker;
+  private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+  private volatile ResponseCache responseCache;
+  private volatile DiskResponseCache diskResponseCache;
+  private volatile NegativeCache negativeCache;
+  private volatile boolean isCoalescingEnabled;
+  private final SingleFlight<String, Response<?>> singleFlight = new SingleFlight<String, Response<?>>();
+  private final AtomicLong compressedBytes = new AtomicLong();
+  private final AtomicLong decompressedBytes = new AtomicLong();
 
   public Client() {
   }
@@ -46,115 +122,1038 @@ public class Client {
     this.apiKey = apiKey.trim();
   }
 
+  /**
+   * Set the transport used to talk to the Alchemy API.  The default is a
+   * {@link PooledHttpTransport}; clients that share one share its connection
+   * pool.  A {@link com.likethecolor.alchemy.api.transport.LoopbackTransport}
+   * serves canned responses without using the network.
+   *
+   * @param transport transport to use
+   */
+  public void setTransport(final Transport transport) {
+    if(transport == null) {
+      throw new IllegalArgumentException("Transport cannot be null.");
+    }
+    this.transport = transport;
+  }
+
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Set how long to wait for a new connection to the API to be established.
+   *
+   * @param connectTimeoutMillis timeout in milliseconds; 0 waits forever
+   */
+  public void setConnectTimeoutMillis(final int connectTimeoutMillis) {
+    if(connectTimeoutMillis < 0) {
+      throw new IllegalArgumentException("Connect timeout cannot be negative [" + connectTimeoutMillis + "].");
+    }
+    this.connectTimeoutMillis = connectTimeoutMillis;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  /**
+   * Set how long any single read of the response may block.
+   *
+   * @param readTimeoutMillis timeout in milliseconds; 0 waits forever
+   */
+  public void setReadTimeoutMillis(final int readTimeoutMillis) {
+    if(readTimeoutMillis < 0) {
+      throw new IllegalArgumentException("Read timeout cannot be negative [" + readTimeoutMillis + "].");
+    }
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  /**
+   * Set the time a whole call may take: waiting for a connection, connecting,
+   * sending the request, reading the response and parsing it.  A call that
+   * runs past it fails with a {@link DeadlineExceededException}.  Off (0) by
+   * default.
+   *
+   * @param callTimeoutMillis time budget of a call in milliseconds; 0 for none
+   */
+  public void setCallTimeoutMillis(final long callTimeoutMillis) {
+    if(callTimeoutMillis < 0) {
+      throw new IllegalArgumentException("Call timeout cannot be negative [" + callTimeoutMillis + "].");
+    }
+    this.callTimeoutMillis = callTimeoutMillis;
+  }
+
+  public long getCallTimeoutMillis() {
+    return callTimeoutMillis;
+  }
+
+  /**
+   * Make failed calls again when the failure is transient, waiting a growing,
+   * randomized time between attempts.  A call's deadline covers all of its
+   * attempts.  Calls are not retried by default.
+   *
+   * @param retryPolicy policy that decides which calls are made again; null
+   * to never retry
+   */
+  public void setRetryPolicy(final RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Hold calls back so they stay under the API's rate limits.  Every call,
+   * including a retry, takes a permit before it is sent.  Clients that use the
+   * same API key should share a limiter, e.g.,
+   * <code>client.setRateLimiter(RateLimiter.forApiKey(apiKey))</code>.  No
+   * limiter is used by default.
+   *
+   * @param rateLimiter limiter to take permits from; null for none
+   */
+  public void setRateLimiter(final RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Send a second copy of a call that is slower than most recent calls to the
+   * same endpoint and use whichever answers first; the request of the other
+   * is aborted (see {@link HttpRequest#abort()}).
+   * Hedges take a permit from the rate limiter only if one is free right away
+   * and are budgeted by the policy, so they never use more than a set part of
+   * the quota.  Calls are not hedged by default.
+   *
+   * @param hedgePolicy policy that decides when calls are hedged; null to
+   * never hedge
+   */
+  public void setHedgePolicy(final HedgePolicy hedgePolicy) {
+    this.hedgePolicy = hedgePolicy;
+  }
+
+  public HedgePolicy getHedgePolicy() {
+    return hedgePolicy;
+  }
+
+  /**
+   * Refuse calls to an endpoint, with a
+   * {@link com.likethecolor.alchemy.api.breaker.CircuitOpenException}, while
+   * too many of its recent calls failed or were slow, so that the other
+   * endpoints keep working during a partial outage.  Every attempt of a call
+   * is checked and counted.  No breaker is used by default.
+   *
+   * @param circuitBreaker breaker that keeps the circuit of every endpoint;
+   * null for none
+   */
+  public void setCircuitBreaker(final CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * Limit the calls in flight to each endpoint to a number that is tuned from
+   * the latency and failures of the calls, so that throughput follows what the
+   * API can take without overloading it.  Calls over the limit wait, within
+   * their deadline.  No limiter is used by default.
+   *
+   * @param concurrencyLimiter limiter that keeps the limit of every endpoint;
+   * null for none
+   */
+  public void setConcurrencyLimiter(final AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
+  public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+    return concurrencyLimiter;
+  }
+
+  /**
+   * Answer a call from the cache if an identical call (same endpoint and same
+   * params) was answered within the time to live of its call class, and cache
+   * every response the API gives.  Html and text content is compared with
+   * whitespace normalized (see {@link Params#getContentDigest()}), so a
+   * document that shows up again laid out differently is not sent again.
+   * A url response that is due for a refresh (see
+   * {@link ResponseCache#setRefreshAheadRatio(double)}) is still returned
+   * and the call is made again in the background, on the executor of
+   * {@link #callAsync(AbstractCall)}, to replace it.  Cached responses are shared by every
+   * caller and must not be modified.  No cache is used by default.
+   *
+   * @param responseCache cache of responses; null for none
+   */
+  public void setResponseCache(final ResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /**
+   * Answer a call from the raw bodies on disk if an identical call was
+   * answered within the time to live of its call class, even before a
+   * restart, and store the body of every response the API gives.  The disk
+   * cache is looked up after the in-memory cache, if one is set, and a body
+   * found on disk is added to it.  A disk cache that cannot be read or
+   * written is logged and the call goes on without it.  The caller owns the
+   * cache and closes it.  No disk cache is used by default.
+   *
+   * @param diskResponseCache cache of raw bodies on disk; null for none
+   */
+  public void setDiskResponseCache(final DiskResponseCache diskResponseCache) {
+    this.diskResponseCache = diskResponseCache;
+  }
+
+  public DiskResponseCache getDiskResponseCache() {
+    return diskResponseCache;
+  }
+
+  /**
+   * Fail a call right away with the {@link AlchemyApiException} an identical
+   * call got within the time to live of the cache, if the error depends only
+   * on the input (e.g., unsupported-text-language), and remember such errors
+   * as the API gives them.  No negative cache is used by default.
+   *
+   * @param negativeCache cache of deterministic failures; null for none
+   */
+  public void setNegativeCache(final NegativeCache negativeCache) {
+    this.negativeCache = negativeCache;
+  }
+
+  public NegativeCache getNegativeCache() {
+    return negativeCache;
+  }
+
+  /**
+   * Let concurrent identical calls (same endpoint and same params) share one
+   * request to the API and one parsed {@link Response}.  Off by default.
+   * Callers that share a call also share its outcome, including a failure,
+   * and must not modify the response.
+   *
+   * @param isCoalescingEnabled true to coalesce identical calls in flight
+   */
+  public void setCoalescingEnabled(final boolean isCoalescingEnabled) {
+    this.isCoalescingEnabled = isCoalescingEnabled;
+  }
+
+  public boolean isCoalescingEnabled() {
+    return isCoalescingEnabled;
+  }
+
+  /**
+   * @return number of calls that were answered by an identical call already
+   * in flight instead of going to the API
+   */
+  public long getCoalescedCount() {
+    return singleFlight.getSharedCount();
+  }
+
+  /**
+   * Ask the API for gzip or deflate compressed responses (on by default).
+   * Compressed bodies are decompressed while they are read.
+   *
+   * @param isCompressionEnabled true to send Accept-Encoding: gzip, deflate
+   */
+  public void setCompressionEnabled(final boolean isCompressionEnabled) {
+    this.isCompressionEnabled = isCompressionEnabled;
+  }
+
+  public boolean isCompressionEnabled() {
+    return isCompressionEnabled;
+  }
+
+  /**
+   * @return total size, as received, of the response bodies that were compressed
+   */
+  public long getCompressedBytes() {
+    return compressedBytes.get();
+  }
+
+  /**
+   * @return total size, after decompression, of the response bodies that were
+   * compressed
+   */
+  public long getDecompressedBytes() {
+    return decompressedBytes.get();
+  }
+
+  /**
+   * Set the maximum number of asynchronous calls that are sent at the same
+   * time by the default executor.  Calls beyond that wait in a queue.  Has no
+   * effect when an executor was provided with {@link #setExecutorService(ExecutorService)}.
+   *
+   * @param maxInFlight maximum number of concurrent asynchronous calls
+   */
+  public synchronized void setMaxInFlight(final int maxInFlight) {
+    if(maxInFlight < 1) {
+      throw new IllegalArgumentException("Max in flight must be at least 1 [" + maxInFlight + "].");
+    }
+    this.maxInFlight = maxInFlight;
+    if(isDefaultExecutorService) {
+      final ThreadPoolExecutor executor = (ThreadPoolExecutor) executorService;
+      if(maxInFlight > executor.getMaximumPoolSize()) {
+        executor.setMaximumPoolSize(maxInFlight);
+        executor.setCorePoolSize(maxInFlight);
+      }
+      else {
+        executor.setCorePoolSize(maxInFlight);
+        executor.setMaximumPoolSize(maxInFlight);
+      }
+    }
+  }
+
+  public synchronized int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /**
+   * Run asynchronous calls on the given executor instead of the default one.
+   * The executor is not shut down by {@link #shutdown()}.
+   *
+   * @param executorService executor that runs asynchronous calls
+   */
+  public synchronized void setExecutorService(final ExecutorService executorService) {
+    if(executorService == null) {
+      throw new IllegalArgumentException("Executor service cannot be null.");
+    }
+    if(isDefaultExecutorService) {
+      this.executorService.shutdown();
+    }
+    this.executorService = executorService;
+    this.isDefaultExecutorService = false;
+  }
+
+  /**
+   * Stop the default executor used by asynchronous calls and the threads
+   * that run hedged calls.  Calls that were already submitted still complete.
+   */
+  public synchronized void shutdown() {
+    if(isDefaultExecutorService) {
+      executorService.shutdown();
+      executorService = null;
+      isDefaultExecutorService = false;
+    }
+    if(hedgeExecutorService != null) {
+      hedgeExecutorService.shutdown();
+      hedgeExecutorService = null;
+    }
+  }
+
+  /**
+   * Make the call without blocking the calling thread.
+   *
+   * @param call call to make
+   *
+   * @return future that completes with the parsed response
+   *
+   * @see #callAsync(AbstractCall, CallListener)
+   */
+  public <T extends AbstractAlchemyEntity> CallFuture<T> callAsync(final AbstractCall<T> call) {
+    return callAsync(call, null);
+  }
+
+  /**
+   * Make the call without blocking the calling thread.  The call still runs
+   * with blocking I/O on a thread of the executor, one thread per call in
+   * flight, so this bounds the number of threads rather than letting a few
+   * threads drive many calls.  At most {@link #getMaxInFlight()} calls are
+   * sent at the same time by the default executor; the rest wait in its
+   * queue.
+   *
+   * @param call call to make
+   * @param listener notified when the call completes; may be null
+   *
+   * @return future that completes with the parsed response
+   */
+  public <T extends AbstractAlchemyEntity> CallFuture<T> callAsync(final AbstractCall<T> call, final CallListener<T> listener) {
+    final CallFuture<T> future = new CallFuture<T>(new Callable<Response<T>>() {
+      public Response<T> call() throws IOException {
+        return Client.this.call(call);
+      }
+    });
+    if(listener != null) {
+      future.addListener(listener);
+    }
+    getExecutorService().execute(future);
+    return future;
+  }
+
+  private synchronized ExecutorService getExecutorService() {
+    if(executorService == null) {
+      executorService = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory(THREAD_NAME_PREFIX));
+      ((ThreadPoolExecutor) executorService).allowCoreThreadTimeOut(true);
+      isDefaultExecutorService = true;
+    }
+    return executorService;
+  }
+
+  private synchronized ExecutorService getHedgeExecutorService() {
+    if(hedgeExecutorService == null) {
+      hedgeExecutorService = Executors.newCachedThreadPool(new DaemonThreadFactory(HEDGE_THREAD_NAME_PREFIX));
+    }
+    return hedgeExecutorService;
+  }
+
   public <T extends AbstractAlchemyEntity> Response<T> call(final AbstractCall<T> call) throws IOException {
+    return call(call, callTimeoutMillis);
+  }
+
+  /**
+   * Make the call, failing with a {@link DeadlineExceededException} if it is
+   * not done within the given time.  Transient failures are retried, within
+   * that time, if a {@link RetryPolicy} is set.
+   *
+   * @param call call to make
+   * @param timeoutMillis time budget of the call in milliseconds; 0 for none
+   *
+   * @return parsed response
+   *
+   * @throws IOException if the call fails or runs out of time
+   */
+  public <T extends AbstractAlchemyEntity> Response<T> call(final AbstractCall<T> call, final long timeoutMillis) throws IOException {
+    if(timeoutMillis < 0) {
+      throw new IllegalArgumentException("Call timeout cannot be negative [" + timeoutMillis + "].");
+    }
+    final Deadline deadline = timeoutMillis == 0 ? null : Deadline.after(timeoutMillis);
+    final ResponseCache cache = responseCache;
+    final DiskResponseCache diskCache = diskResponseCache;
+    final NegativeCache failureCache = negativeCache;
+    if(cache == null && diskCache == null && failureCache == null && !isCoalescingEnabled) {
+      return callWithRetries(call, deadline);
+    }
+
+    final String key = getCallKey(call);
+    if(cache != null) {
+      final Response<T> cached = getCached(cache, key);
+      if(cached != null) {
+        LOGGER.debug("answering " + key + " from the cache");
+        if(cache.startRefresh(key)) {
+          refresh(call, key, cache);
+        }
+        return cached;
+      }
+    }
+    if(diskCache != null) {
+      final Response<T> stored = getStored(call, diskCache, key);
+      if(stored != null) {
+        LOGGER.debug("answering " + key + " from the disk cache");
+        if(cache != null) {
+          cache.put(key, call, stored);
+        }
+        return stored;
+      }
+    }
+    if(failureCache != null) {
+      final AlchemyApiException failure = failureCache.get(key);
+      if(failure != null) {
+        LOGGER.debug("failing " + key + " from the negative cache");
+        throw failure;
+      }
+    }
+    final Response<T> response;
+    try {
+      response = isCoalescingEnabled ? coalesce(call, key, deadline) : callWithRetries(call, deadline);
+    }
+    catch(IOException e) {
+      if(failureCache != null) {
+        failureCache.put(key, e);
+      }
+      throw e;
+    }
+    if(cache != null) {
+      cache.put(key, call, response);
+    }
+    return response;
+  }
+
+  /**
+   * Make the call again on the client's executor and put the response in the
+   * cache.  The caller already got the cached response, so a failure is only
+   * logged.
+   */
+  private void refresh(final AbstractCall<?> call, final String key, final ResponseCache cache) {
+    final long timeoutMillis = callTimeoutMillis;
+    try {
+      getExecutorService().execute(new Runnable() {
+        public void run() {
+          try {
+            final Response<?> response = callWithRetries(call, timeoutMillis == 0 ? null : Deadline.after(timeoutMillis));
+            cache.put(key, call, response);
+            LOGGER.debug("refreshed " + key);
+          }
+          catch(IOException e) {
+            LOGGER.debug("refresh of " + key + " failed", e);
+          }
+          finally {
+            cache.finishRefresh(key);
+          }
+        }
+      });
+    }
+    catch(RejectedExecutionException e) {
+      // shut down, the cached response has to do
+      cache.finishRefresh(key);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends AbstractAlchemyEntity> Response<T> getCached(final ResponseCache cache, final String key) {
+    // calls with the same key are the same endpoint so the response type matches
+    return (Response<T>) cache.get(key);
+  }
+
+  private <T extends AbstractAlchemyEntity> Response<T> getStored(final AbstractCall<T> call, final DiskResponseCache diskCache, final String key) {
+    final String jsonString;
+    try {
+      jsonString = diskCache.get(key);
+    }
+    catch(IOException e) {
+      // a broken disk cache must not fail the call, the api can still answer it
+      LOGGER.error("Could not read " + key + " from the disk cache.", e);
+      return null;
+    }
+    // only bodies that passed validation are stored
+    return jsonString == null ? null : call.parse(jsonString);
+  }
+
+  private void store(final AbstractCall<?> call, final String jsonString) {
+    final DiskResponseCache diskCache = diskResponseCache;
+    if(diskCache == null) {
+      return;
+    }
+    final String key = getCallKey(call);
+    try {
+      diskCache.put(key, call, jsonString);
+    }
+    catch(IOException e) {
+      LOGGER.error("Could not write " + key + " to the disk cache.", e);
+    }
+  }
+
+  private <T extends AbstractAlchemyEntity> Response<T> coalesce(final AbstractCall<T> call, final String key, final Deadline deadline) throws IOException {
+    try {
+      return coalesce(key, new Callable<Response<?>>() {
+        public Response<?> call() throws IOException {
+          return callWithRetries(call, deadline);
+        }
+      }, deadline);
+    }
+    catch(ExecutionException e) {
+      throw CallFuture.unwrap(e.getCause());
+    }
+    catch(TimeoutException e) {
+      throw deadline.exceededWhileQueued("waiting for an identical call in flight");
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for an identical call in flight.");
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends AbstractAlchemyEntity> Response<T> coalesce(final String key, final Callable<Response<?>> work, final Deadline deadline) throws ExecutionException, TimeoutException, InterruptedException {
+    // calls with the same key are the same endpoint so the response type matches
+    return (Response<T>) singleFlight.execute(key, work, deadline == null ? 0L : Math.max(1L, deadline.getRemainingMillis()));
+  }
+
+  private String getCallKey(final AbstractCall<?> call) {
+    final Params params = call.getParams();
+    call.getCallType().setValuesOnParams(params);
+    call.setParams(params);
+    return call.getCallType().getType() + "/" + call.getCallType().getPrefix() + call.getName() + "?" + params.getContentDigest();
+  }
+
+  private <T extends AbstractAlchemyEntity> Response<T> callWithRetries(final AbstractCall<T> call, final Deadline deadline) throws IOException {
+    final RetryPolicy policy = retryPolicy;
+    int attempt = 1;
+    while(true) {
+      try {
+        final Response<T> response = attempt(call, deadline);
+        if(policy != null) {
+          policy.recordSuccess();
+        }
+        return response;
+      }
+      catch(IOException e) {
+        if(policy == null || !policy.shouldRetry(e, attempt)) {
+          throw e;
+        }
+        final long backoffMillis = policy.getBackoffMillis(attempt);
+        if(deadline != null && deadline.getRemainingMillis() <= backoffMillis) {
+          throw e;
+        }
+        LOGGER.debug("attempt " + attempt + " of " + call.getName() + " failed, retrying in " + backoffMillis + " ms", e);
+        sleep(backoffMillis);
+        attempt++;
+      }
+    }
+  }
+
+  private <T extends AbstractAlchemyEntity> Response<T> attempt(final AbstractCall<T> call, final Deadline deadline) throws IOException {
+    // a call without params hands out a new object every time, keep the one
+    // the values are set on
     final Params params = call.getParams();
     call.getCallType().setValuesOnParams(params);
+    call.setParams(params);
+    // the waits on this side come first so neither the concurrency limiter
+    // nor the circuit breaker takes them for a slow endpoint
+    acquirePermit(deadline);
+    return limitConcurrency(call, params, deadline);
+  }
+
+  private <T extends AbstractAlchemyEntity> Response<T> limitConcurrency(final AbstractCall<T> call, final Params params, final Deadline deadline) throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+    if(limiter == null) {
+      return breakCircuit(call, params, deadline);
+    }
+
+    final String endpoint = getEndpoint(call);
+    limiter.acquire(endpoint, deadline);
+    final long startMillis = System.currentTimeMillis();
+    boolean isReleased = false;
+    try {
+      final Response<T> response = breakCircuit(call, params, deadline);
+      limiter.release(endpoint, false, System.currentTimeMillis() - startMillis);
+      isReleased = true;
+      return response;
+    }
+    catch(CircuitOpenException e) {
+      // never sent, so there is no latency to learn from
+      limiter.cancel(endpoint);
+      isReleased = true;
+      throw e;
+    }
+    catch(IOException e) {
+      limiter.releaseFailure(endpoint, e, System.currentTimeMillis() - startMillis);
+      isReleased = true;
+      throw e;
+    }
+    finally {
+      if(!isReleased) {
+        limiter.release(endpoint, false, System.currentTimeMillis() - startMillis);
+      }
+    }
+  }
+
+  private <T extends AbstractAlchemyEntity> Response<T> breakCircuit(final AbstractCall<T> call, final Params params, final Deadline deadline) throws IOException {
+    final CircuitBreaker breaker = circuitBreaker;
+    if(breaker == null) {
+      return hedgeOrSend(call, params, deadline);
+    }
+
+    final String endpoint = getEndpoint(call);
+    breaker.acquire(endpoint);
+    final long startMillis = System.currentTimeMillis();
+    boolean isRecorded = false;
+    try {
+      final Response<T> response = hedgeOrSend(call, params, deadline);
+      breaker.record(endpoint, false, System.currentTimeMillis() - startMillis);
+      isRecorded = true;
+      return response;
+    }
+    catch(IOException e) {
+      breaker.recordFailure(endpoint, e, System.currentTimeMillis() - startMillis);
+      isRecorded = true;
+      throw e;
+    }
+    finally {
+      if(!isRecorded) {
+        // the endpoint answered, a bug on this side must not open its circuit
+        breaker.record(endpoint, false, System.currentTimeMillis() - startMillis);
+      }
+    }
+  }
+
+  private <T extends AbstractAlchemyEntity> Response<T> hedgeOrSend(final AbstractCall<T> call, final Params params, final Deadline deadline) throws IOException {
+    final HedgePolicy policy = hedgePolicy;
+    if(policy != null) {
+      return hedge(call, params, deadline, policy);
+    }
+    return send(call, params, deadline, null);
+  }
+
+  /**
+   * Make the call and, if it is still running after the hedge delay of its
+   * endpoint, make it a second time.  The first successful response is
+   * returned; the call fails only if every copy fails.
+   */
+  private <T extends AbstractAlchemyEntity> Response<T> hedge(final AbstractCall<T> call, final Params params, final Deadline deadline, final HedgePolicy policy) throws IOException {
+    final String endpoint = getEndpoint(call);
+    final long delayMillis = policy.getHedgeDelayMillis(endpoint);
+    policy.recordCall();
+    if(delayMillis < 0) {
+      return new HedgedAttempt<T>(call, params, deadline, policy, endpoint).call();
+    }
+
+    final ExecutorCompletionService<Response<T>> attempts = new ExecutorCompletionService<Response<T>>(getHedgeExecutorService());
+    final List<HedgedAttempt<T>> copies = new ArrayList<HedgedAttempt<T>>(2);
+    final List<Future<Response<T>>> running = new ArrayList<Future<Response<T>>>(2);
+    copies.add(new HedgedAttempt<T>(call, params, deadline, policy, endpoint));
+    running.add(attempts.submit(copies.get(0)));
+    try {
+      Future<Response<T>> done = attempts.poll(delayMillis, TimeUnit.MILLISECONDS);
+      if(done == null && isHedgeAllowed(policy)) {
+        LOGGER.debug("hedging " + endpoint + " after " + delayMillis + " ms");
+        copies.add(new HedgedAttempt<T>(call, params, deadline, policy, endpoint));
+        running.add(attempts.submit(copies.get(1)));
+      }
+      int pending = running.size();
+      while(true) {
+        if(done == null) {
+          done = attempts.take();
+        }
+        pending--;
+        try {
+          final Response<T> response = done.get();
+          if(done != running.get(0)) {
+            policy.recordHedgeWon();
+          }
+          return response;
+        }
+        catch(ExecutionException e) {
+          if(pending == 0) {
+            throw CallFuture.unwrap(e.getCause());
+          }
+          LOGGER.debug("copy of hedged " + endpoint + " failed, waiting for the other", e.getCause());
+        }
+        done = null;
+      }
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a hedged call.");
+    }
+    finally {
+      // interrupting a thread does not unblock socket i/o, so the copy that
+      // lost has its request aborted, which closes its connection
+      for(int i = 0; i < running.size(); i++) {
+        running.get(i).cancel(true);
+        copies.get(i).abort();
+      }
+    }
+  }
+
+  private String getEndpoint(final AbstractCall<?> call) {
+    return call.getCallType().getType() + "/" + call.getCallType().getPrefix() + call.getName();
+  }
+
+  private boolean isHedgeAllowed(final HedgePolicy policy) {
+    if(!policy.tryAcquireHedge()) {
+      return false;
+    }
+    // a hedge never waits for the rate limiter; if the quota is used up the
+    // call that is already running has to do
+    final RateLimiter limiter = rateLimiter;
+    if(limiter != null && !limiter.tryAcquire()) {
+      policy.releaseHedge();
+      return false;
+    }
+    return true;
+  }
+
+  private void acquirePermit(final Deadline deadline) throws IOException {
+    final RateLimiter limiter = rateLimiter;
+    if(limiter != null) {
+      limiter.acquire(deadline);
+    }
+  }
+
+  /**
+   * @param attempt copy of a hedged call this request is made for; null if
+   * the call is not hedged
+   */
+  private <T extends AbstractAlchemyEntity> Response<T> send(final AbstractCall<T> call, final Params params, final Deadline deadline, final HedgedAttempt<T> attempt) throws IOException {
     final String callName = call.getCallType().getPrefix() + call.getName();
     final String callPrefix = call.getCallType().getType();
 
     String jsonString;
     if(Constants.CALL_TYPE_URL.equals(call.getCallType().getType())) {
-      jsonString = get(callName, callPrefix, params);
+      jsonString = get(callName, callPrefix, params, deadline, attempt);
     }
     else {
-      jsonString = post(callName, callPrefix, params);
+      jsonString = post(callName, callPrefix, params, deadline, attempt);
     }
     LOGGER.debug("json string: " + jsonString);
-    return call.parse(jsonString);
+    OutputDocumentValidator.validate(jsonString);
+
+    // the status is checked on the parsed response so the json is only parsed once
+    final Response<T> response = call.parse(jsonString);
+    if(deadline != null) {
+      deadline.check("parsing the response");
+    }
+    OutputStatusValidator.validate(response, jsonString);
+    store(call, jsonString);
+    return response;
   }
 
-  private String get(final String callName, String callPrefix, Params params) throws IOException {
-    String jsonString = null;
+  private void sleep(final long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry.");
+    }
+  }
+
+  private String get(final String callName, String callPrefix, Params params, final Deadline deadline, final HedgedAttempt<?> attempt) throws IOException {
     StringBuilder uri = new StringBuilder()
         .append(requestUri).append(callPrefix).append('/').append(callName)
         .append('?').append(API_KEY).append("=").append(this.apiKey)
         .append(params.toString());
 
     LOGGER.debug("GET: uri: " + uri);
-    HttpURLConnection handle = null;
+    final HttpRequest request = new HttpRequest(HttpRequest.METHOD_GET, new URL(uri.toString()));
+    return doRequest(transport.execute(prepare(request, deadline, attempt)));
+  }
+
+  private String post(final String callName, String callType, Params params, final Deadline deadline, final HedgedAttempt<?> attempt) throws IOException {
+    URL url = new URL(requestUri + callType + "/" + callName);
+    final FormRequestBody body = new FormRequestBody(apiKey, params);
+
+    LOGGER.debug("POST: url: " + url);
+    if(LOGGER.isDebugEnabled()) {
+      LOGGER.debug("POST: data: " + API_KEY + "=" + apiKey + params.toString());
+    }
+    LOGGER.debug("POST: " + HEADER_CONTENT_LENGTH + ": " + body.getContentLength());
+
+    final HttpRequest request = new HttpRequest(HttpRequest.METHOD_POST, url)
+        .setHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_FORM)
+        .setBody(body);
+    return doRequest(transport.execute(prepare(request, deadline, attempt)));
+  }
+
+  private HttpRequest prepare(final HttpRequest request, final Deadline deadline, final HedgedAttempt<?> attempt) {
+    request.setConnectTimeoutMillis(connectTimeoutMillis)
+        .setReadTimeoutMillis(readTimeoutMillis)
+        .setDeadline(deadline);
+    if(attempt != null) {
+      attempt.setRequest(request);
+    }
+    return setAcceptEncoding(request);
+  }
+
+  private HttpRequest setAcceptEncoding(final HttpRequest request) {
+    if(isCompressionEnabled) {
+      request.setHeader(HEADER_ACCEPT_ENCODING, ACCEPT_ENCODING);
+    }
+    return request;
+  }
+
+  /**
+   * Read the body of the response as bytes into this thread's reusable buffer
+   * and decode it once.  A gzip or deflate compressed body is decompressed as
+   * it is read.
+   *
+   * @param response response to read; always closed
+   *
+   * @return body of the response
+   *
+   * @throws IOException if the body cannot be read
+   */
+  private String doRequest(final HttpResponse response) throws IOException {
+    final ResponseBuffer buffer = ResponseBuffer.forCurrentThread();
+    final String jsonString;
     try {
-      URL url = new URL(uri.toString());
-      handle = (HttpURLConnection) url.openConnection();
-      handle.setDoOutput(true);
-      jsonString = doRequest(handle);
+      final String contentEncoding = getContentEncoding(response);
+      if(contentEncoding == null) {
+        buffer.readFrom(response.getInputStream(), getContentLength(response));
+      }
+      else {
+        readCompressed(response, contentEncoding, buffer);
+      }
+      jsonString = buffer.toString(getCharset(response));
     }
     finally {
-      if(handle != null) {
-        handle.disconnect();
-      }
+      // hands the connection back to the pool
+      response.close();
+      buffer.reset();
     }
-
     return jsonString;
   }
 
-  private String post(final String callName, String callType, Params params) throws IOException {
-    String jsonString = null;
-    URL url = new URL(requestUri + callType + "/" + callName);
-
-    StringBuilder data = new StringBuilder()
-        .append(API_KEY).append("=").append(apiKey)
-        .append(params.toString());
+  private void readCompressed(final HttpResponse response, final String contentEncoding, final ResponseBuffer buffer) throws IOException {
+    final CountingInputStream compressed = new CountingInputStream(response.getInputStream());
+    final InputStream decompressed;
+    Inflater inflater = null;
+    if(ENCODING_GZIP.equals(contentEncoding)) {
+      decompressed = new GZIPInputStream(compressed, INFLATER_BUFFER_SIZE);
+    }
+    else {
+      // deflate is meant to be zlib wrapped but some servers send it raw
+      final PushbackInputStream peeked = new PushbackInputStream(compressed, 2);
+      inflater = new Inflater(!isZlibWrapped(peeked));
+      decompressed = new InflaterInputStream(peeked, inflater, INFLATER_BUFFER_SIZE);
+    }
+    try {
+      buffer.readFrom(decompressed, -1);
+      // consume anything after the end of the compressed data so the
+      // connection can be reused
+      while(compressed.read() != -1) {
+        // discard
+      }
+    }
+    finally {
+      decompressed.close();
+      if(inflater != null) {
+        inflater.end();
+      }
+    }
+    compressedBytes.addAndGet(compressed.getCount());
+    decompressedBytes.addAndGet(buffer.size());
+  }
 
-    LOGGER.debug("POST: url: " + url);
-    LOGGER.debug("POST: data: " + data.toString());
-    LOGGER.debug("POST: " + HEADER_CONTENT_LENGTH + ": " + data.length());
+  /**
+   * Peek at the first two bytes of the stream for a zlib header: deflate
+   * compression and a header checksum that is a multiple of 31 (RFC 1950).
+   */
+  private boolean isZlibWrapped(final PushbackInputStream in) throws IOException {
+    final int cmf = in.read();
+    if(cmf == -1) {
+      return true;
+    }
+    final int flg = in.read();
+    if(flg == -1) {
+      in.unread(cmf);
+      return true;
+    }
+    in.unread(flg);
+    in.unread(cmf);
+    return (cmf & 0x0f) == ZLIB_METHOD_DEFLATE && ((cmf << 8) | flg) % 31 == 0;
+  }
 
-    DataOutputStream dataOutputStream = null;
-    HttpURLConnection handle = null;
-    try {
-      handle = (HttpURLConnection) url.openConnection();
-      handle.setDoOutput(true);
-      handle.addRequestProperty(HEADER_CONTENT_LENGTH, Integer.toString(data.length()));
+  private String getContentEncoding(final HttpResponse response) {
+    final String contentEncoding = response.getHeader(HEADER_CONTENT_ENCODING);
+    if(contentEncoding != null) {
+      final String encoding = contentEncoding.trim().toLowerCase();
+      if(ENCODING_GZIP.equals(encoding) || ENCODING_DEFLATE.equals(encoding)) {
+        return encoding;
+      }
+    }
+    return null;
+  }
 
-      dataOutputStream = new DataOutputStream(handle.getOutputStream());
-      dataOutputStream.write(data.toString().getBytes());
-      jsonString = doRequest(handle);
+  private long getContentLength(final HttpResponse response) {
+    final String contentLength = response.getHeader(HEADER_CONTENT_LENGTH);
+    if(contentLength != null) {
+      try {
+        return Long.parseLong(contentLength.trim());
+      }
+      catch(NumberFormatException e) {
+        // unknown
+      }
     }
-    finally {
-      if(dataOutputStream != null) {
-        try {
-          dataOutputStream.close();
+    return -1;
+  }
+
+  private String getCharset(final HttpResponse response) {
+    final String contentType = response.getHeader(HEADER_CONTENT_TYPE);
+    if(contentType != null) {
+      final int index = contentType.toLowerCase().indexOf(CHARSET_PARAMETER);
+      if(index != -1) {
+        String charset = contentType.substring(index + CHARSET_PARAMETER.length()).trim();
+        final int end = charset.indexOf(';');
+        if(end != -1) {
+          charset = charset.substring(0, end);
         }
-        catch(IOException e) {
-          // ignore
+        charset = charset.replace("\"", "").trim();
+        if(isSupportedCharset(charset)) {
+          return charset;
         }
       }
-      if(handle != null) {
-        handle.disconnect();
-      }
     }
+    return Constants.DEFAULT_ENCODING;
+  }
 
-    return jsonString;
+  private boolean isSupportedCharset(final String charset) {
+    try {
+      return charset.length() > 0 && Charset.isSupported(charset);
+    }
+    catch(IllegalArgumentException e) {
+      return false;
+    }
   }
 
-  private String doRequest(HttpURLConnection handle) throws IOException {
-    if(handle == null) {
-      return null;
+  /**
+   * One copy of a hedged call.  The latency of every copy that succeeds is
+   * recorded, so the hedge delay follows the latency of single requests and
+   * not the shorter latency callers see thanks to hedging.
+   */
+  private class HedgedAttempt<T extends AbstractAlchemyEntity> implements Callable<Response<T>> {
+    private final AbstractCall<T> call;
+    private final Params params;
+    private final Deadline deadline;
+    private final HedgePolicy policy;
+    private final String endpoint;
+    private HttpRequest request;
+    private boolean isAborted;
+
+    private HedgedAttempt(final AbstractCall<T> call, final Params params, final Deadline deadline, final HedgePolicy policy, final String endpoint) {
+      this.call = call;
+      this.params = params;
+      this.deadline = deadline;
+      this.policy = policy;
+      this.endpoint = endpoint;
     }
 
-    StringBuilder builder = new StringBuilder();
-    BufferedReader bufferedReader = null;
-    DataInputStream dataInputStream;
-    try {
-      String line;
-      dataInputStream = new DataInputStream(handle.getInputStream());
-      bufferedReader = new BufferedReader(new InputStreamReader(dataInputStream));
-      while((line = bufferedReader.readLine()) != null) {
-        builder.append(line.trim());
+    public Response<T> call() throws IOException {
+      final long startMillis = System.currentTimeMillis();
+      final Response<T> response = send(call, params, deadline, this);
+      policy.recordLatency(endpoint, System.currentTimeMillis() - startMillis);
+      return response;
+    }
+
+    private synchronized void setRequest(final HttpRequest request) {
+      this.request = request;
+      if(isAborted) {
+        request.abort();
       }
     }
-    finally {
-      if(bufferedReader != null) {
-        try {
-          bufferedReader.close();
-        }
-        catch(IOException e) {
-          // ignore
-        }
+
+    private synchronized void abort() {
+      isAborted = true;
+      if(request != null) {
+        request.abort();
       }
     }
-    OutputStatusValidator.validate(builder.toString());
+  }
+
+  /**
+   * Form encoded POST body.  The params are url encoded straight into the
+   * connection's stream so the size of the text or html being sent does not
+   * change how much memory a call needs.
+   */
+  private static class FormRequestBody implements RequestBody {
+    private final byte[] apiKeyParam;
+    private final Params params;
+    private final long contentLength;
+
+    private FormRequestBody(final String apiKey, final Params params) throws UnsupportedEncodingException {
+      this.apiKeyParam = (API_KEY + "=" + apiKey).getBytes(Constants.DEFAULT_ENCODING);
+      this.params = params;
+      this.contentLength = apiKeyParam.length + params.getEncodedLength();
+    }
+
+    public long getContentLength() {
+      return contentLength;
+    }
 
-    return builder.toString();
+    public void writeTo(final OutputStream out) throws IOException {
+      out.write(apiKeyParam);
+      params.writeTo(out);
+    }
   }
 }
@@ -0,0 +1,129 @@
+/**
+ * File: DocumentAnalysis.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.analysis;
+
+import com.likethecolor.alchemy.api.entity.AuthorAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.ConceptAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.KeywordAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.LanguageAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.NamedEntityAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.RelationAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.entity.SentimentAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.TaxonomyAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything a {@link DocumentAnalyzer} extracted from one document.  Each
+ * extractor either has a response or the exception its call failed with; the
+ * getters return null for extractors that failed or were not asked for.
+ */
+public class DocumentAnalysis {
+  private final Map<Extractor, Response<?>> responses = new EnumMap<Extractor, Response<?>>(Extractor.class);
+  private final Map<Extractor, Exception> exceptions = new EnumMap<Extractor, Exception>(Extractor.class);
+
+  void setResponse(final Extractor extractor, final Response<?> response) {
+    responses.put(extractor, response);
+  }
+
+  void setException(final Extractor extractor, final Exception exception) {
+    exceptions.put(extractor, exception);
+  }
+
+  /**
+   * @return extractors whose call succeeded
+   */
+  public Set<Extractor> getSucceeded() {
+    return Collections.unmodifiableSet(responses.keySet());
+  }
+
+  /**
+   * @return extractors whose call failed
+   */
+  public Set<Extractor> getFailed() {
+    return Collections.unmodifiableSet(exceptions.keySet());
+  }
+
+  public boolean isSuccess(final Extractor extractor) {
+    return responses.containsKey(extractor);
+  }
+
+  public Response<?> getResponse(final Extractor extractor) {
+    return responses.get(extractor);
+  }
+
+  public Exception getException(final Extractor extractor) {
+    return exceptions.get(extractor);
+  }
+
+  public Response<AuthorAlchemyEntity> getAuthor() {
+    return get(Extractor.AUTHOR);
+  }
+
+  public Response<TitleAlchemyEntity> getTitle() {
+    return get(Extractor.TITLE);
+  }
+
+  public Response<LanguageAlchemyEntity> getLanguage() {
+    return get(Extractor.LANGUAGE);
+  }
+
+  public Response<KeywordAlchemyEntity> getKeywords() {
+    return get(Extractor.KEYWORDS);
+  }
+
+  public Response<ConceptAlchemyEntity> getConcepts() {
+    return get(Extractor.CONCEPTS);
+  }
+
+  public Response<NamedEntityAlchemyEntity> getNamedEntities() {
+    return get(Extractor.NAMED_ENTITIES);
+  }
+
+  public Response<TaxonomyAlchemyEntity> getTaxonomy() {
+    return get(Extractor.TAXONOMY);
+  }
+
+  public Response<SentimentAlchemyEntity> getSentiment() {
+    return get(Extractor.SENTIMENT);
+  }
+
+  public Response<RelationAlchemyEntity> getRelations() {
+    return get(Extractor.RELATIONS);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T get(final Extractor extractor) {
+    return (T) responses.get(extractor);
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("succeeded", responses.keySet())
+        .append("failed", exceptions)
+        .toString();
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * File: DocumentAnalyzer.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.analysis;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.async.CallFuture;
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.call.type.CallType;
+import com.likethecolor.alchemy.api.params.EncodedContent;
+import com.likethecolor.alchemy.api.params.Params;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs several extractors (author, title, keywords, ...) on one document at
+ * the same time, so the time to analyze a document is that of the slowest
+ * call rather than the sum of all of them.
+ * <p/>
+ * The calls are made with {@link Client#callAsync(AbstractCall)} and share one
+ * url encoding of the document's html, text or url.
+ */
+public class DocumentAnalyzer {
+  private final Client client;
+
+  public DocumentAnalyzer(final Client client) {
+    if(client == null) {
+      throw new IllegalArgumentException("Client cannot be null.");
+    }
+    this.client = client;
+  }
+
+  public Client getClient() {
+    return client;
+  }
+
+  /**
+   * @param callType document to analyze
+   * @param extractors what to extract from it
+   *
+   * @return what was extracted
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   * for the calls
+   *
+   * @see #analyze(CallType, Collection)
+   */
+  public DocumentAnalysis analyze(final CallType callType, final Extractor... extractors) throws InterruptedException {
+    return analyze(callType, Arrays.asList(extractors));
+  }
+
+  /**
+   * Run the extractors on the document and wait for all of them.  A failed
+   * extractor does not fail the analysis; its exception is kept in the result.
+   *
+   * @param callType document to analyze
+   * @param extractors what to extract from it
+   *
+   * @return what was extracted
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   * for the calls
+   */
+  public DocumentAnalysis analyze(final CallType callType, final Collection<Extractor> extractors) throws InterruptedException {
+    if(callType == null) {
+      throw new IllegalArgumentException("Call type cannot be null.");
+    }
+    if(extractors == null || extractors.isEmpty()) {
+      throw new IllegalArgumentException("At least one extractor is required.");
+    }
+
+    final EncodedContent content = encode(callType);
+    final Map<Extractor, CallFuture<?>> futures = new EnumMap<Extractor, CallFuture<?>>(Extractor.class);
+    for(Extractor extractor : EnumSet.copyOf(extractors)) {
+      final AbstractCall<?> call = extractor.createCall(callType);
+      final Params params = call.getParams();
+      params.setEncodedContent(content);
+      call.setParams(params);
+      futures.put(extractor, client.callAsync(call));
+    }
+
+    final DocumentAnalysis analysis = new DocumentAnalysis();
+    try {
+      for(Map.Entry<Extractor, CallFuture<?>> entry : futures.entrySet()) {
+        try {
+          analysis.setResponse(entry.getKey(), entry.getValue().get());
+        }
+        catch(ExecutionException e) {
+          analysis.setException(entry.getKey(), getCause(e));
+        }
+      }
+    }
+    catch(InterruptedException e) {
+      for(CallFuture<?> future : futures.values()) {
+        future.cancel(true);
+      }
+      throw e;
+    }
+    return analysis;
+  }
+
+  private Exception getCause(final ExecutionException e) {
+    if(e.getCause() instanceof Exception) {
+      return (Exception) e.getCause();
+    }
+    return e;
+  }
+
+  private EncodedContent encode(final CallType callType) {
+    final Params params = new Params();
+    callType.setValuesOnParams(params);
+    return EncodedContent.from(params);
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * File: Extractor.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.analysis;
+
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.call.AuthorCall;
+import com.likethecolor.alchemy.api.call.LanguageCall;
+import com.likethecolor.alchemy.api.call.RankedConceptsCall;
+import com.likethecolor.alchemy.api.call.RankedKeywordsCall;
+import com.likethecolor.alchemy.api.call.RankedNamedEntitiesCall;
+import com.likethecolor.alchemy.api.call.RankedTaxonomyCall;
+import com.likethecolor.alchemy.api.call.RelationsCall;
+import com.likethecolor.alchemy.api.call.SentimentCall;
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallType;
+
+/**
+ * What a {@link DocumentAnalyzer} can extract from a document; each one is a
+ * single call to the API.
+ */
+public enum Extractor {
+  AUTHOR {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new AuthorCall(callType);
+    }
+  },
+  TITLE {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new TitleCall(callType);
+    }
+  },
+  LANGUAGE {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new LanguageCall(callType);
+    }
+  },
+  KEYWORDS {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new RankedKeywordsCall(callType);
+    }
+  },
+  CONCEPTS {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new RankedConceptsCall(callType);
+    }
+  },
+  NAMED_ENTITIES {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new RankedNamedEntitiesCall(callType);
+    }
+  },
+  TAXONOMY {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new RankedTaxonomyCall(callType);
+    }
+  },
+  SENTIMENT {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new SentimentCall(callType);
+    }
+  },
+  RELATIONS {
+    @Override
+    public AbstractCall<?> createCall(final CallType callType) {
+      return new RelationsCall(callType);
+    }
+  };
+
+  /**
+   * @param callType document to run the extractor on
+   *
+   * @return call that runs the extractor on the document
+   */
+  public abstract AbstractCall<?> createCall(final CallType callType);
+}
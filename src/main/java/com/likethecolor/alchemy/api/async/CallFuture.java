@@ -0,0 +1,142 @@
+/**
+ * File: CallFuture.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import com.likethecolor.alchemy.api.entity.AbstractAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Result of an asynchronous call.  In addition to the usual {@link java.util.concurrent.Future}
+ * methods, listeners can be registered to be told when the call completes so
+ * that callers never have to park a thread waiting on it.
+ */
+public class CallFuture<T extends AbstractAlchemyEntity> extends FutureTask<Response<T>> {
+  private final List<CallListener<T>> listeners = new ArrayList<CallListener<T>>();
+
+  public CallFuture(final Callable<Response<T>> callable) {
+    super(callable);
+  }
+
+  /**
+   * Register a listener.  If the call has already completed the listener is
+   * notified right away on the calling thread.
+   *
+   * @param listener listener to notify
+   *
+   * @return this future
+   */
+  public CallFuture<T> addListener(final CallListener<T> listener) {
+    if(listener == null) {
+      throw new IllegalArgumentException("Listener cannot be null.");
+    }
+    synchronized(listeners) {
+      if(!isDone()) {
+        listeners.add(listener);
+        return this;
+      }
+    }
+    notifyListener(listener);
+    return this;
+  }
+
+  /**
+   * Wait for the call to complete and return the response, unwrapping the
+   * exception that made the call fail.
+   *
+   * @return parsed response
+   *
+   * @throws IOException if the call failed
+   */
+  public Response<T> getResponse() throws IOException {
+    try {
+      return get();
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the call to complete.");
+    }
+    catch(ExecutionException e) {
+      throw unwrap(e.getCause());
+    }
+  }
+
+  @Override
+  protected void done() {
+    final List<CallListener<T>> toNotify;
+    synchronized(listeners) {
+      toNotify = new ArrayList<CallListener<T>>(listeners);
+      listeners.clear();
+    }
+    for(CallListener<T> listener : toNotify) {
+      notifyListener(listener);
+    }
+  }
+
+  private void notifyListener(final CallListener<T> listener) {
+    final Response<T> response;
+    try {
+      response = get();
+    }
+    catch(ExecutionException e) {
+      listener.onFailure(e.getCause());
+      return;
+    }
+    catch(CancellationException e) {
+      listener.onFailure(e);
+      return;
+    }
+    catch(InterruptedException e) {
+      // cannot happen - the future is done
+      Thread.currentThread().interrupt();
+      listener.onFailure(e);
+      return;
+    }
+    listener.onSuccess(response);
+  }
+
+  /**
+   * Turn the cause of an {@link ExecutionException} back into what the call
+   * threw: an IOException is returned, unchecked exceptions are rethrown and
+   * anything else is wrapped in an IOException.
+   *
+   * @param cause cause of the execution exception
+   *
+   * @return IOException to throw
+   */
+  public static IOException unwrap(final Throwable cause) {
+    if(cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    if(cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if(cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new IOException(cause);
+  }
+}
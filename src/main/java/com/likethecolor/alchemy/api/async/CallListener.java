@@ -0,0 +1,38 @@
+/**
+ * File: CallListener.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import com.likethecolor.alchemy.api.entity.AbstractAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.Response;
+
+/**
+ * Notified when an asynchronous call completes.  Listeners run on the thread
+ * that completed the call (or on the thread that registered the listener if
+ * the call had already completed) so they should not block.
+ */
+public interface CallListener<T extends AbstractAlchemyEntity> {
+  /**
+   * @param response parsed response of the call
+   */
+  public void onSuccess(final Response<T> response);
+
+  /**
+   * @param throwable reason the call failed or was cancelled
+   */
+  public void onFailure(final Throwable throwable);
+}
@@ -0,0 +1,40 @@
+/**
+ * File: DaemonThreadFactory.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads so that the client's worker threads never keep
+ * the JVM alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+  private final String namePrefix;
+  private final AtomicInteger threadNumber = new AtomicInteger();
+
+  public DaemonThreadFactory(final String namePrefix) {
+    this.namePrefix = namePrefix;
+  }
+
+  public Thread newThread(final Runnable runnable) {
+    final Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * File: SingleFlight.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes concurrent requests for the same key share one execution.  The first
+ * caller for a key runs the work on its own thread; callers that ask for the
+ * key while that is in flight wait for it and get the same result (or
+ * exception).  Once the work finishes the key is forgotten, so a later caller
+ * runs it again; nothing is cached.
+ */
+public class SingleFlight<K, V> {
+  private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+  private final AtomicLong executionCount = new AtomicLong();
+  private final AtomicLong sharedCount = new AtomicLong();
+
+  /**
+   * @return number of times the work was actually run
+   */
+  public long getExecutionCount() {
+    return executionCount.get();
+  }
+
+  /**
+   * @return number of callers that got the result of work started by another caller
+   */
+  public long getSharedCount() {
+    return sharedCount.get();
+  }
+
+  /**
+   * @return number of keys whose work is running
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * Run the work for the key or wait for the run already in flight.
+   *
+   * @param key identifies the work
+   * @param work work to run if no call for the key is in flight
+   * @param timeoutMillis longest time to wait for work started by another
+   * caller; 0 waits forever
+   *
+   * @return result of the work
+   *
+   * @throws ExecutionException if the work failed; the cause is what it threw
+   * @throws TimeoutException if work started by another caller did not finish in time
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  public V execute(final K key, final Callable<V> work, final long timeoutMillis) throws ExecutionException, TimeoutException, InterruptedException {
+    final FutureTask<V> task = new FutureTask<V>(work);
+    final FutureTask<V> running = inFlight.putIfAbsent(key, task);
+    if(running != null) {
+      sharedCount.incrementAndGet();
+      return timeoutMillis == 0 ? running.get() : running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    executionCount.incrementAndGet();
+    try {
+      task.run();
+    }
+    finally {
+      inFlight.remove(key, task);
+    }
+    return task.get();
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * File: VirtualThreads.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Gives access to virtual threads (Java 21 and later) while the library
+ * itself is still built for older JVMs.  Calls to the API spend nearly all of
+ * their time blocked on the network, which is what virtual threads are for:
+ * each call gets its own cheap thread instead of waiting for one of a few
+ * platform threads.
+ * <p/>
+ * Use the executor with {@link com.likethecolor.alchemy.api.Client#setExecutorService(ExecutorService)}
+ * or {@link com.likethecolor.alchemy.api.batch.BatchClient#setExecutorService(ExecutorService)}.
+ * The connection pool still caps the connections per host, so raise
+ * {@link com.likethecolor.alchemy.api.transport.ConnectionPool#getMaxConnectionsPerHost()}
+ * along with the parallelism.
+ */
+public final class VirtualThreads {
+  private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findFactoryMethod();
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return true if the running JVM has virtual threads
+   */
+  public static boolean isSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Return an executor that starts a new virtual thread for each task.
+   *
+   * @return virtual thread per task executor
+   *
+   * @throws UnsupportedOperationException if the JVM has no virtual threads
+   */
+  public static ExecutorService newPerTaskExecutor() {
+    if(!isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on " + System.getProperty("java.version") + ".");
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+    }
+    catch(Exception e) {
+      throw new UnsupportedOperationException("Unable to create a virtual thread executor.", e);
+    }
+  }
+
+  private static Method findFactoryMethod() {
+    try {
+      return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    }
+    catch(NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/**
+ * File: BatchClient.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.batch;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.async.DaemonThreadFactory;
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.entity.AbstractAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many calls through a {@link Client} with bounded parallelism.
+ * <p/>
+ * {@link #getParallelism()} workers take the calls in order from the batch
+ * and make them one after another, so no more than that many calls are in
+ * flight and no per-call task is queued up front however big the batch.
+ * Everything configured on the client (timeouts, retries, rate limiter)
+ * applies to each call.  A call that fails does not stop the batch; its
+ * {@link BatchResult} holds the exception instead.
+ */
+public class BatchClient {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchClient.class);
+  private static final String THREAD_NAME_PREFIX = "alchemy-batch";
+
+  private final Client client;
+  private volatile int parallelism = Client.DEFAULT_MAX_IN_FLIGHT;
+  private ExecutorService executorService;
+  private boolean isDefaultExecutorService;
+
+  public BatchClient(final Client client) {
+    if(client == null) {
+      throw new IllegalArgumentException("Client cannot be null.");
+    }
+    this.client = client;
+  }
+
+  public Client getClient() {
+    return client;
+  }
+
+  /**
+   * @param parallelism maximum number of calls of a batch made at the same time
+   */
+  public void setParallelism(final int parallelism) {
+    if(parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1 [" + parallelism + "].");
+    }
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Run the workers on the given executor instead of the default one.  The
+   * executor must be able to run {@link #getParallelism()} tasks at once.  It
+   * is not shut down by {@link #shutdown()}.
+   *
+   * @param executorService executor that runs the workers
+   */
+  public synchronized void setExecutorService(final ExecutorService executorService) {
+    if(executorService == null) {
+      throw new IllegalArgumentException("Executor service cannot be null.");
+    }
+    if(isDefaultExecutorService) {
+      this.executorService.shutdown();
+    }
+    this.executorService = executorService;
+    this.isDefaultExecutorService = false;
+  }
+
+  /**
+   * Stop the default executor.
+   */
+  public synchronized void shutdown() {
+    if(isDefaultExecutorService) {
+      executorService.shutdown();
+      executorService = null;
+      isDefaultExecutorService = false;
+    }
+  }
+
+  /**
+   * Make every call and wait for all of them to finish.
+   *
+   * @param calls calls to make
+   *
+   * @return one result per call, in the order of the calls
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting;
+   * calls not yet started are then not made
+   */
+  public <T extends AbstractAlchemyEntity> List<BatchResult<T>> callAll(final Collection<? extends AbstractCall<T>> calls) throws InterruptedException {
+    if(calls == null) {
+      throw new IllegalArgumentException("Calls cannot be null.");
+    }
+    final List<AbstractCall<T>> callList = new ArrayList<AbstractCall<T>>(calls);
+    final int size = callList.size();
+    final Object[] results = new Object[size];
+    if(size == 0) {
+      return new ArrayList<BatchResult<T>>();
+    }
+
+    final int workerCount = Math.min(parallelism, size);
+    final AtomicInteger nextIndex = new AtomicInteger();
+    final AtomicBoolean isCancelled = new AtomicBoolean();
+    final CountDownLatch done = new CountDownLatch(workerCount);
+    final ExecutorService executor = getExecutorService();
+    for(int i = 0; i < workerCount; i++) {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            int index;
+            while(!isCancelled.get() && (index = nextIndex.getAndIncrement()) < size) {
+              results[index] = call(index, callList.get(index));
+            }
+          }
+          finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+
+    try {
+      done.await();
+    }
+    catch(InterruptedException e) {
+      isCancelled.set(true);
+      throw e;
+    }
+    return toList(results);
+  }
+
+  <T extends AbstractAlchemyEntity> BatchResult<T> call(final int index, final AbstractCall<T> call) {
+    try {
+      final Response<T> response = client.call(call);
+      return new BatchResult<T>(index, call, response, null);
+    }
+    catch(Exception e) {
+      LOGGER.debug("call " + index + " of batch failed", e);
+      return new BatchResult<T>(index, call, null, e);
+    }
+  }
+
+  /**
+   * Make the calls of the source as the results are consumed.  Unlike
+   * {@link #callAll(Collection)} the calls are not collected up front: the
+   * source is read lazily and at most {@link #getParallelism()} calls are in
+   * flight or waiting to be consumed, so the source can be far larger than the
+   * heap (e.g., an iterator over the lines of a file).
+   *
+   * @param calls source of the calls to make
+   *
+   * @return stream of the results
+   */
+  public <T extends AbstractAlchemyEntity> CallStream<T> stream(final Iterator<? extends AbstractCall<T>> calls) {
+    if(calls == null) {
+      throw new IllegalArgumentException("Calls cannot be null.");
+    }
+    return new CallStream<T>(this, calls, parallelism, getExecutorService());
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends AbstractAlchemyEntity> List<BatchResult<T>> toList(final Object[] results) {
+    final List<BatchResult<T>> list = new ArrayList<BatchResult<T>>(results.length);
+    for(Object result : results) {
+      list.add((BatchResult<T>) result);
+    }
+    return list;
+  }
+
+  private synchronized ExecutorService getExecutorService() {
+    if(executorService == null) {
+      executorService = Executors.newCachedThreadPool(new DaemonThreadFactory(THREAD_NAME_PREFIX));
+      isDefaultExecutorService = true;
+    }
+    return executorService;
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * File: BatchResult.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.batch;
+
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.entity.AbstractAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.Response;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * Outcome of one call in a batch: either the response or the exception the
+ * call failed with.
+ */
+public class BatchResult<T extends AbstractAlchemyEntity> {
+  private final int index;
+  private final AbstractCall<T> call;
+  private final Response<T> response;
+  private final Exception exception;
+
+  BatchResult(final int index, final AbstractCall<T> call, final Response<T> response, final Exception exception) {
+    this.index = index;
+    this.call = call;
+    this.response = response;
+    this.exception = exception;
+  }
+
+  /**
+   * @return position of the call in the batch
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  public AbstractCall<T> getCall() {
+    return call;
+  }
+
+  public boolean isSuccess() {
+    return exception == null;
+  }
+
+  /**
+   * @return response of the call or null if it failed
+   */
+  public Response<T> getResponse() {
+    return response;
+  }
+
+  /**
+   * @return exception the call failed with or null if it succeeded
+   */
+  public Exception getException() {
+    return exception;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("index", index)
+        .append("success", isSuccess())
+        .append("exception", exception)
+        .toString();
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * File: CallStream.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.batch;
+
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.entity.AbstractAlchemyEntity;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of a stream of calls, pulled one at a time by the consumer.
+ * <p/>
+ * Calls are taken from the source only when there is room in the window: at
+ * most {@link #getWindow()} calls are in flight or waiting to be taken with
+ * {@link #next()} at any time.  A consumer that stops pulling therefore stops
+ * the source from being read, and neither the calls nor the responses of a
+ * large backlog are ever held in memory at once.  Results come back in the
+ * order the calls complete; {@link BatchResult#getIndex()} is the position of
+ * the call in the source.
+ * <p/>
+ * A stream is meant to be consumed by a single thread.
+ */
+public class CallStream<T extends AbstractAlchemyEntity> implements Closeable {
+  private final BatchClient batchClient;
+  private final Iterator<? extends AbstractCall<T>> calls;
+  private final int window;
+  private final ExecutorService executorService;
+  private final BlockingQueue<BatchResult<T>> completed = new LinkedBlockingQueue<BatchResult<T>>();
+  private final List<Future<?>> running = new LinkedList<Future<?>>();
+  private int outstanding;
+  private int nextIndex;
+  private volatile boolean isClosed;
+
+  CallStream(final BatchClient batchClient, final Iterator<? extends AbstractCall<T>> calls, final int window, final ExecutorService executorService) {
+    this.batchClient = batchClient;
+    this.calls = calls;
+    this.window = window;
+    this.executorService = executorService;
+  }
+
+  /**
+   * @return maximum number of calls in flight or waiting to be taken
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * @return number of calls taken from the source so far
+   */
+  public int getStartedCount() {
+    return nextIndex;
+  }
+
+  /**
+   * @return true if another result can be taken with {@link #next()}
+   */
+  public boolean hasNext() {
+    fill();
+    return outstanding > 0;
+  }
+
+  /**
+   * Wait for the next call to complete and return its result.
+   *
+   * @return result of the next call to complete
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   * @throws NoSuchElementException if there are no more results
+   */
+  public BatchResult<T> next() throws InterruptedException {
+    if(!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final BatchResult<T> result = completed.take();
+    outstanding--;
+    fill();
+    return result;
+  }
+
+  /**
+   * Wait at most the given time for the next call to complete.
+   *
+   * @param timeout maximum time to wait
+   * @param unit unit of the timeout
+   *
+   * @return result of the next call to complete or null if none completed in
+   * time
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   * @throws NoSuchElementException if there are no more results
+   */
+  public BatchResult<T> next(final long timeout, final TimeUnit unit) throws InterruptedException {
+    if(!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final BatchResult<T> result = completed.poll(timeout, unit);
+    if(result != null) {
+      outstanding--;
+      fill();
+    }
+    return result;
+  }
+
+  /**
+   * Stop taking calls from the source and cancel the calls in flight.
+   * Results already completed can still be taken.
+   */
+  public void close() {
+    synchronized(running) {
+      isClosed = true;
+      for(Future<?> future : running) {
+        future.cancel(true);
+      }
+      running.clear();
+      // no result is added once closed, so what is queued is all that is left
+      outstanding = completed.size();
+    }
+  }
+
+  private void fill() {
+    while(!isClosed && outstanding < window && calls.hasNext()) {
+      submit(nextIndex++, calls.next());
+    }
+  }
+
+  private void submit(final int index, final AbstractCall<T> call) {
+    final Future<?>[] holder = new Future<?>[1];
+    synchronized(running) {
+      holder[0] = executorService.submit(new Runnable() {
+        public void run() {
+          final BatchResult<T> result = batchClient.call(index, call);
+          synchronized(running) {
+            running.remove(holder[0]);
+            if(!isClosed) {
+              completed.add(result);
+            }
+          }
+        }
+      });
+      running.add(holder[0]);
+      // counted only once submitted, a rejected call must not leave next()
+      // waiting for a result that never comes
+      outstanding++;
+    }
+  }
+}
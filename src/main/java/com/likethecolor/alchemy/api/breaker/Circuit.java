@@ -0,0 +1,74 @@
+/**
+ * File: Circuit.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.breaker;
+
+/**
+ * State of the circuit of one endpoint and the outcomes of its most recent
+ * calls.  Guarded by the {@link CircuitBreaker} that owns it.
+ */
+class Circuit {
+  private final boolean[] failed;
+  private final boolean[] slow;
+  private int next;
+  private int count;
+  private int failedCount;
+  private int slowCount;
+  CircuitBreaker.State state = CircuitBreaker.State.CLOSED;
+  long openedAtMillis;
+  int trialsStarted;
+  int trialsSucceeded;
+
+  Circuit(final int windowSize) {
+    failed = new boolean[windowSize];
+    slow = new boolean[windowSize];
+  }
+
+  void add(final boolean isFailure, final boolean isSlow) {
+    if(count == failed.length) {
+      failedCount -= failed[next] ? 1 : 0;
+      slowCount -= slow[next] ? 1 : 0;
+    }
+    else {
+      count++;
+    }
+    failed[next] = isFailure;
+    slow[next] = isSlow;
+    failedCount += isFailure ? 1 : 0;
+    slowCount += isSlow ? 1 : 0;
+    next = (next + 1) % failed.length;
+  }
+
+  void clear() {
+    next = 0;
+    count = 0;
+    failedCount = 0;
+    slowCount = 0;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  double getFailureRate() {
+    return count == 0 ? 0D : (double) failedCount / count;
+  }
+
+  double getSlowRate() {
+    return count == 0 ? 0D : (double) slowCount / count;
+  }
+}
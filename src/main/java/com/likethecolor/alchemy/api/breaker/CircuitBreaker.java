@@ -0,0 +1,322 @@
+/**
+ * File: CircuitBreaker.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.breaker;
+
+import com.likethecolor.alchemy.api.retry.RetryPolicy;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops sending calls to an endpoint that is failing so that the calls to
+ * the other endpoints are not held up behind it.
+ * <p/>
+ * Every endpoint has its own circuit.  While a circuit is closed the outcomes
+ * of the last {@link #getWindowSize()} calls are kept; once at least
+ * {@link #getMinCalls()} are known and the part of them that failed reaches
+ * {@link #getFailureRateThreshold()}, or the part that took at least
+ * {@link #getSlowCallThresholdMillis()} reaches
+ * {@link #getSlowCallRateThreshold()}, the circuit opens.  An open circuit
+ * refuses calls with a {@link CircuitOpenException} for
+ * {@link #getOpenMillis()}, then lets {@link #getHalfOpenTrials()} trial calls
+ * through (half open).  If they all succeed, and are not slow, the circuit
+ * closes again; otherwise it opens for another period.
+ * <p/>
+ * A call counts as failed if it timed out or if another attempt could
+ * succeed (see {@link RetryPolicy#isTransient(IOException)}); an error about
+ * the call itself, such as unsupported-text-language, says nothing about the
+ * health of the endpoint.
+ */
+public class CircuitBreaker {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+  public static final int DEFAULT_WINDOW_SIZE = 20;
+  public static final int DEFAULT_MIN_CALLS = 10;
+  public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5D;
+  public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.5D;
+  public static final long DEFAULT_OPEN_MILLIS = 30000L;
+  public static final int DEFAULT_HALF_OPEN_TRIALS = 3;
+
+  /**
+   * State of the circuit of an endpoint.
+   */
+  public enum State {
+    /** calls go through */
+    CLOSED,
+    /** calls are refused */
+    OPEN,
+    /** a few trial calls go through */
+    HALF_OPEN
+  }
+
+  private final int windowSize;
+  private final int minCalls;
+  private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+  private final RetryPolicy classifier = new RetryPolicy();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+  private volatile long slowCallThresholdMillis;
+  private volatile double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+  private volatile long openMillis = DEFAULT_OPEN_MILLIS;
+  private volatile int halfOpenTrials = DEFAULT_HALF_OPEN_TRIALS;
+
+  public CircuitBreaker() {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS);
+  }
+
+  /**
+   * @param windowSize number of recent calls per endpoint the rates are
+   * computed over
+   * @param minCalls number of calls an endpoint needs before its circuit can
+   * open
+   */
+  public CircuitBreaker(final int windowSize, final int minCalls) {
+    if(windowSize < 1) {
+      throw new IllegalArgumentException("Window size must be at least 1 [" + windowSize + "].");
+    }
+    if(minCalls < 1 || minCalls > windowSize) {
+      throw new IllegalArgumentException("Min calls must be between 1 and the window size " + windowSize + " [" + minCalls + "].");
+    }
+    this.windowSize = windowSize;
+    this.minCalls = minCalls;
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  public int getMinCalls() {
+    return minCalls;
+  }
+
+  /**
+   * @param failureRateThreshold part of the recent calls that must fail for
+   * the circuit to open
+   */
+  public void setFailureRateThreshold(final double failureRateThreshold) {
+    if(failureRateThreshold <= 0D || failureRateThreshold > 1D) {
+      throw new IllegalArgumentException("Failure rate threshold must be greater than 0 and at most 1 [" + failureRateThreshold + "].");
+    }
+    this.failureRateThreshold = failureRateThreshold;
+  }
+
+  public double getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  /**
+   * @param slowCallThresholdMillis milliseconds after which a call counts as
+   * slow; 0 (the default) to not open circuits on latency
+   */
+  public void setSlowCallThresholdMillis(final long slowCallThresholdMillis) {
+    if(slowCallThresholdMillis < 0) {
+      throw new IllegalArgumentException("Slow call threshold cannot be negative [" + slowCallThresholdMillis + "].");
+    }
+    this.slowCallThresholdMillis = slowCallThresholdMillis;
+  }
+
+  public long getSlowCallThresholdMillis() {
+    return slowCallThresholdMillis;
+  }
+
+  /**
+   * @param slowCallRateThreshold part of the recent calls that must be slow
+   * for the circuit to open
+   */
+  public void setSlowCallRateThreshold(final double slowCallRateThreshold) {
+    if(slowCallRateThreshold <= 0D || slowCallRateThreshold > 1D) {
+      throw new IllegalArgumentException("Slow call rate threshold must be greater than 0 and at most 1 [" + slowCallRateThreshold + "].");
+    }
+    this.slowCallRateThreshold = slowCallRateThreshold;
+  }
+
+  public double getSlowCallRateThreshold() {
+    return slowCallRateThreshold;
+  }
+
+  /**
+   * @param openMillis milliseconds an open circuit refuses calls before it
+   * lets trial calls through
+   */
+  public void setOpenMillis(final long openMillis) {
+    if(openMillis < 0) {
+      throw new IllegalArgumentException("Open time cannot be negative [" + openMillis + "].");
+    }
+    this.openMillis = openMillis;
+  }
+
+  public long getOpenMillis() {
+    return openMillis;
+  }
+
+  /**
+   * @param halfOpenTrials number of trial calls that must succeed for a half
+   * open circuit to close
+   */
+  public void setHalfOpenTrials(final int halfOpenTrials) {
+    if(halfOpenTrials < 1) {
+      throw new IllegalArgumentException("Half open trials must be at least 1 [" + halfOpenTrials + "].");
+    }
+    this.halfOpenTrials = halfOpenTrials;
+  }
+
+  public int getHalfOpenTrials() {
+    return halfOpenTrials;
+  }
+
+  /**
+   * @return number of calls refused because a circuit was open
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * @param endpoint endpoint of the circuit
+   *
+   * @return state of the circuit of the endpoint
+   */
+  public State getState(final String endpoint) {
+    final Circuit circuit = circuits.get(endpoint);
+    if(circuit == null) {
+      return State.CLOSED;
+    }
+    synchronized(circuit) {
+      if(circuit.state == State.OPEN && getRemainingOpenMillis(circuit) <= 0) {
+        return State.HALF_OPEN;
+      }
+      return circuit.state;
+    }
+  }
+
+  /**
+   * Let a call to the endpoint through or refuse it.  A call that is let
+   * through must be followed by {@link #record(String, boolean, long)}.
+   *
+   * @param endpoint endpoint that is called
+   *
+   * @throws CircuitOpenException if the circuit of the endpoint is open
+   */
+  public void acquire(final String endpoint) throws CircuitOpenException {
+    final Circuit circuit = getCircuit(endpoint);
+    synchronized(circuit) {
+      if(circuit.state == State.OPEN) {
+        final long remainingMillis = getRemainingOpenMillis(circuit);
+        if(remainingMillis > 0) {
+          rejectedCount.incrementAndGet();
+          throw new CircuitOpenException("Circuit of " + endpoint + " is open for another " + remainingMillis + " ms.", endpoint, remainingMillis);
+        }
+        LOGGER.debug("circuit of " + endpoint + " is half open");
+        circuit.state = State.HALF_OPEN;
+        circuit.trialsStarted = 0;
+        circuit.trialsSucceeded = 0;
+      }
+      if(circuit.state == State.HALF_OPEN) {
+        if(circuit.trialsStarted >= halfOpenTrials) {
+          rejectedCount.incrementAndGet();
+          throw new CircuitOpenException("Circuit of " + endpoint + " is half open and its trial calls are in progress.", endpoint, 0L);
+        }
+        circuit.trialsStarted++;
+      }
+    }
+  }
+
+  /**
+   * Record a call that failed.
+   *
+   * @param endpoint endpoint that was called
+   * @param e failure of the call
+   * @param latencyMillis milliseconds the call took
+   */
+  public void recordFailure(final String endpoint, final IOException e, final long latencyMillis) {
+    record(endpoint, isFailure(e), latencyMillis);
+  }
+
+  /**
+   * Record the outcome of a call that was let through.
+   *
+   * @param endpoint endpoint that was called
+   * @param isFailure true if the call failed in a way that counts against the
+   * endpoint
+   * @param latencyMillis milliseconds the call took
+   */
+  public void record(final String endpoint, final boolean isFailure, final long latencyMillis) {
+    final long slowMillis = slowCallThresholdMillis;
+    final boolean isSlow = slowMillis > 0 && latencyMillis >= slowMillis;
+    final Circuit circuit = getCircuit(endpoint);
+    synchronized(circuit) {
+      if(circuit.state == State.HALF_OPEN) {
+        if(isFailure || isSlow) {
+          open(endpoint, circuit);
+        }
+        else if(++circuit.trialsSucceeded >= halfOpenTrials) {
+          LOGGER.debug("circuit of " + endpoint + " is closed");
+          circuit.state = State.CLOSED;
+          circuit.clear();
+        }
+      }
+      else if(circuit.state == State.CLOSED) {
+        circuit.add(isFailure, isSlow);
+        if(circuit.getCount() >= minCalls
+           && (circuit.getFailureRate() >= failureRateThreshold || circuit.getSlowRate() >= slowCallRateThreshold)) {
+          open(endpoint, circuit);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param e failure of a call
+   *
+   * @return true if the failure counts against the health of the endpoint
+   */
+  protected boolean isFailure(final IOException e) {
+    if(e instanceof DeadlineExceededException) {
+      // running out of time while waiting on this side is not the endpoint's fault
+      return !((DeadlineExceededException) e).isQueued();
+    }
+    return classifier.isTransient(e);
+  }
+
+  private void open(final String endpoint, final Circuit circuit) {
+    LOGGER.warn("circuit of " + endpoint + " is open for " + openMillis + " ms");
+    circuit.state = State.OPEN;
+    circuit.openedAtMillis = System.currentTimeMillis();
+    circuit.clear();
+  }
+
+  private long getRemainingOpenMillis(final Circuit circuit) {
+    return circuit.openedAtMillis + openMillis - System.currentTimeMillis();
+  }
+
+  private Circuit getCircuit(final String endpoint) {
+    Circuit circuit = circuits.get(endpoint);
+    if(circuit == null) {
+      final Circuit created = new Circuit(windowSize);
+      circuit = circuits.putIfAbsent(endpoint, created);
+      if(circuit == null) {
+        circuit = created;
+      }
+    }
+    return circuit;
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * File: CircuitOpenException.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.breaker;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call is refused because the circuit of its endpoint is open.
+ * The call was never sent.
+ */
+public class CircuitOpenException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final String endpoint;
+  private final long retryAfterMillis;
+
+  public CircuitOpenException(final String message, final String endpoint, final long retryAfterMillis) {
+    super(message);
+    this.endpoint = endpoint;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * @return milliseconds until the circuit lets a trial call through; 0 if
+   * trial calls are already in progress
+   */
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+}
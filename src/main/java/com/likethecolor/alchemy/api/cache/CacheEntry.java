@@ -0,0 +1,71 @@
+/**
+ * File: CacheEntry.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.entity.Response;
+
+/**
+ * A response held by a {@link ResponseCache}, the time it expires and, for a
+ * response that is refreshed ahead, when it is due for a refresh and how long
+ * it may be served stale.
+ */
+class CacheEntry {
+  private final Response<?> response;
+  private final long expiresAtMillis;
+  private final long refreshAtMillis;
+  private final long staleUntilMillis;
+  private boolean isRefreshing;
+
+  CacheEntry(final Response<?> response, final long expiresAtMillis) {
+    this(response, expiresAtMillis, Long.MAX_VALUE, expiresAtMillis);
+  }
+
+  CacheEntry(final Response<?> response, final long expiresAtMillis, final long refreshAtMillis, final long staleUntilMillis) {
+    this.response = response;
+    this.expiresAtMillis = expiresAtMillis;
+    this.refreshAtMillis = refreshAtMillis;
+    this.staleUntilMillis = staleUntilMillis;
+  }
+
+  Response<?> getResponse() {
+    return response;
+  }
+
+  boolean isExpired(final long nowMillis) {
+    return nowMillis >= expiresAtMillis;
+  }
+
+  /**
+   * @return true if the entry expired and may not be served even stale
+   */
+  boolean isDead(final long nowMillis) {
+    return nowMillis >= staleUntilMillis;
+  }
+
+  boolean isRefreshDue(final long nowMillis) {
+    return nowMillis >= refreshAtMillis;
+  }
+
+  boolean isRefreshing() {
+    return isRefreshing;
+  }
+
+  void setRefreshing(final boolean isRefreshing) {
+    this.isRefreshing = isRefreshing;
+  }
+}
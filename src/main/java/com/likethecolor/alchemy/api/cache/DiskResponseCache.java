@@ -0,0 +1,853 @@
+/**
+ * File: DiskResponseCache.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.async.DaemonThreadFactory;
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the raw bodies of responses on disk so that they survive a restart,
+ * e.g., a batch worker that runs the same corpus again is answered locally
+ * instead of being billed again.  Bodies are keyed like the
+ * {@link ResponseCache}, by endpoint and params digest, and live for the time
+ * to live of their call class and call type.
+ * <p/>
+ * Every body is appended to a log file in the directory.  An index of the
+ * live records is kept in memory and rebuilt from the log when the cache is
+ * opened; a record that was only partly written (e.g., the process was
+ * killed) and everything after it is dropped.  Replaced, invalidated and
+ * expired records stay in the log until it is compacted, which happens when
+ * the log grows past {@link #getMaxBytes()} or on {@link #compact()}.
+ * Compaction also drops the least recently used records until the live ones
+ * take no more than {@link #COMPACTION_TARGET_RATIO} of the size cap.
+ * <p/>
+ * The directory is locked while the cache is open, so only one cache, in one
+ * process, can use it at a time.
+ * <p/>
+ * Bodies are read with positional reads outside the lock that guards the
+ * index, so lookups do not wait for each other or for puts.  A compaction
+ * triggered by a put runs on a background thread; only the final swap of the
+ * log blocks lookups.
+ */
+public class DiskResponseCache implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DiskResponseCache.class);
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+  public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 7L * 24L * 60L * 60L * 1000L;
+  public static final double COMPACTION_TARGET_RATIO = 0.75D;
+  static final String LOG_FILE_NAME = "responses.log";
+  private static final String COMPACT_FILE_NAME = "responses.log.compact";
+  private static final String LOCK_FILE_NAME = "responses.lock";
+  private static final int MAGIC = 0x414c4331;
+  private static final int FILE_HEADER_LENGTH = 4;
+  private static final int RECORD_HEADER_LENGTH = 12;
+  private static final String ENCODING = "UTF-8";
+  private static final String COMPACTION_THREAD_NAME_PREFIX = "alchemy-disk-cache-compaction";
+
+  private final File directory;
+  private final long maxBytes;
+  private final TimesToLive timesToLive;
+  private final Map<String, Record> index = new LinkedHashMap<String, Record>(16, 0.75F, true);
+  private final RandomAccessFile lockFile;
+  private final FileLock lock;
+  // read lock to read or append to the log, write lock to swap, truncate or
+  // close it; taken before the monitor that guards the index
+  private final ReadWriteLock logLock = new ReentrantReadWriteLock();
+  // one compaction at a time; taken before the log lock
+  private final Object compactionLock = new Object();
+  private RandomAccessFile log;
+  private long liveBytes;
+  private boolean isClosed;
+  private long generation;
+  private ExecutorService compactionExecutorService;
+  private Future<?> compaction;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong expirationCount = new AtomicLong();
+  private final AtomicLong compactionCount = new AtomicLong();
+
+  public DiskResponseCache(final File directory) throws IOException {
+    this(directory, DEFAULT_MAX_BYTES, DEFAULT_TIME_TO_LIVE_MILLIS);
+  }
+
+  /**
+   * Open the cache in the directory, creating it if needed, and load the
+   * index of the bodies already stored there.
+   *
+   * @param directory directory of the log file
+   * @param maxBytes size the log may grow to before it is compacted
+   * @param timeToLiveMillis milliseconds a body is kept unless its call class
+   * has its own time to live
+   *
+   * @throws IOException if the directory cannot be created or read, is in
+   * use by another cache or does not hold a log of this cache
+   */
+  public DiskResponseCache(final File directory, final long maxBytes, final long timeToLiveMillis) throws IOException {
+    if(maxBytes < 1) {
+      throw new IllegalArgumentException("Max bytes must be at least 1 [" + maxBytes + "].");
+    }
+    this.timesToLive = new TimesToLive(timeToLiveMillis);
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    if(!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create cache directory " + directory + ".");
+    }
+
+    lockFile = new RandomAccessFile(new File(directory, LOCK_FILE_NAME), "rw");
+    try {
+      FileLock acquired;
+      try {
+        acquired = lockFile.getChannel().tryLock();
+      }
+      catch(OverlappingFileLockException e) {
+        // held by another cache in this jvm
+        acquired = null;
+      }
+      lock = acquired;
+      if(lock == null) {
+        throw new IOException("Cache directory " + directory + " is in use by another cache.");
+      }
+      log = new RandomAccessFile(new File(directory, LOG_FILE_NAME), "rw");
+      load(System.currentTimeMillis());
+    }
+    catch(IOException e) {
+      closeQuietly();
+      throw e;
+    }
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * @return milliseconds a body is kept unless its call class has its own
+   * time to live
+   */
+  public long getTimeToLiveMillis() {
+    return timesToLive.getDefaultMillis();
+  }
+
+  /**
+   * Keep the bodies of a call class for the given time, whatever the call
+   * type.
+   *
+   * @param callClass class of the call, e.g., <code>LanguageCall.class</code>
+   * @param timeToLiveMillis milliseconds to keep its bodies; 0 to not store
+   * them
+   */
+  public void setTimeToLiveMillis(final Class<? extends AbstractCall<?>> callClass, final long timeToLiveMillis) {
+    timesToLive.set(callClass, null, timeToLiveMillis);
+  }
+
+  /**
+   * Keep the bodies of a call class made with the given call type for the
+   * given time.  This wins over a time to live set for the call class alone.
+   *
+   * @param callClass class of the call, e.g., <code>SentimentCall.class</code>
+   * @param callType type of the call, e.g.,
+   * {@link com.likethecolor.alchemy.api.Constants#CALL_TYPE_URL}
+   * @param timeToLiveMillis milliseconds to keep its bodies; 0 to not store
+   * them
+   */
+  public void setTimeToLiveMillis(final Class<? extends AbstractCall<?>> callClass, final String callType, final long timeToLiveMillis) {
+    timesToLive.set(callClass, callType, timeToLiveMillis);
+  }
+
+  /**
+   * @param call call whose bodies are stored
+   *
+   * @return milliseconds the bodies of the call are kept
+   */
+  public long getTimeToLiveMillis(final AbstractCall<?> call) {
+    return timesToLive.get(call);
+  }
+
+  /**
+   * @return number of lookups that found a fresh body
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return number of lookups that found no body or an expired one
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return number of bodies dropped by a compaction to fit the size cap
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return number of bodies dropped because they outlived their time to live
+   */
+  public long getExpirationCount() {
+    return expirationCount.get();
+  }
+
+  /**
+   * @return number of times the log was compacted
+   */
+  public long getCompactionCount() {
+    return compactionCount.get();
+  }
+
+  /**
+   * @return number of bodies in the index, including expired ones not looked
+   * up since
+   */
+  public synchronized int size() {
+    return index.size();
+  }
+
+  /**
+   * @return bytes of the log taken by the records in the index
+   */
+  public synchronized long getLiveBytes() {
+    return liveBytes;
+  }
+
+  /**
+   * @return bytes of the log, including records that are no longer live
+   */
+  public synchronized long getLogBytes() throws IOException {
+    checkOpen();
+    return log.length();
+  }
+
+  /**
+   * @param key endpoint and params digest of the call
+   *
+   * @return stored body or null if there is none or it expired
+   *
+   * @throws IOException if the log cannot be read
+   */
+  public String get(final String key) throws IOException {
+    return get(key, System.currentTimeMillis());
+  }
+
+  String get(final String key, final long nowMillis) throws IOException {
+    final Lock readLock = logLock.readLock();
+    readLock.lock();
+    try {
+      final Record record;
+      synchronized(this) {
+        checkOpen();
+        record = index.get(key);
+        if(record == null) {
+          missCount.incrementAndGet();
+          return null;
+        }
+        if(record.isExpired(nowMillis)) {
+          remove(key, record);
+          expirationCount.incrementAndGet();
+          missCount.incrementAndGet();
+          return null;
+        }
+      }
+
+      // the read lock keeps the log from being swapped while it is read
+      final byte[] payload = readPayload(record);
+      if(payload == null) {
+        LOGGER.error("Record of " + key + " in " + directory + " is corrupt, dropping it.");
+        synchronized(this) {
+          remove(key, record);
+        }
+        missCount.incrementAndGet();
+        return null;
+      }
+      hitCount.incrementAndGet();
+      return decode(payload).body;
+    }
+    finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Store the body of a response to a call for the time to live of the call.
+   * If the log grows past the size cap it is compacted on a background thread.
+   *
+   * @param key endpoint and params digest of the call
+   * @param call call that was answered
+   * @param body raw body of the response
+   *
+   * @throws IOException if the log cannot be written
+   */
+  public void put(final String key, final AbstractCall<?> call, final String body) throws IOException {
+    put(key, call, body, System.currentTimeMillis());
+  }
+
+  void put(final String key, final AbstractCall<?> call, final String body, final long nowMillis) throws IOException {
+    final long millis = timesToLive.get(call);
+    if(millis == 0) {
+      return;
+    }
+    final long expiresAtMillis = nowMillis + millis;
+    final byte[] payload = encode(key, expiresAtMillis, body);
+    final boolean isCompactionDue;
+    final Lock readLock = logLock.readLock();
+    readLock.lock();
+    try {
+      synchronized(this) {
+        checkOpen();
+        final long offset = append(payload);
+        final Record record = new Record(offset, RECORD_HEADER_LENGTH + payload.length, expiresAtMillis);
+        final Record replaced = index.put(key, record);
+        if(replaced != null) {
+          liveBytes -= replaced.length;
+        }
+        liveBytes += record.length;
+        isCompactionDue = log.length() > maxBytes && (compaction == null || compaction.isDone());
+      }
+    }
+    finally {
+      readLock.unlock();
+    }
+    LOGGER.debug("stored " + key + " for " + millis + " ms");
+
+    if(isCompactionDue) {
+      startCompaction(nowMillis);
+    }
+  }
+
+  /**
+   * @param key endpoint and params digest of the call whose body is dropped
+   *
+   * @throws IOException if the log cannot be written
+   */
+  public void invalidate(final String key) throws IOException {
+    final Lock readLock = logLock.readLock();
+    readLock.lock();
+    try {
+      synchronized(this) {
+        checkOpen();
+        if(index.containsKey(key)) {
+          // a tombstone, so the body is not loaded again after a restart
+          append(encode(key, 0L, null));
+          remove(key);
+        }
+      }
+    }
+    finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Drop every body.  The counters are kept.
+   *
+   * @throws IOException if the log cannot be truncated
+   */
+  public void clear() throws IOException {
+    final Lock writeLock = logLock.writeLock();
+    writeLock.lock();
+    try {
+      synchronized(this) {
+        checkOpen();
+        index.clear();
+        liveBytes = 0L;
+        log.setLength(FILE_HEADER_LENGTH);
+        // a compaction that is running copies records that are gone
+        generation++;
+      }
+    }
+    finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Rewrite the log with only the live, unexpired records, dropping the least
+   * recently used ones until they fit {@link #COMPACTION_TARGET_RATIO} of the
+   * size cap.  Lookups and puts go on while the records are copied.
+   *
+   * @throws IOException if the log cannot be rewritten
+   */
+  public void compact() throws IOException {
+    compact(System.currentTimeMillis());
+  }
+
+  void compact(final long nowMillis) throws IOException {
+    synchronized(compactionLock) {
+      synchronized(this) {
+        checkOpen();
+      }
+      final File compactFile = new File(directory, COMPACT_FILE_NAME);
+      final RandomAccessFile compacted = new RandomAccessFile(compactFile, "rw");
+      boolean isInstalled = false;
+      try {
+        final Snapshot snapshot = copyLiveRecords(nowMillis, compacted);
+        isInstalled = install(snapshot, nowMillis, compacted, compactFile);
+      }
+      finally {
+        compacted.close();
+        if(!isInstalled && compactFile.exists() && !compactFile.delete()) {
+          LOGGER.error("Cannot delete " + compactFile + ".");
+        }
+      }
+    }
+  }
+
+  /**
+   * Copy the records to keep into the compacted file under the read lock, so
+   * lookups and puts are not blocked.  The index is not changed.
+   */
+  private Snapshot copyLiveRecords(final long nowMillis, final RandomAccessFile compacted) throws IOException {
+    final Lock readLock = logLock.readLock();
+    readLock.lock();
+    try {
+      final Snapshot snapshot = new Snapshot();
+      final List<Record> records = new ArrayList<Record>();
+      synchronized(this) {
+        checkOpen();
+        snapshot.generation = generation;
+        snapshot.logLength = log.length();
+        long keptBytes = 0L;
+        for(Record record : index.values()) {
+          if(!record.isExpired(nowMillis)) {
+            records.add(record);
+            keptBytes += record.length;
+          }
+        }
+        // least recently used first
+        final long targetBytes = (long) (maxBytes * COMPACTION_TARGET_RATIO);
+        final Iterator<Record> eldest = records.iterator();
+        while(keptBytes > targetBytes && eldest.hasNext()) {
+          keptBytes -= eldest.next().length;
+          eldest.remove();
+        }
+      }
+
+      compacted.setLength(0L);
+      compacted.writeInt(MAGIC);
+      final byte[] buffer = new byte[4096];
+      for(Record record : records) {
+        final long offset = compacted.getFilePointer();
+        copy(record.offset, record.length, compacted, buffer);
+        snapshot.offsets.put(record, offset);
+      }
+      return snapshot;
+    }
+    finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Copy what was appended since the snapshot, replace the log with the
+   * compacted file and move the index to it, under the write lock.
+   *
+   * @return false if the cache was closed or cleared meanwhile
+   */
+  private boolean install(final Snapshot snapshot, final long nowMillis, final RandomAccessFile compacted, final File compactFile) throws IOException {
+    final Lock writeLock = logLock.writeLock();
+    writeLock.lock();
+    try {
+      synchronized(this) {
+        if(isClosed || generation != snapshot.generation) {
+          return false;
+        }
+        final long tailLength = log.length() - snapshot.logLength;
+        final long shift = compacted.getFilePointer() - snapshot.logLength;
+        copy(snapshot.logLength, tailLength, compacted, new byte[4096]);
+        compacted.getFD().sync();
+        compacted.close();
+
+        final File logFile = new File(directory, LOG_FILE_NAME);
+        log.close();
+        final boolean isReplaced = compactFile.renameTo(logFile) || (logFile.delete() && compactFile.renameTo(logFile));
+        log = new RandomAccessFile(logFile, "rw");
+        if(!isReplaced) {
+          if(log.length() == 0L) {
+            // the log was deleted before the rename failed, start over empty
+            index.clear();
+            liveBytes = 0L;
+            log.writeInt(MAGIC);
+          }
+          throw new IOException("Cannot replace " + logFile + " with its compacted copy.");
+        }
+
+        // records put since the snapshot moved with the tail, the others
+        // moved to where they were copied or were dropped
+        liveBytes = 0L;
+        final Iterator<Map.Entry<String, Record>> iter = index.entrySet().iterator();
+        while(iter.hasNext()) {
+          final Map.Entry<String, Record> entry = iter.next();
+          final Record record = entry.getValue();
+          final Long offset = record.offset >= snapshot.logLength ? Long.valueOf(record.offset + shift) : snapshot.offsets.get(record);
+          if(offset == null) {
+            iter.remove();
+            if(record.isExpired(nowMillis)) {
+              expirationCount.incrementAndGet();
+            }
+            else {
+              evictionCount.incrementAndGet();
+            }
+            continue;
+          }
+          entry.setValue(new Record(offset, record.length, record.expiresAtMillis));
+          liveBytes += record.length;
+        }
+        compactionCount.incrementAndGet();
+        LOGGER.debug("compacted " + logFile + " to " + index.size() + " records, " + log.length() + " bytes");
+        return true;
+      }
+    }
+    finally {
+      writeLock.unlock();
+    }
+  }
+
+  private synchronized void startCompaction(final long nowMillis) {
+    if(isClosed || (compaction != null && !compaction.isDone())) {
+      return;
+    }
+    if(compactionExecutorService == null) {
+      compactionExecutorService = Executors.newSingleThreadExecutor(new DaemonThreadFactory(COMPACTION_THREAD_NAME_PREFIX));
+    }
+    try {
+      compaction = compactionExecutorService.submit(new Runnable() {
+        public void run() {
+          try {
+            compact(nowMillis);
+          }
+          catch(IOException e) {
+            if(!isClosed()) {
+              LOGGER.error("Cannot compact " + directory + ".", e);
+            }
+          }
+        }
+      });
+    }
+    catch(RejectedExecutionException e) {
+      LOGGER.debug("compaction of " + directory + " rejected", e);
+    }
+  }
+
+  /**
+   * Wait for the compaction started by a put, if any, to finish.
+   */
+  void awaitCompaction() throws InterruptedException, ExecutionException {
+    final Future<?> pending;
+    synchronized(this) {
+      pending = compaction;
+    }
+    if(pending != null) {
+      pending.get();
+    }
+  }
+
+  private synchronized boolean isClosed() {
+    return isClosed;
+  }
+
+  /**
+   * Flush the log to disk and release the directory.
+   */
+  public void close() throws IOException {
+    final Lock writeLock = logLock.writeLock();
+    writeLock.lock();
+    try {
+      synchronized(this) {
+        if(isClosed) {
+          return;
+        }
+        isClosed = true;
+        if(compactionExecutorService != null) {
+          compactionExecutorService.shutdown();
+        }
+        try {
+          log.getFD().sync();
+        }
+        finally {
+          closeQuietly();
+        }
+      }
+    }
+    finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void load(final long nowMillis) throws IOException {
+    final long length = log.length();
+    if(length == 0L) {
+      log.writeInt(MAGIC);
+      return;
+    }
+    if(length < FILE_HEADER_LENGTH || log.readInt() != MAGIC) {
+      throw new IOException(new File(directory, LOG_FILE_NAME) + " is not a response cache log.");
+    }
+
+    long offset = FILE_HEADER_LENGTH;
+    while(offset < length) {
+      final byte[] payload = readPayload(offset, length);
+      if(payload == null) {
+        LOGGER.error("Log " + directory + " is corrupt after " + offset + " bytes, dropping the rest.");
+        log.setLength(offset);
+        break;
+      }
+      final Entry entry = decode(payload);
+      final int recordLength = RECORD_HEADER_LENGTH + payload.length;
+      remove(entry.key);
+      if(entry.body != null && entry.expiresAtMillis > nowMillis) {
+        index.put(entry.key, new Record(offset, recordLength, entry.expiresAtMillis));
+        liveBytes += recordLength;
+      }
+      offset += recordLength;
+    }
+    LOGGER.debug("loaded " + index.size() + " records from " + directory);
+  }
+
+  private long append(final byte[] payload) throws IOException {
+    final CRC32 crc = new CRC32();
+    crc.update(payload);
+    final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + payload.length);
+    record.putInt(payload.length).putLong(crc.getValue()).put(payload);
+
+    final long offset = log.length();
+    log.seek(offset);
+    log.write(record.array());
+    return offset;
+  }
+
+  /**
+   * @return payload of the record at the offset or null if it runs past the
+   * end of the log or does not match its checksum
+   */
+  private byte[] readPayload(final long offset, final long length) throws IOException {
+    if(length - offset < RECORD_HEADER_LENGTH) {
+      return null;
+    }
+    log.seek(offset);
+    final int payloadLength = log.readInt();
+    final long checksum = log.readLong();
+    if(payloadLength < 0 || payloadLength > length - offset - RECORD_HEADER_LENGTH) {
+      return null;
+    }
+    final byte[] payload = new byte[payloadLength];
+    log.readFully(payload);
+    final CRC32 crc = new CRC32();
+    crc.update(payload);
+    return crc.getValue() == checksum ? payload : null;
+  }
+
+  /**
+   * @return payload of the record or null if it does not match its checksum
+   */
+  private byte[] readPayload(final Record record) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(record.length);
+    readFully(buffer, record.offset);
+    buffer.flip();
+    final int payloadLength = buffer.getInt();
+    final long checksum = buffer.getLong();
+    if(payloadLength != record.length - RECORD_HEADER_LENGTH) {
+      return null;
+    }
+    final byte[] payload = new byte[payloadLength];
+    buffer.get(payload);
+    final CRC32 crc = new CRC32();
+    crc.update(payload);
+    return crc.getValue() == checksum ? payload : null;
+  }
+
+  /**
+   * Positional read, so it neither moves nor depends on the file pointer that
+   * appends use.
+   */
+  private void readFully(final ByteBuffer buffer, final long offset) throws IOException {
+    final FileChannel channel = log.getChannel();
+    while(buffer.hasRemaining()) {
+      if(channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of " + new File(directory, LOG_FILE_NAME) + ".");
+      }
+    }
+  }
+
+  private void copy(final long offset, final long length, final RandomAccessFile out, final byte[] buffer) throws IOException {
+    final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+    long copied = 0L;
+    while(copied < length) {
+      wrapped.clear();
+      wrapped.limit((int) Math.min(buffer.length, length - copied));
+      readFully(wrapped, offset + copied);
+      out.write(buffer, 0, wrapped.position());
+      copied += wrapped.position();
+    }
+  }
+
+  private void remove(final String key) {
+    final Record record = index.remove(key);
+    if(record != null) {
+      liveBytes -= record.length;
+    }
+  }
+
+  /**
+   * Remove the key only if it still maps to the record, not to a body put
+   * since.
+   */
+  private void remove(final String key, final Record record) {
+    if(index.get(key) == record) {
+      remove(key);
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if(isClosed) {
+      throw new IOException("Disk response cache has been closed.");
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      if(log != null) {
+        log.close();
+      }
+    }
+    catch(IOException e) {
+      // ignore
+    }
+    try {
+      if(lock != null) {
+        lock.release();
+      }
+      lockFile.close();
+    }
+    catch(IOException e) {
+      // ignore
+    }
+  }
+
+  private static byte[] encode(final String key, final long expiresAtMillis, final String body) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body == null ? 128 : body.length() + 128);
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(key);
+    out.writeLong(expiresAtMillis);
+    if(body == null) {
+      out.writeInt(-1);
+    }
+    else {
+      final byte[] encoded = body.getBytes(ENCODING);
+      out.writeInt(encoded.length);
+      out.write(encoded);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static Entry decode(final byte[] payload) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    final String key = in.readUTF();
+    final long expiresAtMillis = in.readLong();
+    final int bodyLength = in.readInt();
+    String body = null;
+    if(bodyLength >= 0) {
+      final byte[] encoded = new byte[bodyLength];
+      in.readFully(encoded);
+      body = new String(encoded, ENCODING);
+    }
+    return new Entry(key, expiresAtMillis, body);
+  }
+
+  /**
+   * Where a live record is in the log.
+   */
+  private static class Record {
+    private final long offset;
+    private final int length;
+    private final long expiresAtMillis;
+
+    private Record(final long offset, final int length, final long expiresAtMillis) {
+      this.offset = offset;
+      this.length = length;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    private boolean isExpired(final long nowMillis) {
+      return nowMillis >= expiresAtMillis;
+    }
+  }
+
+  /**
+   * The log as a compaction found it and where the records it kept were
+   * copied to.
+   */
+  private static class Snapshot {
+    private long generation;
+    private long logLength;
+    private final Map<Record, Long> offsets = new IdentityHashMap<Record, Long>();
+  }
+
+  /**
+   * A decoded record; the body is null for a tombstone.
+   */
+  private static class Entry {
+    private final String key;
+    private final long expiresAtMillis;
+    private final String body;
+
+    private Entry(final String key, final long expiresAtMillis, final String body) {
+      this.key = key;
+      this.expiresAtMillis = expiresAtMillis;
+      this.body = body;
+    }
+  }
+}
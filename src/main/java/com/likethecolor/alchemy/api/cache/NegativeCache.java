@@ -0,0 +1,259 @@
+/**
+ * File: NegativeCache.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.AlchemyApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers calls the API answered with an error that depends only on the
+ * input, e.g., unsupported-text-language for a text or cannot-retrieve for a
+ * url, so that the same call fails right away instead of using quota and
+ * time on an answer that will not change.  Entries are keyed like the
+ * {@link ResponseCache}, by endpoint and params digest, and have their own
+ * time to live, usually shorter than that of responses since a page that
+ * could not be retrieved may come back.
+ * <p/>
+ * A statusInfo is taken to be deterministic if it is one of the defaults
+ * (unsupported-text-language, content-exceeds-size-limit, cannot-retrieve,
+ * page-is-not-html) or was added with {@link #addStatusInfo(String)}.  A
+ * statusInfo with details after a colon, e.g., cannot-retrieve:http-404,
+ * matches on the part before it.  Errors about the key or quota, e.g.,
+ * daily-transaction-limit-exceeded, are never cached.
+ */
+public class NegativeCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(NegativeCache.class);
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+  public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 3600000L;
+  private static final String[] DETERMINISTIC_STATUS_INFOS = {
+      "unsupported-text-language",
+      "content-exceeds-size-limit",
+      "cannot-retrieve",
+      "page-is-not-html"
+  };
+  private static final char STATUS_INFO_DETAIL_SEPARATOR = ':';
+
+  private final int maxEntries;
+  private final long timeToLiveMillis;
+  private final Set<String> statusInfos = new CopyOnWriteArraySet<String>();
+  private final Map<String, Failure> failures;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong expirationCount = new AtomicLong();
+
+  public NegativeCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE_MILLIS);
+  }
+
+  /**
+   * @param maxEntries number of failures kept before the least recently used
+   * is evicted
+   * @param timeToLiveMillis milliseconds a failure is kept
+   */
+  public NegativeCache(final int maxEntries, final long timeToLiveMillis) {
+    if(maxEntries < 1) {
+      throw new IllegalArgumentException("Max entries must be at least 1 [" + maxEntries + "].");
+    }
+    if(timeToLiveMillis < 1) {
+      throw new IllegalArgumentException("Time to live must be at least 1 [" + timeToLiveMillis + "].");
+    }
+    this.maxEntries = maxEntries;
+    this.timeToLiveMillis = timeToLiveMillis;
+    for(String statusInfo : DETERMINISTIC_STATUS_INFOS) {
+      statusInfos.add(statusInfo);
+    }
+    this.failures = new LinkedHashMap<String, Failure>(16, 0.75F, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Failure> eldest) {
+        if(size() > NegativeCache.this.maxEntries) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getTimeToLiveMillis() {
+    return timeToLiveMillis;
+  }
+
+  /**
+   * Cache API errors with the given statusInfo.
+   *
+   * @param statusInfo statusInfo returned by the API
+   */
+  public void addStatusInfo(final String statusInfo) {
+    if(statusInfo == null || statusInfo.trim().length() == 0) {
+      throw new IllegalArgumentException("Status info cannot be empty.");
+    }
+    statusInfos.add(statusInfo.trim().toLowerCase());
+  }
+
+  /**
+   * @param e failure of a call
+   *
+   * @return true if the failure is an API error that the same call would get
+   * again
+   */
+  public boolean isDeterministic(final IOException e) {
+    if(!(e instanceof AlchemyApiException)) {
+      return false;
+    }
+    String statusInfo = ((AlchemyApiException) e).getStatusInfo();
+    if(statusInfo == null) {
+      return false;
+    }
+    statusInfo = statusInfo.trim().toLowerCase();
+    final int separator = statusInfo.indexOf(STATUS_INFO_DETAIL_SEPARATOR);
+    return statusInfos.contains(statusInfo)
+           || (separator > 0 && statusInfos.contains(statusInfo.substring(0, separator)));
+  }
+
+  /**
+   * @return number of lookups that found a failure
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return number of lookups that found no failure or an expired one
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return number of failures evicted to make room for newer ones
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return number of failures dropped because they outlived the time to live
+   */
+  public long getExpirationCount() {
+    return expirationCount.get();
+  }
+
+  /**
+   * @return number of failures held, including expired ones not looked up
+   * since
+   */
+  public int size() {
+    synchronized(failures) {
+      return failures.size();
+    }
+  }
+
+  /**
+   * @param key endpoint and params digest of the call
+   *
+   * @return a copy of the error the API gave the call or null if there is
+   * none or it expired
+   */
+  public AlchemyApiException get(final String key) {
+    return get(key, System.currentTimeMillis());
+  }
+
+  AlchemyApiException get(final String key, final long nowMillis) {
+    synchronized(failures) {
+      final Failure failure = failures.get(key);
+      if(failure != null && nowMillis >= failure.expiresAtMillis) {
+        failures.remove(key);
+        expirationCount.incrementAndGet();
+      }
+      else if(failure != null) {
+        hitCount.incrementAndGet();
+        // a new exception, so every caller gets its own stack trace
+        return new AlchemyApiException(failure.exception.getStatus(), failure.exception.getStatusInfo(), failure.exception.getJsonString());
+      }
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Remember the failure of a call if it is deterministic.
+   *
+   * @param key endpoint and params digest of the call
+   * @param e failure of the call
+   *
+   * @return true if the failure was cached
+   */
+  public boolean put(final String key, final IOException e) {
+    return put(key, e, System.currentTimeMillis());
+  }
+
+  boolean put(final String key, final IOException e, final long nowMillis) {
+    if(!isDeterministic(e)) {
+      return false;
+    }
+    LOGGER.debug("caching failure of " + key + " for " + timeToLiveMillis + " ms: " + e.getMessage());
+    synchronized(failures) {
+      failures.put(key, new Failure((AlchemyApiException) e, nowMillis + timeToLiveMillis));
+    }
+    return true;
+  }
+
+  /**
+   * @param key endpoint and params digest of the call whose failure is
+   * dropped
+   */
+  public void invalidate(final String key) {
+    synchronized(failures) {
+      failures.remove(key);
+    }
+  }
+
+  /**
+   * Drop every failure.  The counters are kept.
+   */
+  public void clear() {
+    synchronized(failures) {
+      failures.clear();
+    }
+  }
+
+  private static class Failure {
+    private final AlchemyApiException exception;
+    private final long expiresAtMillis;
+
+    private Failure(final AlchemyApiException exception, final long expiresAtMillis) {
+      this.exception = exception;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
+}
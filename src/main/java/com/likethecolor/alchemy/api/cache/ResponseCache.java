@@ -0,0 +1,377 @@
+/**
+ * File: ResponseCache.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.Constants;
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.entity.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps parsed responses in memory so that a call that was already answered
+ * is not sent to the API again.  Entries are keyed by endpoint and params
+ * digest, the same key identical calls are coalesced on.
+ * <p/>
+ * An entry lives for the time to live of its call class, optionally per call
+ * type (e.g., long for {@link com.likethecolor.alchemy.api.call.LanguageCall},
+ * short for a {@link com.likethecolor.alchemy.api.call.SentimentCall} on a
+ * live url), or {@link #getTimeToLiveMillis()} if none is set.  Once the cache
+ * holds {@link #getMaxEntries()} entries the least recently used one is
+ * evicted.
+ * <p/>
+ * Responses to url calls, whose page may change, can be refreshed ahead:
+ * once a response is older than {@link #getRefreshAheadRatio()} of its time
+ * to live, the next hit is still answered from the cache and
+ * {@link #startRefresh(String)} tells the caller to make the call again in
+ * the background.  With {@link #getMaxStaleMillis()} such a response is also
+ * served for a while after it expired, as long as a refresh is due.  Html
+ * and text responses only depend on their content and are never refreshed.
+ * <p/>
+ * A cached response is shared by every caller that gets it and must not be
+ * modified.
+ */
+public class ResponseCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+  public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 3600000L;
+
+  private final int maxEntries;
+  private final TimesToLive timesToLive;
+  private final Map<String, CacheEntry> entries;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong expirationCount = new AtomicLong();
+  private final AtomicLong staleHitCount = new AtomicLong();
+  private final AtomicLong refreshCount = new AtomicLong();
+  private volatile double refreshAheadRatio;
+  private volatile long maxStaleMillis;
+
+  public ResponseCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE_MILLIS);
+  }
+
+  /**
+   * @param maxEntries number of responses kept before the least recently used
+   * is evicted
+   * @param timeToLiveMillis milliseconds a response is kept unless its call
+   * class has its own time to live
+   */
+  public ResponseCache(final int maxEntries, final long timeToLiveMillis) {
+    if(maxEntries < 1) {
+      throw new IllegalArgumentException("Max entries must be at least 1 [" + maxEntries + "].");
+    }
+    this.maxEntries = maxEntries;
+    this.timesToLive = new TimesToLive(timeToLiveMillis);
+    this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75F, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+        if(size() > ResponseCache.this.maxEntries) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @return milliseconds a response is kept unless its call class has its own
+   * time to live
+   */
+  public long getTimeToLiveMillis() {
+    return timesToLive.getDefaultMillis();
+  }
+
+  /**
+   * @return part of the time to live after which a url response is due for a
+   * refresh; 0 if responses are not refreshed ahead
+   */
+  public double getRefreshAheadRatio() {
+    return refreshAheadRatio;
+  }
+
+  /**
+   * Refresh url responses that are older than the given part of their time to
+   * live, e.g., 0.8 refreshes a response with a time to live of a minute
+   * once it is 48 seconds old.  Off (0) by default.
+   *
+   * @param refreshAheadRatio part of the time to live greater than 0 and less
+   * than 1; 0 to only refresh responses that are served stale
+   */
+  public void setRefreshAheadRatio(final double refreshAheadRatio) {
+    if(refreshAheadRatio < 0D || refreshAheadRatio >= 1D) {
+      throw new IllegalArgumentException("Refresh ahead ratio must be at least 0 and less than 1 [" + refreshAheadRatio + "].");
+    }
+    this.refreshAheadRatio = refreshAheadRatio;
+  }
+
+  /**
+   * @return milliseconds an expired url response is still served while it is
+   * refreshed
+   */
+  public long getMaxStaleMillis() {
+    return maxStaleMillis;
+  }
+
+  /**
+   * Serve url responses for up to the given time after they expired, while
+   * they are refreshed in the background.  0 (the default) never serves an
+   * expired response.
+   *
+   * @param maxStaleMillis milliseconds an expired url response is still served
+   */
+  public void setMaxStaleMillis(final long maxStaleMillis) {
+    if(maxStaleMillis < 0) {
+      throw new IllegalArgumentException("Max stale cannot be negative [" + maxStaleMillis + "].");
+    }
+    this.maxStaleMillis = maxStaleMillis;
+  }
+
+  /**
+   * Keep the responses of a call class for the given time, whatever the call
+   * type.
+   *
+   * @param callClass class of the call, e.g., <code>LanguageCall.class</code>
+   * @param timeToLiveMillis milliseconds to keep its responses; 0 to not cache
+   * them
+   */
+  public void setTimeToLiveMillis(final Class<? extends AbstractCall<?>> callClass, final long timeToLiveMillis) {
+    timesToLive.set(callClass, null, timeToLiveMillis);
+  }
+
+  /**
+   * Keep the responses of a call class made with the given call type for the
+   * given time.  This wins over a time to live set for the call class alone.
+   *
+   * @param callClass class of the call, e.g., <code>SentimentCall.class</code>
+   * @param callType type of the call, e.g.,
+   * {@link com.likethecolor.alchemy.api.Constants#CALL_TYPE_URL}
+   * @param timeToLiveMillis milliseconds to keep its responses; 0 to not cache
+   * them
+   */
+  public void setTimeToLiveMillis(final Class<? extends AbstractCall<?>> callClass, final String callType, final long timeToLiveMillis) {
+    timesToLive.set(callClass, callType, timeToLiveMillis);
+  }
+
+  /**
+   * @param call call whose responses are cached
+   *
+   * @return milliseconds the responses of the call are kept
+   */
+  public long getTimeToLiveMillis(final AbstractCall<?> call) {
+    return timesToLive.get(call);
+  }
+
+  /**
+   * @return number of lookups that found a fresh response
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return number of lookups that found no response or an expired one
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return part of the lookups that found a fresh response; 0 if there were
+   * none
+   */
+  public double getHitRate() {
+    final long hits = hitCount.get();
+    final long lookups = hits + missCount.get();
+    return lookups == 0 ? 0D : (double) hits / lookups;
+  }
+
+  /**
+   * @return number of hits that were served an expired response while it was
+   * refreshed
+   */
+  public long getStaleHitCount() {
+    return staleHitCount.get();
+  }
+
+  /**
+   * @return number of refreshes started
+   */
+  public long getRefreshCount() {
+    return refreshCount.get();
+  }
+
+  /**
+   * @return number of responses evicted to make room for newer ones
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return number of responses dropped because they outlived their time to
+   * live
+   */
+  public long getExpirationCount() {
+    return expirationCount.get();
+  }
+
+  /**
+   * @return number of responses held, including expired ones not looked up
+   * since
+   */
+  public int size() {
+    synchronized(entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * @param key endpoint and params digest of the call
+   *
+   * @return cached response or null if there is none or it expired and may
+   * not be served stale
+   */
+  public Response<?> get(final String key) {
+    return get(key, System.currentTimeMillis());
+  }
+
+  Response<?> get(final String key, final long nowMillis) {
+    synchronized(entries) {
+      final CacheEntry entry = entries.get(key);
+      if(entry != null && entry.isDead(nowMillis)) {
+        entries.remove(key);
+        expirationCount.incrementAndGet();
+      }
+      else if(entry != null) {
+        if(entry.isExpired(nowMillis)) {
+          staleHitCount.incrementAndGet();
+        }
+        hitCount.incrementAndGet();
+        return entry.getResponse();
+      }
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Cache the response of a call for the time to live of the call.
+   *
+   * @param key endpoint and params digest of the call
+   * @param call call that was answered
+   * @param response response of the call
+   */
+  public void put(final String key, final AbstractCall<?> call, final Response<?> response) {
+    put(key, call, response, System.currentTimeMillis());
+  }
+
+  void put(final String key, final AbstractCall<?> call, final Response<?> response, final long nowMillis) {
+    final long millis = getTimeToLiveMillis(call);
+    if(millis == 0) {
+      return;
+    }
+    final long expiresAtMillis = nowMillis + millis;
+    final double ratio = refreshAheadRatio;
+    final long staleMillis = maxStaleMillis;
+    final CacheEntry entry;
+    if(Constants.CALL_TYPE_URL.equals(call.getCallType().getType()) && (ratio > 0D || staleMillis > 0)) {
+      final long refreshAtMillis = ratio > 0D ? nowMillis + (long) (millis * ratio) : expiresAtMillis;
+      entry = new CacheEntry(response, expiresAtMillis, refreshAtMillis, expiresAtMillis + staleMillis);
+    }
+    else {
+      entry = new CacheEntry(response, expiresAtMillis);
+    }
+    LOGGER.debug("caching " + key + " for " + millis + " ms");
+    synchronized(entries) {
+      entries.put(key, entry);
+    }
+  }
+
+  /**
+   * Claim the refresh of a response that is due for one.  Only one refresh of
+   * a key runs at a time: until {@link #finishRefresh(String)} is called for
+   * the key this returns false.
+   *
+   * @param key endpoint and params digest of the call
+   *
+   * @return true if the caller should make the call again and put the
+   * response, then call {@link #finishRefresh(String)}
+   */
+  public boolean startRefresh(final String key) {
+    return startRefresh(key, System.currentTimeMillis());
+  }
+
+  boolean startRefresh(final String key, final long nowMillis) {
+    synchronized(entries) {
+      final CacheEntry entry = entries.get(key);
+      if(entry == null || entry.isRefreshing() || !entry.isRefreshDue(nowMillis)) {
+        return false;
+      }
+      entry.setRefreshing(true);
+    }
+    refreshCount.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * End a refresh claimed with {@link #startRefresh(String)}, whether or not
+   * it put a new response.  If it failed the old response may be refreshed
+   * again on a later hit.
+   *
+   * @param key endpoint and params digest of the call
+   */
+  public void finishRefresh(final String key) {
+    synchronized(entries) {
+      final CacheEntry entry = entries.get(key);
+      if(entry != null) {
+        entry.setRefreshing(false);
+      }
+    }
+  }
+
+  /**
+   * @param key endpoint and params digest of the call whose response is dropped
+   */
+  public void invalidate(final String key) {
+    synchronized(entries) {
+      entries.remove(key);
+    }
+  }
+
+  /**
+   * Drop every response.  The counters are kept.
+   */
+  public void clear() {
+    synchronized(entries) {
+      entries.clear();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * File: TimesToLive.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.call.AbstractCall;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Time to live of cached responses by call class and call type, falling back
+ * to a default.
+ */
+class TimesToLive {
+  private final long defaultMillis;
+  private final ConcurrentMap<String, Long> millisByCall = new ConcurrentHashMap<String, Long>();
+
+  TimesToLive(final long defaultMillis) {
+    check(defaultMillis);
+    this.defaultMillis = defaultMillis;
+  }
+
+  long getDefaultMillis() {
+    return defaultMillis;
+  }
+
+  void set(final Class<? extends AbstractCall<?>> callClass, final String callType, final long millis) {
+    check(millis);
+    millisByCall.put(callType == null ? callClass.getName() : callClass.getName() + "/" + callType, millis);
+  }
+
+  long get(final AbstractCall<?> call) {
+    final String callClass = call.getClass().getName();
+    Long millis = millisByCall.get(callClass + "/" + call.getCallType().getType());
+    if(millis == null) {
+      millis = millisByCall.get(callClass);
+    }
+    return millis == null ? defaultMillis : millis;
+  }
+
+  private static void check(final long millis) {
+    if(millis < 0) {
+      throw new IllegalArgumentException("Time to live cannot be negative [" + millis + "].");
+    }
+  }
+}
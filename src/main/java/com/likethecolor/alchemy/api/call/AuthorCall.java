@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.AuthorParser;
 
 public class AuthorCall extends AbstractCall<AuthorAlchemyEntity> {
+  private static final AuthorParser PARSER = new AuthorParser();
+
   public AuthorCall(final CallType callType) {
     this(callType, new Params());
   }
@@ -45,6 +47,6 @@ public class AuthorCall extends AbstractCall<AuthorAlchemyEntity> {
 
   @Override
   public Response<AuthorAlchemyEntity> parse(String jsonString) {
-    return new AuthorParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
@@ -12,6 +12,8 @@ import java.util.IllegalFormatException;
  * Created by ainurminibaev on 30.08.15.
  */
 public class ImageCall extends AbstractCall<ImageEntity> {
+    private static final ImageParser PARSER = new ImageParser();
+
     public ImageCall(CallTypeUrl callType) throws IllegalFormatException {
         super(callType);
     }
@@ -23,6 +25,6 @@ public class ImageCall extends AbstractCall<ImageEntity> {
 
     @Override
     public Response<ImageEntity> parse(String jsonString) {
-        return new ImageParser().parse(jsonString);
+        return PARSER.parse(jsonString);
     }
 }
@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.LanguageParser;
 
 public class LanguageCall extends AbstractCall<LanguageAlchemyEntity> {
+  private static final LanguageParser PARSER = new LanguageParser();
+
   public LanguageCall(final CallType callType) {
     this(callType, new LanguageParams());
   }
@@ -41,6 +43,6 @@ public class LanguageCall extends AbstractCall<LanguageAlchemyEntity> {
 
   @Override
   public Response<LanguageAlchemyEntity> parse(String jsonString) {
-    return new LanguageParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
@@ -25,6 +25,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.MicroformatParser;
 
 public class MicroformatDataCall extends AbstractCall<MicroformatAlchemyEntity> {
+  private static final MicroformatParser PARSER = new MicroformatParser();
+
   public MicroformatDataCall(final CallType callType) {
     this(callType, new Params());
   }
@@ -40,6 +42,6 @@ public class MicroformatDataCall extends AbstractCall<MicroformatAlchemyEntity>
 
   @Override
   public Response<MicroformatAlchemyEntity> parse(String jsonString) {
-    return new MicroformatParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
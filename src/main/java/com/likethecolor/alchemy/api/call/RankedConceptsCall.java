@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.ConceptParser;
 
 public class RankedConceptsCall extends AbstractCall<ConceptAlchemyEntity> {
+  private static final ConceptParser PARSER = new ConceptParser();
+
   public RankedConceptsCall(final CallType callType) {
     this(callType, new ConceptParams());
   }
@@ -41,6 +43,6 @@ public class RankedConceptsCall extends AbstractCall<ConceptAlchemyEntity> {
 
   @Override
   public Response<ConceptAlchemyEntity> parse(String jsonString) {
-    return new ConceptParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.KeywordParser;
 
 public class RankedKeywordsCall extends AbstractCall<KeywordAlchemyEntity> {
+  private static final KeywordParser PARSER = new KeywordParser();
+
   public RankedKeywordsCall(final CallType callType) {
     this(callType, new KeywordParams());
   }
@@ -41,6 +43,6 @@ public class RankedKeywordsCall extends AbstractCall<KeywordAlchemyEntity> {
 
   @Override
   public Response<KeywordAlchemyEntity> parse(String jsonString) {
-    return new KeywordParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
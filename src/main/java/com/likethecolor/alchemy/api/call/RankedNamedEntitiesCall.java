@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.NamedEntityParser;
 
 public class RankedNamedEntitiesCall extends AbstractCall<NamedEntityAlchemyEntity> {
+  private static final NamedEntityParser PARSER = new NamedEntityParser();
+
   public RankedNamedEntitiesCall(final CallType callType) {
     this(callType, new NamedEntityParams());
   }
@@ -41,6 +43,6 @@ public class RankedNamedEntitiesCall extends AbstractCall<NamedEntityAlchemyEnti
 
   @Override
   public Response<NamedEntityAlchemyEntity> parse(String jsonString) {
-    return new NamedEntityParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.TaxonomiesParser;
 
 public class RankedTaxonomyCall extends AbstractCall<TaxonomyAlchemyEntity> {
+  private static final TaxonomiesParser PARSER = new TaxonomiesParser();
+
   public RankedTaxonomyCall(final CallType callType) {
     this(callType, new TaxonomyParams());
   }
@@ -41,6 +43,6 @@ public class RankedTaxonomyCall extends AbstractCall<TaxonomyAlchemyEntity> {
 
   @Override
   public Response<TaxonomyAlchemyEntity> parse(String jsonString) {
-    return new TaxonomiesParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
@@ -25,6 +25,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.TextParser;
 
 public class RawTextCall extends AbstractCall<HeaderAlchemyEntity> {
+  private static final TextParser PARSER = new TextParser();
+
   public RawTextCall(final CallType callType) {
     this(callType, new Params());
   }
@@ -40,6 +42,6 @@ public class RawTextCall extends AbstractCall<HeaderAlchemyEntity> {
 
   @Override
   public Response<HeaderAlchemyEntity> parse(String jsonString) {
-    return new TextParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
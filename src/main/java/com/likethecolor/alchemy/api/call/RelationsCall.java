@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.RelationParams;
 import com.likethecolor.alchemy.api.parser.json.RelationsParser;
 
 public class RelationsCall extends AbstractCall<RelationAlchemyEntity> {
+  private static final RelationsParser PARSER = new RelationsParser();
+
   public RelationsCall(final CallType callType) {
     this(callType, new RelationParams());
   }
@@ -41,6 +43,6 @@ public class RelationsCall extends AbstractCall<RelationAlchemyEntity> {
 
   @Override
   public Response<RelationAlchemyEntity> parse(String jsonString) {
-    return new RelationsParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
@@ -25,6 +25,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.SentimentParser;
 
 public class SentimentCall extends AbstractCall<SentimentAlchemyEntity> {
+  private static final SentimentParser PARSER = new SentimentParser();
+
   public SentimentCall(final CallType callType) {
     this(callType, new Params());
   }
@@ -40,6 +42,6 @@ public class SentimentCall extends AbstractCall<SentimentAlchemyEntity> {
 
   @Override
   public Response<SentimentAlchemyEntity> parse(String jsonString) {
-    return new SentimentParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.TargetedSentimentParams;
 import com.likethecolor.alchemy.api.parser.json.SentimentParser;
 
 public class TargetedSentimentCall extends AbstractCall<SentimentAlchemyEntity> {
+  private static final SentimentParser PARSER = new SentimentParser();
+
   public TargetedSentimentCall(final CallType callType) {
     this(callType, new TargetedSentimentParams());
   }
@@ -41,6 +43,6 @@ public class TargetedSentimentCall extends AbstractCall<SentimentAlchemyEntity>
 
   @Override
   public Response<SentimentAlchemyEntity> parse(String jsonString) {
-    return new SentimentParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
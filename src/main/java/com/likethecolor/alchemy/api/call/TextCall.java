@@ -26,6 +26,8 @@ import com.likethecolor.alchemy.api.params.TextParams;
 import com.likethecolor.alchemy.api.parser.json.TextParser;
 
 public class TextCall extends AbstractCall<HeaderAlchemyEntity> {
+  private static final TextParser PARSER = new TextParser();
+
   public TextCall(final CallType callType) {
     this(callType, new TextParams());
   }
@@ -41,6 +43,6 @@ public class TextCall extends AbstractCall<HeaderAlchemyEntity> {
 
   @Override
   public Response<HeaderAlchemyEntity> parse(String jsonString) {
-    return new TextParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
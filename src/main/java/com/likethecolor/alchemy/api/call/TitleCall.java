@@ -25,6 +25,8 @@ import com.likethecolor.alchemy.api.params.Params;
 import com.likethecolor.alchemy.api.parser.json.TitleParser;
 
 public class TitleCall extends AbstractCall<TitleAlchemyEntity> {
+  private static final TitleParser PARSER = new TitleParser();
+
   public TitleCall(final CallType callType) {
     this(callType, new Params());
   }
@@ -40,6 +42,6 @@ public class TitleCall extends AbstractCall<TitleAlchemyEntity> {
 
   @Override
   public Response<TitleAlchemyEntity> parse(String jsonString) {
-    return new TitleParser().parse(jsonString);
+    return PARSER.parse(jsonString);
   }
 }
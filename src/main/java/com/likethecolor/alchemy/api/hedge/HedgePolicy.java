@@ -0,0 +1,190 @@
+/**
+ * File: HedgePolicy.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.hedge;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides when a call that has not answered yet is sent a second time
+ * (hedged) to cut the tail of the latency distribution.
+ * <p/>
+ * The latency of the last {@link #DEFAULT_WINDOW_SIZE} successful calls to
+ * each endpoint is tracked.  Once an endpoint has {@link #getMinSamples()}
+ * samples, a call to it that is still running after
+ * {@link #getPercentile()} of those latencies is hedged.  Hedges are budgeted:
+ * no more than {@link #getMaxHedgeRatio()} of the calls are hedged, so an API
+ * that is slow across the board is not sent extra traffic.
+ */
+public class HedgePolicy {
+  public static final double DEFAULT_PERCENTILE = 95D;
+  public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05D;
+  public static final int DEFAULT_MIN_SAMPLES = 20;
+  public static final int DEFAULT_WINDOW_SIZE = 100;
+
+  private final double percentile;
+  private final double maxHedgeRatio;
+  private final int minSamples;
+  private final ConcurrentMap<String, LatencyWindow> windows = new ConcurrentHashMap<String, LatencyWindow>();
+  private long callCount;
+  private long hedgeCount;
+  private long rejectedCount;
+  private long wonCount;
+
+  public HedgePolicy() {
+    this(DEFAULT_PERCENTILE, DEFAULT_MAX_HEDGE_RATIO);
+  }
+
+  /**
+   * @param percentile percentile of recent latency after which a call is
+   * hedged
+   * @param maxHedgeRatio largest part of the calls that may be hedged
+   */
+  public HedgePolicy(final double percentile, final double maxHedgeRatio) {
+    this(percentile, maxHedgeRatio, DEFAULT_MIN_SAMPLES);
+  }
+
+  /**
+   * @param percentile percentile of recent latency after which a call is
+   * hedged
+   * @param maxHedgeRatio largest part of the calls that may be hedged
+   * @param minSamples number of latencies an endpoint needs before its calls
+   * are hedged
+   */
+  public HedgePolicy(final double percentile, final double maxHedgeRatio, final int minSamples) {
+    if(percentile <= 0D || percentile > 100D) {
+      throw new IllegalArgumentException("Percentile must be greater than 0 and at most 100 [" + percentile + "].");
+    }
+    if(maxHedgeRatio <= 0D || maxHedgeRatio > 1D) {
+      throw new IllegalArgumentException("Max hedge ratio must be greater than 0 and at most 1 [" + maxHedgeRatio + "].");
+    }
+    if(minSamples < 1 || minSamples > DEFAULT_WINDOW_SIZE) {
+      throw new IllegalArgumentException("Min samples must be between 1 and " + DEFAULT_WINDOW_SIZE + " [" + minSamples + "].");
+    }
+    this.percentile = percentile;
+    this.maxHedgeRatio = maxHedgeRatio;
+    this.minSamples = minSamples;
+  }
+
+  public double getPercentile() {
+    return percentile;
+  }
+
+  public double getMaxHedgeRatio() {
+    return maxHedgeRatio;
+  }
+
+  public int getMinSamples() {
+    return minSamples;
+  }
+
+  /**
+   * Record the latency of a successful call.
+   *
+   * @param endpoint endpoint that was called
+   * @param latencyMillis milliseconds the call took
+   */
+  public void recordLatency(final String endpoint, final long latencyMillis) {
+    LatencyWindow window = windows.get(endpoint);
+    if(window == null) {
+      final LatencyWindow created = new LatencyWindow(DEFAULT_WINDOW_SIZE);
+      window = windows.putIfAbsent(endpoint, created);
+      if(window == null) {
+        window = created;
+      }
+    }
+    window.record(latencyMillis);
+  }
+
+  /**
+   * @param endpoint endpoint that is called
+   *
+   * @return milliseconds after which a call to the endpoint is hedged; -1 if
+   * there are not enough samples yet
+   */
+  public long getHedgeDelayMillis(final String endpoint) {
+    final LatencyWindow window = windows.get(endpoint);
+    if(window == null || window.getCount() < minSamples) {
+      return -1L;
+    }
+    return window.getPercentile(percentile);
+  }
+
+  /**
+   * Count a call against which hedges are budgeted.
+   */
+  public synchronized void recordCall() {
+    callCount++;
+  }
+
+  /**
+   * Take a hedge from the budget if one is left.
+   *
+   * @return true if the call may be hedged
+   */
+  public synchronized boolean tryAcquireHedge() {
+    if(hedgeCount + 1 > maxHedgeRatio * callCount) {
+      rejectedCount++;
+      return false;
+    }
+    hedgeCount++;
+    return true;
+  }
+
+  /**
+   * Give back a hedge that was taken but not sent.
+   */
+  public synchronized void releaseHedge() {
+    hedgeCount--;
+  }
+
+  /**
+   * Record that a hedge answered before the call it hedged.
+   */
+  public synchronized void recordHedgeWon() {
+    wonCount++;
+  }
+
+  /**
+   * @return number of calls counted against the budget
+   */
+  public synchronized long getCallCount() {
+    return callCount;
+  }
+
+  /**
+   * @return number of hedges sent
+   */
+  public synchronized long getHedgeCount() {
+    return hedgeCount;
+  }
+
+  /**
+   * @return number of hedges the budget refused
+   */
+  public synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  /**
+   * @return number of hedges that answered first
+   */
+  public synchronized long getWonCount() {
+    return wonCount;
+  }
+}
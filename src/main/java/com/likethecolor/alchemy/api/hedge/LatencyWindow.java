@@ -0,0 +1,64 @@
+/**
+ * File: LatencyWindow.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.hedge;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latencies of one endpoint, kept in a ring buffer.
+ */
+class LatencyWindow {
+  private final long[] samples;
+  private int next;
+  private int count;
+
+  LatencyWindow(final int size) {
+    samples = new long[size];
+  }
+
+  synchronized void record(final long latencyMillis) {
+    samples[next] = latencyMillis;
+    next = (next + 1) % samples.length;
+    if(count < samples.length) {
+      count++;
+    }
+  }
+
+  synchronized int getCount() {
+    return count;
+  }
+
+  /**
+   * @param percentile percentile between 0 (exclusive) and 100 (inclusive)
+   *
+   * @return latency at the percentile using the nearest rank; -1 if there are
+   * no samples
+   */
+  long getPercentile(final double percentile) {
+    final long[] sorted;
+    synchronized(this) {
+      if(count == 0) {
+        return -1L;
+      }
+      sorted = Arrays.copyOf(samples, count);
+    }
+    Arrays.sort(sorted);
+    final int rank = (int) Math.ceil(percentile / 100D * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+}
@@ -0,0 +1,279 @@
+/**
+ * File: AdaptiveConcurrencyLimiter.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.limit;
+
+import com.likethecolor.alchemy.api.retry.RetryPolicy;
+import com.likethecolor.alchemy.api.transport.Deadline;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Limits the number of calls in flight to each endpoint and tunes that limit
+ * from what the calls experience (additive increase, multiplicative
+ * decrease).
+ * <p/>
+ * Every endpoint starts at {@link #getInitialLimit()}.  A call that succeeds
+ * while at least half of the limit is in use raises the limit by one.  A call
+ * that failed with a timeout or an error that says the API is overloaded, or
+ * that took more than {@link #getLatencyTolerance()} times the lowest recent
+ * latency of the endpoint, multiplies the limit by {@link #getBackoffRatio()}.
+ * The limit stays between {@link #getMinLimit()} and {@link #getMaxLimit()}.
+ * Calls over the limit wait for a slot, within their deadline.
+ */
+public class AdaptiveConcurrencyLimiter {
+  public static final int DEFAULT_INITIAL_LIMIT = 8;
+  public static final int DEFAULT_MIN_LIMIT = 1;
+  public static final int DEFAULT_MAX_LIMIT = 200;
+  public static final double DEFAULT_BACKOFF_RATIO = 0.9D;
+  public static final double DEFAULT_LATENCY_TOLERANCE = 2D;
+  private static final int LATENCY_WINDOW_SIZE = 100;
+
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final ConcurrentMap<String, EndpointLimit> limits = new ConcurrentHashMap<String, EndpointLimit>();
+  private final RetryPolicy classifier = new RetryPolicy();
+  private volatile double backoffRatio = DEFAULT_BACKOFF_RATIO;
+  private volatile double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+
+  public AdaptiveConcurrencyLimiter() {
+    this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+  }
+
+  /**
+   * @param initialLimit limit of an endpoint before any call to it completed
+   * @param minLimit lowest limit
+   * @param maxLimit highest limit
+   */
+  public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+    if(minLimit < 1) {
+      throw new IllegalArgumentException("Min limit must be at least 1 [" + minLimit + "].");
+    }
+    if(maxLimit < minLimit) {
+      throw new IllegalArgumentException("Max limit [" + maxLimit + "] cannot be less than the min limit [" + minLimit + "].");
+    }
+    if(initialLimit < minLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException("Initial limit must be between " + minLimit + " and " + maxLimit + " [" + initialLimit + "].");
+    }
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+  }
+
+  public int getInitialLimit() {
+    return initialLimit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  /**
+   * @param backoffRatio factor the limit is multiplied by when a call shows
+   * the endpoint is overloaded
+   */
+  public void setBackoffRatio(final double backoffRatio) {
+    if(backoffRatio <= 0D || backoffRatio >= 1D) {
+      throw new IllegalArgumentException("Backoff ratio must be greater than 0 and less than 1 [" + backoffRatio + "].");
+    }
+    this.backoffRatio = backoffRatio;
+  }
+
+  public double getBackoffRatio() {
+    return backoffRatio;
+  }
+
+  /**
+   * @param latencyTolerance how many times the lowest recent latency a call
+   * may take before it counts as a sign of overload
+   */
+  public void setLatencyTolerance(final double latencyTolerance) {
+    if(latencyTolerance < 1D) {
+      throw new IllegalArgumentException("Latency tolerance must be at least 1 [" + latencyTolerance + "].");
+    }
+    this.latencyTolerance = latencyTolerance;
+  }
+
+  public double getLatencyTolerance() {
+    return latencyTolerance;
+  }
+
+  /**
+   * @param endpoint endpoint of the limit
+   *
+   * @return number of calls currently allowed in flight to the endpoint
+   */
+  public int getLimit(final String endpoint) {
+    final EndpointLimit limit = limits.get(endpoint);
+    if(limit == null) {
+      return initialLimit;
+    }
+    synchronized(limit) {
+      return limit.getLimit();
+    }
+  }
+
+  /**
+   * @param endpoint endpoint of the limit
+   *
+   * @return number of calls in flight to the endpoint
+   */
+  public int getInFlight(final String endpoint) {
+    final EndpointLimit limit = limits.get(endpoint);
+    if(limit == null) {
+      return 0;
+    }
+    synchronized(limit) {
+      return limit.inFlight;
+    }
+  }
+
+  /**
+   * Take a slot for a call to the endpoint, waiting while the endpoint is at
+   * its limit.  Every slot taken must be given back with
+   * {@link #release(String, boolean, long)} or {@link #cancel(String)}.
+   *
+   * @param endpoint endpoint that is called
+   * @param deadline deadline of the call or null to wait as long as needed
+   *
+   * @throws IOException if no slot is free before the deadline or the thread
+   * is interrupted
+   */
+  public void acquire(final String endpoint, final Deadline deadline) throws IOException {
+    final EndpointLimit limit = getEndpointLimit(endpoint);
+    synchronized(limit) {
+      try {
+        while(limit.inFlight >= limit.getLimit()) {
+          if(deadline == null) {
+            limit.wait();
+          }
+          else {
+            final long remainingMillis = deadline.getRemainingMillis();
+            if(remainingMillis <= 0) {
+              throw deadline.exceededWhileQueued("waiting for a free slot to call " + endpoint);
+            }
+            limit.wait(remainingMillis);
+          }
+        }
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a free slot to call " + endpoint);
+      }
+      limit.inFlight++;
+    }
+  }
+
+  /**
+   * Give back the slot of a call that was never made (e.g., because the
+   * circuit of the endpoint is open), leaving the limit as it is.
+   *
+   * @param endpoint endpoint that was to be called
+   */
+  public void cancel(final String endpoint) {
+    final EndpointLimit limit = getEndpointLimit(endpoint);
+    synchronized(limit) {
+      limit.inFlight--;
+      limit.notifyAll();
+    }
+  }
+
+  /**
+   * Give back the slot of a call that failed.
+   *
+   * @param endpoint endpoint that was called
+   * @param e failure of the call
+   * @param latencyMillis milliseconds the call took
+   */
+  public void releaseFailure(final String endpoint, final IOException e, final long latencyMillis) {
+    if(isQueued(e)) {
+      // the call never got to the endpoint, so its latency means nothing
+      cancel(endpoint);
+      return;
+    }
+    release(endpoint, isOverload(e), latencyMillis);
+  }
+
+  /**
+   * Give back the slot of a call and adjust the limit of the endpoint.
+   *
+   * @param endpoint endpoint that was called
+   * @param isOverload true if the call failed in a way that shows the endpoint
+   * is overloaded
+   * @param latencyMillis milliseconds the call took
+   */
+  public void release(final String endpoint, final boolean isOverload, final long latencyMillis) {
+    final EndpointLimit limit = getEndpointLimit(endpoint);
+    synchronized(limit) {
+      final int inFlight = limit.inFlight;
+      limit.inFlight--;
+      final boolean isSlow = limit.minLatencyMillis != Long.MAX_VALUE
+                             && latencyMillis > Math.max(1L, limit.minLatencyMillis) * latencyTolerance;
+      if(!isOverload) {
+        limit.sample(latencyMillis, LATENCY_WINDOW_SIZE);
+      }
+      if(isOverload || isSlow) {
+        limit.limit = Math.max(minLimit, limit.limit * backoffRatio);
+      }
+      else if(inFlight * 2 >= limit.getLimit()) {
+        limit.limit = Math.min(maxLimit, limit.limit + 1D);
+      }
+      limit.notifyAll();
+    }
+  }
+
+  /**
+   * @param e failure of a call
+   *
+   * @return true if the failure shows the endpoint is overloaded
+   */
+  protected boolean isOverload(final IOException e) {
+    if(e instanceof DeadlineExceededException) {
+      return !isQueued(e);
+    }
+    return classifier.isTransient(e);
+  }
+
+  /**
+   * @return true if the call ran out of time waiting on this side (e.g., for
+   * a pooled connection)
+   */
+  private boolean isQueued(final IOException e) {
+    return e instanceof DeadlineExceededException && ((DeadlineExceededException) e).isQueued();
+  }
+
+  private EndpointLimit getEndpointLimit(final String endpoint) {
+    EndpointLimit limit = limits.get(endpoint);
+    if(limit == null) {
+      final EndpointLimit created = new EndpointLimit(initialLimit);
+      limit = limits.putIfAbsent(endpoint, created);
+      if(limit == null) {
+        limit = created;
+      }
+    }
+    return limit;
+  }
+}
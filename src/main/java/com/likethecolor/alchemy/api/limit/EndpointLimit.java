@@ -0,0 +1,56 @@
+/**
+ * File: EndpointLimit.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.limit;
+
+/**
+ * Concurrency limit of one endpoint and the calls in flight to it.  Guarded
+ * by its own monitor, which callers waiting for a slot also wait on.
+ */
+class EndpointLimit {
+  double limit;
+  int inFlight;
+  long minLatencyMillis = Long.MAX_VALUE;
+  long windowMinLatencyMillis = Long.MAX_VALUE;
+  int windowSamples;
+
+  EndpointLimit(final int initialLimit) {
+    this.limit = initialLimit;
+  }
+
+  /**
+   * @return number of calls allowed in flight
+   */
+  int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * Track the lowest latency seen.  The lowest latency of each window of
+   * samples replaces the previous one, so that the baseline follows the
+   * endpoint if it becomes permanently faster or slower.
+   */
+  void sample(final long latencyMillis, final int windowSize) {
+    windowMinLatencyMillis = Math.min(windowMinLatencyMillis, latencyMillis);
+    minLatencyMillis = Math.min(minLatencyMillis, latencyMillis);
+    if(++windowSamples >= windowSize) {
+      minLatencyMillis = windowMinLatencyMillis;
+      windowMinLatencyMillis = Long.MAX_VALUE;
+      windowSamples = 0;
+    }
+  }
+}
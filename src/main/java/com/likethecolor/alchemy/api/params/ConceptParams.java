@@ -99,8 +99,9 @@ public class ConceptParams extends Params {
     return xPath;
   }
 
-  public String toString() {
-    return new StringBuilder(super.toString())
+  @Override
+  protected String getOptionsString() {
+    return new StringBuilder(super.getOptionsString())
         .append(createParam(Constants.PARAM_SOURCE_TEXT, sourceText))
         .append(createParam(Constants.PARAM_SHOW_SOURCE_TEXT,
             isShowSourceText() ? 1 : 0))
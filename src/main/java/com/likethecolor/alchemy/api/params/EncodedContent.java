@@ -0,0 +1,81 @@
+/**
+ * File: EncodedContent.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.params;
+
+import com.likethecolor.alchemy.api.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * The html, text or url of a document, url encoded once so that several calls
+ * on the same document can send it without encoding it again.  Set it on the
+ * params of each call with {@link Params#setEncodedContent(EncodedContent)}.
+ */
+public final class EncodedContent {
+  private final byte[] bytes;
+
+  private EncodedContent(final byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Encode the html, text and url set on the params.
+   *
+   * @param params params holding the content of the document
+   *
+   * @return encoded content
+   */
+  public static EncodedContent from(final Params params) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE, params.getContentLength()));
+    try {
+      params.writeContentTo(out);
+    }
+    catch(IOException e) {
+      // cannot happen when writing to memory
+      throw new IllegalStateException("Unable to encode content.", e);
+    }
+    return new EncodedContent(out.toByteArray());
+  }
+
+  /**
+   * @return length in bytes of the encoded params
+   */
+  public int getLength() {
+    return bytes.length;
+  }
+
+  void writeTo(final OutputStream out) throws IOException {
+    out.write(bytes);
+  }
+
+  /**
+   * @return the encoded params, e.g., &amp;text=...
+   */
+  @Override
+  public String toString() {
+    try {
+      return new String(bytes, Constants.DEFAULT_ENCODING);
+    }
+    catch(UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
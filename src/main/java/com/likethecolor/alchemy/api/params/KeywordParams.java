@@ -128,8 +128,9 @@ public class KeywordParams extends Params {
     return xPath;
   }
 
-  public String toString() {
-    return new StringBuilder(super.toString())
+  @Override
+  protected String getOptionsString() {
+    return new StringBuilder(super.getOptionsString())
         .append(createParam(Constants.PARAM_BASE_URL, encode(baseUrl)))
         .append(createParam(Constants.PARAM_CONSTRAINT_QUERY, encode(constraintQuery)))
         .append(createParam(Constants.PARAM_KEYWORD_EXTRACT_MODE, encode(keywordExtractMode)))
@@ -66,8 +66,9 @@ public class LanguageParams extends Params {
     return xPath;
   }
 
-  public String toString() {
-    return new StringBuilder(super.toString())
+  @Override
+  protected String getOptionsString() {
+    return new StringBuilder(super.getOptionsString())
         .append(createParam(Constants.PARAM_CONSTRAINT_QUERY, encode(constraintQuery)))
         .append(createParam(Constants.PARAM_SOURCE_TEXT, sourceText))
         .append(createParam(Constants.PARAM_XPATH, encode(xPath)))
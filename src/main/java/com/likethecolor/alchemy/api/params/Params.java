@@ -18,15 +18,25 @@
 package com.likethecolor.alchemy.api.params;
 
 import com.likethecolor.alchemy.api.Constants;
+import com.likethecolor.alchemy.api.util.ContentHash;
+import com.likethecolor.alchemy.api.util.FormEncoder;
 import org.apache.commons.lang.StringUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class Params {
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final String HEX_DIGITS = "0123456789abcdef";
+
   private String html;
   private String text;
   private String url;
+  private EncodedContent encodedContent;
 
   public String getHtml() {
     return html;
@@ -65,16 +75,170 @@ public class Params {
     return url;
   }
 
+  /**
+   * Send content that was already url encoded instead of encoding the html,
+   * text and url set on these params.  Lets several calls on one document
+   * share a single encoding of it.
+   *
+   * @param encodedContent encoded html, text or url; null to encode the
+   * content set on these params
+   */
+  public void setEncodedContent(final EncodedContent encodedContent) {
+    this.encodedContent = encodedContent;
+  }
+
+  public EncodedContent getEncodedContent() {
+    return encodedContent;
+  }
+
   @Override
   public String toString() {
+    if(encodedContent != null) {
+      return encodedContent.toString() + getOptionsString();
+    }
     return new StringBuilder()
         .append(createParam(Constants.PARAM_HTML, encode(html)))
         .append(createParam(Constants.PARAM_TEXT, encode(text)))
         .append(createParam(Constants.PARAM_URL, encode(url)))
-        .append(createParam(Constants.PARAM_OUTPUT_FORMAT, Constants.DEFAULT_OUTPUT_FORMAT))
+        .append(getOptionsString())
+        .toString();
+  }
+
+  /**
+   * Return every param except the html, text and url content.  Subclasses
+   * append their own params to this.
+   *
+   * @return url encoded params other than the content
+   */
+  protected String getOptionsString() {
+    return createParam(Constants.PARAM_OUTPUT_FORMAT, Constants.DEFAULT_OUTPUT_FORMAT);
+  }
+
+  /**
+   * Return the number of bytes {@link #writeTo(OutputStream)} writes, which is
+   * the byte length of {@link #toString()}, without encoding the content.
+   *
+   * @return length in bytes of the url encoded params
+   */
+  public long getEncodedLength() {
+    final long contentLength = encodedContent == null ? getContentLength() : encodedContent.getLength();
+    return contentLength + getOptionsString().length();
+  }
+
+  long getContentLength() {
+    return getContentParamLength(Constants.PARAM_HTML, html)
+           + getContentParamLength(Constants.PARAM_TEXT, text)
+           + getContentParamLength(Constants.PARAM_URL, url);
+  }
+
+  /**
+   * Write the url encoded params to the stream.  The html and text content,
+   * which can be very large, is encoded straight into the stream so no encoded
+   * copy of it is ever held in memory.  The bytes written are the same as
+   * {@link #toString()}.
+   *
+   * @param out stream to write to
+   *
+   * @throws IOException if the stream cannot be written to
+   */
+  public void writeTo(final OutputStream out) throws IOException {
+    if(encodedContent != null) {
+      encodedContent.writeTo(out);
+    }
+    else {
+      writeContentTo(out);
+    }
+    out.write(getOptionsString().getBytes(Constants.DEFAULT_ENCODING));
+  }
+
+  /**
+   * Return a SHA-256 digest of the url encoded params.  Two params objects
+   * that would send the same request have the same digest, so it can stand in
+   * for the params, however large the content, e.g., as a map key.
+   *
+   * @return hex encoded SHA-256 digest of {@link #writeTo(OutputStream)}
+   */
+  public String getDigest() {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    }
+    catch(NoSuchAlgorithmException e) {
+      // every jvm must support SHA-256
+      throw new IllegalStateException(e);
+    }
+    try {
+      writeTo(new OutputStream() {
+        @Override
+        public void write(final int b) {
+          digest.update((byte) b);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) {
+          digest.update(bytes, offset, length);
+        }
+      });
+    }
+    catch(IOException e) {
+      // cannot happen, nothing is written anywhere
+      throw new IllegalStateException(e);
+    }
+    final byte[] hash = digest.digest();
+    final StringBuilder hex = new StringBuilder(hash.length * 2);
+    for(byte b : hash) {
+      hex.append(HEX_DIGITS.charAt((b >> 4) & 0x0f)).append(HEX_DIGITS.charAt(b & 0x0f));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Return a hash of the params in which the html and text content is
+   * whitespace normalized, so that the same document laid out differently,
+   * e.g., syndicated in another page, has the same content digest.  The url
+   * sent along with html is hashed as is.  Params with only url content or
+   * with {@link EncodedContent} have their
+   * {@link #getDigest()} as content digest.
+   *
+   * @return hex encoded hash of the normalized content and the other params
+   */
+  public String getContentDigest() {
+    if(encodedContent != null || (html == null && text == null)) {
+      return getDigest();
+    }
+    // content is hashed with its length, it may hold anything the names and
+    // separators do; the options are url encoded
+    return new ContentHash()
+        .put(Constants.PARAM_HTML).put("=").putNormalizedField(html)
+        .put("&").put(Constants.PARAM_TEXT).put("=").putNormalizedField(text)
+        .put("&").put(Constants.PARAM_URL).put("=").putField(url)
+        .put(getOptionsString())
         .toString();
   }
 
+  void writeContentTo(final OutputStream out) throws IOException {
+    writeContentParam(Constants.PARAM_HTML, html, out);
+    writeContentParam(Constants.PARAM_TEXT, text, out);
+    writeContentParam(Constants.PARAM_URL, url, out);
+  }
+
+  private long getContentParamLength(final String paramName, final String paramValue) {
+    if(StringUtils.isBlank(paramValue)) {
+      return 0;
+    }
+    return 2 + paramName.length() + FormEncoder.encodedLength(paramValue);
+  }
+
+  private void writeContentParam(final String paramName, final String paramValue, final OutputStream out) throws IOException {
+    if(StringUtils.isBlank(paramValue)) {
+      return;
+    }
+    out.write('&');
+    out.write(paramName.getBytes(Constants.DEFAULT_ENCODING));
+    out.write('=');
+    FormEncoder.encode(paramValue, out);
+  }
+
   protected String createParam(final String paramName, final String paramValue) {
     final StringBuilder param = new StringBuilder();
     if(!StringUtils.isBlank(paramValue)) {
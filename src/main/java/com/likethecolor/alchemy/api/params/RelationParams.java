@@ -165,8 +165,9 @@ public class RelationParams extends Params {
     return xPath;
   }
 
-  public String toString() {
-    return new StringBuilder(super.toString())
+  @Override
+  protected String getOptionsString() {
+    return new StringBuilder(super.getOptionsString())
         .append(createParam(Constants.PARAM_BASE_URL, encode(baseUrl)))
         .append(createParam(Constants.PARAM_CONSTRAINT_QUERY, encode(constraintQuery)))
         .append(createParam(Constants.PARAM_COREFERENCE, isCoreference ? 1 : 0))
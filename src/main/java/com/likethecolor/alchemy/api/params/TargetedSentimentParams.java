@@ -42,8 +42,9 @@ public class TargetedSentimentParams extends Params {
     return target;
   }
 
-  public String toString() {
-    return new StringBuilder(super.toString())
+  @Override
+  protected String getOptionsString() {
+    return new StringBuilder(super.getOptionsString())
         .append(createParam(Constants.PARAM_SHOW_SOURCE_TEXT,
             isShowSourceText ? 1 : 0))
         .append(createParam(Constants.PARAM_TARGET, encode(target)))
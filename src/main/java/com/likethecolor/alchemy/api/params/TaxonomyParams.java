@@ -79,8 +79,8 @@ public class TaxonomyParams extends Params {
   }
 
   @Override
-  public String toString() {
-    return new StringBuilder(super.toString())
+  protected String getOptionsString() {
+    return new StringBuilder(super.getOptionsString())
         .append(createParam(Constants.PARAM_BASE_URL, encode(baseUrl)))
         .append(createParam(Constants.PARAM_CONSTRAINT_QUERY, encode(constraintQuery)))
         .append(createParam(Constants.PARAM_SOURCE_TEXT, sourceText))
@@ -39,8 +39,9 @@ public class TextParams extends Params {
     return useMetaData;
   }
 
-  public String toString() {
-    return new StringBuilder(super.toString())
+  @Override
+  protected String getOptionsString() {
+    return new StringBuilder(super.getOptionsString())
         .append(createParam(Constants.PARAM_EXTRACT_LINKS,
             isExtractLinks ? 1 : 0))
         .append(createParam(Constants.PARAM_USE_META_DATA, useMetaData ? 1 : 0))
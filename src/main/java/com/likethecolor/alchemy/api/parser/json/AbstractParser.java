@@ -28,40 +28,39 @@ import org.slf4j.LoggerFactory;
 /**
  * Abstract class that parsers should inherit from. As a template pattern it
  * provides some template methods that are used by most subclasses.
+ * <p/>
+ * Parsers keep no state between calls to {@link #parse(String)}: the parsed
+ * document is handed to {@link #populateResponse(Response, JSONObject)}.  A
+ * single instance can therefore be shared by every call and every thread.
  */
 public abstract class AbstractParser<T extends AbstractAlchemyEntity> {
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractParser.class);
   private static final String TRUTHY_INITIAL_CHARACTER = "y";
-  private JSONObject jsonObject;
 
   public Response<T> parse(final String jsonString) {
-    jsonObject = getJSONObject(jsonString);
-    Response<T> response = parseHeader();
-    populateResponse(response);
-    return response;
-  }
-
-  protected abstract void populateResponse(final Response<T> response);
-
-  private Response<T> parseHeader() {
-    Response<T> response = new Response<T>();
-    response.setLanguage(getString(JSONConstants.RESULTS_LANGUAGE, getJSONObject()));
-    response.setStatus(getString(JSONConstants.RESULTS_STATUS, getJSONObject()));
-    response.setStatusInfo(getString(JSONConstants.RESULTS_STATUS_INFO, getJSONObject()));
-    response.setText(getString(JSONConstants.RESULTS_TEXT, getJSONObject()));
-    response.setURL(getString(JSONConstants.RESULTS_URL, getJSONObject()));
-    response.setUsage(getString(JSONConstants.RESULTS_USAGE, getJSONObject()));
+    final JSONObject jsonObject = getJSONObject(jsonString);
+    Response<T> response = parseHeader(jsonObject);
+    populateResponse(response, jsonObject);
     return response;
   }
 
   /**
-   * Return the json object that was created in the {@link #parse(String)}
-   * method.
+   * Add the entities found in the document to the response.
    *
-   * @return json object that was created in the {@link #parse(String)} method
+   * @param response response to populate; the header is already set
+   * @param jsonObject parsed document
    */
-  public JSONObject getJSONObject() {
-    return jsonObject;
+  protected abstract void populateResponse(final Response<T> response, final JSONObject jsonObject);
+
+  private Response<T> parseHeader(final JSONObject jsonObject) {
+    Response<T> response = new Response<T>();
+    response.setLanguage(getString(JSONConstants.RESULTS_LANGUAGE, jsonObject));
+    response.setStatus(getString(JSONConstants.RESULTS_STATUS, jsonObject));
+    response.setStatusInfo(getString(JSONConstants.RESULTS_STATUS_INFO, jsonObject));
+    response.setText(getString(JSONConstants.RESULTS_TEXT, jsonObject));
+    response.setURL(getString(JSONConstants.RESULTS_URL, jsonObject));
+    response.setUsage(getString(JSONConstants.RESULTS_USAGE, jsonObject));
+    return response;
   }
 
   /**
@@ -24,8 +24,7 @@ import org.json.JSONObject;
 
 public class AuthorParser extends AbstractParser<AuthorAlchemyEntity> {
   @Override
-  protected void populateResponse(Response<AuthorAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<AuthorAlchemyEntity> response, final JSONObject jsonObject) {
     final String author = getString(JSONConstants.AUTHOR_KEY, jsonObject);
 
     if(!StringUtils.isBlank(author)) {
@@ -26,13 +26,14 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 public class ConceptParser extends AbstractParser<ConceptAlchemyEntity> {
+  private static final DisambiguatedEntityParser DISAMBIGUATED_ENTITY_PARSER = new DisambiguatedEntityParser();
+
   public ConceptParser() {
     super();
   }
 
   @Override
-  protected void populateResponse(final Response<ConceptAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<ConceptAlchemyEntity> response, final JSONObject jsonObject) {
     final JSONArray concepts = getJSONArray(JSONConstants.RANKED_CONCEPTS, jsonObject);
 
     if(concepts.length() > 0) {
@@ -56,9 +57,7 @@ public class ConceptParser extends AbstractParser<ConceptAlchemyEntity> {
   }
 
   private void addDisambiguated(final ConceptAlchemyEntity entity, final JSONObject conceptJsonObject) {
-    final DisambiguatedEntityParser parser = new DisambiguatedEntityParser();
-
-    DisambiguatedAlchemyEntity disambiguatedAlchemyEntity = parser.getEntity(conceptJsonObject);
+    DisambiguatedAlchemyEntity disambiguatedAlchemyEntity = DISAMBIGUATED_ENTITY_PARSER.getEntity(conceptJsonObject);
     if(disambiguatedAlchemyEntity == null) {
       return;
     }
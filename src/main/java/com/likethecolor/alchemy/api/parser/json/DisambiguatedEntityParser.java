@@ -24,7 +24,7 @@ import org.json.JSONObject;
 
 class DisambiguatedEntityParser extends AbstractParser<DisambiguatedAlchemyEntity> {
   @Override
-  protected void populateResponse(final Response response) {
+  protected void populateResponse(final Response response, final JSONObject jsonObject) {
   }
 
   public DisambiguatedAlchemyEntity getEntity(final JSONObject jsonObject) {
@@ -18,12 +18,13 @@
 package com.likethecolor.alchemy.api.parser.json;
 
 import com.likethecolor.alchemy.api.entity.Response;
+import org.json.JSONObject;
 
 /**
  * Parses just the header.
  */
 public class HeaderParser extends AbstractParser {
   @Override
-  protected void populateResponse(final Response response) {
+  protected void populateResponse(final Response response, final JSONObject jsonObject) {
   }
 }
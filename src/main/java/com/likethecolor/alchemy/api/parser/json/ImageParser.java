@@ -10,8 +10,7 @@ import org.json.JSONObject;
  */
 public class ImageParser extends AbstractParser<ImageEntity> {
     @Override
-    protected void populateResponse(Response<ImageEntity> response) {
-        JSONObject jsonObject = getJSONObject();
+    protected void populateResponse(final Response<ImageEntity> response, final JSONObject jsonObject) {
         JSONArray imageKeywords = getJSONArray(JSONConstants.IMAGE_KEYWORDS_KEY, jsonObject);
         for (int i = 0; i < imageKeywords.length(); i++) {
             JSONObject keyword = getJSONObject(imageKeywords, i);
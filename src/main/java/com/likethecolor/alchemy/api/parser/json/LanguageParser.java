@@ -24,8 +24,7 @@ import org.json.JSONObject;
 
 public class LanguageParser extends AbstractParser<LanguageAlchemyEntity> {
   @Override
-  protected void populateResponse(Response<LanguageAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<LanguageAlchemyEntity> response, final JSONObject jsonObject) {
     final String ethnologue = getString(JSONConstants.LANGUAGE_ETHNOLOGUE_KEY, jsonObject);
     final String language = getString(JSONConstants.LANGUAGE_LANGUAGE_KEY, jsonObject);
     final String iso6391 = getString(JSONConstants.LANGUAGE_ISO6391_KEY, jsonObject);
@@ -25,8 +25,7 @@ import org.json.JSONObject;
 
 public class MicroformatParser extends AbstractParser<MicroformatAlchemyEntity> {
   @Override
-  protected void populateResponse(Response<MicroformatAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<MicroformatAlchemyEntity> response, final JSONObject jsonObject) {
     final JSONArray microformats = getJSONArray(JSONConstants.MICROFORMATS_KEY, jsonObject);
 
     MicroformatAlchemyEntity entity;
@@ -27,9 +27,10 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class NamedEntityParser extends AbstractParser<NamedEntityAlchemyEntity> {
+  private static final DisambiguatedEntityParser DISAMBIGUATED_ENTITY_PARSER = new DisambiguatedEntityParser();
+
   @Override
-  protected void populateResponse(final Response<NamedEntityAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<NamedEntityAlchemyEntity> response, final JSONObject jsonObject) {
     final JSONArray namedEntities = getJSONArray(JSONConstants.RANKED_NAMED_ENTITIES, jsonObject);
     if(namedEntities.length() > 0) {
       NamedEntityAlchemyEntity entity;
@@ -64,9 +65,7 @@ public class NamedEntityParser extends AbstractParser<NamedEntityAlchemyEntity>
   private void addDisambiguated(final NamedEntityAlchemyEntity entity, final JSONObject namedEntityJsonObject) {
     final JSONObject disambiguatedJsonObject = getJSONObject(JSONConstants.RANKED_NAMED_ENTITIES_DISAMBIGUATED_KEY, namedEntityJsonObject);
 
-    final DisambiguatedEntityParser parser = new DisambiguatedEntityParser();
-
-    DisambiguatedAlchemyEntity disambiguatedAlchemyEntity = parser.getEntity(disambiguatedJsonObject);
+    DisambiguatedAlchemyEntity disambiguatedAlchemyEntity = DISAMBIGUATED_ENTITY_PARSER.getEntity(disambiguatedJsonObject);
     if(disambiguatedAlchemyEntity == null) {
       return;
     }
@@ -24,8 +24,7 @@ import org.json.JSONObject;
 
 public class QuotationParser extends AbstractParser<QuotationAlchemyEntity> {
   @Override
-  protected void populateResponse(Response<QuotationAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<QuotationAlchemyEntity> response, final JSONObject jsonObject) {
     final JSONArray quotation = getJSONArray(JSONConstants.QUOTATIONS_QUOTATION_KEY, jsonObject);
   }
 }
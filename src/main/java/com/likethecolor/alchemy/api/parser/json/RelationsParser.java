@@ -31,9 +31,10 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class RelationsParser extends AbstractParser<RelationAlchemyEntity> {
+  private static final DisambiguatedEntityParser DISAMBIGUATED_ENTITY_PARSER = new DisambiguatedEntityParser();
+
   @Override
-  protected void populateResponse(Response<RelationAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<RelationAlchemyEntity> response, final JSONObject jsonObject) {
     final JSONArray relations = getJSONArray(JSONConstants.RELATIONS_KEY, jsonObject);
     if(relations != null) {
       RelationAlchemyEntity entity;
@@ -127,9 +128,7 @@ public class RelationsParser extends AbstractParser<RelationAlchemyEntity> {
   private void addDisambiguated(final AlchemyEntity entity, final JSONObject json) {
     final JSONObject disambiguatedJsonObject = getJSONObject(JSONConstants.DISAMBIGUATED_KEY, json);
 
-    final DisambiguatedEntityParser parser = new DisambiguatedEntityParser();
-
-    DisambiguatedAlchemyEntity disambiguatedAlchemyEntity = parser.getEntity(disambiguatedJsonObject);
+    DisambiguatedAlchemyEntity disambiguatedAlchemyEntity = DISAMBIGUATED_ENTITY_PARSER.getEntity(disambiguatedJsonObject);
     if(disambiguatedAlchemyEntity == null) {
       return;
     }
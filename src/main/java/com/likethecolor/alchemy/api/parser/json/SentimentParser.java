@@ -25,8 +25,7 @@ import org.json.JSONObject;
 
 public class SentimentParser extends AbstractParser<SentimentAlchemyEntity> {
   @Override
-  protected void populateResponse(final Response<SentimentAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<SentimentAlchemyEntity> response, final JSONObject jsonObject) {
     final JSONObject sentimentJsonObject = getJSONObject(JSONConstants.TARGETED_SENTIMENT_KEY, jsonObject);
     final Integer isMixed = getInteger(JSONConstants.TARGETED_SENTIMENT_MIXED_KEY, sentimentJsonObject);
     final Double score = getDouble(JSONConstants.TARGETED_SENTIMENT_SCORE_KEY, sentimentJsonObject);
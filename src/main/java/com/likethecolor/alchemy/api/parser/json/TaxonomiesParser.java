@@ -25,8 +25,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 public class TaxonomiesParser extends AbstractParser<TaxonomyAlchemyEntity> {
-  protected void populateResponse(final Response<TaxonomyAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<TaxonomyAlchemyEntity> response, final JSONObject jsonObject) {
     final JSONArray taxonomies = getJSONArray(JSONConstants.TAXONOMY_KEY, jsonObject);
 
     if(taxonomies.length() > 0) {
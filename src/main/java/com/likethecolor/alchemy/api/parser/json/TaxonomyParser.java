@@ -23,8 +23,7 @@ import org.apache.commons.lang.StringUtils;
 import org.json.JSONObject;
 
 public class TaxonomyParser extends AbstractParser<TaxonomyAlchemyEntity> {
-  protected void populateResponse(final Response<TaxonomyAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<TaxonomyAlchemyEntity> response, final JSONObject jsonObject) {
     final Boolean isConfident = getBoolean(JSONConstants.TAXONOMY_CONFIDENCE_KEY, jsonObject);
     final String label = getString(JSONConstants.TAXONOMY_LABEL_KEY, jsonObject);
     final Double score = getDouble(JSONConstants.TAXONOMY_SCORE_KEY, jsonObject);
@@ -19,9 +19,10 @@ package com.likethecolor.alchemy.api.parser.json;
 
 import com.likethecolor.alchemy.api.entity.HeaderAlchemyEntity;
 import com.likethecolor.alchemy.api.entity.Response;
+import org.json.JSONObject;
 
 public class TextParser extends AbstractParser<HeaderAlchemyEntity> {
   @Override
-  protected void populateResponse(Response<HeaderAlchemyEntity> response) {
+  protected void populateResponse(final Response<HeaderAlchemyEntity> response, final JSONObject jsonObject) {
   }
 }
@@ -24,8 +24,7 @@ import org.json.JSONObject;
 
 public class TitleParser extends AbstractParser<TitleAlchemyEntity> {
   @Override
-  protected void populateResponse(Response<TitleAlchemyEntity> response) {
-    final JSONObject jsonObject = getJSONObject();
+  protected void populateResponse(final Response<TitleAlchemyEntity> response, final JSONObject jsonObject) {
 
     final String title = getString(JSONConstants.TITLE_KEY, jsonObject);
     if(!StringUtils.isBlank(title)) {
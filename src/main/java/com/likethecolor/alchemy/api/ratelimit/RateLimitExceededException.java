@@ -0,0 +1,42 @@
+/**
+ * File: RateLimitExceededException.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.ratelimit;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call would have to wait longer than allowed for a permit from
+ * a {@link RateLimiter}.  The call was never sent.
+ */
+public class RateLimitExceededException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final long waitMillis;
+
+  public RateLimitExceededException(final String message, final long waitMillis) {
+    super(message);
+    this.waitMillis = waitMillis;
+  }
+
+  /**
+   * @return milliseconds the call would have had to wait for a permit
+   */
+  public long getWaitMillis() {
+    return waitMillis;
+  }
+}
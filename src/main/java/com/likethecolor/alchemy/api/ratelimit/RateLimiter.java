@@ -0,0 +1,231 @@
+/**
+ * File: RateLimiter.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.ratelimit;
+
+import com.likethecolor.alchemy.api.transport.Deadline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter that keeps calls under the API's quotas on the
+ * client side, so that calls wait here instead of being sent and rejected by
+ * the API (and counted against the quota).
+ * <p/>
+ * There can be a per second limit, with a burst allowance, and a daily limit.
+ * The daily bucket refills continuously (callsPerDay spread over 24 hours)
+ * rather than all at once at midnight.  A caller that cannot have a permit
+ * right away reserves the next free one and sleeps until it is due, so
+ * waiting callers are served in the order they arrived.  How long a caller may
+ * wait is bounded by {@link #setMaxWaitMillis(long)} and by the call's
+ * deadline.
+ * <p/>
+ * Every thread and every {@link com.likethecolor.alchemy.api.Client} using the
+ * same API key should share one limiter; see {@link #forApiKey(String)}.
+ */
+public class RateLimiter {
+  public static final long NO_MAX_WAIT = -1L;
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+  private static final long NANOS_PER_DAY = TimeUnit.DAYS.toNanos(1L);
+  private static final ConcurrentMap<String, RateLimiter> API_KEY_LIMITERS = new ConcurrentHashMap<String, RateLimiter>();
+
+  private TokenBucket perSecondBucket;
+  private TokenBucket dailyBucket;
+  private long maxWaitMillis = NO_MAX_WAIT;
+  private long permitCount;
+  private long waitCount;
+  private long rejectedCount;
+
+  /**
+   * Create a limiter with no limits set.
+   */
+  public RateLimiter() {
+  }
+
+  /**
+   * @param callsPerSecond sustained number of calls allowed per second
+   * @param burst number of calls that may be made at once after a quiet period
+   */
+  public RateLimiter(final double callsPerSecond, final int burst) {
+    setRate(callsPerSecond, burst);
+  }
+
+  /**
+   * Return the limiter shared by everyone using the given API key, creating
+   * one (with no limits set) the first time.
+   *
+   * @param apiKey API key
+   *
+   * @return limiter for the API key
+   */
+  public static RateLimiter forApiKey(final String apiKey) {
+    if(apiKey == null || apiKey.trim().length() == 0) {
+      throw new IllegalArgumentException("API key cannot be empty.");
+    }
+    final String key = apiKey.trim();
+    RateLimiter limiter = API_KEY_LIMITERS.get(key);
+    if(limiter == null) {
+      final RateLimiter newLimiter = new RateLimiter();
+      limiter = API_KEY_LIMITERS.putIfAbsent(key, newLimiter);
+      if(limiter == null) {
+        limiter = newLimiter;
+      }
+    }
+    return limiter;
+  }
+
+  /**
+   * @param callsPerSecond sustained number of calls allowed per second
+   * @param burst number of calls that may be made at once after a quiet period
+   */
+  public synchronized void setRate(final double callsPerSecond, final int burst) {
+    if(callsPerSecond <= 0D) {
+      throw new IllegalArgumentException("Calls per second must be greater than 0 [" + callsPerSecond + "].");
+    }
+    if(burst < 1) {
+      throw new IllegalArgumentException("Burst must be at least 1 [" + burst + "].");
+    }
+    perSecondBucket = new TokenBucket(burst, NANOS_PER_SECOND / callsPerSecond, System.nanoTime());
+  }
+
+  /**
+   * @param callsPerDay number of calls allowed per day; 0 for no daily limit
+   */
+  public synchronized void setDailyLimit(final long callsPerDay) {
+    if(callsPerDay < 0) {
+      throw new IllegalArgumentException("Calls per day cannot be negative [" + callsPerDay + "].");
+    }
+    dailyBucket = callsPerDay == 0
+                  ? null
+                  : new TokenBucket(callsPerDay, (double) NANOS_PER_DAY / callsPerDay, System.nanoTime());
+  }
+
+  /**
+   * @param maxWaitMillis longest time a call may wait for a permit; 0 to never
+   * wait, {@link #NO_MAX_WAIT} to wait as long as it takes
+   */
+  public synchronized void setMaxWaitMillis(final long maxWaitMillis) {
+    if(maxWaitMillis < NO_MAX_WAIT) {
+      throw new IllegalArgumentException("Max wait cannot be negative [" + maxWaitMillis + "].");
+    }
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  public synchronized long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  /**
+   * @return number of permits handed out
+   */
+  public synchronized long getPermitCount() {
+    return permitCount;
+  }
+
+  /**
+   * @return number of permits that had to be waited for
+   */
+  public synchronized long getWaitCount() {
+    return waitCount;
+  }
+
+  /**
+   * @return number of calls refused because the wait would have been too long
+   */
+  public synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  /**
+   * Take a permit if one is free right now.
+   *
+   * @return true if a permit was taken
+   */
+  public synchronized boolean tryAcquire() {
+    if(getWaitNanos(System.nanoTime()) > 0) {
+      rejectedCount++;
+      return false;
+    }
+    take();
+    return true;
+  }
+
+  /**
+   * Take a permit, waiting for it if needed.
+   *
+   * @param deadline deadline of the call or null; the wait may not run past it
+   *
+   * @throws RateLimitExceededException if the wait would be longer than the
+   * max wait
+   * @throws IOException if the wait would run past the deadline or the thread
+   * is interrupted
+   */
+  public void acquire(final Deadline deadline) throws IOException {
+    final long waitNanos;
+    synchronized(this) {
+      waitNanos = getWaitNanos(System.nanoTime());
+      if(waitNanos > 0) {
+        final long waitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        if(maxWaitMillis != NO_MAX_WAIT && waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+          rejectedCount++;
+          throw new RateLimitExceededException("Rate limit exceeded: a permit is " + waitMillis + " ms away, max wait is " + maxWaitMillis + " ms.", waitMillis);
+        }
+        if(deadline != null && waitNanos > TimeUnit.MILLISECONDS.toNanos(deadline.getRemainingMillis())) {
+          rejectedCount++;
+          throw deadline.exceededWhileQueued("waiting " + waitMillis + " ms for a rate limit permit");
+        }
+        waitCount++;
+      }
+      // reserved even when it has to be waited for, so later callers queue behind
+      take();
+    }
+    if(waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a rate limit permit.");
+      }
+    }
+  }
+
+  private long getWaitNanos(final long nowNanos) {
+    long waitNanos = 0L;
+    if(perSecondBucket != null) {
+      waitNanos = Math.max(waitNanos, perSecondBucket.getWaitNanos(nowNanos));
+    }
+    if(dailyBucket != null) {
+      waitNanos = Math.max(waitNanos, dailyBucket.getWaitNanos(nowNanos));
+    }
+    return waitNanos;
+  }
+
+  private void take() {
+    if(perSecondBucket != null) {
+      perSecondBucket.take();
+    }
+    if(dailyBucket != null) {
+      dailyBucket.take();
+    }
+    permitCount++;
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * File: TokenBucket.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.ratelimit;
+
+/**
+ * Holds up to capacity tokens and gains one every nanosPerToken.  Tokens can
+ * be reserved ahead of time, which takes the bucket below zero; the deficit
+ * tells how long the caller that reserved the last token has to wait.  Not
+ * thread safe, {@link RateLimiter} guards it.
+ */
+class TokenBucket {
+  private final long capacity;
+  private final double nanosPerToken;
+  private double tokens;
+  private long lastRefillNanos;
+
+  TokenBucket(final long capacity, final double nanosPerToken, final long nowNanos) {
+    this.capacity = capacity;
+    this.nanosPerToken = nanosPerToken;
+    this.tokens = capacity;
+    this.lastRefillNanos = nowNanos;
+  }
+
+  /**
+   * @param nowNanos current {@link System#nanoTime()}
+   *
+   * @return nanoseconds until a token taken now would have been earned
+   */
+  long getWaitNanos(final long nowNanos) {
+    refill(nowNanos);
+    if(tokens >= 1D) {
+      return 0L;
+    }
+    return (long) Math.ceil((1D - tokens) * nanosPerToken);
+  }
+
+  void take() {
+    tokens -= 1D;
+  }
+
+  private void refill(final long nowNanos) {
+    final long elapsedNanos = nowNanos - lastRefillNanos;
+    if(elapsedNanos > 0) {
+      tokens = Math.min(capacity, tokens + elapsedNanos / nanosPerToken);
+      lastRefillNanos = nowNanos;
+    }
+  }
+}
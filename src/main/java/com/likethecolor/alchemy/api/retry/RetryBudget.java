@@ -0,0 +1,108 @@
+/**
+ * File: RetryBudget.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.retry;
+
+/**
+ * Limits retries across every call that shares it so that an outage does not
+ * turn into a retry storm.
+ * <p/>
+ * The budget holds up to {@link #getMaxTokens()} tokens and starts full.  Each
+ * retry takes one token and each successful call puts back
+ * {@link #getTokenRatio()} of one.  Retries are refused while the budget is
+ * at or below half full, so in steady state retries cannot exceed that ratio
+ * of successful calls, and once the API stops answering at most half the
+ * tokens are spent on retries before calls fail straight away.
+ */
+public class RetryBudget {
+  public static final int DEFAULT_MAX_TOKENS = 10;
+  public static final double DEFAULT_TOKEN_RATIO = 0.1D;
+
+  private final int maxTokens;
+  private final double tokenRatio;
+  private double tokens;
+  private long retryCount;
+  private long rejectedCount;
+
+  public RetryBudget() {
+    this(DEFAULT_MAX_TOKENS, DEFAULT_TOKEN_RATIO);
+  }
+
+  /**
+   * @param maxTokens size of the budget
+   * @param tokenRatio part of a token each successful call puts back
+   */
+  public RetryBudget(final int maxTokens, final double tokenRatio) {
+    if(maxTokens < 1) {
+      throw new IllegalArgumentException("Max tokens must be at least 1 [" + maxTokens + "].");
+    }
+    if(tokenRatio <= 0D || tokenRatio > 1D) {
+      throw new IllegalArgumentException("Token ratio must be greater than 0 and at most 1 [" + tokenRatio + "].");
+    }
+    this.maxTokens = maxTokens;
+    this.tokenRatio = tokenRatio;
+    this.tokens = maxTokens;
+  }
+
+  public int getMaxTokens() {
+    return maxTokens;
+  }
+
+  public double getTokenRatio() {
+    return tokenRatio;
+  }
+
+  public synchronized double getTokens() {
+    return tokens;
+  }
+
+  /**
+   * @return number of retries the budget allowed
+   */
+  public synchronized long getRetryCount() {
+    return retryCount;
+  }
+
+  /**
+   * @return number of retries the budget refused
+   */
+  public synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  /**
+   * Take a token for a retry if the budget allows one.
+   *
+   * @return true if the call may be retried
+   */
+  public synchronized boolean tryAcquire() {
+    if(tokens <= maxTokens / 2D) {
+      rejectedCount++;
+      return false;
+    }
+    tokens -= 1D;
+    retryCount++;
+    return true;
+  }
+
+  /**
+   * Put back part of a token for a call that succeeded.
+   */
+  public synchronized void recordSuccess() {
+    tokens = Math.min(maxTokens, tokens + tokenRatio);
+  }
+}
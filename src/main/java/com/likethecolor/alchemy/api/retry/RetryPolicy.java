@@ -0,0 +1,242 @@
+/**
+ * File: RetryPolicy.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.retry;
+
+import com.likethecolor.alchemy.api.AlchemyApiException;
+import com.likethecolor.alchemy.api.breaker.CircuitOpenException;
+import com.likethecolor.alchemy.api.ratelimit.RateLimitExceededException;
+import com.likethecolor.alchemy.api.transport.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Decides whether a failed call is worth making again and how long to wait
+ * before doing so.
+ * <p/>
+ * Failures are either transient (another attempt may well succeed) or
+ * permanent:
+ * <ul>
+ *   <li>network errors and socket timeouts are transient</li>
+ *   <li>HTTP 429, 500, 502, 503 and 504 are transient, other HTTP errors are
+ *   permanent</li>
+ *   <li>an API error is transient if its statusInfo says the service is busy,
+ *   unavailable or timed out (see {@link #addTransientStatusInfo(String)}),
+ *   and permanent otherwise, e.g., daily-transaction-limit-exceeded or
+ *   unsupported-text-language</li>
+ *   <li>a call that ran out of time, was interrupted or was refused by the
+ *   client's rate limiter or circuit breaker is permanent</li>
+ * </ul>
+ * Attempt n waits a random time between 0 and
+ * min(maxBackoff, initialBackoff * 2^(n - 1)) (exponential backoff with full
+ * jitter) so that clients which failed together do not retry together.  Every
+ * retry also has to be allowed by the {@link RetryBudget}; share one policy
+ * between clients to share the budget.
+ */
+public class RetryPolicy {
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+  public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100L;
+  public static final long DEFAULT_MAX_BACKOFF_MILLIS = 5000L;
+  private static final String[] TRANSIENT_STATUS_INFO_MARKERS = {"busy", "unavailable", "timeout", "timed-out"};
+  private static final String[] PERMANENT_STATUS_INFOS = {
+      "daily-transaction-limit-exceeded",
+      "unsupported-text-language",
+      "invalid-api-key",
+      "content-exceeds-size-limit",
+      "page-is-not-html"
+  };
+  private static final int[] TRANSIENT_HTTP_STATUS_CODES = {429, 500, 502, 503, 504};
+  private static final int MAX_BACKOFF_SHIFT = 30;
+
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final Set<String> transientStatusInfos = new CopyOnWriteArraySet<String>();
+  private final Set<String> permanentStatusInfos = new CopyOnWriteArraySet<String>();
+  private final Random random = new Random();
+  private volatile RetryBudget retryBudget = new RetryBudget();
+
+  public RetryPolicy() {
+    this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+  }
+
+  /**
+   * @param maxAttempts number of times a call is made at most, including the first
+   * @param initialBackoffMillis upper bound of the wait before the first retry
+   * @param maxBackoffMillis upper bound of the wait before any retry
+   */
+  public RetryPolicy(final int maxAttempts, final long initialBackoffMillis, final long maxBackoffMillis) {
+    if(maxAttempts < 1) {
+      throw new IllegalArgumentException("Max attempts must be at least 1 [" + maxAttempts + "].");
+    }
+    if(initialBackoffMillis < 0) {
+      throw new IllegalArgumentException("Initial backoff cannot be negative [" + initialBackoffMillis + "].");
+    }
+    if(maxBackoffMillis < initialBackoffMillis) {
+      throw new IllegalArgumentException("Max backoff [" + maxBackoffMillis + "] cannot be less than the initial backoff [" + initialBackoffMillis + "].");
+    }
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    for(String statusInfo : PERMANENT_STATUS_INFOS) {
+      permanentStatusInfos.add(statusInfo);
+    }
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public long getInitialBackoffMillis() {
+    return initialBackoffMillis;
+  }
+
+  public long getMaxBackoffMillis() {
+    return maxBackoffMillis;
+  }
+
+  public RetryBudget getRetryBudget() {
+    return retryBudget;
+  }
+
+  public void setRetryBudget(final RetryBudget retryBudget) {
+    if(retryBudget == null) {
+      throw new IllegalArgumentException("Retry budget cannot be null.");
+    }
+    this.retryBudget = retryBudget;
+  }
+
+  /**
+   * Treat API errors with the given statusInfo as transient.
+   *
+   * @param statusInfo statusInfo returned by the API
+   */
+  public void addTransientStatusInfo(final String statusInfo) {
+    final String key = normalize(statusInfo);
+    permanentStatusInfos.remove(key);
+    transientStatusInfos.add(key);
+  }
+
+  /**
+   * Treat API errors with the given statusInfo as permanent.
+   *
+   * @param statusInfo statusInfo returned by the API
+   */
+  public void addPermanentStatusInfo(final String statusInfo) {
+    final String key = normalize(statusInfo);
+    transientStatusInfos.remove(key);
+    permanentStatusInfos.add(key);
+  }
+
+  /**
+   * @param e failure of a call
+   *
+   * @return true if another attempt at the call may succeed
+   */
+  public boolean isTransient(final IOException e) {
+    if(e instanceof AlchemyApiException) {
+      return isTransientStatusInfo(((AlchemyApiException) e).getStatusInfo());
+    }
+    if(e instanceof HttpStatusException) {
+      final int statusCode = ((HttpStatusException) e).getStatusCode();
+      for(int transientStatusCode : TRANSIENT_HTTP_STATUS_CODES) {
+        if(statusCode == transientStatusCode) {
+          return true;
+        }
+      }
+      return false;
+    }
+    // waiting longer would not help a call the rate limiter refused
+    if(e instanceof RateLimitExceededException) {
+      return false;
+    }
+    // the endpoint is refusing calls for a while, a quick retry would be too
+    if(e instanceof CircuitOpenException) {
+      return false;
+    }
+    // out of time or interrupted
+    if(e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Decide whether to make a call again.  Takes a token from the retry budget
+   * when the answer is yes.
+   *
+   * @param e failure of the last attempt
+   * @param attempt number of attempts made so far
+   *
+   * @return true if the call should be made again
+   */
+  public boolean shouldRetry(final IOException e, final int attempt) {
+    return attempt < maxAttempts && isTransient(e) && retryBudget.tryAcquire();
+  }
+
+  /**
+   * @param attempt number of attempts made so far
+   *
+   * @return milliseconds to wait before the next attempt
+   */
+  public long getBackoffMillis(final int attempt) {
+    final int shift = Math.min(Math.max(attempt - 1, 0), MAX_BACKOFF_SHIFT);
+    final long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << shift);
+    if(ceiling <= 0) {
+      return 0;
+    }
+    return (long) (random.nextDouble() * (ceiling + 1));
+  }
+
+  /**
+   * Tell the policy a call succeeded so the retry budget can refill.
+   */
+  public void recordSuccess() {
+    retryBudget.recordSuccess();
+  }
+
+  private boolean isTransientStatusInfo(final String statusInfo) {
+    if(statusInfo == null) {
+      return false;
+    }
+    final String key = normalize(statusInfo);
+    if(transientStatusInfos.contains(key)) {
+      return true;
+    }
+    if(permanentStatusInfos.contains(key)) {
+      return false;
+    }
+    for(String marker : TRANSIENT_STATUS_INFO_MARKERS) {
+      if(key.contains(marker)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String normalize(final String statusInfo) {
+    if(statusInfo == null) {
+      throw new IllegalArgumentException("Status info cannot be null.");
+    }
+    return statusInfo.trim().toLowerCase();
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * File: CallShedException.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.scheduler;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a {@link PriorityScheduler} sheds a call because the queue of
+ * its priority class is full or its executor rejected it.  The call was never
+ * sent.
+ */
+public class CallShedException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final Priority priority;
+
+  public CallShedException(final String message, final Priority priority) {
+    super(message);
+    this.priority = priority;
+  }
+
+  public Priority getPriority() {
+    return priority;
+  }
+}
@@ -0,0 +1,29 @@
+/**
+ * File: Priority.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.scheduler;
+
+/**
+ * Priority class of a call given to a {@link PriorityScheduler}.  Classes are
+ * declared from highest to lowest priority.
+ */
+public enum Priority {
+  /** a user is waiting for the call */
+  INTERACTIVE,
+  /** background work such as backfills that can wait or be shed */
+  BULK
+}
@@ -0,0 +1,348 @@
+/**
+ * File: PriorityScheduler.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.scheduler;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.async.CallFuture;
+import com.likethecolor.alchemy.api.async.CallListener;
+import com.likethecolor.alchemy.api.async.DaemonThreadFactory;
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.entity.AbstractAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Shares the capacity of a {@link Client} between calls of different
+ * {@link Priority} classes.
+ * <p/>
+ * At most {@link #getMaxConcurrent()} calls run at the same time.  Whenever
+ * one finishes the next call is taken from the highest priority class that
+ * has calls waiting, so interactive calls never queue behind bulk calls.  A
+ * class can also be held to fewer running calls (by default bulk calls may use
+ * {@link #DEFAULT_BULK_SHARE} of the capacity) so that an interactive call
+ * arriving while a backfill runs finds a free slot straight away.  Each class
+ * has its own bounded queue; a call submitted while its queue is full is shed
+ * with a {@link CallShedException} instead of adding to the backlog.
+ */
+public class PriorityScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PriorityScheduler.class);
+  private static final String THREAD_NAME_PREFIX = "alchemy-scheduler";
+  public static final int DEFAULT_MAX_QUEUE_DEPTH = 1000;
+  public static final double DEFAULT_BULK_SHARE = 0.75D;
+
+  private final Client client;
+  private final Priority[] priorities = Priority.values();
+  private final List<LinkedList<ScheduledCall<?>>> queues;
+  private final int[] maxQueueDepths = new int[priorities.length];
+  private final int[] maxRunning = new int[priorities.length];
+  private final int[] running = new int[priorities.length];
+  private final long[] shedCounts = new long[priorities.length];
+  private int maxConcurrent;
+  private int totalRunning;
+  private ExecutorService executorService;
+  private boolean isDefaultExecutorService;
+
+  public PriorityScheduler(final Client client) {
+    this(client, Client.DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * @param client client that makes the calls
+   * @param maxConcurrent maximum number of calls running at the same time
+   */
+  public PriorityScheduler(final Client client, final int maxConcurrent) {
+    if(client == null) {
+      throw new IllegalArgumentException("Client cannot be null.");
+    }
+    this.client = client;
+    queues = new ArrayList<LinkedList<ScheduledCall<?>>>(priorities.length);
+    for(Priority priority : priorities) {
+      queues.add(new LinkedList<ScheduledCall<?>>());
+      maxQueueDepths[priority.ordinal()] = DEFAULT_MAX_QUEUE_DEPTH;
+    }
+    setMaxConcurrent(maxConcurrent);
+  }
+
+  public Client getClient() {
+    return client;
+  }
+
+  /**
+   * Set the number of calls that may run at the same time.  Resets the limit
+   * of bulk calls to {@link #DEFAULT_BULK_SHARE} of it.
+   *
+   * @param maxConcurrent maximum number of calls running at the same time
+   */
+  public synchronized void setMaxConcurrent(final int maxConcurrent) {
+    if(maxConcurrent < 1) {
+      throw new IllegalArgumentException("Max concurrent must be at least 1 [" + maxConcurrent + "].");
+    }
+    this.maxConcurrent = maxConcurrent;
+    for(Priority priority : priorities) {
+      maxRunning[priority.ordinal()] = maxConcurrent;
+    }
+    maxRunning[Priority.BULK.ordinal()] = Math.max(1, (int) (maxConcurrent * DEFAULT_BULK_SHARE));
+    dispatch();
+  }
+
+  public synchronized int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  /**
+   * @param priority priority class
+   * @param maxConcurrent maximum number of calls of the class running at the
+   * same time; at most {@link #getMaxConcurrent()}
+   */
+  public synchronized void setMaxConcurrent(final Priority priority, final int maxConcurrent) {
+    if(maxConcurrent < 1 || maxConcurrent > this.maxConcurrent) {
+      throw new IllegalArgumentException("Max concurrent of " + priority + " must be between 1 and " + this.maxConcurrent + " [" + maxConcurrent + "].");
+    }
+    maxRunning[priority.ordinal()] = maxConcurrent;
+    dispatch();
+  }
+
+  public synchronized int getMaxConcurrent(final Priority priority) {
+    return maxRunning[priority.ordinal()];
+  }
+
+  /**
+   * @param priority priority class
+   * @param maxQueueDepth maximum number of calls of the class waiting to run;
+   * 0 sheds every call that cannot run right away
+   */
+  public synchronized void setMaxQueueDepth(final Priority priority, final int maxQueueDepth) {
+    if(maxQueueDepth < 0) {
+      throw new IllegalArgumentException("Max queue depth cannot be negative [" + maxQueueDepth + "].");
+    }
+    maxQueueDepths[priority.ordinal()] = maxQueueDepth;
+  }
+
+  public synchronized int getMaxQueueDepth(final Priority priority) {
+    return maxQueueDepths[priority.ordinal()];
+  }
+
+  /**
+   * @return number of calls of the class waiting to run
+   */
+  public synchronized int getQueueDepth(final Priority priority) {
+    return queues.get(priority.ordinal()).size();
+  }
+
+  /**
+   * @return number of calls of the class running
+   */
+  public synchronized int getRunningCount(final Priority priority) {
+    return running[priority.ordinal()];
+  }
+
+  /**
+   * @return number of calls of the class that were shed
+   */
+  public synchronized long getShedCount(final Priority priority) {
+    return shedCounts[priority.ordinal()];
+  }
+
+  /**
+   * Run the calls on the given executor instead of the default one.  The
+   * executor must be able to run {@link #getMaxConcurrent()} tasks at once.
+   * It is not shut down by {@link #shutdown()}.
+   *
+   * @param executorService executor that runs the calls
+   */
+  public synchronized void setExecutorService(final ExecutorService executorService) {
+    if(executorService == null) {
+      throw new IllegalArgumentException("Executor service cannot be null.");
+    }
+    if(isDefaultExecutorService) {
+      this.executorService.shutdown();
+    }
+    this.executorService = executorService;
+    this.isDefaultExecutorService = false;
+  }
+
+  /**
+   * Stop the default executor.  Calls that are running still complete.
+   */
+  public synchronized void shutdown() {
+    if(isDefaultExecutorService) {
+      executorService.shutdown();
+      executorService = null;
+      isDefaultExecutorService = false;
+    }
+  }
+
+  /**
+   * Make the call with the given priority and wait for its response.
+   *
+   * @param call call to make
+   * @param priority priority class of the call
+   *
+   * @return parsed response
+   *
+   * @throws CallShedException if the queue of the priority class is full
+   * @throws IOException if the call fails
+   */
+  public <T extends AbstractAlchemyEntity> Response<T> call(final AbstractCall<T> call, final Priority priority) throws IOException {
+    return submit(call, priority, null).getResponse();
+  }
+
+  /**
+   * Queue the call with the given priority.  If the queue of the priority
+   * class is full the returned future has already failed with a
+   * {@link CallShedException}.
+   *
+   * @param call call to make
+   * @param priority priority class of the call
+   * @param listener notified when the call completes; may be null
+   *
+   * @return future that completes with the parsed response
+   */
+  public <T extends AbstractAlchemyEntity> CallFuture<T> submit(final AbstractCall<T> call, final Priority priority, final CallListener<T> listener) {
+    if(call == null) {
+      throw new IllegalArgumentException("Call cannot be null.");
+    }
+    if(priority == null) {
+      throw new IllegalArgumentException("Priority cannot be null.");
+    }
+    final ScheduledCall<T> scheduledCall = new ScheduledCall<T>(call);
+    final CallFuture<T> future = scheduledCall.future;
+    if(listener != null) {
+      future.addListener(listener);
+    }
+    if(!enqueue(scheduledCall, priority)) {
+      LOGGER.debug("shedding " + priority + " call " + call.getName());
+      scheduledCall.shed(new CallShedException("Queue of " + priority + " calls is full.", priority));
+    }
+    return future;
+  }
+
+  private synchronized boolean enqueue(final ScheduledCall<?> scheduledCall, final Priority priority) {
+    final int index = priority.ordinal();
+    final boolean canRunNow = totalRunning < maxConcurrent && running[index] < maxRunning[index] && isNothingWaitingAbove(index);
+    if(!canRunNow && queues.get(index).size() >= maxQueueDepths[index]) {
+      shedCounts[index]++;
+      return false;
+    }
+    queues.get(index).addLast(scheduledCall);
+    dispatch();
+    return true;
+  }
+
+  private boolean isNothingWaitingAbove(final int index) {
+    for(int i = 0; i < index; i++) {
+      if(!queues.get(i).isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Start calls, highest priority first, while there is capacity.
+   */
+  private synchronized void dispatch() {
+    while(totalRunning < maxConcurrent) {
+      final int index = nextRunnable();
+      if(index < 0) {
+        return;
+      }
+      final ScheduledCall<?> scheduledCall = queues.get(index).removeFirst();
+      try {
+        getExecutorService().execute(new Runnable() {
+          public void run() {
+            try {
+              scheduledCall.future.run();
+            }
+            finally {
+              finished(index);
+            }
+          }
+        });
+      }
+      catch(RejectedExecutionException e) {
+        // the call never ran, so it takes no capacity
+        LOGGER.debug("executor rejected " + priorities[index] + " call " + scheduledCall.call.getName(), e);
+        shedCounts[index]++;
+        scheduledCall.shed(new CallShedException("Executor rejected the " + priorities[index] + " call.", priorities[index]));
+        continue;
+      }
+      running[index]++;
+      totalRunning++;
+    }
+  }
+
+  private int nextRunnable() {
+    for(int i = 0; i < priorities.length; i++) {
+      if(!queues.get(i).isEmpty() && running[i] < maxRunning[i]) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private synchronized void finished(final int index) {
+    running[index]--;
+    totalRunning--;
+    dispatch();
+  }
+
+  private synchronized ExecutorService getExecutorService() {
+    if(executorService == null) {
+      executorService = Executors.newCachedThreadPool(new DaemonThreadFactory(THREAD_NAME_PREFIX));
+      isDefaultExecutorService = true;
+    }
+    return executorService;
+  }
+
+  private class ScheduledCall<T extends AbstractAlchemyEntity> implements Callable<Response<T>> {
+    private final AbstractCall<T> call;
+    private final CallFuture<T> future;
+    private CallShedException shedException;
+
+    private ScheduledCall(final AbstractCall<T> call) {
+      this.call = call;
+      this.future = new CallFuture<T>(this);
+    }
+
+    /**
+     * Complete the future with the exception on this thread.
+     */
+    private void shed(final CallShedException exception) {
+      shedException = exception;
+      future.run();
+    }
+
+    public Response<T> call() throws IOException {
+      if(shedException != null) {
+        throw shedException;
+      }
+      return client.call(call);
+    }
+  }
+}
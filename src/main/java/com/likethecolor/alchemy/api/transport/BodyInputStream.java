@@ -0,0 +1,170 @@
+/**
+ * File: BodyInputStream.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads one response body off a connection's input stream.  Closing it never
+ * closes the connection; {@link #isComplete()} tells the caller whether the
+ * whole body was consumed and the connection can carry another request.
+ */
+abstract class BodyInputStream extends InputStream {
+  protected final InputStream in;
+  private final byte[] single = new byte[1];
+
+  BodyInputStream(final InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * @return true if the whole body has been read off the connection
+   */
+  abstract boolean isComplete();
+
+  @Override
+  public int read() throws IOException {
+    final int count = read(single, 0, 1);
+    return count == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public void close() {
+    // the connection is owned by the pool
+  }
+
+  /**
+   * Body with a known Content-Length.
+   */
+  static class FixedLength extends BodyInputStream {
+    private long remaining;
+
+    FixedLength(final InputStream in, final long length) {
+      super(in);
+      this.remaining = length;
+    }
+
+    @Override
+    boolean isComplete() {
+      return remaining == 0;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      if(remaining == 0) {
+        return -1;
+      }
+      final int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+      if(count == -1) {
+        throw new IOException("Connection closed with " + remaining + " bytes of the response body unread.");
+      }
+      remaining -= count;
+      return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+  }
+
+  /**
+   * Body sent with Transfer-Encoding: chunked.
+   */
+  static class Chunked extends BodyInputStream {
+    private long chunkRemaining;
+    private boolean isFirstChunk = true;
+    private boolean isComplete;
+
+    Chunked(final InputStream in) {
+      super(in);
+    }
+
+    @Override
+    boolean isComplete() {
+      return isComplete;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      if(isComplete) {
+        return -1;
+      }
+      if(chunkRemaining == 0) {
+        nextChunk();
+        if(isComplete) {
+          return -1;
+        }
+      }
+      final int count = in.read(buffer, offset, (int) Math.min(length, chunkRemaining));
+      if(count == -1) {
+        throw new IOException("Connection closed in the middle of a chunk.");
+      }
+      chunkRemaining -= count;
+      return count;
+    }
+
+    private void nextChunk() throws IOException {
+      if(!isFirstChunk) {
+        // the CRLF that ends the previous chunk's data
+        HttpLines.readLine(in);
+      }
+      isFirstChunk = false;
+
+      String sizeLine = HttpLines.readLine(in);
+      final int extension = sizeLine.indexOf(';');
+      if(extension != -1) {
+        sizeLine = sizeLine.substring(0, extension);
+      }
+      try {
+        chunkRemaining = Long.parseLong(sizeLine.trim(), 16);
+      }
+      catch(NumberFormatException e) {
+        throw new IOException("Invalid chunk size: " + sizeLine);
+      }
+      if(chunkRemaining == 0) {
+        // skip trailers
+        while(HttpLines.readLine(in).length() > 0) {
+          // keep reading
+        }
+        isComplete = true;
+      }
+    }
+  }
+
+  /**
+   * Body that ends when the server closes the connection.
+   */
+  static class UntilClose extends BodyInputStream {
+    UntilClose(final InputStream in) {
+      super(in);
+    }
+
+    @Override
+    boolean isComplete() {
+      // the connection cannot be reused
+      return false;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      return in.read(buffer, offset, length);
+    }
+  }
+}
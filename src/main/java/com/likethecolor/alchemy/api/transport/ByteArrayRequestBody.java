@@ -0,0 +1,40 @@
+/**
+ * File: ByteArrayRequestBody.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request body that is already in memory.
+ */
+class ByteArrayRequestBody implements RequestBody {
+  private final byte[] bytes;
+
+  ByteArrayRequestBody(final byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  public long getContentLength() {
+    return bytes.length;
+  }
+
+  public void writeTo(final OutputStream out) throws IOException {
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * File: ChunkedOutputStream.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a request body with chunked transfer encoding.  Every write becomes
+ * one chunk so callers should write through a buffer.  {@link #finish()}
+ * writes the last chunk; closing this stream does not close the connection.
+ */
+class ChunkedOutputStream extends FilterOutputStream {
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+  ChunkedOutputStream(final OutputStream out) {
+    super(out);
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+    if(length == 0) {
+      return;
+    }
+    out.write(Integer.toHexString(length).getBytes("ISO-8859-1"));
+    out.write(CRLF);
+    out.write(bytes, offset, length);
+    out.write(CRLF);
+  }
+
+  /**
+   * Write the zero length chunk that ends the body.
+   *
+   * @throws IOException if the stream cannot be written to
+   */
+  void finish() throws IOException {
+    out.write(LAST_CHUNK);
+  }
+
+  @Override
+  public void close() throws IOException {
+    // the connection stays open
+  }
+}
@@ -0,0 +1,465 @@
+/**
+ * File: ConnectionPool.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps HTTP/1.1 keep-alive sockets open between calls so that a call to the
+ * Alchemy API does not pay for a TCP (and TLS) handshake every time.
+ * <p/>
+ * At most {@link #getMaxConnectionsPerHost()} connections are open to a single
+ * host at any time; callers that need another one block until a connection is
+ * released.  Connections that have been idle for {@link #getIdleTimeoutMillis()}
+ * are closed the next time the pool is used or when {@link #evictIdleConnections()}
+ * is called.
+ * <p/>
+ * Connections go through the proxy that the {@link ProxySelector} picks for
+ * the url, {@link ProxySelector#getDefault()} unless another one is set, which
+ * honors the <code>http.proxyHost</code>, <code>https.proxyHost</code> and
+ * <code>socksProxyHost</code> system properties.  HTTPS goes through an HTTP
+ * proxy in a CONNECT tunnel.  Proxies that ask for authentication are not
+ * supported.
+ */
+public class ConnectionPool {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000L;
+  private static final String SCHEME_HTTPS = "https";
+  private static final String CHARSET_HEADER = "ISO-8859-1";
+  private static final String TUNNEL_ESTABLISHED = "200";
+
+  private final int maxConnectionsPerHost;
+  private final long idleTimeoutMillis;
+  private final Map<String, Route> routes = new HashMap<String, Route>();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private volatile boolean isClosed;
+  private volatile ProxySelector proxySelector;
+
+  public ConnectionPool() {
+    this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT_MILLIS);
+  }
+
+  public ConnectionPool(final int maxConnectionsPerHost, final long idleTimeoutMillis) {
+    if(maxConnectionsPerHost < 1) {
+      throw new IllegalArgumentException("Max connections per host must be at least 1 [" + maxConnectionsPerHost + "].");
+    }
+    if(idleTimeoutMillis < 0) {
+      throw new IllegalArgumentException("Idle timeout cannot be negative [" + idleTimeoutMillis + "].");
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public long getIdleTimeoutMillis() {
+    return idleTimeoutMillis;
+  }
+
+  /**
+   * @param proxySelector picks the proxy for each url; null to use
+   * {@link ProxySelector#getDefault()}
+   */
+  public void setProxySelector(final ProxySelector proxySelector) {
+    this.proxySelector = proxySelector;
+  }
+
+  public ProxySelector getProxySelector() {
+    return proxySelector;
+  }
+
+  /**
+   * @return number of times an idle connection was reused
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return number of times a new connection had to be opened
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return number of idle connections closed because they timed out
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return number of connections currently sitting idle in the pool
+   */
+  public int getIdleConnectionCount() {
+    int count = 0;
+    synchronized(routes) {
+      for(Route route : routes.values()) {
+        count += route.idle.size();
+      }
+    }
+    return count;
+  }
+
+  PooledConnection acquire(final URL url) throws IOException {
+    return acquire(url, 0, null);
+  }
+
+  /**
+   * Return a connection to the host of the given url, reusing an idle one if
+   * possible.  Blocks while {@link #getMaxConnectionsPerHost()} connections to
+   * that host are in use.
+   *
+   * @param url url that will be requested on the connection
+   * @param connectTimeoutMillis milliseconds to wait for a new connection to
+   * be established; 0 waits forever
+   * @param deadline deadline of the call or null; bounds both the wait for a
+   * free connection and the connect
+   *
+   * @return open connection to the host of the url
+   *
+   * @throws IOException if a new connection cannot be opened
+   */
+  PooledConnection acquire(final URL url, final int connectTimeoutMillis, final Deadline deadline) throws IOException {
+    if(isClosed) {
+      throw new IOException("Connection pool has been closed.");
+    }
+    final Proxy proxy = selectProxy(url);
+    final String key = getRouteKey(url, proxy);
+    final Route route = getRoute(key);
+    try {
+      if(deadline == null) {
+        route.permits.acquire();
+      }
+      else if(!route.permits.tryAcquire(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS)) {
+        throw deadline.exceededWhileQueued("waiting for a connection to " + key);
+      }
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a connection to " + key);
+    }
+
+    PooledConnection connection = pollIdle(route);
+    if(connection != null) {
+      hitCount.incrementAndGet();
+      connection.markReused();
+      return connection;
+    }
+
+    missCount.incrementAndGet();
+    try {
+      final int timeoutMillis = deadline == null
+                                ? connectTimeoutMillis
+                                : deadline.getTimeoutMillis(connectTimeoutMillis, "connecting to " + key);
+      final boolean isForwardedByProxy = proxy.type() == Proxy.Type.HTTP && !isHttps(url);
+      connection = new PooledConnection(key, connect(url, proxy, timeoutMillis), isForwardedByProxy);
+    }
+    catch(SocketTimeoutException e) {
+      route.permits.release();
+      if(deadline != null && deadline.isExpired()) {
+        throw deadline.exceeded("connecting to " + key);
+      }
+      throw e;
+    }
+    catch(IOException e) {
+      route.permits.release();
+      throw e;
+    }
+    catch(RuntimeException e) {
+      route.permits.release();
+      throw e;
+    }
+    return connection;
+  }
+
+  /**
+   * Give a connection back to the pool so that it can be reused.  The response
+   * on the connection must have been read completely.
+   *
+   * @param connection connection to return
+   */
+  void release(final PooledConnection connection) {
+    final Route route = getRoute(connection.getRoute());
+    connection.touch();
+    boolean isPooled = false;
+    if(!isClosed && connection.isOpen()) {
+      synchronized(route) {
+        if(route.idle.size() < maxConnectionsPerHost) {
+          route.idle.addFirst(connection);
+          isPooled = true;
+        }
+      }
+    }
+    if(!isPooled) {
+      connection.close();
+    }
+    route.permits.release();
+  }
+
+  /**
+   * Close a connection that cannot be reused (e.g., the response was not read
+   * completely or the server asked for the connection to be closed).
+   *
+   * @param connection connection to close
+   */
+  void discard(final PooledConnection connection) {
+    connection.close();
+    getRoute(connection.getRoute()).permits.release();
+  }
+
+  /**
+   * Close every connection that has been idle for longer than the idle timeout.
+   */
+  public void evictIdleConnections() {
+    final Route[] snapshot;
+    synchronized(routes) {
+      snapshot = routes.values().toArray(new Route[routes.size()]);
+    }
+    for(Route route : snapshot) {
+      evictExpired(route, System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Close every idle connection and refuse to hand out new ones.  Connections
+   * that are in use are closed when they are released.
+   */
+  public void close() {
+    isClosed = true;
+    final Route[] snapshot;
+    synchronized(routes) {
+      snapshot = routes.values().toArray(new Route[routes.size()]);
+    }
+    for(Route route : snapshot) {
+      synchronized(route) {
+        for(PooledConnection connection : route.idle) {
+          connection.close();
+        }
+        route.idle.clear();
+      }
+    }
+  }
+
+  /**
+   * Open a socket to the host of the url, through the proxy if there is one.
+   *
+   * @param url url that will be requested
+   * @param proxy proxy to go through; {@link Proxy#NO_PROXY} to connect
+   * directly
+   * @param connectTimeoutMillis milliseconds to wait for the connection (and
+   * proxy tunnel and TLS handshake); 0 waits forever
+   *
+   * @return connected socket
+   *
+   * @throws IOException if the socket cannot be connected
+   */
+  protected Socket connect(final URL url, final Proxy proxy, final int connectTimeoutMillis) throws IOException {
+    final String host = url.getHost();
+    final int port = getPort(url);
+    LOGGER.debug("opening connection to " + host + ":" + port + (proxy.type() == Proxy.Type.DIRECT ? "" : " via " + proxy));
+
+    Socket socket = proxy.type() == Proxy.Type.SOCKS ? new Socket(proxy) : new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      if(proxy.type() == Proxy.Type.HTTP) {
+        socket.connect(resolve((InetSocketAddress) proxy.address()), connectTimeoutMillis);
+        if(isHttps(url)) {
+          socket.setSoTimeout(connectTimeoutMillis);
+          openTunnel(socket, host, port);
+        }
+      }
+      else if(proxy.type() == Proxy.Type.SOCKS) {
+        // the proxy resolves the host
+        socket.connect(InetSocketAddress.createUnresolved(host, port), connectTimeoutMillis);
+      }
+      else {
+        socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+      }
+      if(isHttps(url)) {
+        socket.setSoTimeout(connectTimeoutMillis);
+        socket = startTls(socket, host, port);
+      }
+    }
+    catch(IOException e) {
+      socket.close();
+      throw e;
+    }
+    return socket;
+  }
+
+  private Proxy selectProxy(final URL url) {
+    final ProxySelector selector = proxySelector == null ? ProxySelector.getDefault() : proxySelector;
+    if(selector == null) {
+      return Proxy.NO_PROXY;
+    }
+    try {
+      final List<Proxy> proxies = selector.select(url.toURI());
+      if(proxies != null && !proxies.isEmpty()) {
+        return proxies.get(0);
+      }
+    }
+    catch(URISyntaxException e) {
+      LOGGER.debug("cannot select a proxy for " + url, e);
+    }
+    return Proxy.NO_PROXY;
+  }
+
+  private InetSocketAddress resolve(final InetSocketAddress address) {
+    if(address.isUnresolved()) {
+      return new InetSocketAddress(address.getHostName(), address.getPort());
+    }
+    return address;
+  }
+
+  /**
+   * Ask an HTTP proxy for a tunnel to the host.  The reply is read a byte at a
+   * time so that nothing after it, i.e., the start of the TLS handshake, is
+   * consumed.
+   */
+  private void openTunnel(final Socket socket, final String host, final int port) throws IOException {
+    final String authority = host + ":" + port;
+    final OutputStream out = socket.getOutputStream();
+    out.write(("CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\n\r\n").getBytes(CHARSET_HEADER));
+    out.flush();
+    final InputStream in = socket.getInputStream();
+    final String statusLine = HttpLines.readLine(in);
+    while(HttpLines.readLine(in).length() > 0) {
+      // skip the headers
+    }
+    final String[] parts = statusLine.split(" ", 3);
+    if(parts.length < 2 || !parts[1].equals(TUNNEL_ESTABLISHED)) {
+      throw new IOException("Proxy did not open a tunnel to " + authority + ": " + statusLine);
+    }
+  }
+
+  private Socket startTls(final Socket plainSocket, final String host, final int port) throws IOException {
+    final SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+    final SSLSocket sslSocket = (SSLSocket) factory.createSocket(plainSocket, host, port, true);
+    sslSocket.startHandshake();
+    if(!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+      sslSocket.close();
+      throw new SSLPeerUnverifiedException("Hostname " + host + " not verified.");
+    }
+    return sslSocket;
+  }
+
+  private PooledConnection pollIdle(final Route route) {
+    evictExpired(route, System.currentTimeMillis());
+    synchronized(route) {
+      while(!route.idle.isEmpty()) {
+        final PooledConnection connection = route.idle.removeFirst();
+        if(connection.isOpen()) {
+          return connection;
+        }
+        connection.close();
+      }
+    }
+    return null;
+  }
+
+  private void evictExpired(final Route route, final long nowMillis) {
+    synchronized(route) {
+      final Iterator<PooledConnection> iter = route.idle.iterator();
+      while(iter.hasNext()) {
+        final PooledConnection connection = iter.next();
+        if(connection.isExpired(nowMillis, idleTimeoutMillis)) {
+          iter.remove();
+          connection.close();
+          evictionCount.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  private Route getRoute(final String key) {
+    synchronized(routes) {
+      Route route = routes.get(key);
+      if(route == null) {
+        route = new Route(maxConnectionsPerHost);
+        routes.put(key, route);
+      }
+      return route;
+    }
+  }
+
+  static String getRouteKey(final URL url) {
+    return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + getPort(url);
+  }
+
+  static String getRouteKey(final URL url, final Proxy proxy) {
+    if(proxy.type() == Proxy.Type.DIRECT) {
+      return getRouteKey(url);
+    }
+    return getRouteKey(url) + " via " + proxy;
+  }
+
+  private static boolean isHttps(final URL url) {
+    return SCHEME_HTTPS.equalsIgnoreCase(url.getProtocol());
+  }
+
+  static int getPort(final URL url) {
+    return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+  }
+
+  /**
+   * Connections to a single scheme/host/port.  The idle list is used as a
+   * stack so the most recently used (and least likely to be stale) connection
+   * is handed out first.
+   */
+  private static class Route {
+    private final Semaphore permits;
+    private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+
+    private Route(final int maxConnections) {
+      permits = new Semaphore(maxConnections, true);
+    }
+  }
+}
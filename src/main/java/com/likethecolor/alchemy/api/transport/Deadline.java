@@ -0,0 +1,120 @@
+/**
+ * File: Deadline.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+/**
+ * Point in time by which a call has to be done.  The deadline covers every
+ * step of the call (waiting for a connection, connecting, sending the request,
+ * reading the response and parsing it); each blocking step is given only the
+ * time that is left.
+ */
+public final class Deadline {
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  private final long budgetMillis;
+  private final long deadlineNanos;
+
+  private Deadline(final long budgetMillis) {
+    this.budgetMillis = budgetMillis;
+    this.deadlineNanos = System.nanoTime() + budgetMillis * NANOS_PER_MILLI;
+  }
+
+  /**
+   * @param budgetMillis milliseconds from now until the deadline
+   *
+   * @return deadline that passes budgetMillis from now
+   */
+  public static Deadline after(final long budgetMillis) {
+    if(budgetMillis < 1) {
+      throw new IllegalArgumentException("Deadline budget must be at least 1 millisecond [" + budgetMillis + "].");
+    }
+    return new Deadline(budgetMillis);
+  }
+
+  public long getBudgetMillis() {
+    return budgetMillis;
+  }
+
+  /**
+   * @return milliseconds left before the deadline, rounded up; 0 once it has passed
+   */
+  public long getRemainingMillis() {
+    final long remainingNanos = deadlineNanos - System.nanoTime();
+    if(remainingNanos <= 0) {
+      return 0;
+    }
+    return (remainingNanos + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI;
+  }
+
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * @param step what the call was doing, used in the exception message
+   *
+   * @throws DeadlineExceededException if the deadline has passed
+   */
+  public void check(final String step) throws DeadlineExceededException {
+    if(isExpired()) {
+      throw exceeded(step);
+    }
+  }
+
+  /**
+   * Return the socket timeout to use for the next blocking step: the smaller
+   * of the configured timeout and the time left.
+   *
+   * @param timeoutMillis configured timeout; 0 means none
+   * @param step what the call is about to do, used in the exception message
+   *
+   * @return timeout in milliseconds, always at least 1
+   *
+   * @throws DeadlineExceededException if the deadline has passed
+   */
+  public int getTimeoutMillis(final int timeoutMillis, final String step) throws DeadlineExceededException {
+    final long remainingMillis = getRemainingMillis();
+    if(remainingMillis == 0) {
+      throw exceeded(step);
+    }
+    if(timeoutMillis > 0 && timeoutMillis < remainingMillis) {
+      return timeoutMillis;
+    }
+    return (int) Math.min(remainingMillis, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param step what the call was doing, used in the exception message
+   *
+   * @return exception reporting that the deadline passed during the step
+   */
+  public DeadlineExceededException exceeded(final String step) {
+    return new DeadlineExceededException("Call deadline of " + budgetMillis + " ms exceeded while " + step + ".", budgetMillis);
+  }
+
+  /**
+   * @param step what the call was waiting for on this side, used in the
+   * exception message
+   *
+   * @return exception reporting that the deadline passed before the call
+   * reached the endpoint
+   */
+  public DeadlineExceededException exceededWhileQueued(final String step) {
+    return new DeadlineExceededException("Call deadline of " + budgetMillis + " ms exceeded while " + step + ".", budgetMillis, true);
+  }
+}
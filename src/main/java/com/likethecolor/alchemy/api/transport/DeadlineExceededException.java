@@ -0,0 +1,62 @@
+/**
+ * File: DeadlineExceededException.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown when a call runs past its {@link Deadline}.  Unlike a plain
+ * {@link java.net.SocketTimeoutException}, which only means one read or
+ * connect was slow, this means the whole budget for the call is spent.
+ */
+public class DeadlineExceededException extends InterruptedIOException {
+  private static final long serialVersionUID = 1L;
+
+  private final long budgetMillis;
+  private final boolean isQueued;
+
+  public DeadlineExceededException(final String message, final long budgetMillis) {
+    this(message, budgetMillis, false);
+  }
+
+  /**
+   * @param isQueued true if the deadline ran out while the call waited its
+   * turn on this side, before it reached the endpoint
+   */
+  public DeadlineExceededException(final String message, final long budgetMillis, final boolean isQueued) {
+    super(message);
+    this.budgetMillis = budgetMillis;
+    this.isQueued = isQueued;
+  }
+
+  /**
+   * @return time the call was allowed to take, in milliseconds
+   */
+  public long getBudgetMillis() {
+    return budgetMillis;
+  }
+
+  /**
+   * @return true if the deadline ran out while the call waited for a rate
+   * limit permit, a concurrency slot or a connection, which says nothing
+   * about the endpoint
+   */
+  public boolean isQueued() {
+    return isQueued;
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * File: HttpLines.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads CRLF terminated lines (status line, headers, chunk sizes) off a
+ * connection.
+ */
+final class HttpLines {
+  private static final int MAX_LINE_LENGTH = 65536;
+
+  private HttpLines() {
+  }
+
+  /**
+   * Read a line as ISO-8859-1 without the trailing CRLF (or LF).
+   *
+   * @param in stream to read from
+   *
+   * @return line without the line terminator
+   *
+   * @throws IOException if the stream ends before a line terminator is found
+   */
+  static String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int b;
+    while((b = in.read()) != -1) {
+      if(b == '\n') {
+        final int length = line.length();
+        if(length > 0 && line.charAt(length - 1) == '\r') {
+          line.setLength(length - 1);
+        }
+        return line.toString();
+      }
+      if(line.length() >= MAX_LINE_LENGTH) {
+        throw new IOException("HTTP line exceeds " + MAX_LINE_LENGTH + " characters.");
+      }
+      line.append((char) b);
+    }
+    throw new EOFException("Connection closed while reading HTTP line.");
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * File: HttpRequest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single HTTP request to the Alchemy API.
+ */
+public class HttpRequest {
+  public static final String METHOD_GET = "GET";
+  public static final String METHOD_POST = "POST";
+
+  private final String method;
+  private final URL url;
+  private final Map<String, String> headers = new LinkedHashMap<String, String>();
+  private RequestBody body;
+  private int connectTimeoutMillis;
+  private int readTimeoutMillis;
+  private Deadline deadline;
+  private PooledConnection connection;
+  private boolean isAborted;
+
+  public HttpRequest(final String method, final URL url) {
+    this.method = method;
+    this.url = url;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public URL getUrl() {
+    return url;
+  }
+
+  public HttpRequest setHeader(final String name, final String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  public String getHeader(final String name) {
+    for(Map.Entry<String, String> header : headers.entrySet()) {
+      if(header.getKey().equalsIgnoreCase(name)) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  public Map<String, String> getHeaders() {
+    return Collections.unmodifiableMap(headers);
+  }
+
+  public HttpRequest setBody(final byte[] body) {
+    this.body = body == null ? null : new ByteArrayRequestBody(body);
+    return this;
+  }
+
+  public HttpRequest setBody(final RequestBody body) {
+    this.body = body;
+    return this;
+  }
+
+  public RequestBody getBody() {
+    return body;
+  }
+
+  /**
+   * @param connectTimeoutMillis milliseconds to wait for a new connection to
+   * be established; 0 waits forever
+   *
+   * @return this request
+   */
+  public HttpRequest setConnectTimeoutMillis(final int connectTimeoutMillis) {
+    if(connectTimeoutMillis < 0) {
+      throw new IllegalArgumentException("Connect timeout cannot be negative [" + connectTimeoutMillis + "].");
+    }
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    return this;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  /**
+   * @param readTimeoutMillis milliseconds to wait for any single read from
+   * the connection; 0 waits forever
+   *
+   * @return this request
+   */
+  public HttpRequest setReadTimeoutMillis(final int readTimeoutMillis) {
+    if(readTimeoutMillis < 0) {
+      throw new IllegalArgumentException("Read timeout cannot be negative [" + readTimeoutMillis + "].");
+    }
+    this.readTimeoutMillis = readTimeoutMillis;
+    return this;
+  }
+
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  /**
+   * @param deadline time by which the whole exchange must be done; null for none
+   *
+   * @return this request
+   */
+  public HttpRequest setDeadline(final Deadline deadline) {
+    this.deadline = deadline;
+    return this;
+  }
+
+  public Deadline getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * Give up on the request from another thread.  The connection it is using,
+   * if any, is closed so a blocked write or read fails right away and the
+   * connection is not reused.
+   */
+  public synchronized void abort() {
+    isAborted = true;
+    if(connection != null) {
+      connection.close();
+    }
+  }
+
+  public synchronized boolean isAborted() {
+    return isAborted;
+  }
+
+  /**
+   * @param connection connection the request is using; null once the
+   * connection has been handed back to its pool
+   *
+   * @return false if the request was aborted, in which case the connection
+   * has been closed
+   */
+  synchronized boolean setConnection(final PooledConnection connection) {
+    if(isAborted) {
+      if(connection != null) {
+        connection.close();
+      }
+      this.connection = null;
+      return false;
+    }
+    this.connection = connection;
+    return true;
+  }
+}
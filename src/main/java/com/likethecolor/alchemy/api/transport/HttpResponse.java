@@ -0,0 +1,72 @@
+/**
+ * File: HttpResponse.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The status, headers and body of an HTTP response.  The body must be closed
+ * (either directly or with {@link #close()}) so that the underlying connection
+ * can be reused or released.
+ */
+public class HttpResponse implements Closeable {
+  private final int statusCode;
+  private final Map<String, String> headers;
+  private final InputStream body;
+
+  /**
+   * @param statusCode HTTP status code
+   * @param headers response headers; names are matched case insensitively
+   * @param body response body
+   */
+  public HttpResponse(final int statusCode, final Map<String, String> headers, final InputStream body) {
+    this.statusCode = statusCode;
+    this.headers = new HashMap<String, String>();
+    if(headers != null) {
+      for(Map.Entry<String, String> header : headers.entrySet()) {
+        this.headers.put(header.getKey().toLowerCase(), header.getValue());
+      }
+    }
+    this.body = body;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public String getHeader(final String name) {
+    return headers.get(name.toLowerCase());
+  }
+
+  public Map<String, String> getHeaders() {
+    return Collections.unmodifiableMap(headers);
+  }
+
+  public InputStream getInputStream() {
+    return body;
+  }
+
+  public void close() throws IOException {
+    body.close();
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * File: LoopbackTransport.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import com.likethecolor.alchemy.api.Constants;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process transport that never touches the network.  It answers each
+ * request with canned JSON registered for the endpoint name (one of the
+ * <code>Constants.CALL_NAME_*</code> values, e.g. {@link Constants#CALL_NAME_RANKED_NAMED_ENTITIES}),
+ * regardless of the call type prefix (URL, Text, HTML).
+ * <p/>
+ * Useful for benchmarking and load testing the encode, send and parse path of
+ * the client at full CPU speed.
+ */
+public class LoopbackTransport implements Transport {
+  private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+  private static final String HEADER_CONTENT_TYPE = "Content-Type";
+  private static final String CONTENT_TYPE_JSON = "application/json";
+  private static final int HTTP_OK = 200;
+  private static final String[] CALL_TYPE_PREFIXES = {
+      Constants.CALL_TYPE_PREFIX_URL,
+      Constants.CALL_TYPE_PREFIX_TEXT,
+      Constants.CALL_TYPE_PREFIX_HTML
+  };
+
+  private final Map<String, byte[]> responses = new ConcurrentHashMap<String, byte[]>();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong requestBytes = new AtomicLong();
+  private volatile long latencyMillis;
+
+  /**
+   * Register the JSON returned for an endpoint.
+   *
+   * @param callName endpoint name without the call type prefix, e.g. {@link Constants#CALL_NAME_TITLE}
+   * @param json body returned for every call to the endpoint
+   *
+   * @return this transport
+   */
+  public LoopbackTransport setResponse(final String callName, final String json) {
+    if(callName == null) {
+      throw new IllegalArgumentException("Call name cannot be null.");
+    }
+    if(json == null) {
+      throw new IllegalArgumentException("JSON cannot be null.");
+    }
+    try {
+      responses.put(callName, json.getBytes(Constants.DEFAULT_ENCODING));
+    }
+    catch(UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Wait before answering each request, to stand in for the network and the
+   * API when measuring how the client behaves under concurrency.
+   *
+   * @param latencyMillis milliseconds to wait; 0 to answer right away
+   *
+   * @return this transport
+   */
+  public LoopbackTransport setLatencyMillis(final long latencyMillis) {
+    if(latencyMillis < 0) {
+      throw new IllegalArgumentException("Latency cannot be negative [" + latencyMillis + "].");
+    }
+    this.latencyMillis = latencyMillis;
+    return this;
+  }
+
+  public long getLatencyMillis() {
+    return latencyMillis;
+  }
+
+  /**
+   * @return number of requests served
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return total size of the request bodies received
+   */
+  public long getRequestBytes() {
+    return requestBytes.get();
+  }
+
+  public HttpResponse execute(final HttpRequest request) throws IOException {
+    final String callName = getCallName(request.getUrl().getPath());
+    final byte[] json = responses.get(callName);
+    if(json == null) {
+      throw new IOException("No loopback response registered for call: " + callName + " (URL: " + request.getUrl() + ")");
+    }
+
+    if(request.getDeadline() != null) {
+      request.getDeadline().check("sending the request to " + request.getUrl());
+    }
+    if(latencyMillis > 0) {
+      try {
+        Thread.sleep(latencyMillis);
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while simulating latency.");
+      }
+    }
+    requestCount.incrementAndGet();
+    if(request.getBody() != null) {
+      // write the body out so that encoding it is part of the measured path
+      final CountingSink sink = new CountingSink();
+      request.getBody().writeTo(sink);
+      requestBytes.addAndGet(sink.count);
+    }
+
+    final Map<String, String> headers = new HashMap<String, String>();
+    headers.put(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON);
+    headers.put(HEADER_CONTENT_LENGTH, Integer.toString(json.length));
+    return new HttpResponse(HTTP_OK, Collections.unmodifiableMap(headers), new ByteArrayInputStream(json));
+  }
+
+  /**
+   * Return the endpoint name from the last path segment, e.g.
+   * /calls/url/URLGetTitle becomes GetTitle.
+   *
+   * @param path url path
+   *
+   * @return endpoint name without the call type prefix
+   */
+  static String getCallName(final String path) {
+    String name = path.substring(path.lastIndexOf('/') + 1);
+    for(String prefix : CALL_TYPE_PREFIXES) {
+      if(name.startsWith(prefix)) {
+        name = name.substring(prefix.length());
+        break;
+      }
+    }
+    return name;
+  }
+
+  /**
+   * Discards everything written to it, keeping only the number of bytes.
+   */
+  private static class CountingSink extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(final int b) {
+      count++;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+      count += length;
+    }
+  }
+}
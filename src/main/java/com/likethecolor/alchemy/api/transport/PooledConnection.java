@@ -0,0 +1,156 @@
+/**
+ * File: PooledConnection.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * A socket owned by a {@link ConnectionPool}.  Connections are handed out by
+ * {@link ConnectionPool#acquire(java.net.URL)} and must be given back with
+ * either {@link ConnectionPool#release(PooledConnection)} (the connection can
+ * carry another request) or {@link ConnectionPool#discard(PooledConnection)}.
+ */
+class PooledConnection {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String route;
+  private final Socket socket;
+  private final boolean isForwardedByProxy;
+  private final InputStream inputStream;
+  private final OutputStream outputStream;
+  private long lastUsedMillis;
+  private boolean isReused;
+
+  PooledConnection(final String route, final Socket socket) throws IOException {
+    this(route, socket, false);
+  }
+
+  /**
+   * @param route key of the route the connection belongs to
+   * @param socket connected socket
+   * @param isForwardedByProxy true if the socket goes to an HTTP proxy that
+   * forwards each request, rather than to the host or through a tunnel
+   */
+  PooledConnection(final String route, final Socket socket, final boolean isForwardedByProxy) throws IOException {
+    this.route = route;
+    this.socket = socket;
+    this.isForwardedByProxy = isForwardedByProxy;
+    this.inputStream = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+    this.outputStream = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    this.lastUsedMillis = System.currentTimeMillis();
+  }
+
+  String getRoute() {
+    return route;
+  }
+
+  Socket getSocket() {
+    return socket;
+  }
+
+  InputStream getInputStream() {
+    return inputStream;
+  }
+
+  OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  /**
+   * @return true if requests on this connection must name the full url
+   */
+  boolean isForwardedByProxy() {
+    return isForwardedByProxy;
+  }
+
+  /**
+   * @return true if this connection already carried at least one request
+   */
+  boolean isReused() {
+    return isReused;
+  }
+
+  void markReused() {
+    isReused = true;
+  }
+
+  void touch() {
+    lastUsedMillis = System.currentTimeMillis();
+  }
+
+  boolean isExpired(final long nowMillis, final long idleTimeoutMillis) {
+    return nowMillis - lastUsedMillis >= idleTimeoutMillis;
+  }
+
+  long getIdleMillis(final long nowMillis) {
+    return nowMillis - lastUsedMillis;
+  }
+
+  /**
+   * Check whether the server closed the connection, with a read that waits at
+   * most a millisecond.  Bytes the server sent unasked also make the
+   * connection unusable.
+   *
+   * @return true if the connection cannot carry another request
+   */
+  boolean isStale() {
+    try {
+      if(inputStream.available() > 0) {
+        return true;
+      }
+      final int timeoutMillis = socket.getSoTimeout();
+      socket.setSoTimeout(1);
+      try {
+        inputStream.read();
+        return true;
+      }
+      finally {
+        socket.setSoTimeout(timeoutMillis);
+      }
+    }
+    catch(SocketTimeoutException e) {
+      // nothing to read, the connection is still open
+      return false;
+    }
+    catch(IOException e) {
+      return true;
+    }
+  }
+
+  boolean isOpen() {
+    return !socket.isClosed()
+           && socket.isConnected()
+           && !socket.isInputShutdown()
+           && !socket.isOutputShutdown();
+  }
+
+  void close() {
+    try {
+      socket.close();
+    }
+    catch(IOException e) {
+      // ignore
+    }
+  }
+}
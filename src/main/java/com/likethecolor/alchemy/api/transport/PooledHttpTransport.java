@@ -0,0 +1,490 @@
+/**
+ * File: PooledHttpTransport.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import com.likethecolor.alchemy.api.async.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speaks HTTP/1.1 over keep-alive connections borrowed from a
+ * {@link ConnectionPool}.  A connection goes back to the pool once the
+ * response body has been read to the end and closed.
+ */
+public class PooledHttpTransport implements Transport {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PooledHttpTransport.class);
+  private static final String CHARSET_HEADER = "ISO-8859-1";
+  private static final String CRLF = "\r\n";
+  private static final String HTTP_1_0 = "HTTP/1.0";
+  private static final String HEADER_CONNECTION = "Connection";
+  private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+  private static final String HEADER_CONTENT_TYPE = "Content-Type";
+  private static final String HEADER_LOCATION = "Location";
+  private static final String HEADER_HOST = "Host";
+  private static final String HEADER_TRANSFER_ENCODING = "Transfer-Encoding";
+  private static final String CONNECTION_CLOSE = "close";
+  private static final String CONNECTION_KEEP_ALIVE = "keep-alive";
+  private static final String TRANSFER_ENCODING_CHUNKED = "chunked";
+  private static final int CHUNK_SIZE = 8192;
+  private static final String READING_RESPONSE = "reading the response";
+  private static final int HTTP_CONTINUE = 100;
+  private static final int HTTP_NO_CONTENT = 204;
+  private static final int HTTP_MOVED_PERMANENTLY = 301;
+  private static final int HTTP_FOUND = 302;
+  private static final int HTTP_SEE_OTHER = 303;
+  private static final int HTTP_TEMPORARY_REDIRECT = 307;
+  private static final int HTTP_PERMANENT_REDIRECT = 308;
+  private static final int HTTP_NOT_MODIFIED = 304;
+  private static final int HTTP_BAD_REQUEST = 400;
+  private static final String METHOD_HEAD = "HEAD";
+  static final long STALE_CHECK_AFTER_IDLE_MILLIS = 1000L;
+  public static final int MAX_REDIRECTS = 20;
+  private static final String WATCHDOG_THREAD_NAME_PREFIX = "alchemy-write-watchdog";
+
+  /**
+   * The socket timeout only bounds reads, so a request body the server does
+   * not read is stopped by closing the connection when the deadline runs out.
+   */
+  private static final ScheduledExecutorService WATCHDOG_EXECUTOR_SERVICE = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(WATCHDOG_THREAD_NAME_PREFIX));
+
+  private final ConnectionPool connectionPool;
+
+  public PooledHttpTransport() {
+    this(new ConnectionPool());
+  }
+
+  public PooledHttpTransport(final ConnectionPool connectionPool) {
+    if(connectionPool == null) {
+      throw new IllegalArgumentException("Connection pool cannot be null.");
+    }
+    this.connectionPool = connectionPool;
+  }
+
+  public ConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  /**
+   * Send the request and read the response status and headers.  The body of
+   * the returned response is streamed off the connection.  Redirects to the
+   * same protocol are followed, up to {@link #MAX_REDIRECTS}; a 301, 302 or
+   * 303 redirect of a request other than GET or HEAD is followed with a GET
+   * without body.
+   *
+   * @param request request to send
+   *
+   * @return response whose body must be closed by the caller
+   *
+   * @throws IOException if the request fails or the server answers with an
+   * HTTP error status
+   */
+  public HttpResponse execute(final HttpRequest request) throws IOException {
+    Target target = new Target(request.getMethod(), request.getUrl(), request.getBody());
+    int redirects = 0;
+    while(true) {
+      final HttpResponse response = send(request, target);
+      final Target redirect = getRedirect(response, target);
+      if(redirect == null) {
+        if(response.getStatusCode() >= HTTP_BAD_REQUEST) {
+          drain(response.getInputStream());
+          response.close();
+          throw new HttpStatusException(response.getStatusCode(), "Server returned HTTP response code: " + response.getStatusCode() + " for URL: " + target.url);
+        }
+        return response;
+      }
+      drain(response.getInputStream());
+      response.close();
+      if(++redirects > MAX_REDIRECTS) {
+        throw new ProtocolException("Server redirected too many times (" + MAX_REDIRECTS + ") for URL: " + request.getUrl());
+      }
+      LOGGER.debug("following redirect from " + target.url + " to " + redirect.url);
+      target = redirect;
+    }
+  }
+
+  private HttpResponse send(final HttpRequest request, final Target target) throws IOException {
+    while(true) {
+      final PooledConnection connection = connectionPool.acquire(target.url, request.getConnectTimeoutMillis(), request.getDeadline());
+      // a request that is not safe to send twice is not retried, so check
+      // that a connection that sat idle for a while is still open first
+      if(connection.isReused() && !isSafe(target.method)
+         && connection.getIdleMillis(System.currentTimeMillis()) >= STALE_CHECK_AFTER_IDLE_MILLIS
+         && connection.isStale()) {
+        LOGGER.debug("stale pooled connection to " + connection.getRoute() + ", opening another");
+        connectionPool.discard(connection);
+        continue;
+      }
+      if(!request.setConnection(connection)) {
+        connectionPool.discard(connection);
+        throw aborted(request);
+      }
+      final boolean[] isResponseStarted = {false};
+      try {
+        return exchange(connection, request, target, isResponseStarted);
+      }
+      catch(IOException e) {
+        request.setConnection(null);
+        connectionPool.discard(connection);
+        if(request.isAborted()) {
+          throw aborted(request);
+        }
+        final Deadline deadline = request.getDeadline();
+        if(e instanceof SocketTimeoutException && deadline != null && deadline.isExpired()) {
+          throw deadline.exceeded("waiting for the response from " + target.url);
+        }
+        // a pooled connection may have been closed by the server while idle,
+        // but the request may also have reached it, so only a request that
+        // is safe to send twice is sent again.  a timeout means the server is
+        // slow, not that the connection is stale
+        if(!connection.isReused() || isResponseStarted[0] || e instanceof InterruptedIOException || !isSafe(target.method)) {
+          throw e;
+        }
+        LOGGER.debug("stale pooled connection to " + connection.getRoute() + ", retrying", e);
+      }
+      catch(RuntimeException e) {
+        request.setConnection(null);
+        connectionPool.discard(connection);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * @return where the response redirects to or null if it is not a redirect
+   * that is followed
+   */
+  private Target getRedirect(final HttpResponse response, final Target target) throws IOException {
+    final int statusCode = response.getStatusCode();
+    final String location = response.getHeader(HEADER_LOCATION);
+    if(location == null || (statusCode != HTTP_MOVED_PERMANENTLY && statusCode != HTTP_FOUND && statusCode != HTTP_SEE_OTHER
+                            && statusCode != HTTP_TEMPORARY_REDIRECT && statusCode != HTTP_PERMANENT_REDIRECT)) {
+      return null;
+    }
+    final URL url = new URL(target.url, location);
+    // like HttpURLConnection, never switch protocols
+    if(!url.getProtocol().equalsIgnoreCase(target.url.getProtocol())) {
+      return null;
+    }
+    if(statusCode == HTTP_TEMPORARY_REDIRECT || statusCode == HTTP_PERMANENT_REDIRECT || isSafe(target.method)) {
+      return new Target(target.method, url, target.body);
+    }
+    return new Target(HttpRequest.METHOD_GET, url, null);
+  }
+
+  /**
+   * @return true if sending the request twice has the same effect as sending
+   * it once
+   */
+  private boolean isSafe(final String method) {
+    return HttpRequest.METHOD_GET.equals(method) || METHOD_HEAD.equals(method);
+  }
+
+  private InterruptedIOException aborted(final HttpRequest request) {
+    return new InterruptedIOException("Request to " + request.getUrl() + " was aborted.");
+  }
+
+  private HttpResponse exchange(final PooledConnection connection, final HttpRequest request, final Target target, final boolean[] isResponseStarted) throws IOException {
+    final String sendingStep = "sending the request to " + target.url;
+    connection.getSocket().setSoTimeout(getReadTimeoutMillis(request, sendingStep));
+    final Deadline deadline = request.getDeadline();
+    final ScheduledFuture<?> watchdog = deadline == null ? null : startWatchdog(connection, deadline);
+    try {
+      writeRequest(connection, request, target);
+    }
+    catch(IOException e) {
+      if(deadline != null && deadline.isExpired()) {
+        throw deadline.exceeded(sendingStep);
+      }
+      throw e;
+    }
+    finally {
+      if(watchdog != null) {
+        watchdog.cancel(false);
+      }
+    }
+    if(deadline != null) {
+      connection.getSocket().setSoTimeout(getReadTimeoutMillis(request, "waiting for the response from " + target.url));
+    }
+
+    final InputStream in = connection.getInputStream();
+    final int firstByte = in.read();
+    if(firstByte == -1) {
+      throw new IOException("Connection closed before a response was received.");
+    }
+    isResponseStarted[0] = true;
+
+    String statusLine = (char) firstByte + HttpLines.readLine(in);
+    int statusCode = parseStatusCode(statusLine);
+    Map<String, String> headers = readHeaders(in);
+    while(statusCode == HTTP_CONTINUE) {
+      statusLine = HttpLines.readLine(in);
+      statusCode = parseStatusCode(statusLine);
+      headers = readHeaders(in);
+    }
+
+    final boolean isKeepAlive = isKeepAlive(statusLine, headers);
+    final BodyInputStream body = createBody(in, statusCode, headers);
+    final InputStream releasingBody = new ConnectionReleasingInputStream(body, connection, isKeepAlive, request);
+    return new HttpResponse(statusCode, headers, releasingBody);
+  }
+
+  /**
+   * @return task that closes the connection once the deadline runs out, to be
+   * cancelled when the request is written
+   */
+  private ScheduledFuture<?> startWatchdog(final PooledConnection connection, final Deadline deadline) {
+    return WATCHDOG_EXECUTOR_SERVICE.schedule(new Runnable() {
+      public void run() {
+        LOGGER.debug("deadline ran out while sending the request to " + connection.getRoute() + ", closing the connection");
+        connection.close();
+      }
+    }, deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private int getReadTimeoutMillis(final HttpRequest request, final String step) throws DeadlineExceededException {
+    if(request.getDeadline() == null) {
+      return request.getReadTimeoutMillis();
+    }
+    return request.getDeadline().getTimeoutMillis(request.getReadTimeoutMillis(), step);
+  }
+
+  private void writeRequest(final PooledConnection connection, final HttpRequest request, final Target target) throws IOException {
+    final OutputStream out = connection.getOutputStream();
+    final URL url = target.url;
+    final RequestBody body = target.body;
+    final boolean isChunked = body != null && body.getContentLength() < 0;
+
+    final StringBuilder head = new StringBuilder()
+        .append(target.method).append(' ').append(getRequestTarget(connection, url)).append(" HTTP/1.1").append(CRLF)
+        .append(HEADER_HOST).append(": ").append(getHostHeader(url)).append(CRLF)
+        .append(HEADER_CONNECTION).append(": ").append(CONNECTION_KEEP_ALIVE).append(CRLF);
+    for(Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      // a redirect may have dropped the body
+      if(body == null && (HEADER_CONTENT_LENGTH.equalsIgnoreCase(header.getKey()) || HEADER_CONTENT_TYPE.equalsIgnoreCase(header.getKey()))) {
+        continue;
+      }
+      head.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+    }
+    if(isChunked) {
+      head.append(HEADER_TRANSFER_ENCODING).append(": ").append(TRANSFER_ENCODING_CHUNKED).append(CRLF);
+    }
+    else if(body != null && request.getHeader(HEADER_CONTENT_LENGTH) == null) {
+      head.append(HEADER_CONTENT_LENGTH).append(": ").append(body.getContentLength()).append(CRLF);
+    }
+    head.append(CRLF);
+
+    out.write(head.toString().getBytes(CHARSET_HEADER));
+    if(isChunked) {
+      final ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+      final BufferedOutputStream buffered = new BufferedOutputStream(chunked, CHUNK_SIZE);
+      body.writeTo(buffered);
+      buffered.flush();
+      chunked.finish();
+    }
+    else if(body != null) {
+      body.writeTo(out);
+    }
+    out.flush();
+  }
+
+  private Map<String, String> readHeaders(final InputStream in) throws IOException {
+    final Map<String, String> headers = new LinkedHashMap<String, String>();
+    String line;
+    while((line = HttpLines.readLine(in)).length() > 0) {
+      final int colon = line.indexOf(':');
+      if(colon > 0) {
+        final String name = line.substring(0, colon).trim().toLowerCase();
+        final String value = line.substring(colon + 1).trim();
+        final String previous = headers.get(name);
+        headers.put(name, previous == null ? value : previous + ", " + value);
+      }
+    }
+    return headers;
+  }
+
+  private BodyInputStream createBody(final InputStream in, final int statusCode, final Map<String, String> headers) throws IOException {
+    if(statusCode == HTTP_NO_CONTENT || statusCode == HTTP_NOT_MODIFIED) {
+      return new BodyInputStream.FixedLength(in, 0);
+    }
+    final String transferEncoding = headers.get(HEADER_TRANSFER_ENCODING.toLowerCase());
+    if(transferEncoding != null && transferEncoding.toLowerCase().contains(TRANSFER_ENCODING_CHUNKED)) {
+      return new BodyInputStream.Chunked(in);
+    }
+    final String contentLength = headers.get(HEADER_CONTENT_LENGTH.toLowerCase());
+    if(contentLength != null) {
+      try {
+        return new BodyInputStream.FixedLength(in, Long.parseLong(contentLength.trim()));
+      }
+      catch(NumberFormatException e) {
+        throw new IOException("Invalid " + HEADER_CONTENT_LENGTH + ": " + contentLength);
+      }
+    }
+    return new BodyInputStream.UntilClose(in);
+  }
+
+  private boolean isKeepAlive(final String statusLine, final Map<String, String> headers) {
+    final String connection = headers.get(HEADER_CONNECTION.toLowerCase());
+    if(statusLine.startsWith(HTTP_1_0)) {
+      return connection != null && connection.toLowerCase().contains(CONNECTION_KEEP_ALIVE);
+    }
+    return connection == null || !connection.toLowerCase().contains(CONNECTION_CLOSE);
+  }
+
+  private int parseStatusCode(final String statusLine) throws IOException {
+    final String[] parts = statusLine.split(" ", 3);
+    if(parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+      throw new IOException("Invalid HTTP status line: " + statusLine);
+    }
+    try {
+      return Integer.parseInt(parts[1]);
+    }
+    catch(NumberFormatException e) {
+      throw new IOException("Invalid HTTP status line: " + statusLine);
+    }
+  }
+
+  private String getRequestTarget(final PooledConnection connection, final URL url) {
+    String file = url.getFile();
+    if(file == null || file.length() == 0) {
+      file = "/";
+    }
+    // a proxy that forwards the request needs to know where to
+    if(connection.isForwardedByProxy()) {
+      return url.getProtocol() + "://" + getHostHeader(url) + file;
+    }
+    return file;
+  }
+
+  private String getHostHeader(final URL url) {
+    if(url.getPort() == -1 || url.getPort() == url.getDefaultPort()) {
+      return url.getHost();
+    }
+    return url.getHost() + ":" + url.getPort();
+  }
+
+  private void drain(final InputStream in) {
+    final byte[] buffer = new byte[1024];
+    try {
+      while(in.read(buffer) != -1) {
+        // discard
+      }
+    }
+    catch(IOException e) {
+      // the connection will not be reused
+    }
+  }
+
+  /**
+   * Hands the connection back to the pool when the body is closed: released if
+   * the whole body was read and the server allows keep-alive, discarded
+   * otherwise.
+   */
+  private class ConnectionReleasingInputStream extends InputStream {
+    private final BodyInputStream body;
+    private final PooledConnection connection;
+    private final boolean isKeepAlive;
+    private final HttpRequest request;
+    private boolean isClosed;
+
+    private ConnectionReleasingInputStream(final BodyInputStream body, final PooledConnection connection, final boolean isKeepAlive, final HttpRequest request) {
+      this.body = body;
+      this.connection = connection;
+      this.isKeepAlive = isKeepAlive;
+      this.request = request;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if(request.getDeadline() == null) {
+        return body.read();
+      }
+      final byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      final Deadline deadline = request.getDeadline();
+      if(deadline == null) {
+        return body.read(buffer, offset, length);
+      }
+      // each read may only block for the time left in the call
+      connection.getSocket().setSoTimeout(getReadTimeoutMillis(request, READING_RESPONSE));
+      try {
+        return body.read(buffer, offset, length);
+      }
+      catch(SocketTimeoutException e) {
+        if(deadline.isExpired()) {
+          throw deadline.exceeded(READING_RESPONSE);
+        }
+        throw e;
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      return body.available();
+    }
+
+    @Override
+    public void close() {
+      if(isClosed) {
+        return;
+      }
+      isClosed = true;
+      // an aborted request has already closed the connection
+      if(request.setConnection(null) && isKeepAlive && body.isComplete()) {
+        connectionPool.release(connection);
+      }
+      else {
+        connectionPool.discard(connection);
+      }
+    }
+  }
+
+  /**
+   * What is sent for a request: its own method, url and body or those of a
+   * redirect.
+   */
+  private static class Target {
+    private final String method;
+    private final URL url;
+    private final RequestBody body;
+
+    private Target(final String method, final URL url, final RequestBody body) {
+      this.method = method;
+      this.url = url;
+      this.body = body;
+    }
+  }
+}
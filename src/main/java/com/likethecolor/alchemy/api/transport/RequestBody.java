@@ -0,0 +1,43 @@
+/**
+ * File: RequestBody.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Body of an {@link HttpRequest} that is written straight to the connection
+ * rather than being held in memory as one array.  A body may be written more
+ * than once (e.g., when a request is retried on a fresh connection).
+ */
+public interface RequestBody {
+  /**
+   * @return length of the body in bytes or -1 if it is not known in advance,
+   *         in which case the body is sent with chunked transfer encoding
+   */
+  long getContentLength();
+
+  /**
+   * Write the body to the stream.
+   *
+   * @param out stream to write to
+   *
+   * @throws IOException if the stream cannot be written to
+   */
+  void writeTo(final OutputStream out) throws IOException;
+}
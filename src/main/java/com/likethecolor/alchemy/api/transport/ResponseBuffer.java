@@ -0,0 +1,138 @@
+/**
+ * File: ResponseBuffer.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Growable byte buffer that a response body is read into in one pass.  Each
+ * thread reuses its own buffer (see {@link #forCurrentThread()}) so reading a
+ * response does not allocate anything but the decoded string.
+ */
+public class ResponseBuffer {
+  static final int INITIAL_CAPACITY = 16 * 1024;
+  static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+  static final int MAX_PRESIZE_CAPACITY = 4 * 1024 * 1024;
+  private static final ThreadLocal<ResponseBuffer> BUFFERS = new ThreadLocal<ResponseBuffer>() {
+    @Override
+    protected ResponseBuffer initialValue() {
+      return new ResponseBuffer();
+    }
+  };
+
+  private byte[] bytes = new byte[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Return this thread's buffer, emptied.
+   *
+   * @return empty buffer owned by the current thread
+   */
+  public static ResponseBuffer forCurrentThread() {
+    final ResponseBuffer buffer = BUFFERS.get();
+    buffer.reset();
+    return buffer;
+  }
+
+  /**
+   * Read the stream to the end, appending to the buffer.
+   *
+   * @param in stream to read
+   * @param expectedLength expected number of bytes (e.g., from Content-Length)
+   * or -1 if unknown; used to size the buffer up front, up to
+   * {@link #MAX_PRESIZE_CAPACITY}, since the server may not send them all
+   *
+   * @return this buffer
+   *
+   * @throws IOException if the stream cannot be read or holds more than an
+   * array can
+   */
+  public ResponseBuffer readFrom(final InputStream in, final long expectedLength) throws IOException {
+    if(expectedLength > Integer.MAX_VALUE - 1 - size) {
+      throw new IOException("Response of " + expectedLength + " bytes is too large to buffer.");
+    }
+    if(expectedLength > 0) {
+      ensureCapacity(size + (int) Math.min(expectedLength, MAX_PRESIZE_CAPACITY) + 1);
+    }
+    int count;
+    while(true) {
+      if(size == bytes.length) {
+        if(size == Integer.MAX_VALUE) {
+          throw new IOException("Response is too large to buffer.");
+        }
+        ensureCapacity(size + 1);
+      }
+      count = in.read(bytes, size, bytes.length - size);
+      if(count == -1) {
+        return this;
+      }
+      size += count;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return backing array; only the first {@link #size()} bytes are valid
+   */
+  public byte[] array() {
+    return bytes;
+  }
+
+  /**
+   * Decode the contents of the buffer.
+   *
+   * @param charsetName name of the charset the bytes are encoded in
+   *
+   * @return decoded contents
+   *
+   * @throws UnsupportedEncodingException if the charset is not supported
+   */
+  public String toString(final String charsetName) throws UnsupportedEncodingException {
+    return new String(bytes, 0, size, charsetName);
+  }
+
+  /**
+   * Empty the buffer.  A buffer that grew past {@link #MAX_RETAINED_CAPACITY}
+   * is shrunk so that one very large response does not pin memory for the
+   * lifetime of the thread.
+   */
+  public void reset() {
+    size = 0;
+    if(bytes.length > MAX_RETAINED_CAPACITY) {
+      bytes = new byte[INITIAL_CAPACITY];
+    }
+  }
+
+  private void ensureCapacity(final int capacity) {
+    if(capacity <= bytes.length) {
+      return;
+    }
+    int newCapacity = bytes.length;
+    while(newCapacity < capacity) {
+      newCapacity = newCapacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : newCapacity * 2;
+    }
+    final byte[] grown = new byte[newCapacity];
+    System.arraycopy(bytes, 0, grown, 0, size);
+    bytes = grown;
+  }
+}
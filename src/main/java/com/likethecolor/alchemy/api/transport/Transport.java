@@ -0,0 +1,42 @@
+/**
+ * File: Transport.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.IOException;
+
+/**
+ * Moves an HTTP request to the Alchemy API and returns the response.  The
+ * {@link com.likethecolor.alchemy.api.Client} builds the request and parses the
+ * response; implementations only deal with getting bytes there and back.
+ */
+public interface Transport {
+  /**
+   * Send the request and return the response.  The caller must close the
+   * response once the body has been read.  A request may be aborted from
+   * another thread with {@link HttpRequest#abort()}; implementations should
+   * then fail as soon as they can rather than finish the exchange.
+   *
+   * @param request request to send
+   *
+   * @return response to the request
+   *
+   * @throws IOException if the request cannot be completed; an HTTP error
+   * status should be reported with an {@link HttpStatusException}
+   */
+  public HttpResponse execute(final HttpRequest request) throws IOException;
+}
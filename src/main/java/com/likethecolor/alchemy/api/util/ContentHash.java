@@ -0,0 +1,219 @@
+/**
+ * File: ContentHash.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.util;
+
+/**
+ * A 128 bit MurmurHash3 (x64 variant) of text, fed a piece at a time.  It is
+ * many times faster than a cryptographic digest and, at 128 bits, collisions
+ * between distinct documents are not a practical concern for a cache key.
+ * <p/>
+ * Text added with {@link #putNormalized(CharSequence)} is hashed as if every
+ * run of whitespace were a single space and leading and trailing whitespace
+ * were removed, without building the normalized copy, so that the same
+ * document laid out differently hashes the same:
+ * <p/>
+ * <pre>
+ * new ContentHash().putNormalized(" Romney  was\n in Detroit. ").toString()
+ *   equals new ContentHash().putNormalized("Romney was in Detroit.").toString()
+ * </pre>
+ */
+public class ContentHash {
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+  private static final int CHARS_PER_BLOCK = 8;
+  private static final String HEX_DIGITS = "0123456789abcdef";
+
+  private long h1;
+  private long h2;
+  private long block1;
+  private long block2;
+  private int blockLength;
+  private long length;
+
+  /**
+   * Hash the text as is.
+   *
+   * @param text text to hash; null is hashed like an empty string
+   *
+   * @return this hash
+   */
+  public ContentHash put(final CharSequence text) {
+    if(text != null) {
+      for(int i = 0; i < text.length(); i++) {
+        put(text.charAt(i));
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Hash the text with every run of whitespace, including no-break spaces,
+   * taken as one space and without leading and trailing whitespace.
+   *
+   * @param text text to hash; null is hashed like an empty string
+   *
+   * @return this hash
+   */
+  public ContentHash putNormalized(final CharSequence text) {
+    if(text == null) {
+      return this;
+    }
+    boolean isStarted = false;
+    boolean isSpacePending = false;
+    for(int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if(Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+        isSpacePending = isStarted;
+        continue;
+      }
+      if(isSpacePending) {
+        put(' ');
+        isSpacePending = false;
+      }
+      put(c);
+      isStarted = true;
+    }
+    return this;
+  }
+
+  /**
+   * Hash the text as is, followed by its length, so that where one field
+   * ends and the next starts is part of the hash whatever the text holds.
+   *
+   * @param text text to hash; null is hashed like an empty string
+   *
+   * @return this hash
+   */
+  public ContentHash putField(final CharSequence text) {
+    final long start = length;
+    put(text);
+    return putLength(length - start);
+  }
+
+  /**
+   * Hash the text like {@link #putNormalized(CharSequence)}, followed by the
+   * length of the normalized text, like {@link #putField(CharSequence)}.
+   *
+   * @param text text to hash; null is hashed like an empty string
+   *
+   * @return this hash
+   */
+  public ContentHash putNormalizedField(final CharSequence text) {
+    final long start = length;
+    putNormalized(text);
+    return putLength(length - start);
+  }
+
+  /**
+   * @return the hash of everything put so far as 32 hex digits
+   */
+  @Override
+  public String toString() {
+    long k1 = block1;
+    long k2 = block2;
+    long f1 = h1;
+    long f2 = h2;
+    if(blockLength > 4) {
+      k2 *= C2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1;
+      f2 ^= k2;
+    }
+    if(blockLength > 0) {
+      k1 *= C1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2;
+      f1 ^= k1;
+    }
+
+    final long byteLength = length * 2;
+    f1 ^= byteLength;
+    f2 ^= byteLength;
+    f1 += f2;
+    f2 += f1;
+    f1 = mix(f1);
+    f2 = mix(f2);
+    f1 += f2;
+    f2 += f1;
+
+    final StringBuilder hex = new StringBuilder(32);
+    appendHex(hex, f1);
+    appendHex(hex, f2);
+    return hex.toString();
+  }
+
+  private ContentHash putLength(final long fieldLength) {
+    for(int shift = 48; shift >= 0; shift -= 16) {
+      put((char) (fieldLength >>> shift));
+    }
+    return this;
+  }
+
+  private void put(final char c) {
+    final long bits = (long) c << (16 * (blockLength & 3));
+    if(blockLength < 4) {
+      block1 |= bits;
+    }
+    else {
+      block2 |= bits;
+    }
+    length++;
+    if(++blockLength == CHARS_PER_BLOCK) {
+      hashBlock();
+    }
+  }
+
+  private void hashBlock() {
+    long k1 = block1;
+    long k2 = block2;
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    k1 *= C2;
+    h1 ^= k1;
+    h1 = Long.rotateLeft(h1, 27);
+    h1 += h2;
+    h1 = h1 * 5 + 0x52dce729;
+
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    k2 *= C1;
+    h2 ^= k2;
+    h2 = Long.rotateLeft(h2, 31);
+    h2 += h1;
+    h2 = h2 * 5 + 0x38495ab5;
+
+    block1 = 0L;
+    block2 = 0L;
+    blockLength = 0;
+  }
+
+  private static long mix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  private static void appendHex(final StringBuilder hex, final long value) {
+    for(int shift = 60; shift >= 0; shift -= 4) {
+      hex.append(HEX_DIGITS.charAt((int) (value >>> shift) & 0x0f));
+    }
+  }
+}
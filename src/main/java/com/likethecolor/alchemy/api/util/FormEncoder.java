@@ -0,0 +1,141 @@
+/**
+ * File: FormEncoder.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * application/x-www-form-urlencoded encoding (UTF-8) that writes straight to a
+ * stream instead of building a string.  The output is byte for byte the same
+ * as {@link java.net.URLEncoder#encode(String, String)} with UTF-8.
+ */
+public class FormEncoder {
+  private static final byte[] HEX = {
+      '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+  };
+  private static final int BUFFER_SIZE = 1024;
+  // room for one encoded code point (4 UTF-8 bytes, 3 characters each)
+  private static final int MAX_ENCODED_CODE_POINT = 12;
+  private static final int REPLACEMENT = '?';
+
+  /**
+   * Return the number of bytes {@link #encode(String, OutputStream)} writes
+   * for the value, without encoding it.
+   *
+   * @param value value to measure
+   *
+   * @return length in bytes of the encoded value
+   */
+  public static long encodedLength(final String value) {
+    long length = 0;
+    final int size = value.length();
+    for(int i = 0; i < size; i++) {
+      final char c = value.charAt(i);
+      if(isUnreserved(c) || c == ' ') {
+        length++;
+      }
+      else if(c < 0x80) {
+        length += 3;
+      }
+      else if(c < 0x800) {
+        length += 6;
+      }
+      else if(Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 12;
+        i++;
+      }
+      else if(isSurrogate(c)) {
+        // unpaired surrogate is replaced with '?'
+        length += 3;
+      }
+      else {
+        length += 9;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Write the form encoded value to the stream.
+   *
+   * @param value value to encode
+   * @param out stream to write to
+   *
+   * @throws IOException if the stream cannot be written to
+   */
+  public static void encode(final String value, final OutputStream out) throws IOException {
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    int position = 0;
+    final int size = value.length();
+    for(int i = 0; i < size; i++) {
+      if(position > BUFFER_SIZE - MAX_ENCODED_CODE_POINT) {
+        out.write(buffer, 0, position);
+        position = 0;
+      }
+      final char c = value.charAt(i);
+      if(isUnreserved(c)) {
+        buffer[position++] = (byte) c;
+      }
+      else if(c == ' ') {
+        buffer[position++] = '+';
+      }
+      else if(c < 0x80) {
+        position = escape(c, buffer, position);
+      }
+      else if(c < 0x800) {
+        position = escape(0xc0 | (c >> 6), buffer, position);
+        position = escape(0x80 | (c & 0x3f), buffer, position);
+      }
+      else if(Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        position = escape(0xf0 | (codePoint >> 18), buffer, position);
+        position = escape(0x80 | ((codePoint >> 12) & 0x3f), buffer, position);
+        position = escape(0x80 | ((codePoint >> 6) & 0x3f), buffer, position);
+        position = escape(0x80 | (codePoint & 0x3f), buffer, position);
+      }
+      else if(isSurrogate(c)) {
+        position = escape(REPLACEMENT, buffer, position);
+      }
+      else {
+        position = escape(0xe0 | (c >> 12), buffer, position);
+        position = escape(0x80 | ((c >> 6) & 0x3f), buffer, position);
+        position = escape(0x80 | (c & 0x3f), buffer, position);
+      }
+    }
+    out.write(buffer, 0, position);
+  }
+
+  private static int escape(final int b, final byte[] buffer, int position) {
+    buffer[position++] = '%';
+    buffer[position++] = HEX[(b >> 4) & 0x0f];
+    buffer[position++] = HEX[b & 0x0f];
+    return position;
+  }
+
+  private static boolean isSurrogate(final char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  private static boolean isUnreserved(final char c) {
+    return (c >= 'a' && c <= 'z')
+           || (c >= 'A' && c <= 'Z')
+           || (c >= '0' && c <= '9')
+           || c == '-' || c == '_' || c == '.' || c == '*';
+  }
+}
@@ -17,6 +17,7 @@
  */
 package com.likethecolor.alchemy.api.validator;
 
+import com.likethecolor.alchemy.api.AlchemyApiException;
 import com.likethecolor.alchemy.api.entity.Response;
 import com.likethecolor.alchemy.api.parser.json.HeaderParser;
 import org.apache.commons.lang.StringUtils;
@@ -24,21 +25,43 @@ import org.apache.commons.lang.StringUtils;
 import java.io.IOException;
 
 public class OutputStatusValidator {
+  private static final HeaderParser HEADER_PARSER = new HeaderParser();
+
+  /**
+   * Parse the header of the json string and make sure the status is OK.
+   * <p/>
+   * If the response is going to be parsed anyway prefer
+   * {@link #validate(Response, String)} so the json string is only parsed once.
+   *
+   * @param jsonString json returned by the API
+   *
+   * @throws AlchemyApiException if the status is not OK
+   */
   public static void validate(final String jsonString) throws IOException {
     OutputDocumentValidator.validate(jsonString);
 
-    final Response response = new HeaderParser().parse(jsonString);
-    final Response.STATUS status = response.getStatus();
-    final String statusInfo = response.getStatusInfo();
-    validate(status, statusInfo, jsonString);
+    validate(HEADER_PARSER.parse(jsonString), jsonString);
+  }
+
+  /**
+   * Make sure the status of an already parsed response is OK.
+   *
+   * @param response response parsed from the json string
+   * @param jsonString json the response was parsed from; used in the error message
+   *
+   * @throws AlchemyApiException if the status is not OK
+   * @throws IOException if there is no response
+   */
+  public static void validate(final Response response, final String jsonString) throws IOException {
+    if(response == null) {
+      throw new IOException("Error making API call: no response - original json string: " + jsonString);
+    }
+    validate(response.getStatus(), response.getStatusInfo(), jsonString);
   }
 
   private static void validate(final Response.STATUS status, final String statusInfo, final String originalJsonString) throws IOException {
     if(null == status || status != Response.STATUS.OK) {
-      if(!StringUtils.isBlank(statusInfo)) {
-        throw new IOException("Error making API call: " + statusInfo + " - original json string: " + originalJsonString);
-      }
-      throw new IOException("Error making API call: " + status + " - original json string: " + originalJsonString);
+      throw new AlchemyApiException(status, StringUtils.isBlank(statusInfo) ? null : statusInfo.trim(), originalJsonString);
     }
   }
 }
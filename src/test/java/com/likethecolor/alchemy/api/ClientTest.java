@@ -0,0 +1,964 @@
+/**
+ * File: ClientTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api;
+
+import com.likethecolor.alchemy.api.async.CallFuture;
+import com.likethecolor.alchemy.api.breaker.CircuitBreaker;
+import com.likethecolor.alchemy.api.breaker.CircuitOpenException;
+import com.likethecolor.alchemy.api.cache.DiskResponseCache;
+import com.likethecolor.alchemy.api.cache.NegativeCache;
+import com.likethecolor.alchemy.api.cache.ResponseCache;
+import com.likethecolor.alchemy.api.call.RankedNamedEntitiesCall;
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallTypeText;
+import com.likethecolor.alchemy.api.call.type.CallTypeUrl;
+import com.likethecolor.alchemy.api.entity.NamedEntityAlchemyEntity;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import com.likethecolor.alchemy.api.hedge.HedgePolicy;
+import com.likethecolor.alchemy.api.limit.AdaptiveConcurrencyLimiter;
+import com.likethecolor.alchemy.api.ratelimit.RateLimitExceededException;
+import com.likethecolor.alchemy.api.ratelimit.RateLimiter;
+import com.likethecolor.alchemy.api.retry.RetryPolicy;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+import com.likethecolor.alchemy.api.transport.HttpRequest;
+import com.likethecolor.alchemy.api.transport.HttpResponse;
+import com.likethecolor.alchemy.api.transport.HttpStatusException;
+import com.likethecolor.alchemy.api.transport.LoopbackTransport;
+import com.likethecolor.alchemy.api.transport.Transport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClientTest {
+  private static final String API_KEY = "0a1b2c3d4e5f6g7h8i9j";
+  private static final String TITLE = "Detroit News ed upset over Romney edit";
+  private static final String TITLE_JSON = "{"
+                                           + "\"status\": \"OK\","
+                                           + "\"url\": \"http://www.politico.com/\","
+                                           + "\"title\": \"" + TITLE + "\""
+                                           + "}";
+  private static final String NAMED_ENTITIES_JSON = "{"
+                                                    + "\"status\": \"OK\","
+                                                    + "\"language\": \"english\","
+                                                    + "\"entities\": ["
+                                                    + "{\"type\": \"Person\", \"relevance\": \"0.875415\", \"count\": \"1\", \"text\": \"Romney\"},"
+                                                    + "{\"type\": \"City\", \"relevance\": \"0.596432\", \"count\": \"2\", \"text\": \"Detroit\"}"
+                                                    + "]}";
+  private static final String ERROR_JSON = "{"
+                                           + "\"status\": \"ERROR\","
+                                           + "\"statusInfo\": \"unsupported-text-language\""
+                                           + "}";
+
+  @Test
+  public void testCall_Url() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(Response.STATUS.OK, response.getStatus());
+    assertEquals(1, response.size());
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(1, transport.getRequestCount());
+  }
+
+  @Test
+  public void testCall_Text() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_RANKED_NAMED_ENTITIES, NAMED_ENTITIES_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    final Response<NamedEntityAlchemyEntity> response = client.call(new RankedNamedEntitiesCall(new CallTypeText("Romney was in Detroit.")));
+
+    assertEquals(2, response.size());
+    assertEquals("Romney", response.iterator().next().getText());
+    assertTrue(transport.getRequestBytes() > 0);
+  }
+
+  @Test
+  public void testCall_MultiLineJson() throws IOException {
+    final String title = "  two  spaces\tand a tab  ";
+    final String json = "{\n  \"status\": \"OK\",\n  \"title\": \"  two  spaces\\tand a tab  \"\n}\n";
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, json));
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(title.trim(), response.iterator().next().getTitle());
+  }
+
+  @Test
+  public void testCall_Gzip() throws IOException {
+    final CompressedTransport transport = new CompressedTransport("gzip", TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals("gzip, deflate", transport.acceptEncoding);
+    assertEquals(transport.body.length, client.getCompressedBytes());
+    assertEquals(TITLE_JSON.getBytes("UTF-8").length, client.getDecompressedBytes());
+  }
+
+  @Test
+  public void testCall_Deflate() throws IOException {
+    final CompressedTransport transport = new CompressedTransport("deflate", TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(transport.body.length, client.getCompressedBytes());
+  }
+
+  @Test
+  public void testCall_RawDeflate() throws IOException {
+    final CompressedTransport transport = new CompressedTransport("deflate", TITLE_JSON, true);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(transport.body.length, client.getCompressedBytes());
+  }
+
+  @Test
+  public void testCall_CompressionDisabled() throws IOException {
+    final CompressedTransport transport = new CompressedTransport(null, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setCompressionEnabled(false);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(null, transport.acceptEncoding);
+    assertEquals(0, client.getCompressedBytes());
+  }
+
+  @Test(expected = IOException.class)
+  public void testCall_StatusError() throws IOException {
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, ERROR_JSON));
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+  }
+
+  @Test
+  public void testCallAsync() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setMaxInFlight(4);
+    try {
+      final List<CallFuture<TitleAlchemyEntity>> futures = new ArrayList<CallFuture<TitleAlchemyEntity>>();
+      for(int i = 0; i < 50; i++) {
+        futures.add(client.callAsync(new TitleCall(new CallTypeUrl("http://www.politico.com/" + i))));
+      }
+      for(CallFuture<TitleAlchemyEntity> future : futures) {
+        assertEquals(TITLE, future.getResponse().iterator().next().getTitle());
+      }
+      assertEquals(50, transport.getRequestCount());
+    }
+    finally {
+      client.shutdown();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testCallAsync_StatusError() throws IOException {
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, ERROR_JSON));
+    try {
+      client.callAsync(new TitleCall(new CallTypeUrl("http://www.politico.com/"))).getResponse();
+    }
+    finally {
+      client.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetMaxInFlight_TooSmall() {
+    new Client(API_KEY).setMaxInFlight(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetTransport_Null() {
+    new Client(API_KEY).setTransport(null);
+  }
+
+  @Test
+  public void testCall_Timeouts() throws IOException {
+    final SlowTransport transport = new SlowTransport(0L, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(Client.DEFAULT_CONNECT_TIMEOUT_MILLIS, transport.request.getConnectTimeoutMillis());
+    assertEquals(Client.DEFAULT_READ_TIMEOUT_MILLIS, transport.request.getReadTimeoutMillis());
+    assertNull(transport.request.getDeadline());
+
+
+    client.setConnectTimeoutMillis(1234);
+    client.setReadTimeoutMillis(5678);
+    client.setCallTimeoutMillis(60000L);
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(1234, transport.request.getConnectTimeoutMillis());
+    assertEquals(5678, transport.request.getReadTimeoutMillis());
+    assertEquals(60000L, transport.request.getDeadline().getBudgetMillis());
+  }
+
+  @Test(expected = DeadlineExceededException.class)
+  public void testCall_DeadlineExceeded() throws IOException {
+    final Client client = new Client(API_KEY);
+    client.setTransport(new SlowTransport(200L, TITLE_JSON));
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")), 50L);
+  }
+
+  @Test
+  public void testCall_NullParams() throws IOException {
+    final SlowTransport transport = new SlowTransport(0L, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.example.com/page"), null));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertTrue(transport.request.getUrl().toString().contains("url=http%3A%2F%2Fwww.example.com%2Fpage"));
+  }
+
+  @Test
+  public void testCall_NullParamsHedged() throws IOException {
+    final SlowTransport transport = new SlowTransport(0L, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setHedgePolicy(new HedgePolicy());
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.example.com/page"), null));
+
+    assertTrue(transport.request.getUrl().toString().contains("url=http%3A%2F%2Fwww.example.com%2Fpage"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetConnectTimeoutMillis_Negative() {
+    new Client(API_KEY).setConnectTimeoutMillis(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetReadTimeoutMillis_Negative() {
+    new Client(API_KEY).setReadTimeoutMillis(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetCallTimeoutMillis_Negative() {
+    new Client(API_KEY).setCallTimeoutMillis(-1L);
+  }
+
+  @Test
+  public void testCall_RetriesTransientFailure() throws IOException {
+    final FlakyTransport transport = new FlakyTransport(2, new HttpStatusException(503, "Service Unavailable"), TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setRetryPolicy(new RetryPolicy(3, 1L, 5L));
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(3, transport.requestCount);
+    assertEquals(2, client.getRetryPolicy().getRetryBudget().getRetryCount());
+  }
+
+  @Test
+  public void testCall_DoesNotRetryPermanentFailure() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, ERROR_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setRetryPolicy(new RetryPolicy(3, 1L, 5L));
+
+    try {
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+      fail("Expected AlchemyApiException");
+    }
+    catch(AlchemyApiException e) {
+      assertEquals("unsupported-text-language", e.getStatusInfo());
+    }
+    assertEquals(1, transport.getRequestCount());
+  }
+
+  @Test
+  public void testCall_GivesUpAfterMaxAttempts() throws IOException {
+    final FlakyTransport transport = new FlakyTransport(10, new IOException("Connection reset"), TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setRetryPolicy(new RetryPolicy(3, 1L, 5L));
+
+    try {
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+      fail("Expected IOException");
+    }
+    catch(IOException e) {
+      assertEquals("Connection reset", e.getMessage());
+    }
+    assertEquals(3, transport.requestCount);
+  }
+
+  @Test
+  public void testCall_NoRetryPolicy() throws IOException {
+    final FlakyTransport transport = new FlakyTransport(1, new IOException("Connection reset"), TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+
+    try {
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+      fail("Expected IOException");
+    }
+    catch(IOException e) {
+      assertEquals(1, transport.requestCount);
+    }
+  }
+
+  @Test
+  public void testCall_RateLimited() throws IOException {
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON));
+    final RateLimiter limiter = new RateLimiter(0.1D, 1);
+    limiter.setMaxWaitMillis(0L);
+    client.setRateLimiter(limiter);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    try {
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+      fail("Expected RateLimitExceededException");
+    }
+    catch(RateLimitExceededException e) {
+      // the second call was held back locally
+    }
+    assertEquals(1, ((LoopbackTransport) client.getTransport()).getRequestCount());
+  }
+
+  @Test
+  public void testCall_Coalesced() throws Exception {
+    final BlockingTransport transport = new BlockingTransport(TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setCoalescingEnabled(true);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final List<Future<Response<TitleAlchemyEntity>>> futures = new ArrayList<Future<Response<TitleAlchemyEntity>>>();
+      futures.add(executor.submit(titleCall(client, "http://www.politico.com/")));
+      assertTrue(transport.started.await(5, TimeUnit.SECONDS));
+      futures.add(executor.submit(titleCall(client, "http://www.politico.com/")));
+      futures.add(executor.submit(titleCall(client, "http://www.politico.com/")));
+      while(client.getCoalescedCount() < 2) {
+        Thread.sleep(1L);
+      }
+      transport.release.countDown();
+
+      final Response<TitleAlchemyEntity> response = futures.get(0).get(5, TimeUnit.SECONDS);
+      assertSame(response, futures.get(1).get(5, TimeUnit.SECONDS));
+      assertSame(response, futures.get(2).get(5, TimeUnit.SECONDS));
+      assertEquals(1, transport.requestCount.get());
+
+
+      // not in flight any more, so a new request is made
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+      assertEquals(2, transport.requestCount.get());
+    }
+    finally {
+      transport.release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCall_CoalescingDifferentParams() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setCoalescingEnabled(true);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/2012")));
+
+    assertEquals(2, transport.getRequestCount());
+    assertEquals(0, client.getCoalescedCount());
+  }
+
+  @Test
+  public void testCall_Cached() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    final ResponseCache cache = new ResponseCache();
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setResponseCache(cache);
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    assertSame(response, client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/"))));
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/2012")));
+
+    assertEquals(2, transport.getRequestCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testCall_CachedSameContent() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_RANKED_NAMED_ENTITIES, NAMED_ENTITIES_JSON);
+    final ResponseCache cache = new ResponseCache();
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setResponseCache(cache);
+
+    client.call(new RankedNamedEntitiesCall(new CallTypeText("Romney was in Detroit.")));
+    client.call(new RankedNamedEntitiesCall(new CallTypeText("Romney  was\n\tin Detroit.\n")));
+    client.call(new RankedNamedEntitiesCall(new CallTypeText("Romney was in Boston.")));
+
+    assertEquals(2, transport.getRequestCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void testCall_CacheRefreshedAhead() throws Exception {
+    final ResponseCache cache = new ResponseCache(10, 60000L);
+    cache.setRefreshAheadRatio(0.0001D);
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON));
+    client.setResponseCache(cache);
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    final BlockingTransport transport = new BlockingTransport(TITLE_JSON);
+    client.setTransport(transport);
+    Thread.sleep(10L);
+    try {
+      // due for a refresh, still answered from the cache
+      assertSame(response, client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/"))));
+      assertTrue(transport.started.await(5, TimeUnit.SECONDS));
+      assertSame(response, client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/"))));
+      assertEquals(1, transport.requestCount.get());
+      assertEquals(1, cache.getRefreshCount());
+
+      transport.release.countDown();
+      final long giveUpMillis = System.currentTimeMillis() + 5000L;
+      Response<TitleAlchemyEntity> refreshed = response;
+      while(refreshed == response && System.currentTimeMillis() < giveUpMillis) {
+        Thread.sleep(1L);
+        refreshed = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+      }
+
+      assertTrue(refreshed != response);
+      assertEquals(TITLE, refreshed.iterator().next().getTitle());
+      assertEquals(1, cache.getMissCount());
+    }
+    finally {
+      transport.release.countDown();
+      client.shutdown();
+    }
+  }
+
+  @Test
+  public void testCall_CacheDisabledForCallClass() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    final ResponseCache cache = new ResponseCache();
+    cache.setTimeToLiveMillis(TitleCall.class, Constants.CALL_TYPE_URL, 0L);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setResponseCache(cache);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(2, transport.getRequestCount());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testCall_DiskCached() throws IOException {
+    final File directory = File.createTempFile("alchemy-cache", "");
+    assertTrue(directory.delete());
+    DiskResponseCache diskCache = new DiskResponseCache(directory);
+    LoopbackTransport transport = new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setDiskResponseCache(diskCache);
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    assertEquals(1, transport.getRequestCount());
+    diskCache.close();
+
+    // a new client after a restart
+    diskCache = new DiskResponseCache(directory);
+    transport = new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    final ResponseCache cache = new ResponseCache();
+    client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setResponseCache(cache);
+    client.setDiskResponseCache(diskCache);
+    try {
+      final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+      assertEquals(TITLE, response.iterator().next().getTitle());
+      assertSame(response, client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/"))));
+      assertEquals(0, transport.getRequestCount());
+      assertEquals(1, diskCache.getHitCount());
+      assertEquals(1, cache.getHitCount());
+    }
+    finally {
+      diskCache.close();
+      for(File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testCall_DiskCacheClosed() throws IOException {
+    final File directory = File.createTempFile("alchemy-cache", "");
+    assertTrue(directory.delete());
+    final DiskResponseCache diskCache = new DiskResponseCache(directory);
+    diskCache.close();
+    for(File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+    final LoopbackTransport transport = new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setDiskResponseCache(diskCache);
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(1, transport.getRequestCount());
+  }
+
+  @Test
+  public void testCall_NegativeCached() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_RANKED_NAMED_ENTITIES, ERROR_JSON);
+    final NegativeCache negativeCache = new NegativeCache();
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setNegativeCache(negativeCache);
+    for(int i = 0; i < 2; i++) {
+      try {
+        client.call(new RankedNamedEntitiesCall(new CallTypeText("Romney estaba en Detroit.")));
+        fail("Expected AlchemyApiException");
+      }
+      catch(AlchemyApiException e) {
+        assertEquals("unsupported-text-language", e.getStatusInfo());
+      }
+    }
+
+    assertEquals(1, transport.getRequestCount());
+    assertEquals(1, negativeCache.getHitCount());
+    assertEquals(1, negativeCache.size());
+  }
+
+  @Test
+  public void testCall_FailureNotCached() throws IOException {
+    final FlakyTransport transport = new FlakyTransport(1, new HttpStatusException(503, "Service Unavailable"), TITLE_JSON);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setResponseCache(new ResponseCache());
+    try {
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+      fail("Expected HttpStatusException");
+    }
+    catch(HttpStatusException e) {
+      // no retry policy
+    }
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(2, transport.requestCount);
+  }
+
+  @Test
+  public void testCall_Hedged() throws IOException {
+    final SlowRequestTransport transport = new SlowRequestTransport(2, 5000L, TITLE_JSON);
+    // gives the first copy time to reach the transport before the hedge
+    transport.baseDelayMillis = 20L;
+    final HedgePolicy policy = new HedgePolicy(50D, 1D, 1);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setHedgePolicy(policy);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    final long startMillis = System.currentTimeMillis();
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertTrue(System.currentTimeMillis() - startMillis < 2500L);
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(3, transport.requestCount.get());
+    assertEquals(1, policy.getHedgeCount());
+    assertEquals(1, policy.getWonCount());
+    // the copy that lost is aborted, not left to finish
+    assertTrue(transport.slowHttpRequest.isAborted());
+    client.shutdown();
+  }
+
+  @Test
+  public void testCall_HedgeNeedsSamples() throws IOException {
+    final SlowRequestTransport transport = new SlowRequestTransport(1, 100L, TITLE_JSON);
+    final HedgePolicy policy = new HedgePolicy(50D, 1D, 1);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setHedgePolicy(policy);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(1, transport.requestCount.get());
+    assertEquals(0, policy.getHedgeCount());
+    assertEquals(1, policy.getCallCount());
+  }
+
+  @Test
+  public void testCall_HedgeNotBudgeted() throws IOException {
+    final SlowRequestTransport transport = new SlowRequestTransport(2, 100L, TITLE_JSON);
+    final HedgePolicy policy = new HedgePolicy(50D, 0.1D, 1);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setHedgePolicy(policy);
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(2, transport.requestCount.get());
+    assertEquals(0, policy.getHedgeCount());
+    assertEquals(1, policy.getRejectedCount());
+    client.shutdown();
+  }
+
+  @Test
+  public void testCall_HedgeNotRateLimited() throws IOException {
+    final SlowRequestTransport transport = new SlowRequestTransport(2, 100L, TITLE_JSON);
+    final HedgePolicy policy = new HedgePolicy(50D, 1D, 1);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setHedgePolicy(policy);
+    client.setRateLimiter(new RateLimiter(1D, 2));
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    // both permits of the burst went to the calls, none was left for a hedge
+    assertEquals(2, transport.requestCount.get());
+    assertEquals(0, policy.getHedgeCount());
+    assertEquals(1, client.getRateLimiter().getRejectedCount());
+    client.shutdown();
+  }
+
+  @Test
+  public void testCall_CircuitOpen() throws IOException {
+    final FlakyTransport transport = new FlakyTransport(10, new IOException("Connection reset"), TITLE_JSON);
+    final CircuitBreaker breaker = new CircuitBreaker(2, 2);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setCircuitBreaker(breaker);
+    client.setRetryPolicy(new RetryPolicy(5, 1L, 5L));
+
+    try {
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+      fail("Expected CircuitOpenException");
+    }
+    catch(CircuitOpenException e) {
+      assertEquals("url/URLGetTitle", e.getEndpoint());
+    }
+    // the third attempt was refused without a request and not retried
+    assertEquals(2, transport.requestCount);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState("url/URLGetTitle"));
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("url/URLGetLanguage"));
+  }
+
+  @Test
+  public void testCall_RateLimitDeadlineDoesNotOpenCircuit() throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(2, 2);
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON));
+    client.setCircuitBreaker(breaker);
+    client.setRateLimiter(new RateLimiter(0.1D, 1));
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    for(int i = 0; i < 3; i++) {
+      try {
+        client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")), 50L);
+        fail("Expected DeadlineExceededException");
+      }
+      catch(DeadlineExceededException e) {
+        assertTrue(e.isQueued());
+      }
+    }
+    // the calls ran out of time waiting for a permit, not at the endpoint
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("url/URLGetTitle"));
+    assertEquals(1, ((LoopbackTransport) client.getTransport()).getRequestCount());
+  }
+
+  @Test
+  public void testCall_RateLimitWaitIsNotSlowCall() throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(2, 2);
+    breaker.setSlowCallThresholdMillis(30L);
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON));
+    client.setCircuitBreaker(breaker);
+    client.setRateLimiter(new RateLimiter(10D, 1));
+
+    // every call after the first waits about 100 ms for its permit
+    for(int i = 0; i < 3; i++) {
+      client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("url/URLGetTitle"));
+  }
+
+  @Test
+  public void testCall_RateLimitDeadlineIsNotOverload() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20);
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON));
+    client.setConcurrencyLimiter(limiter);
+    client.setRateLimiter(new RateLimiter(0.1D, 1));
+
+    client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+    final int limit = limiter.getLimit("url/URLGetTitle");
+    for(int i = 0; i < 3; i++) {
+      try {
+        client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")), 50L);
+        fail("Expected DeadlineExceededException");
+      }
+      catch(DeadlineExceededException e) {
+        assertTrue(e.isQueued());
+      }
+    }
+    // the permit is waited for before a slot is taken
+    assertEquals(limit, limiter.getLimit("url/URLGetTitle"));
+    assertEquals(0, limiter.getInFlight("url/URLGetTitle"));
+  }
+
+  @Test
+  public void testCall_ConcurrencyLimited() throws IOException {
+    final FlakyTransport transport = new FlakyTransport(1, new HttpStatusException(503, "Service Unavailable"), TITLE_JSON);
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20);
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    client.setConcurrencyLimiter(limiter);
+    client.setRetryPolicy(new RetryPolicy(2, 1L, 5L));
+
+    final Response<TitleAlchemyEntity> response = client.call(new TitleCall(new CallTypeUrl("http://www.politico.com/")));
+
+    assertEquals(TITLE, response.iterator().next().getTitle());
+    assertEquals(9, limiter.getLimit("url/URLGetTitle"));
+    assertEquals(0, limiter.getInFlight("url/URLGetTitle"));
+  }
+
+  private Callable<Response<TitleAlchemyEntity>> titleCall(final Client client, final String url) {
+    return new Callable<Response<TitleAlchemyEntity>>() {
+      public Response<TitleAlchemyEntity> call() throws IOException {
+        return client.call(new TitleCall(new CallTypeUrl(url)));
+      }
+    };
+  }
+
+  /**
+   * Holds every request until released.
+   */
+  private static class BlockingTransport implements Transport {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final byte[] body;
+
+    private BlockingTransport(final String json) throws IOException {
+      this.body = json.getBytes("UTF-8");
+    }
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      requestCount.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      }
+      catch(InterruptedException e) {
+        throw new IOException("Interrupted");
+      }
+      return new HttpResponse(200, new HashMap<String, String>(), new ByteArrayInputStream(body));
+    }
+  }
+
+  /**
+   * Waits before answering one of the requests, answers the others after the
+   * base delay.
+   */
+  private static class SlowRequestTransport implements Transport {
+    private final int slowRequest;
+    private final long delayMillis;
+    private final byte[] body;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile long baseDelayMillis;
+    private volatile HttpRequest slowHttpRequest;
+
+    private SlowRequestTransport(final int slowRequest, final long delayMillis, final String json) throws IOException {
+      this.slowRequest = slowRequest;
+      this.delayMillis = delayMillis;
+      this.body = json.getBytes("UTF-8");
+    }
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      final boolean isSlow = requestCount.incrementAndGet() == slowRequest;
+      if(isSlow) {
+        slowHttpRequest = request;
+      }
+      try {
+        Thread.sleep(isSlow ? delayMillis : baseDelayMillis);
+      }
+      catch(InterruptedException e) {
+        throw new IOException("Interrupted");
+      }
+      return new HttpResponse(200, new HashMap<String, String>(), new ByteArrayInputStream(body));
+    }
+  }
+
+  /**
+   * Fails the first given number of requests and then answers with the json.
+   */
+  private static class FlakyTransport implements Transport {
+    private final int failures;
+    private final IOException failure;
+    private final byte[] body;
+    private int requestCount;
+
+    private FlakyTransport(final int failures, final IOException failure, final String json) throws IOException {
+      this.failures = failures;
+      this.failure = failure;
+      this.body = json.getBytes("UTF-8");
+    }
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      if(requestCount++ < failures) {
+        throw failure;
+      }
+      return new HttpResponse(200, new HashMap<String, String>(), new ByteArrayInputStream(body));
+    }
+  }
+
+  /**
+   * Waits before answering and keeps the last request.
+   */
+  private static class SlowTransport implements Transport {
+    private final long delayMillis;
+    private final byte[] body;
+    private HttpRequest request;
+
+    private SlowTransport(final long delayMillis, final String json) throws IOException {
+      this.delayMillis = delayMillis;
+      this.body = json.getBytes("UTF-8");
+    }
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      this.request = request;
+      try {
+        Thread.sleep(delayMillis);
+      }
+      catch(InterruptedException e) {
+        throw new IOException("Interrupted");
+      }
+      return new HttpResponse(200, new HashMap<String, String>(), new ByteArrayInputStream(body));
+    }
+  }
+
+  /**
+   * Returns the json compressed with the given content encoding.
+   */
+  private static class CompressedTransport implements Transport {
+    private final String contentEncoding;
+    private final byte[] body;
+    private String acceptEncoding;
+
+    private CompressedTransport(final String contentEncoding, final String json) throws IOException {
+      this(contentEncoding, json, false);
+    }
+
+    /**
+     * @param isRawDeflate true to send deflate data without the zlib wrapper
+     */
+    private CompressedTransport(final String contentEncoding, final String json, final boolean isRawDeflate) throws IOException {
+      this.contentEncoding = contentEncoding;
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      OutputStream out = bytes;
+      if("gzip".equals(contentEncoding)) {
+        out = new GZIPOutputStream(bytes);
+      }
+      else if("deflate".equals(contentEncoding)) {
+        out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, isRawDeflate));
+      }
+      out.write(json.getBytes("UTF-8"));
+      out.close();
+      this.body = bytes.toByteArray();
+    }
+
+    public HttpResponse execute(final HttpRequest request) {
+      acceptEncoding = request.getHeader("Accept-Encoding");
+      final Map<String, String> headers = new HashMap<String, String>();
+      if(contentEncoding != null) {
+        headers.put("Content-Encoding", contentEncoding);
+      }
+      headers.put("Content-Length", Integer.toString(body.length));
+      return new HttpResponse(200, headers, new ByteArrayInputStream(body));
+    }
+  }
+}
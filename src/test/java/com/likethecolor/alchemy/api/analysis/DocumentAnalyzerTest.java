@@ -0,0 +1,130 @@
+/**
+ * File: DocumentAnalyzerTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.analysis;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.Constants;
+import com.likethecolor.alchemy.api.call.type.CallTypeText;
+import com.likethecolor.alchemy.api.transport.HttpRequest;
+import com.likethecolor.alchemy.api.transport.HttpResponse;
+import com.likethecolor.alchemy.api.transport.LoopbackTransport;
+import com.likethecolor.alchemy.api.transport.Transport;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentAnalyzerTest {
+  private static final String API_KEY = "0a1b2c3d4e5f6g7h8i9j";
+  private static final String TEXT = "Romney was in Detroit.";
+  private static final String TITLE_JSON = "{\"status\": \"OK\", \"title\": \"Romney in Detroit\"}";
+  private static final String KEYWORDS_JSON = "{\"status\": \"OK\", \"keywords\": ["
+                                              + "{\"text\": \"Romney\", \"relevance\": \"0.9\"},"
+                                              + "{\"text\": \"Detroit\", \"relevance\": \"0.7\"}"
+                                              + "]}";
+
+  @Test
+  public void testAnalyze() throws InterruptedException {
+    final DocumentAnalyzer analyzer = new DocumentAnalyzer(createClient(new DelayedTransport(0L)));
+
+    final DocumentAnalysis analysis = analyzer.analyze(new CallTypeText(TEXT), Extractor.TITLE, Extractor.KEYWORDS, Extractor.NAMED_ENTITIES);
+
+    assertEquals(EnumSet.of(Extractor.TITLE, Extractor.KEYWORDS), analysis.getSucceeded());
+    assertEquals(Collections.singleton(Extractor.NAMED_ENTITIES), analysis.getFailed());
+    assertEquals("Romney in Detroit", analysis.getTitle().iterator().next().getTitle());
+    assertEquals(2, analysis.getKeywords().size());
+    assertFalse(analysis.isSuccess(Extractor.NAMED_ENTITIES));
+    assertNull(analysis.getNamedEntities());
+    assertTrue(analysis.getException(Extractor.NAMED_ENTITIES) instanceof IOException);
+    assertNull(analysis.getSentiment());
+  }
+
+  @Test
+  public void testAnalyze_Concurrent() throws InterruptedException {
+    final DocumentAnalyzer analyzer = new DocumentAnalyzer(createClient(new DelayedTransport(200L)));
+
+    final long start = System.currentTimeMillis();
+    final DocumentAnalysis analysis = analyzer.analyze(new CallTypeText(TEXT), Extractor.TITLE, Extractor.KEYWORDS);
+    final long elapsedMillis = System.currentTimeMillis() - start;
+
+    assertEquals(2, analysis.getSucceeded().size());
+    assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 390L);
+  }
+
+  @Test
+  public void testAnalyze_SameBody() throws InterruptedException {
+    final DelayedTransport transport = new DelayedTransport(0L);
+    final DocumentAnalyzer analyzer = new DocumentAnalyzer(createClient(transport));
+
+    analyzer.analyze(new CallTypeText(TEXT), Extractor.TITLE, Extractor.KEYWORDS);
+
+    // the title call has no options so its body is just the api key and the content
+    assertEquals(2, transport.bodies.size());
+    for(String body : transport.bodies) {
+      assertTrue(body, body.startsWith("apikey=" + API_KEY + "&text=Romney+was+in+Detroit.&outputMode=json"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAnalyze_NoExtractors() throws InterruptedException {
+    new DocumentAnalyzer(new Client(API_KEY)).analyze(new CallTypeText(TEXT));
+  }
+
+  private Client createClient(final Transport transport) {
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    return client;
+  }
+
+  /**
+   * Serves the title and keywords json after a delay and keeps the request bodies.
+   */
+  private static class DelayedTransport implements Transport {
+    private final long delayMillis;
+    private final LoopbackTransport loopback = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON)
+        .setResponse(Constants.CALL_NAME_RANKED_KEYWORDS, KEYWORDS_JSON);
+    private final List<String> bodies = Collections.synchronizedList(new ArrayList<String>());
+
+    private DelayedTransport(final long delayMillis) {
+      this.delayMillis = delayMillis;
+    }
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      final ByteArrayOutputStream body = new ByteArrayOutputStream();
+      request.getBody().writeTo(body);
+      bodies.add(body.toString("UTF-8"));
+      try {
+        Thread.sleep(delayMillis);
+      }
+      catch(InterruptedException e) {
+        throw new IOException("Interrupted");
+      }
+      return loopback.execute(request);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/**
+ * File: CallFutureTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CallFutureTest {
+  @Test
+  public void testGetResponse() throws IOException {
+    final Response<TitleAlchemyEntity> response = new Response<TitleAlchemyEntity>();
+    final CallFuture<TitleAlchemyEntity> future = new CallFuture<TitleAlchemyEntity>(new Callable<Response<TitleAlchemyEntity>>() {
+      public Response<TitleAlchemyEntity> call() {
+        return response;
+      }
+    });
+
+    future.run();
+
+    assertSame(response, future.getResponse());
+  }
+
+  @Test
+  public void testGetResponse_UnwrapsIOException() {
+    final IOException exception = new IOException("daily-transaction-limit-exceeded");
+    final CallFuture<TitleAlchemyEntity> future = new CallFuture<TitleAlchemyEntity>(new Callable<Response<TitleAlchemyEntity>>() {
+      public Response<TitleAlchemyEntity> call() throws IOException {
+        throw exception;
+      }
+    });
+
+    future.run();
+
+    try {
+      future.getResponse();
+    }
+    catch(IOException e) {
+      assertSame(exception, e);
+    }
+  }
+
+  @Test
+  public void testAddListener_BeforeAndAfterCompletion() {
+    final Response<TitleAlchemyEntity> response = new Response<TitleAlchemyEntity>();
+    final CallFuture<TitleAlchemyEntity> future = new CallFuture<TitleAlchemyEntity>(new Callable<Response<TitleAlchemyEntity>>() {
+      public Response<TitleAlchemyEntity> call() {
+        return response;
+      }
+    });
+    final RecordingListener before = new RecordingListener();
+    final RecordingListener after = new RecordingListener();
+
+    future.addListener(before);
+    assertEquals(0, before.responses.size());
+
+    future.run();
+    future.addListener(after);
+
+    assertEquals(1, before.responses.size());
+    assertSame(response, before.responses.get(0));
+    assertEquals(1, after.responses.size());
+    assertEquals(0, before.failures.size());
+  }
+
+  @Test
+  public void testAddListener_Failure() {
+    final IOException exception = new IOException("cannot-retrieve");
+    final CallFuture<TitleAlchemyEntity> future = new CallFuture<TitleAlchemyEntity>(new Callable<Response<TitleAlchemyEntity>>() {
+      public Response<TitleAlchemyEntity> call() throws IOException {
+        throw exception;
+      }
+    });
+    final RecordingListener listener = new RecordingListener();
+    future.addListener(listener);
+
+    future.run();
+
+    assertEquals(0, listener.responses.size());
+    assertEquals(1, listener.failures.size());
+    assertSame(exception, listener.failures.get(0));
+  }
+
+  @Test
+  public void testAddListener_Cancelled() {
+    final CallFuture<TitleAlchemyEntity> future = new CallFuture<TitleAlchemyEntity>(new Callable<Response<TitleAlchemyEntity>>() {
+      public Response<TitleAlchemyEntity> call() {
+        return null;
+      }
+    });
+    final RecordingListener listener = new RecordingListener();
+    future.addListener(listener);
+
+    future.cancel(false);
+
+    assertEquals(1, listener.failures.size());
+    assertTrue(future.isCancelled());
+  }
+
+  private static class RecordingListener implements CallListener<TitleAlchemyEntity> {
+    private final List<Response<TitleAlchemyEntity>> responses = new ArrayList<Response<TitleAlchemyEntity>>();
+    private final List<Throwable> failures = new ArrayList<Throwable>();
+
+    public void onSuccess(final Response<TitleAlchemyEntity> response) {
+      responses.add(response);
+    }
+
+    public void onFailure(final Throwable throwable) {
+      failures.add(throwable);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * File: SingleFlightTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+  @Test
+  public void testExecute_SharesInFlightWork() throws Exception {
+    final SingleFlight<String, Object> singleFlight = new SingleFlight<String, Object>();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger runs = new AtomicInteger();
+    final Callable<Object> work = new Callable<Object>() {
+      public Object call() throws InterruptedException {
+        runs.incrementAndGet();
+        started.countDown();
+        release.await();
+        return new Object();
+      }
+    };
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Future<Object> leader = executor.submit(execute(singleFlight, "key", work));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      final Future<Object> follower1 = executor.submit(execute(singleFlight, "key", work));
+      final Future<Object> follower2 = executor.submit(execute(singleFlight, "key", work));
+      while(singleFlight.getSharedCount() < 2) {
+        Thread.sleep(1L);
+      }
+      release.countDown();
+
+      final Object result = leader.get(5, TimeUnit.SECONDS);
+      assertSame(result, follower1.get(5, TimeUnit.SECONDS));
+      assertSame(result, follower2.get(5, TimeUnit.SECONDS));
+      assertEquals(1, runs.get());
+      assertEquals(1, singleFlight.getExecutionCount());
+      assertEquals(0, singleFlight.getInFlightCount());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExecute_RunsAgainAfterCompletion() throws Exception {
+    final SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+    final AtomicInteger runs = new AtomicInteger();
+    final Callable<Integer> work = new Callable<Integer>() {
+      public Integer call() {
+        return runs.incrementAndGet();
+      }
+    };
+
+    assertEquals(Integer.valueOf(1), singleFlight.execute("key", work, 0L));
+    assertEquals(Integer.valueOf(2), singleFlight.execute("key", work, 0L));
+    assertEquals(0, singleFlight.getSharedCount());
+  }
+
+  @Test
+  public void testExecute_Failure() throws Exception {
+    final SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+    final IOException failure = new IOException("failed");
+
+    try {
+      singleFlight.execute("key", new Callable<Integer>() {
+        public Integer call() throws IOException {
+          throw failure;
+        }
+      }, 0L);
+      fail("Expected ExecutionException");
+    }
+    catch(ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+    assertEquals(0, singleFlight.getInFlightCount());
+  }
+
+  @Test(expected = TimeoutException.class)
+  public void testExecute_FollowerTimeout() throws Exception {
+    final SingleFlight<String, Object> singleFlight = new SingleFlight<String, Object>();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Callable<Object> work = new Callable<Object>() {
+      public Object call() throws InterruptedException {
+        started.countDown();
+        release.await();
+        return new Object();
+      }
+    };
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(execute(singleFlight, "key", work));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      singleFlight.execute("key", work, 50L);
+    }
+    finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  private <V> Callable<V> execute(final SingleFlight<String, V> singleFlight, final String key, final Callable<V> work) {
+    return new Callable<V>() {
+      public V call() throws Exception {
+        return singleFlight.execute(key, work, 0L);
+      }
+    };
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * File: VirtualThreadsTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadsTest {
+  @Test
+  public void testNewPerTaskExecutor() throws Exception {
+    if(!VirtualThreads.isSupported()) {
+      try {
+        VirtualThreads.newPerTaskExecutor();
+        fail("Expected UnsupportedOperationException");
+      }
+      catch(UnsupportedOperationException e) {
+        // expected before Java 21
+      }
+      return;
+    }
+
+    final ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+    try {
+      final String result = executor.submit(new Callable<String>() {
+        public String call() {
+          return "done";
+        }
+      }).get(5, TimeUnit.SECONDS);
+
+      assertEquals("done", result);
+      assertFalse(executor.isShutdown());
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * File: BatchClientTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.batch;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.Constants;
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallTypeUrl;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import com.likethecolor.alchemy.api.transport.HttpRequest;
+import com.likethecolor.alchemy.api.transport.HttpResponse;
+import com.likethecolor.alchemy.api.transport.Transport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BatchClientTest {
+  private static final String API_KEY = "0a1b2c3d4e5f6g7h8i9j";
+
+  @Test
+  public void testCallAll() throws InterruptedException {
+    final EchoTransport transport = new EchoTransport();
+    final BatchClient batchClient = new BatchClient(createClient(transport));
+    batchClient.setParallelism(4);
+    final List<AbstractCall<TitleAlchemyEntity>> calls = new ArrayList<AbstractCall<TitleAlchemyEntity>>();
+    for(int i = 0; i < 50; i++) {
+      calls.add(new TitleCall(new CallTypeUrl("http://www.example.com/" + (i % 7 == 3 ? "fail" : "page") + i)));
+    }
+
+    final List<BatchResult<TitleAlchemyEntity>> results = batchClient.callAll(calls);
+
+    assertEquals(50, results.size());
+    for(int i = 0; i < 50; i++) {
+      final BatchResult<TitleAlchemyEntity> result = results.get(i);
+      assertEquals(i, result.getIndex());
+      assertSame(calls.get(i), result.getCall());
+      if(i % 7 == 3) {
+        assertFalse(result.isSuccess());
+        assertNull(result.getResponse());
+        assertTrue(result.getException() instanceof IOException);
+      }
+      else {
+        assertTrue(result.isSuccess());
+        assertEquals("page" + i, result.getResponse().iterator().next().getTitle());
+      }
+    }
+    assertTrue(transport.maxConcurrent.get() <= 4);
+    batchClient.shutdown();
+  }
+
+  @Test
+  public void testCallAll_Empty() throws InterruptedException {
+    final BatchClient batchClient = new BatchClient(createClient(new EchoTransport()));
+
+    assertTrue(batchClient.callAll(new ArrayList<TitleCall>()).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetParallelism_Zero() {
+    new BatchClient(new Client(API_KEY)).setParallelism(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NullClient() {
+    new BatchClient(null);
+  }
+
+  private Client createClient(final Transport transport) {
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    return client;
+  }
+
+  /**
+   * Answers with the last path segment of the requested url as the title,
+   * fails urls containing "fail" and tracks how many requests overlap.
+   */
+  private static class EchoTransport implements Transport {
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      final int now = concurrent.incrementAndGet();
+      try {
+        int max;
+        while(now > (max = maxConcurrent.get()) && !maxConcurrent.compareAndSet(max, now)) {
+          // retry
+        }
+        Thread.sleep(2L);
+        final String query = URLDecoder.decode(request.getUrl().getQuery(), Constants.DEFAULT_ENCODING);
+        final String page = query.substring(query.lastIndexOf('/') + 1, query.indexOf('&', query.lastIndexOf('/')));
+        if(page.startsWith("fail")) {
+          throw new IOException("failed " + page);
+        }
+        final String json = "{\"status\": \"OK\", \"title\": \"" + page + "\"}";
+        return new HttpResponse(200, new HashMap<String, String>(), new ByteArrayInputStream(json.getBytes("UTF-8")));
+      }
+      catch(InterruptedException e) {
+        throw new IOException("Interrupted");
+      }
+      finally {
+        concurrent.decrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/**
+ * File: CallStreamTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.batch;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.call.AbstractCall;
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallTypeUrl;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import com.likethecolor.alchemy.api.transport.HttpRequest;
+import com.likethecolor.alchemy.api.transport.HttpResponse;
+import com.likethecolor.alchemy.api.transport.Transport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CallStreamTest {
+  private static final String API_KEY = "0a1b2c3d4e5f6g7h8i9j";
+
+  @Test
+  public void testStream() throws InterruptedException {
+    final BatchClient batchClient = new BatchClient(createClient(new SleepTransport(2L)));
+    batchClient.setParallelism(4);
+    final CountingSource source = new CountingSource(100);
+
+    final CallStream<TitleAlchemyEntity> stream = batchClient.stream(source);
+    assertEquals(4, stream.getWindow());
+
+    final Set<Integer> indexes = new HashSet<Integer>();
+    int consumed = 0;
+    while(stream.hasNext()) {
+      final BatchResult<TitleAlchemyEntity> result = stream.next();
+      consumed++;
+      assertTrue(result.isSuccess());
+      assertEquals("Title", result.getResponse().iterator().next().getTitle());
+      assertTrue(indexes.add(result.getIndex()));
+      assertTrue(source.taken - consumed <= 4);
+    }
+    assertEquals(100, consumed);
+    assertEquals(100, indexes.size());
+    assertEquals(100, stream.getStartedCount());
+    batchClient.shutdown();
+  }
+
+  @Test
+  public void testStream_SlowConsumerStopsSource() throws InterruptedException {
+    final BatchClient batchClient = new BatchClient(createClient(new SleepTransport(0L)));
+    batchClient.setParallelism(3);
+    final CountingSource source = new CountingSource(1000);
+
+    final CallStream<TitleAlchemyEntity> stream = batchClient.stream(source);
+    stream.next();
+    Thread.sleep(50L);
+
+    assertEquals(4, source.taken);
+    stream.close();
+    batchClient.shutdown();
+  }
+
+  @Test
+  public void testClose() throws InterruptedException {
+    final BatchClient batchClient = new BatchClient(createClient(new SleepTransport(10000L)));
+    batchClient.setParallelism(2);
+    final CountingSource source = new CountingSource(10);
+
+    final CallStream<TitleAlchemyEntity> stream = batchClient.stream(source);
+    assertTrue(stream.hasNext());
+    stream.close();
+
+    assertFalse(stream.hasNext());
+    assertEquals(2, source.taken);
+    batchClient.shutdown();
+  }
+
+  @Test
+  public void testStream_RejectedCallNotCounted() {
+    final BatchClient batchClient = new BatchClient(createClient(new SleepTransport(0L)));
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    final CallStream<TitleAlchemyEntity> stream = new CallStream<TitleAlchemyEntity>(batchClient, new CountingSource(1), 2, executor);
+
+    try {
+      stream.hasNext();
+      fail("Expected RejectedExecutionException");
+    }
+    catch(RejectedExecutionException e) {
+      // the executor is shut down
+    }
+    assertFalse(stream.hasNext());
+    batchClient.shutdown();
+  }
+
+  @Test
+  public void testNext_Timeout() throws InterruptedException {
+    final BatchClient batchClient = new BatchClient(createClient(new SleepTransport(10000L)));
+    final CallStream<TitleAlchemyEntity> stream = batchClient.stream(new CountingSource(1));
+
+    assertNull(stream.next(10L, TimeUnit.MILLISECONDS));
+    assertTrue(stream.hasNext());
+    stream.close();
+    batchClient.shutdown();
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNext_Empty() throws InterruptedException {
+    final BatchClient batchClient = new BatchClient(createClient(new SleepTransport(0L)));
+
+    batchClient.stream(new CountingSource(0)).next();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStream_Null() {
+    new BatchClient(new Client(API_KEY)).stream((Iterator<TitleCall>) null);
+  }
+
+  private Client createClient(final Transport transport) {
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    return client;
+  }
+
+  /**
+   * Creates the calls on demand and counts how many were taken.
+   */
+  private static class CountingSource implements Iterator<AbstractCall<TitleAlchemyEntity>> {
+    private final int size;
+    private volatile int taken;
+
+    private CountingSource(final int size) {
+      this.size = size;
+    }
+
+    public boolean hasNext() {
+      return taken < size;
+    }
+
+    public AbstractCall<TitleAlchemyEntity> next() {
+      return new TitleCall(new CallTypeUrl("http://www.example.com/page" + taken++));
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class SleepTransport implements Transport {
+    private final long sleepMillis;
+
+    private SleepTransport(final long sleepMillis) {
+      this.sleepMillis = sleepMillis;
+    }
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      try {
+        Thread.sleep(sleepMillis);
+      }
+      catch(InterruptedException e) {
+        throw new IOException("Interrupted");
+      }
+      final String json = "{\"status\": \"OK\", \"title\": \"Title\"}";
+      return new HttpResponse(200, new HashMap<String, String>(), new ByteArrayInputStream(json.getBytes("UTF-8")));
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * File: ExecutorBenchmark.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.benchmark;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.Constants;
+import com.likethecolor.alchemy.api.async.VirtualThreads;
+import com.likethecolor.alchemy.api.batch.BatchClient;
+import com.likethecolor.alchemy.api.batch.BatchResult;
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallTypeUrl;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import com.likethecolor.alchemy.api.transport.LoopbackTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the throughput of a batch of calls run on fixed pools of platform
+ * threads with the same batch run on virtual threads.  The calls go to a
+ * {@link LoopbackTransport} that waits a fixed time per call in place of the
+ * network, so the numbers show how well each mode overlaps waiting calls.
+ * <p/>
+ * Not a unit test; run it with the test classpath on Java 21 or later:
+ * <pre>
+ *   java -cp target/classes:target/test-classes:... \
+ *       com.likethecolor.alchemy.api.benchmark.ExecutorBenchmark [calls] [latencyMillis]
+ * </pre>
+ */
+public class ExecutorBenchmark {
+  private static final String API_KEY = "0a1b2c3d4e5f6g7h8i9j";
+  private static final String TITLE_JSON = "{\"status\": \"OK\", \"title\": \"benchmark\"}";
+  private static final int[] PLATFORM_POOL_SIZES = {16, 64, 256};
+  private static final int VIRTUAL_PARALLELISM = 10000;
+
+  public static void main(final String[] args) throws InterruptedException {
+    final int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    final long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 50L;
+    final List<TitleCall> batch = createBatch(calls);
+
+    System.out.println("calls: " + calls + ", simulated latency: " + latencyMillis + " ms");
+    System.out.println(String.format("%-24s %12s %14s", "mode", "millis", "calls/second"));
+
+    // warm up the client code paths
+    run(Executors.newFixedThreadPool(16), 16, createBatch(Math.min(calls, 1000)), 0L);
+
+    for(int poolSize : PLATFORM_POOL_SIZES) {
+      report("platform threads x " + poolSize, calls, run(Executors.newFixedThreadPool(poolSize), poolSize, batch, latencyMillis));
+    }
+    if(VirtualThreads.isSupported()) {
+      final int parallelism = Math.min(calls, VIRTUAL_PARALLELISM);
+      report("virtual threads x " + parallelism, calls, run(VirtualThreads.newPerTaskExecutor(), parallelism, batch, latencyMillis));
+    }
+    else {
+      System.out.println("virtual threads are not supported on Java " + System.getProperty("java.version"));
+    }
+  }
+
+  private static long run(final ExecutorService executor, final int parallelism, final List<TitleCall> batch, final long latencyMillis) throws InterruptedException {
+    final Client client = new Client(API_KEY);
+    client.setTransport(new LoopbackTransport()
+                            .setResponse(Constants.CALL_NAME_TITLE, TITLE_JSON)
+                            .setLatencyMillis(latencyMillis));
+    final BatchClient batchClient = new BatchClient(client);
+    batchClient.setExecutorService(executor);
+    batchClient.setParallelism(parallelism);
+    try {
+      final long start = System.nanoTime();
+      final List<BatchResult<TitleAlchemyEntity>> results = batchClient.callAll(batch);
+      final long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+      for(BatchResult<TitleAlchemyEntity> result : results) {
+        if(!result.isSuccess()) {
+          throw new IllegalStateException("Call failed: " + result);
+        }
+      }
+      return elapsedMillis;
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  private static List<TitleCall> createBatch(final int calls) {
+    final List<TitleCall> batch = new ArrayList<TitleCall>(calls);
+    for(int i = 0; i < calls; i++) {
+      batch.add(new TitleCall(new CallTypeUrl("http://www.example.com/" + i)));
+    }
+    return batch;
+  }
+
+  private static void report(final String mode, final int calls, final long elapsedMillis) {
+    final double callsPerSecond = elapsedMillis == 0 ? calls : calls * 1000D / elapsedMillis;
+    System.out.println(String.format("%-24s %12d %14.0f", mode, elapsedMillis, callsPerSecond));
+  }
+}
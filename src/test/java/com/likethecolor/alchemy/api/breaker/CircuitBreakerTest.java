@@ -0,0 +1,196 @@
+/**
+ * File: CircuitBreakerTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.breaker;
+
+import com.likethecolor.alchemy.api.AlchemyApiException;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+  private static final String RELATIONS = "url/URLGetRelations";
+  private static final String LANGUAGE = "url/URLGetLanguage";
+
+  @Test
+  public void testDefaults() {
+    final CircuitBreaker breaker = new CircuitBreaker();
+
+    assertEquals(CircuitBreaker.DEFAULT_WINDOW_SIZE, breaker.getWindowSize());
+    assertEquals(CircuitBreaker.DEFAULT_MIN_CALLS, breaker.getMinCalls());
+    assertEquals(CircuitBreaker.DEFAULT_FAILURE_RATE_THRESHOLD, breaker.getFailureRateThreshold(), 0D);
+    assertEquals(0L, breaker.getSlowCallThresholdMillis());
+    assertEquals(CircuitBreaker.DEFAULT_OPEN_MILLIS, breaker.getOpenMillis());
+    assertEquals(CircuitBreaker.DEFAULT_HALF_OPEN_TRIALS, breaker.getHalfOpenTrials());
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+  }
+
+  @Test
+  public void testOpensOnFailureRate() throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(10, 4);
+    call(breaker, RELATIONS, false);
+    call(breaker, RELATIONS, true);
+    call(breaker, RELATIONS, true);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+
+    call(breaker, RELATIONS, false);
+
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState(RELATIONS));
+    try {
+      breaker.acquire(RELATIONS);
+      fail("Expected the circuit to be open.");
+    }
+    catch(CircuitOpenException e) {
+      assertEquals(RELATIONS, e.getEndpoint());
+      assertTrue(e.getRetryAfterMillis() > 0);
+    }
+    assertEquals(1, breaker.getRejectedCount());
+
+    // other endpoints are not affected
+    breaker.acquire(LANGUAGE);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(LANGUAGE));
+  }
+
+  @Test
+  public void testOpensOnSlowCallRate() throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(4, 4);
+    breaker.setSlowCallThresholdMillis(1000L);
+    breaker.setSlowCallRateThreshold(0.75D);
+    for(int i = 0; i < 3; i++) {
+      breaker.acquire(RELATIONS);
+      breaker.record(RELATIONS, false, 1500L);
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+
+    breaker.acquire(RELATIONS);
+    breaker.record(RELATIONS, false, 1000L);
+
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState(RELATIONS));
+  }
+
+  @Test
+  public void testOldOutcomesDropped() throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(4, 4);
+    call(breaker, RELATIONS, true);
+    for(int i = 0; i < 6; i++) {
+      call(breaker, RELATIONS, false);
+    }
+    call(breaker, RELATIONS, true);
+
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+  }
+
+  @Test
+  public void testHalfOpenCloses() throws Exception {
+    final CircuitBreaker breaker = open(RELATIONS);
+    Thread.sleep(30L);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(RELATIONS));
+
+    breaker.acquire(RELATIONS);
+    breaker.acquire(RELATIONS);
+    try {
+      breaker.acquire(RELATIONS);
+      fail("Expected only two trial calls.");
+    }
+    catch(CircuitOpenException e) {
+      assertEquals(0L, e.getRetryAfterMillis());
+    }
+    breaker.record(RELATIONS, false, 10L);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(RELATIONS));
+    breaker.record(RELATIONS, false, 10L);
+
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+  }
+
+  @Test
+  public void testHalfOpenReopens() throws Exception {
+    final CircuitBreaker breaker = open(RELATIONS);
+    Thread.sleep(30L);
+
+    breaker.acquire(RELATIONS);
+    breaker.recordFailure(RELATIONS, new SocketTimeoutException("Read timed out"), 10L);
+
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState(RELATIONS));
+  }
+
+  @Test
+  public void testRecordFailure_Classification() throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(2, 2);
+    breaker.setFailureRateThreshold(1D);
+    for(int i = 0; i < 4; i++) {
+      breaker.acquire(RELATIONS);
+      breaker.recordFailure(RELATIONS, new AlchemyApiException(Response.STATUS.ERROR,
+          "unsupported-text-language", "{}"), 10L);
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+
+    breaker.acquire(RELATIONS);
+    breaker.recordFailure(RELATIONS, new DeadlineExceededException("Call deadline of 10 ms exceeded", 10L), 10L);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+    breaker.acquire(RELATIONS);
+    breaker.recordFailure(RELATIONS, new IOException("Connection reset"), 10L);
+
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState(RELATIONS));
+  }
+
+  @Test
+  public void testRecordFailure_QueuedDeadline() throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(2, 2);
+    for(int i = 0; i < 2; i++) {
+      breaker.acquire(RELATIONS);
+      breaker.recordFailure(RELATIONS, new DeadlineExceededException("Call deadline of 10 ms exceeded", 10L, true), 10L);
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(RELATIONS));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_MinCallsAboveWindow() {
+    new CircuitBreaker(10, 11);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetFailureRateThreshold_Zero() {
+    new CircuitBreaker().setFailureRateThreshold(0D);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetHalfOpenTrials_Zero() {
+    new CircuitBreaker().setHalfOpenTrials(0);
+  }
+
+  private CircuitBreaker open(final String endpoint) throws IOException {
+    final CircuitBreaker breaker = new CircuitBreaker(2, 2);
+    breaker.setOpenMillis(20L);
+    breaker.setHalfOpenTrials(2);
+    call(breaker, endpoint, true);
+    call(breaker, endpoint, true);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState(endpoint));
+    return breaker;
+  }
+
+  private void call(final CircuitBreaker breaker, final String endpoint, final boolean isFailure) throws IOException {
+    breaker.acquire(endpoint);
+    breaker.record(endpoint, isFailure, 10L);
+  }
+}
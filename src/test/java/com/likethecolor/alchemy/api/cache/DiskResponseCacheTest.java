@@ -0,0 +1,333 @@
+/**
+ * File: DiskResponseCacheTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallTypeUrl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DiskResponseCacheTest {
+  private static final TitleCall CALL = new TitleCall(new CallTypeUrl("http://www.politico.com/"));
+  private static final String BODY = "{\"status\": \"OK\", \"title\": \"Detroit News ed upset over Romney edit\"}";
+
+  private File folder;
+
+  @Before
+  public void setUp() throws IOException {
+    folder = createTempDirectory();
+  }
+
+  @After
+  public void tearDown() {
+    delete(folder);
+  }
+
+  @Test
+  public void testGet_AfterRestart() throws IOException {
+    final File directory = new File(folder, "cache");
+    DiskResponseCache cache = new DiskResponseCache(directory);
+    assertNull(cache.get("a"));
+    cache.put("a", CALL, BODY);
+    cache.close();
+
+    cache = new DiskResponseCache(directory);
+    try {
+      assertEquals(BODY, cache.get("a"));
+      assertEquals(1, cache.size());
+      assertEquals(1, cache.getHitCount());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testGet_Expired() throws IOException {
+    final DiskResponseCache cache = new DiskResponseCache(new File(folder, "cache"), 1024L * 1024L, 1000L);
+    try {
+      cache.put("a", CALL, BODY, 0L);
+      assertEquals(BODY, cache.get("a", 999L));
+
+      assertNull(cache.get("a", 1000L));
+      assertEquals(1, cache.getExpirationCount());
+      assertEquals(1, cache.getMissCount());
+      assertEquals(0, cache.size());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testPut_Replaces() throws IOException {
+    final File directory = new File(folder, "cache");
+    DiskResponseCache cache = new DiskResponseCache(directory);
+    cache.put("a", CALL, "{}");
+    final long liveBytes = cache.getLiveBytes();
+    cache.put("a", CALL, "[]");
+    assertEquals(1, cache.size());
+    assertEquals(liveBytes, cache.getLiveBytes());
+    cache.close();
+
+    cache = new DiskResponseCache(directory);
+    try {
+      assertEquals("[]", cache.get("a"));
+      assertEquals(liveBytes, cache.getLiveBytes());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testPut_NoTimeToLive() throws IOException {
+    final DiskResponseCache cache = new DiskResponseCache(new File(folder, "cache"));
+    try {
+      cache.setTimeToLiveMillis(TitleCall.class, 0L);
+      cache.put("a", CALL, BODY);
+
+      assertEquals(0, cache.size());
+      assertNull(cache.get("a"));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testInvalidate_AfterRestart() throws IOException {
+    final File directory = new File(folder, "cache");
+    DiskResponseCache cache = new DiskResponseCache(directory);
+    cache.put("a", CALL, BODY);
+    cache.put("b", CALL, BODY);
+    cache.invalidate("a");
+    assertNull(cache.get("a"));
+    cache.close();
+
+    cache = new DiskResponseCache(directory);
+    try {
+      assertNull(cache.get("a"));
+      assertEquals(BODY, cache.get("b"));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testCompact() throws IOException {
+    final File directory = new File(folder, "cache");
+    DiskResponseCache cache = new DiskResponseCache(directory);
+    cache.put("a", CALL, BODY);
+    cache.put("b", CALL, BODY);
+    cache.put("a", CALL, "{}");
+    cache.invalidate("b");
+    final long logBytes = cache.getLogBytes();
+
+    cache.compact();
+
+    assertEquals(1, cache.getCompactionCount());
+    assertTrue(cache.getLogBytes() < logBytes);
+    assertEquals(cache.getLiveBytes() + 4, cache.getLogBytes());
+    assertEquals("{}", cache.get("a"));
+    cache.put("c", CALL, BODY);
+    cache.close();
+
+    cache = new DiskResponseCache(directory);
+    try {
+      assertEquals("{}", cache.get("a"));
+      assertNull(cache.get("b"));
+      assertEquals(BODY, cache.get("c"));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testPut_CompactsPastMaxBytes() throws Exception {
+    final DiskResponseCache cache = new DiskResponseCache(new File(folder, "cache"), 1000L, 60000L);
+    try {
+      for(int i = 0; i < 20; i++) {
+        cache.put("key" + i, CALL, BODY);
+        cache.awaitCompaction();
+      }
+
+      assertTrue(cache.getCompactionCount() > 0);
+      assertTrue(cache.getEvictionCount() > 0);
+      assertTrue(cache.getLogBytes() <= cache.getMaxBytes());
+      assertNull(cache.get("key0"));
+      assertEquals(BODY, cache.get("key19"));
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testGetAndPut_WhileCompacting() throws Exception {
+    final DiskResponseCache cache = new DiskResponseCache(new File(folder, "cache"), 4000L, 60000L);
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    final Thread[] threads = new Thread[4];
+    for(int t = 0; t < threads.length; t++) {
+      final int thread = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for(int i = 0; i < 200; i++) {
+              final String key = "key" + thread + "-" + (i % 10);
+              cache.put(key, CALL, BODY + i);
+              final String body = cache.get(key);
+              // may have been evicted by a compaction, never garbled
+              if(body != null && !body.startsWith(BODY)) {
+                throw new AssertionError("Unexpected body " + body);
+              }
+            }
+          }
+          catch(Throwable e) {
+            failures.add(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    try {
+      for(Thread thread : threads) {
+        thread.join();
+      }
+      cache.awaitCompaction();
+
+      assertTrue(failures.toString(), failures.isEmpty());
+      assertTrue(cache.getCompactionCount() > 0);
+      cache.compact();
+      assertEquals(cache.getLiveBytes() + 4, cache.getLogBytes());
+      for(int t = 0; t < threads.length; t++) {
+        final String body = cache.get("key" + t + "-9");
+        assertTrue(body == null || body.equals(BODY + 199));
+      }
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testLoad_PartlyWrittenRecord() throws IOException {
+    final File directory = new File(folder, "cache");
+    DiskResponseCache cache = new DiskResponseCache(directory);
+    cache.put("a", CALL, BODY);
+    cache.put("b", CALL, BODY);
+    cache.close();
+    final RandomAccessFile log = new RandomAccessFile(new File(directory, DiskResponseCache.LOG_FILE_NAME), "rw");
+    try {
+      log.setLength(log.length() - 5);
+    }
+    finally {
+      log.close();
+    }
+
+    cache = new DiskResponseCache(directory);
+    try {
+      assertEquals(1, cache.size());
+      assertEquals(BODY, cache.get("a"));
+      assertNull(cache.get("b"));
+      assertEquals(cache.getLiveBytes() + 4, cache.getLogBytes());
+    }
+    finally {
+      cache.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testLoad_NotALog() throws IOException {
+    final File directory = new File(folder, "cache");
+    final FileOutputStream out = new FileOutputStream(new File(directory, DiskResponseCache.LOG_FILE_NAME));
+    try {
+      out.write("not a log".getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+
+    new DiskResponseCache(directory);
+  }
+
+  @Test
+  public void testConstructor_DirectoryInUse() throws IOException {
+    final File directory = new File(folder, "cache");
+    final DiskResponseCache cache = new DiskResponseCache(directory);
+    try {
+      new DiskResponseCache(directory);
+      fail("Expected IOException");
+    }
+    catch(IOException e) {
+      // locked by the first cache
+    }
+    finally {
+      cache.close();
+    }
+    new DiskResponseCache(directory).close();
+  }
+
+  @Test(expected = IOException.class)
+  public void testGet_Closed() throws IOException {
+    final DiskResponseCache cache = new DiskResponseCache(new File(folder, "cache"));
+    cache.close();
+
+    cache.get("a");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NoMaxBytes() throws IOException {
+    new DiskResponseCache(new File(folder, "cache"), 0L, 1000L);
+  }
+
+  private static File createTempDirectory() throws IOException {
+    final File directory = File.createTempFile("alchemy-cache", "");
+    if(!directory.delete() || !directory.mkdir()) {
+      throw new IOException("Cannot create " + directory + ".");
+    }
+    return directory;
+  }
+
+  private static void delete(final File file) {
+    final File[] children = file.listFiles();
+    if(children != null) {
+      for(File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ * File: NegativeCacheTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.AlchemyApiException;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.transport.HttpStatusException;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeCacheTest {
+  private static final String KEY = "text/TextGetRankedNamedEntities?0123";
+  private static final String JSON = "{\"status\": \"ERROR\", \"statusInfo\": \"unsupported-text-language\"}";
+
+  @Test
+  public void testDefaults() {
+    final NegativeCache cache = new NegativeCache();
+
+    assertEquals(NegativeCache.DEFAULT_MAX_ENTRIES, cache.getMaxEntries());
+    assertEquals(NegativeCache.DEFAULT_TIME_TO_LIVE_MILLIS, cache.getTimeToLiveMillis());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testIsDeterministic() {
+    final NegativeCache cache = new NegativeCache();
+
+    assertTrue(cache.isDeterministic(error("unsupported-text-language")));
+    assertTrue(cache.isDeterministic(error("content-exceeds-size-limit")));
+    assertTrue(cache.isDeterministic(error("cannot-retrieve")));
+    assertTrue(cache.isDeterministic(error(" Cannot-Retrieve:http-404 ")));
+    assertTrue(cache.isDeterministic(error("page-is-not-html")));
+    assertFalse(cache.isDeterministic(error("daily-transaction-limit-exceeded")));
+    assertFalse(cache.isDeterministic(error("invalid-api-key")));
+    assertFalse(cache.isDeterministic(error(null)));
+    assertFalse(cache.isDeterministic(new HttpStatusException(404, "Not Found")));
+    assertFalse(cache.isDeterministic(new SocketTimeoutException("Read timed out")));
+
+    cache.addStatusInfo("Cannot-Locate-Keyphrase");
+
+    assertTrue(cache.isDeterministic(error("cannot-locate-keyphrase")));
+  }
+
+  @Test
+  public void testGet() {
+    final NegativeCache cache = new NegativeCache(10, 1000L);
+    final AlchemyApiException failure = error("unsupported-text-language");
+
+    assertNull(cache.get(KEY, 0L));
+    assertTrue(cache.put(KEY, failure, 0L));
+    final AlchemyApiException cached = cache.get(KEY, 999L);
+
+    assertNotSame(failure, cached);
+    assertEquals(Response.STATUS.ERROR, cached.getStatus());
+    assertEquals("unsupported-text-language", cached.getStatusInfo());
+    assertEquals(JSON, cached.getJsonString());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testGet_Expired() {
+    final NegativeCache cache = new NegativeCache(10, 1000L);
+    cache.put(KEY, error("cannot-retrieve"), 0L);
+
+    assertNull(cache.get(KEY, 1000L));
+    assertEquals(1, cache.getExpirationCount());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testPut_NotDeterministic() {
+    final NegativeCache cache = new NegativeCache(10, 1000L);
+
+    assertFalse(cache.put(KEY, error("daily-transaction-limit-exceeded"), 0L));
+    assertFalse(cache.put(KEY, new SocketTimeoutException("Read timed out"), 0L));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testPut_EvictsLeastRecentlyUsed() {
+    final NegativeCache cache = new NegativeCache(2, 1000L);
+    cache.put("a", error("cannot-retrieve"), 0L);
+    cache.put("b", error("cannot-retrieve"), 0L);
+    cache.get("a", 1L);
+
+    cache.put("c", error("cannot-retrieve"), 2L);
+
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get("b", 3L));
+    assertEquals("cannot-retrieve", cache.get("a", 3L).getStatusInfo());
+  }
+
+  @Test
+  public void testInvalidate() {
+    final NegativeCache cache = new NegativeCache(10, 1000L);
+    cache.put("a", error("cannot-retrieve"), 0L);
+    cache.put("b", error("cannot-retrieve"), 0L);
+
+    cache.invalidate("a");
+    assertNull(cache.get("a", 1L));
+    assertEquals(1, cache.size());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NoTimeToLive() {
+    new NegativeCache(10, 0L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddStatusInfo_Empty() {
+    new NegativeCache().addStatusInfo(" ");
+  }
+
+  private static AlchemyApiException error(final String statusInfo) {
+    return new AlchemyApiException(Response.STATUS.ERROR, statusInfo, JSON);
+  }
+}
@@ -0,0 +1,199 @@
+/**
+ * File: ResponseCacheTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.cache;
+
+import com.likethecolor.alchemy.api.Constants;
+import com.likethecolor.alchemy.api.call.LanguageCall;
+import com.likethecolor.alchemy.api.call.SentimentCall;
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallTypeHtml;
+import com.likethecolor.alchemy.api.call.type.CallTypeText;
+import com.likethecolor.alchemy.api.call.type.CallTypeUrl;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseCacheTest {
+  private static final String KEY = "url/URLGetTitle?0123";
+  private static final TitleCall CALL = new TitleCall(new CallTypeUrl("http://www.politico.com/"));
+
+  @Test
+  public void testDefaults() {
+    final ResponseCache cache = new ResponseCache();
+
+    assertEquals(ResponseCache.DEFAULT_MAX_ENTRIES, cache.getMaxEntries());
+    assertEquals(ResponseCache.DEFAULT_TIME_TO_LIVE_MILLIS, cache.getTimeToLiveMillis());
+    assertEquals(ResponseCache.DEFAULT_TIME_TO_LIVE_MILLIS, cache.getTimeToLiveMillis(CALL));
+    assertEquals(0, cache.size());
+    assertEquals(0D, cache.getHitRate(), 0D);
+  }
+
+  @Test
+  public void testGet() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    final Response<TitleAlchemyEntity> response = new Response<TitleAlchemyEntity>();
+
+    assertNull(cache.get(KEY, 0L));
+    cache.put(KEY, CALL, response, 0L);
+
+    assertSame(response, cache.get(KEY, 999L));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.5D, cache.getHitRate(), 0D);
+  }
+
+  @Test
+  public void testGet_Expired() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    cache.put(KEY, CALL, new Response<TitleAlchemyEntity>(), 0L);
+
+    assertNull(cache.get(KEY, 1000L));
+    assertEquals(1, cache.getExpirationCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testPut_EvictsLeastRecentlyUsed() {
+    final ResponseCache cache = new ResponseCache(2, 1000L);
+    final Response<TitleAlchemyEntity> first = new Response<TitleAlchemyEntity>();
+    cache.put("a", CALL, first, 0L);
+    cache.put("b", CALL, new Response<TitleAlchemyEntity>(), 0L);
+    assertSame(first, cache.get("a", 1L));
+
+    cache.put("c", CALL, new Response<TitleAlchemyEntity>(), 2L);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertSame(first, cache.get("a", 3L));
+    assertNull(cache.get("b", 3L));
+  }
+
+  @Test
+  public void testTimeToLive_PerCallClassAndType() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    cache.setTimeToLiveMillis(LanguageCall.class, 86400000L);
+    cache.setTimeToLiveMillis(SentimentCall.class, 60000L);
+    cache.setTimeToLiveMillis(SentimentCall.class, Constants.CALL_TYPE_URL, 5000L);
+
+    assertEquals(86400000L, cache.getTimeToLiveMillis(new LanguageCall(new CallTypeUrl("http://www.politico.com/"))));
+    assertEquals(5000L, cache.getTimeToLiveMillis(new SentimentCall(new CallTypeUrl("http://www.politico.com/"))));
+    assertEquals(60000L, cache.getTimeToLiveMillis(new SentimentCall(new CallTypeText("Romney was upset."))));
+    assertEquals(1000L, cache.getTimeToLiveMillis(CALL));
+  }
+
+  @Test
+  public void testPut_NoTimeToLive() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    cache.setTimeToLiveMillis(TitleCall.class, 0L);
+
+    cache.put(KEY, CALL, new Response<TitleAlchemyEntity>(), 0L);
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    cache.put(KEY, CALL, new Response<TitleAlchemyEntity>(), 0L);
+    cache.put("other", CALL, new Response<TitleAlchemyEntity>(), 0L);
+
+    cache.invalidate(KEY);
+    assertNull(cache.get(KEY, 1L));
+    assertEquals(1, cache.size());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testStartRefresh() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    cache.setRefreshAheadRatio(0.5D);
+    cache.put(KEY, CALL, new Response<TitleAlchemyEntity>(), 0L);
+
+    assertFalse(cache.startRefresh(KEY, 499L));
+    assertTrue(cache.startRefresh(KEY, 500L));
+    assertFalse(cache.startRefresh(KEY, 501L));
+    cache.finishRefresh(KEY);
+    assertTrue(cache.startRefresh(KEY, 600L));
+    assertFalse(cache.startRefresh("other", 600L));
+    assertEquals(2, cache.getRefreshCount());
+
+    final Response<TitleAlchemyEntity> refreshed = new Response<TitleAlchemyEntity>();
+    cache.put(KEY, CALL, refreshed, 700L);
+    cache.finishRefresh(KEY);
+
+    assertSame(refreshed, cache.get(KEY, 1100L));
+    assertFalse(cache.startRefresh(KEY, 1100L));
+    assertTrue(cache.startRefresh(KEY, 1200L));
+  }
+
+  @Test
+  public void testStartRefresh_NotUrl() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    cache.setRefreshAheadRatio(0.5D);
+    cache.setMaxStaleMillis(500L);
+    cache.put(KEY, new TitleCall(new CallTypeHtml("http://www.politico.com/", "<p>Romney</p>")), new Response<TitleAlchemyEntity>(), 0L);
+
+    assertFalse(cache.startRefresh(KEY, 900L));
+    assertNull(cache.get(KEY, 1000L));
+  }
+
+  @Test
+  public void testGet_Stale() {
+    final ResponseCache cache = new ResponseCache(10, 1000L);
+    cache.setMaxStaleMillis(500L);
+    final Response<TitleAlchemyEntity> response = new Response<TitleAlchemyEntity>();
+    cache.put(KEY, CALL, response, 0L);
+
+    assertFalse(cache.startRefresh(KEY, 999L));
+    assertSame(response, cache.get(KEY, 1200L));
+    assertEquals(1, cache.getStaleHitCount());
+    assertTrue(cache.startRefresh(KEY, 1200L));
+
+    assertNull(cache.get(KEY, 1500L));
+    assertEquals(1, cache.getExpirationCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetRefreshAheadRatio_One() {
+    new ResponseCache().setRefreshAheadRatio(1D);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetMaxStaleMillis_Negative() {
+    new ResponseCache().setMaxStaleMillis(-1L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NoEntries() {
+    new ResponseCache(0, 1000L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetTimeToLiveMillis_Negative() {
+    new ResponseCache().setTimeToLiveMillis(TitleCall.class, -1L);
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * File: HedgePolicyTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.hedge;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HedgePolicyTest {
+  private static final String ENDPOINT = "url/URLGetRelations";
+
+  @Test
+  public void testDefaults() {
+    final HedgePolicy policy = new HedgePolicy();
+
+    assertEquals(HedgePolicy.DEFAULT_PERCENTILE, policy.getPercentile(), 0D);
+    assertEquals(HedgePolicy.DEFAULT_MAX_HEDGE_RATIO, policy.getMaxHedgeRatio(), 0D);
+    assertEquals(HedgePolicy.DEFAULT_MIN_SAMPLES, policy.getMinSamples());
+  }
+
+  @Test
+  public void testGetHedgeDelayMillis() {
+    final HedgePolicy policy = new HedgePolicy(90D, 0.1D, 10);
+    for(int i = 1; i <= 9; i++) {
+      policy.recordLatency(ENDPOINT, i * 10L);
+    }
+    assertEquals(-1L, policy.getHedgeDelayMillis(ENDPOINT));
+
+    policy.recordLatency(ENDPOINT, 1000L);
+
+    assertEquals(90L, policy.getHedgeDelayMillis(ENDPOINT));
+    assertEquals(-1L, policy.getHedgeDelayMillis("url/URLGetTitle"));
+  }
+
+  @Test
+  public void testGetHedgeDelayMillis_OldSamplesDropped() {
+    final HedgePolicy policy = new HedgePolicy(100D, 0.1D, 1);
+    policy.recordLatency(ENDPOINT, 5000L);
+    for(int i = 0; i < HedgePolicy.DEFAULT_WINDOW_SIZE; i++) {
+      policy.recordLatency(ENDPOINT, 20L);
+    }
+
+    assertEquals(20L, policy.getHedgeDelayMillis(ENDPOINT));
+  }
+
+  @Test
+  public void testTryAcquireHedge() {
+    final HedgePolicy policy = new HedgePolicy(95D, 0.1D);
+    assertFalse(policy.tryAcquireHedge());
+
+    for(int i = 0; i < 20; i++) {
+      policy.recordCall();
+    }
+
+    assertTrue(policy.tryAcquireHedge());
+    assertTrue(policy.tryAcquireHedge());
+    assertFalse(policy.tryAcquireHedge());
+    assertEquals(2, policy.getHedgeCount());
+    assertEquals(2, policy.getRejectedCount());
+
+    policy.releaseHedge();
+
+    assertTrue(policy.tryAcquireHedge());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_ZeroPercentile() {
+    new HedgePolicy(0D, 0.1D);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_RatioAboveOne() {
+    new HedgePolicy(95D, 1.5D);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_ZeroMinSamples() {
+    new HedgePolicy(95D, 0.1D, 0);
+  }
+}
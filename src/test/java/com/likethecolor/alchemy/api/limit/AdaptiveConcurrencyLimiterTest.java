@@ -0,0 +1,202 @@
+/**
+ * File: AdaptiveConcurrencyLimiterTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.limit;
+
+import com.likethecolor.alchemy.api.AlchemyApiException;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.transport.Deadline;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+  private static final String ENDPOINT = "url/URLGetRelations";
+
+  @Test
+  public void testDefaults() {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+
+    assertEquals(AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT, limiter.getLimit(ENDPOINT));
+    assertEquals(AdaptiveConcurrencyLimiter.DEFAULT_MIN_LIMIT, limiter.getMinLimit());
+    assertEquals(AdaptiveConcurrencyLimiter.DEFAULT_MAX_LIMIT, limiter.getMaxLimit());
+    assertEquals(AdaptiveConcurrencyLimiter.DEFAULT_BACKOFF_RATIO, limiter.getBackoffRatio(), 0D);
+    assertEquals(AdaptiveConcurrencyLimiter.DEFAULT_LATENCY_TOLERANCE, limiter.getLatencyTolerance(), 0D);
+    assertEquals(0, limiter.getInFlight(ENDPOINT));
+  }
+
+  @Test
+  public void testRelease_Increases() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 5);
+    limiter.acquire(ENDPOINT, null);
+    limiter.acquire(ENDPOINT, null);
+    assertEquals(2, limiter.getInFlight(ENDPOINT));
+
+    limiter.release(ENDPOINT, false, 10L);
+    assertEquals(5, limiter.getLimit(ENDPOINT));
+    limiter.acquire(ENDPOINT, null);
+    limiter.acquire(ENDPOINT, null);
+    limiter.acquire(ENDPOINT, null);
+    limiter.release(ENDPOINT, false, 10L);
+
+    assertEquals(5, limiter.getLimit(ENDPOINT));
+    assertEquals(3, limiter.getInFlight(ENDPOINT));
+  }
+
+  @Test
+  public void testRelease_NotIncreasedWhenMostlyIdle() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10);
+    for(int i = 0; i < 10; i++) {
+      limiter.acquire(ENDPOINT, null);
+      limiter.release(ENDPOINT, false, 10L);
+    }
+
+    assertEquals(4, limiter.getLimit(ENDPOINT));
+  }
+
+  @Test
+  public void testReleaseFailure_Overload() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 20);
+    limiter.setBackoffRatio(0.5D);
+    limiter.acquire(ENDPOINT, null);
+    limiter.releaseFailure(ENDPOINT, new SocketTimeoutException("Read timed out"), 10L);
+    assertEquals(5, limiter.getLimit(ENDPOINT));
+
+    for(int i = 0; i < 3; i++) {
+      limiter.acquire(ENDPOINT, null);
+      limiter.releaseFailure(ENDPOINT, new DeadlineExceededException("Call deadline of 10 ms exceeded", 10L), 10L);
+    }
+
+    assertEquals(2, limiter.getLimit(ENDPOINT));
+  }
+
+  @Test
+  public void testReleaseFailure_NotOverload() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10);
+    limiter.acquire(ENDPOINT, null);
+    limiter.releaseFailure(ENDPOINT, new AlchemyApiException(Response.STATUS.ERROR, "unsupported-text-language", "{}"), 10L);
+
+    assertEquals(4, limiter.getLimit(ENDPOINT));
+  }
+
+  @Test
+  public void testReleaseFailure_QueuedDeadline() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10);
+    limiter.acquire(ENDPOINT, null);
+    limiter.release(ENDPOINT, false, 10L);
+    limiter.acquire(ENDPOINT, null);
+    limiter.acquire(ENDPOINT, null);
+    limiter.releaseFailure(ENDPOINT, new DeadlineExceededException("Call deadline of 10 ms exceeded", 10L, true), 1000L);
+
+    // neither cut as overload nor taken as a slow call
+    assertEquals(4, limiter.getLimit(ENDPOINT));
+    assertEquals(1, limiter.getInFlight(ENDPOINT));
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10);
+    limiter.acquire(ENDPOINT, null);
+    limiter.cancel(ENDPOINT);
+
+    assertEquals(1, limiter.getLimit(ENDPOINT));
+    assertEquals(0, limiter.getInFlight(ENDPOINT));
+    limiter.acquire(ENDPOINT, Deadline.after(10L));
+  }
+
+  @Test
+  public void testRelease_SlowCallDecreases() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20);
+    limiter.setBackoffRatio(0.5D);
+    limiter.acquire(ENDPOINT, null);
+    limiter.release(ENDPOINT, false, 100L);
+    limiter.acquire(ENDPOINT, null);
+    limiter.release(ENDPOINT, false, 200L);
+    assertEquals(10, limiter.getLimit(ENDPOINT));
+
+    limiter.acquire(ENDPOINT, null);
+    limiter.release(ENDPOINT, false, 201L);
+
+    assertEquals(5, limiter.getLimit(ENDPOINT));
+  }
+
+  @Test
+  public void testAcquire_WaitsForSlot() throws Exception {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+    limiter.acquire(ENDPOINT, null);
+    final CountDownLatch acquired = new CountDownLatch(1);
+    final Thread waiter = new Thread(new Runnable() {
+      public void run() {
+        try {
+          limiter.acquire(ENDPOINT, Deadline.after(5000L));
+          acquired.countDown();
+        }
+        catch(IOException e) {
+          // the latch is not counted down
+        }
+      }
+    });
+    waiter.start();
+    assertFalse(acquired.await(20L, TimeUnit.MILLISECONDS));
+
+    limiter.release(ENDPOINT, false, 10L);
+
+    assertTrue(acquired.await(5L, TimeUnit.SECONDS));
+    assertEquals(1, limiter.getInFlight(ENDPOINT));
+  }
+
+  @Test(expected = DeadlineExceededException.class)
+  public void testAcquire_DeadlineExceeded() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+    limiter.acquire(ENDPOINT, null);
+
+    limiter.acquire(ENDPOINT, Deadline.after(10L));
+  }
+
+  @Test
+  public void testEndpointsAreIndependent() throws IOException {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+    limiter.acquire(ENDPOINT, null);
+
+    limiter.acquire("url/URLGetLanguage", Deadline.after(10L));
+
+    assertEquals(1, limiter.getInFlight("url/URLGetLanguage"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_InitialAboveMax() {
+    new AdaptiveConcurrencyLimiter(11, 1, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetBackoffRatio_One() {
+    new AdaptiveConcurrencyLimiter().setBackoffRatio(1D);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetLatencyTolerance_BelowOne() {
+    new AdaptiveConcurrencyLimiter().setLatencyTolerance(0.5D);
+  }
+}
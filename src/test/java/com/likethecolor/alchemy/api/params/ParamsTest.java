@@ -20,10 +20,13 @@ package com.likethecolor.alchemy.api.params;
 import com.likethecolor.alchemy.api.Constants;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 
 public class ParamsTest {
@@ -251,6 +254,149 @@ public class ParamsTest {
     assertEquals(expectedString, params.toString());
   }
 
+  @Test
+  public void testWriteTo() throws IOException {
+    final String html = "<html><body><p>caf\u00e9 \u20ac5 \ud83d\ude00</p></body></html>";
+    final String text = "na\u00efve text & more";
+
+    final TextParams params = new TextParams();
+    params.setHtml(html);
+    params.setText(text);
+    params.setIsExtractLinks(true);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    params.writeTo(out);
+
+    final String expectedString = params.toString();
+    assertEquals(expectedString, out.toString("US-ASCII"));
+    assertEquals(expectedString.length(), params.getEncodedLength());
+  }
+
+  @Test
+  public void testWriteTo_NoContent() throws IOException {
+    final Params params = new Params();
+    params.setURL("http://www.example.com/?q=1");
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    params.writeTo(out);
+
+    assertEquals(params.toString(), out.toString("US-ASCII"));
+    assertEquals(params.toString().length(), params.getEncodedLength());
+  }
+
+  @Test
+  public void testEncodedContent() throws IOException {
+    final Params content = new Params();
+    content.setText("caf\u00e9 & more");
+    final EncodedContent encodedContent = EncodedContent.from(content);
+
+    final KeywordParams expected = new KeywordParams();
+    expected.setText("caf\u00e9 & more");
+    final KeywordParams params = new KeywordParams();
+    params.setEncodedContent(encodedContent);
+
+    assertEquals(expected.toString(), params.toString());
+    assertEquals(expected.getEncodedLength(), params.getEncodedLength());
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    params.writeTo(out);
+    assertEquals(expected.toString(), out.toString("US-ASCII"));
+  }
+
+  @Test
+  public void testEncodedContent_Url() {
+    final String url = "http://www.example.com/?q=1&r=2";
+    final Params content = new Params();
+    content.setURL(url);
+
+    final Params params = new Params();
+    params.setEncodedContent(EncodedContent.from(content));
+
+    final String expectedString = "&" + Constants.PARAM_URL + "=" + encode(url)
+                                  + "&" + Constants.PARAM_OUTPUT_FORMAT + "=" + Constants.DEFAULT_OUTPUT_FORMAT;
+    assertEquals(expectedString, params.toString());
+  }
+
+  @Test
+  public void testGetDigest() {
+    final TextParams params = new TextParams();
+    params.setText("Romney was in Detroit.");
+    final TextParams same = new TextParams();
+    same.setText("Romney was in Detroit.");
+    final TextParams different = new TextParams();
+    different.setText("Romney was in Boston.");
+
+    assertEquals(64, params.getDigest().length());
+    assertEquals(params.getDigest(), same.getDigest());
+    assertFalse(params.getDigest().equals(different.getDigest()));
+
+
+    different.setText("Romney was in Detroit.");
+    different.setIsExtractLinks(true);
+
+    assertFalse(params.getDigest().equals(different.getDigest()));
+  }
+
+  @Test
+  public void testGetContentDigest() {
+    final TextParams params = new TextParams();
+    params.setText("Romney was in Detroit.");
+    final TextParams same = new TextParams();
+    same.setText("Romney  was\r\n in\u00a0Detroit.");
+    final TextParams different = new TextParams();
+    different.setText("Romney was in Boston.");
+
+    assertEquals(32, params.getContentDigest().length());
+    assertEquals(params.getContentDigest(), same.getContentDigest());
+    assertFalse(params.getDigest().equals(same.getDigest()));
+    assertFalse(params.getContentDigest().equals(different.getContentDigest()));
+
+
+    different.setText("Romney was in Detroit.");
+    different.setIsExtractLinks(true);
+
+    assertFalse(params.getContentDigest().equals(different.getContentDigest()));
+  }
+
+  @Test
+  public void testGetContentDigest_Html() {
+    final Params params = new Params();
+    params.setHtml("<p>Romney was in Detroit.</p>");
+    params.setURL("http://www.politico.com/");
+    final Params same = new Params();
+    same.setHtml("  <p>Romney  was\n in Detroit.</p>\n");
+    same.setURL("http://www.politico.com/");
+    final Params text = new Params();
+    text.setText("<p>Romney was in Detroit.</p>");
+    text.setURL("http://www.politico.com/");
+    final Params otherUrl = new Params();
+    otherUrl.setHtml("<p>Romney was in Detroit.</p>");
+    otherUrl.setURL("http://www.politico.com/2012");
+
+    assertEquals(params.getContentDigest(), same.getContentDigest());
+    assertFalse(params.getContentDigest().equals(text.getContentDigest()));
+    assertFalse(params.getContentDigest().equals(otherUrl.getContentDigest()));
+  }
+
+  @Test
+  public void testGetContentDigest_FieldBoundaries() {
+    final Params params = new Params();
+    params.setHtml("x&text=y");
+    params.setText("z");
+    final Params shifted = new Params();
+    shifted.setHtml("x");
+    shifted.setText("y&text=z");
+
+    assertFalse(params.getContentDigest().equals(shifted.getContentDigest()));
+  }
+
+  @Test
+  public void testGetContentDigest_Url() {
+    final Params params = new Params();
+    params.setURL("http://www.politico.com/");
+
+    assertEquals(params.getDigest(), params.getContentDigest());
+  }
+
   private String encode(final String value) {
     String encodedValue = "";
     try {
@@ -602,7 +602,7 @@ public class AbstractParserTest {
 
   class MockAbstractParser extends AbstractParser {
     @Override
-    protected void populateResponse(final Response response) {
+    protected void populateResponse(final Response response, final JSONObject jsonObject) {
     }
   }
 }
@@ -51,9 +51,8 @@ public class DisambiguatedParserTest {
   @Test
   public void testGetEntity() {
     final DisambiguatedEntityParser parser = new DisambiguatedEntityParser();
-    parser.parse(getJsonString());
 
-    final JSONObject jsonObject = parser.getJSONObject();
+    final JSONObject jsonObject = parser.getJSONObject(getJsonString());
 
     DisambiguatedAlchemyEntity entity = parser.getEntity(jsonObject);
 
@@ -21,7 +21,13 @@ import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
 import com.likethecolor.alchemy.api.entity.Response;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 
@@ -54,6 +60,36 @@ public class TitleParserTest {
     assertEquals(0, response.size());
   }
 
+  @Test
+  public void testParser_SharedBetweenThreads() throws Exception {
+    final TitleParser parser = new TitleParser();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Response<TitleAlchemyEntity>>> futures = new ArrayList<Future<Response<TitleAlchemyEntity>>>();
+      for(int i = 0; i < 400; i++) {
+        final String jsonString = i % 2 == 0 ? getJsonString() : getJsonString_NoTitle();
+        futures.add(executor.submit(new Callable<Response<TitleAlchemyEntity>>() {
+          public Response<TitleAlchemyEntity> call() {
+            return parser.parse(jsonString);
+          }
+        }));
+      }
+
+      for(int i = 0; i < futures.size(); i++) {
+        final Response<TitleAlchemyEntity> response = futures.get(i).get();
+        if(i % 2 == 0) {
+          assertEquals(TITLE, response.iterator().next().getTitle());
+        }
+        else {
+          assertEquals(0, response.size());
+        }
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
   private String getJsonString() {
     return "{" +
            "\"" + JSONConstants.RESULTS_STATUS + "\":\"" + STATUS_STRING + "\"," +
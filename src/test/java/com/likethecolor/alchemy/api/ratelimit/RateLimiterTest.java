@@ -0,0 +1,136 @@
+/**
+ * File: RateLimiterTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.ratelimit;
+
+import com.likethecolor.alchemy.api.transport.Deadline;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RateLimiterTest {
+  @Test
+  public void testTryAcquire_Burst() {
+    final RateLimiter limiter = new RateLimiter(1D, 3);
+
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+    assertEquals(3, limiter.getPermitCount());
+    assertEquals(1, limiter.getRejectedCount());
+  }
+
+  @Test
+  public void testTryAcquire_NoLimits() {
+    final RateLimiter limiter = new RateLimiter();
+
+    for(int i = 0; i < 1000; i++) {
+      assertTrue(limiter.tryAcquire());
+    }
+  }
+
+  @Test
+  public void testAcquire_Waits() throws IOException {
+    // one permit every 50 ms
+    final RateLimiter limiter = new RateLimiter(20D, 1);
+    limiter.acquire(null);
+
+    final long start = System.nanoTime();
+    limiter.acquire(null);
+    limiter.acquire(null);
+    final long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+    assertTrue("waited " + elapsedMillis + " ms", elapsedMillis >= 90L);
+    assertEquals(2, limiter.getWaitCount());
+  }
+
+  @Test
+  public void testAcquire_MaxWait() throws IOException {
+    final RateLimiter limiter = new RateLimiter(1D, 1);
+    limiter.setMaxWaitMillis(0L);
+    limiter.acquire(null);
+
+    try {
+      limiter.acquire(null);
+      fail("Expected RateLimitExceededException");
+    }
+    catch(RateLimitExceededException e) {
+      assertTrue(e.getWaitMillis() > 0L);
+    }
+    assertEquals(1, limiter.getRejectedCount());
+  }
+
+  @Test(expected = DeadlineExceededException.class)
+  public void testAcquire_Deadline() throws IOException {
+    final RateLimiter limiter = new RateLimiter(0.1D, 1);
+    limiter.acquire(null);
+
+    limiter.acquire(Deadline.after(100L));
+  }
+
+  @Test
+  public void testDailyLimit() throws IOException {
+    final RateLimiter limiter = new RateLimiter();
+    limiter.setDailyLimit(2L);
+
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+
+
+    limiter.setDailyLimit(0L);
+
+    assertTrue(limiter.tryAcquire());
+  }
+
+  @Test
+  public void testForApiKey() {
+    final RateLimiter limiter = RateLimiter.forApiKey("0a1b2c3d4e5f6g7h8i9j");
+
+    assertSame(limiter, RateLimiter.forApiKey(" 0a1b2c3d4e5f6g7h8i9j "));
+    assertNotSame(limiter, RateLimiter.forApiKey("9j8i7h6g5f4e3d2c1b0a"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testForApiKey_Empty() {
+    RateLimiter.forApiKey(" ");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetRate_Zero() {
+    new RateLimiter().setRate(0D, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetRate_NoBurst() {
+    new RateLimiter().setRate(1D, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetMaxWaitMillis_Negative() {
+    new RateLimiter().setMaxWaitMillis(-2L);
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * File: RetryBudgetTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.retry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryBudgetTest {
+  @Test
+  public void testTryAcquire_StopsAtHalf() {
+    final RetryBudget budget = new RetryBudget(10, 0.1D);
+
+    for(int i = 0; i < 5; i++) {
+      assertTrue(budget.tryAcquire());
+    }
+    assertFalse(budget.tryAcquire());
+    assertEquals(5, budget.getRetryCount());
+    assertEquals(1, budget.getRejectedCount());
+    assertEquals(5D, budget.getTokens(), 0.0001D);
+  }
+
+  @Test
+  public void testRecordSuccess_Refills() {
+    final RetryBudget budget = new RetryBudget(10, 0.5D);
+    for(int i = 0; i < 5; i++) {
+      budget.tryAcquire();
+    }
+    assertFalse(budget.tryAcquire());
+
+    budget.recordSuccess();
+    budget.recordSuccess();
+
+    assertTrue(budget.tryAcquire());
+    assertFalse(budget.tryAcquire());
+  }
+
+  @Test
+  public void testRecordSuccess_CappedAtMax() {
+    final RetryBudget budget = new RetryBudget(4, 1D);
+
+    budget.recordSuccess();
+
+    assertEquals(4D, budget.getTokens(), 0.0001D);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NoTokens() {
+    new RetryBudget(0, 0.1D);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_BadRatio() {
+    new RetryBudget(10, 0D);
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * File: RetryPolicyTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.retry;
+
+import com.likethecolor.alchemy.api.AlchemyApiException;
+import com.likethecolor.alchemy.api.breaker.CircuitOpenException;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.ratelimit.RateLimitExceededException;
+import com.likethecolor.alchemy.api.transport.DeadlineExceededException;
+import com.likethecolor.alchemy.api.transport.HttpStatusException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+  @Test
+  public void testIsTransient_Network() {
+    final RetryPolicy policy = new RetryPolicy();
+
+    assertTrue(policy.isTransient(new IOException("Connection reset")));
+    assertTrue(policy.isTransient(new ConnectException("Connection refused")));
+    assertTrue(policy.isTransient(new SocketTimeoutException("Read timed out")));
+    assertFalse(policy.isTransient(new InterruptedIOException("Interrupted")));
+    assertFalse(policy.isTransient(new DeadlineExceededException("Out of time", 100L)));
+    assertFalse(policy.isTransient(new RateLimitExceededException("Rate limit exceeded", 100L)));
+    assertFalse(policy.isTransient(new CircuitOpenException("Circuit is open", "url/URLGetRelations", 100L)));
+  }
+
+  @Test
+  public void testIsTransient_HttpStatus() {
+    final RetryPolicy policy = new RetryPolicy();
+
+    assertTrue(policy.isTransient(new HttpStatusException(429, "Too Many Requests")));
+    assertTrue(policy.isTransient(new HttpStatusException(503, "Service Unavailable")));
+    assertFalse(policy.isTransient(new HttpStatusException(400, "Bad Request")));
+    assertFalse(policy.isTransient(new HttpStatusException(404, "Not Found")));
+  }
+
+  @Test
+  public void testIsTransient_StatusInfo() {
+    final RetryPolicy policy = new RetryPolicy();
+
+    assertTrue(policy.isTransient(error("server-busy")));
+    assertTrue(policy.isTransient(error("cannot-retrieve:timeout")));
+    assertFalse(policy.isTransient(error("daily-transaction-limit-exceeded")));
+    assertFalse(policy.isTransient(error("unsupported-text-language")));
+    assertFalse(policy.isTransient(error("some-unknown-error")));
+    assertFalse(policy.isTransient(error(null)));
+  }
+
+  @Test
+  public void testAddStatusInfo() {
+    final RetryPolicy policy = new RetryPolicy();
+
+    policy.addTransientStatusInfo("Cannot-Retrieve:HTTP-Error");
+    policy.addPermanentStatusInfo("cannot-retrieve:timeout");
+
+    assertTrue(policy.isTransient(error("cannot-retrieve:http-error")));
+    assertFalse(policy.isTransient(error("cannot-retrieve:timeout")));
+  }
+
+  @Test
+  public void testShouldRetry() {
+    final RetryPolicy policy = new RetryPolicy(3, 10L, 100L);
+    final IOException e = new IOException("Connection reset");
+
+    assertTrue(policy.shouldRetry(e, 1));
+    assertTrue(policy.shouldRetry(e, 2));
+    assertFalse(policy.shouldRetry(e, 3));
+    assertFalse(policy.shouldRetry(error("invalid-api-key"), 1));
+    assertEquals(2, policy.getRetryBudget().getRetryCount());
+  }
+
+  @Test
+  public void testShouldRetry_BudgetSpent() {
+    final RetryPolicy policy = new RetryPolicy(100, 10L, 100L);
+    policy.setRetryBudget(new RetryBudget(2, 0.1D));
+    final IOException e = new IOException("Connection reset");
+
+    assertTrue(policy.shouldRetry(e, 1));
+    assertFalse(policy.shouldRetry(e, 2));
+  }
+
+  @Test
+  public void testGetBackoffMillis() {
+    final RetryPolicy policy = new RetryPolicy(10, 100L, 1000L);
+
+    for(int i = 0; i < 100; i++) {
+      final long first = policy.getBackoffMillis(1);
+      assertTrue(first >= 0 && first <= 100L);
+      final long third = policy.getBackoffMillis(3);
+      assertTrue(third >= 0 && third <= 400L);
+      final long capped = policy.getBackoffMillis(50);
+      assertTrue(capped >= 0 && capped <= 1000L);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NoAttempts() {
+    new RetryPolicy(0, 100L, 1000L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_MaxBackoffTooSmall() {
+    new RetryPolicy(3, 100L, 10L);
+  }
+
+  private AlchemyApiException error(final String statusInfo) {
+    return new AlchemyApiException(Response.STATUS.ERROR, statusInfo, "{}");
+  }
+}
@@ -0,0 +1,238 @@
+/**
+ * File: PrioritySchedulerTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.scheduler;
+
+import com.likethecolor.alchemy.api.Client;
+import com.likethecolor.alchemy.api.Constants;
+import com.likethecolor.alchemy.api.async.CallFuture;
+import com.likethecolor.alchemy.api.async.CallListener;
+import com.likethecolor.alchemy.api.call.TitleCall;
+import com.likethecolor.alchemy.api.call.type.CallTypeUrl;
+import com.likethecolor.alchemy.api.entity.Response;
+import com.likethecolor.alchemy.api.entity.TitleAlchemyEntity;
+import com.likethecolor.alchemy.api.transport.HttpRequest;
+import com.likethecolor.alchemy.api.transport.HttpResponse;
+import com.likethecolor.alchemy.api.transport.Transport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PrioritySchedulerTest {
+  private static final String API_KEY = "0a1b2c3d4e5f6g7h8i9j";
+
+  @Test
+  public void testDefaults() {
+    final PriorityScheduler scheduler = new PriorityScheduler(new Client(API_KEY));
+
+    assertEquals(Client.DEFAULT_MAX_IN_FLIGHT, scheduler.getMaxConcurrent());
+    assertEquals(Client.DEFAULT_MAX_IN_FLIGHT, scheduler.getMaxConcurrent(Priority.INTERACTIVE));
+    assertEquals(12, scheduler.getMaxConcurrent(Priority.BULK));
+    assertEquals(PriorityScheduler.DEFAULT_MAX_QUEUE_DEPTH, scheduler.getMaxQueueDepth(Priority.BULK));
+  }
+
+  @Test
+  public void testInteractiveRunsBeforeQueuedBulk() throws Exception {
+    final GateTransport transport = new GateTransport();
+    final PriorityScheduler scheduler = new PriorityScheduler(createClient(transport), 1);
+    final List<CallFuture<TitleAlchemyEntity>> futures = new ArrayList<CallFuture<TitleAlchemyEntity>>();
+    futures.add(scheduler.submit(call("bulk1"), Priority.BULK, null));
+    transport.started.await();
+    futures.add(scheduler.submit(call("bulk2"), Priority.BULK, null));
+    futures.add(scheduler.submit(call("bulk3"), Priority.BULK, null));
+    futures.add(scheduler.submit(call("interactive"), Priority.INTERACTIVE, null));
+    assertEquals(2, scheduler.getQueueDepth(Priority.BULK));
+    assertEquals(1, scheduler.getQueueDepth(Priority.INTERACTIVE));
+
+    transport.release.countDown();
+    for(CallFuture<TitleAlchemyEntity> future : futures) {
+      future.getResponse();
+    }
+
+    assertEquals(Arrays.asList("bulk1", "interactive", "bulk2", "bulk3"), transport.pages);
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testBulkShare() throws Exception {
+    final GateTransport transport = new GateTransport();
+    final PriorityScheduler scheduler = new PriorityScheduler(createClient(transport), 4);
+    final List<CallFuture<TitleAlchemyEntity>> futures = new ArrayList<CallFuture<TitleAlchemyEntity>>();
+    for(int i = 0; i < 5; i++) {
+      futures.add(scheduler.submit(call("bulk" + i), Priority.BULK, null));
+    }
+    assertEquals(3, scheduler.getRunningCount(Priority.BULK));
+    assertEquals(2, scheduler.getQueueDepth(Priority.BULK));
+
+    futures.add(scheduler.submit(call("interactive"), Priority.INTERACTIVE, null));
+
+    assertEquals(1, scheduler.getRunningCount(Priority.INTERACTIVE));
+    transport.release.countDown();
+    for(CallFuture<TitleAlchemyEntity> future : futures) {
+      future.getResponse();
+    }
+    assertEquals(6, transport.pages.size());
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testShed() throws Exception {
+    final GateTransport transport = new GateTransport();
+    final PriorityScheduler scheduler = new PriorityScheduler(createClient(transport), 1);
+    scheduler.setMaxQueueDepth(Priority.BULK, 1);
+    final CallFuture<TitleAlchemyEntity> running = scheduler.submit(call("bulk1"), Priority.BULK, null);
+    final CallFuture<TitleAlchemyEntity> queued = scheduler.submit(call("bulk2"), Priority.BULK, null);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    final CallFuture<TitleAlchemyEntity> shed = scheduler.submit(call("bulk3"), Priority.BULK, new CallListener<TitleAlchemyEntity>() {
+      public void onSuccess(final Response<TitleAlchemyEntity> response) {
+      }
+
+      public void onFailure(final Throwable throwable) {
+        failure.set(throwable);
+      }
+    });
+
+    assertTrue(shed.isDone());
+    assertTrue(failure.get() instanceof CallShedException);
+    assertEquals(Priority.BULK, ((CallShedException) failure.get()).getPriority());
+    assertEquals(1, scheduler.getShedCount(Priority.BULK));
+    try {
+      shed.getResponse();
+      fail("Expected CallShedException");
+    }
+    catch(CallShedException e) {
+      // expected
+    }
+
+    // interactive calls have their own queue
+    final CallFuture<TitleAlchemyEntity> interactive = scheduler.submit(call("interactive"), Priority.INTERACTIVE, null);
+    transport.release.countDown();
+    running.getResponse();
+    queued.getResponse();
+    interactive.getResponse();
+    assertEquals(0, scheduler.getShedCount(Priority.INTERACTIVE));
+    assertEquals(3, transport.pages.size());
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testExecutorRejects() throws Exception {
+    final GateTransport transport = new GateTransport();
+    transport.release.countDown();
+    final PriorityScheduler scheduler = new PriorityScheduler(createClient(transport), 1);
+    final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    executorService.shutdown();
+    scheduler.setExecutorService(executorService);
+
+    final CallFuture<TitleAlchemyEntity> rejected = scheduler.submit(call("rejected"), Priority.INTERACTIVE, null);
+
+    assertTrue(rejected.isDone());
+    try {
+      rejected.getResponse();
+      fail("Expected CallShedException");
+    }
+    catch(CallShedException e) {
+      assertEquals(Priority.INTERACTIVE, e.getPriority());
+    }
+    assertEquals(1, scheduler.getShedCount(Priority.INTERACTIVE));
+    // the rejected call does not hold on to the only slot
+    assertEquals(0, scheduler.getRunningCount(Priority.INTERACTIVE));
+
+    final ExecutorService working = Executors.newSingleThreadExecutor();
+    scheduler.setExecutorService(working);
+    assertEquals("page", scheduler.call(call("page"), Priority.INTERACTIVE).iterator().next().getTitle());
+    assertEquals(0, transport.pages.indexOf("page"));
+    working.shutdown();
+  }
+
+  @Test
+  public void testCall() throws IOException {
+    final GateTransport transport = new GateTransport();
+    transport.release.countDown();
+    final PriorityScheduler scheduler = new PriorityScheduler(createClient(transport));
+
+    final Response<TitleAlchemyEntity> response = scheduler.call(call("page"), Priority.INTERACTIVE);
+
+    assertEquals("page", response.iterator().next().getTitle());
+    scheduler.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetMaxConcurrent_AboveTotal() {
+    new PriorityScheduler(new Client(API_KEY), 4).setMaxConcurrent(Priority.BULK, 5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetMaxQueueDepth_Negative() {
+    new PriorityScheduler(new Client(API_KEY)).setMaxQueueDepth(Priority.BULK, -1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NullClient() {
+    new PriorityScheduler(null);
+  }
+
+  private TitleCall call(final String page) {
+    return new TitleCall(new CallTypeUrl("http://www.example.com/" + page));
+  }
+
+  private Client createClient(final Transport transport) {
+    final Client client = new Client(API_KEY);
+    client.setTransport(transport);
+    return client;
+  }
+
+  /**
+   * Records the requested pages and holds every request until released.
+   */
+  private static class GateTransport implements Transport {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> pages = Collections.synchronizedList(new ArrayList<String>());
+
+    public HttpResponse execute(final HttpRequest request) throws IOException {
+      final String query = URLDecoder.decode(request.getUrl().getQuery(), Constants.DEFAULT_ENCODING);
+      final String page = query.substring(query.lastIndexOf('/') + 1, query.indexOf('&', query.lastIndexOf('/')));
+      pages.add(page);
+      started.countDown();
+      try {
+        release.await();
+      }
+      catch(InterruptedException e) {
+        throw new IOException("Interrupted");
+      }
+      final String json = "{\"status\": \"OK\", \"title\": \"" + page + "\"}";
+      return new HttpResponse(200, new HashMap<String, String>(), new ByteArrayInputStream(json.getBytes("UTF-8")));
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * File: ConnectionPoolTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPoolTest {
+  @Test
+  public void testConstructor_Defaults() {
+    final ConnectionPool pool = new ConnectionPool();
+
+    assertEquals(ConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST, pool.getMaxConnectionsPerHost());
+    assertEquals(ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS, pool.getIdleTimeoutMillis());
+    assertEquals(0, pool.getHitCount());
+    assertEquals(0, pool.getMissCount());
+    assertEquals(0, pool.getIdleConnectionCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_MaxConnectionsTooSmall() {
+    new ConnectionPool(0, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_NegativeIdleTimeout() {
+    new ConnectionPool(1, -1);
+  }
+
+  @Test
+  public void testReleaseAndAcquire() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok("{}"));
+    final ConnectionPool pool = new ConnectionPool(2, 60000L);
+    try {
+      final PooledConnection connection = pool.acquire(server.getUrl("/"));
+      assertFalse(connection.isReused());
+      pool.release(connection);
+
+      assertEquals(1, pool.getIdleConnectionCount());
+
+      final PooledConnection reused = pool.acquire(server.getUrl("/"));
+      assertTrue(reused == connection);
+      assertTrue(reused.isReused());
+      assertEquals(1, pool.getHitCount());
+      assertEquals(1, pool.getMissCount());
+      pool.discard(reused);
+
+      assertEquals(0, pool.getIdleConnectionCount());
+    }
+    finally {
+      pool.close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testEvictIdleConnections() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok("{}"));
+    final ConnectionPool pool = new ConnectionPool(2, 0L);
+    try {
+      final PooledConnection connection = pool.acquire(server.getUrl("/"));
+      pool.release(connection);
+
+      pool.evictIdleConnections();
+
+      assertEquals(0, pool.getIdleConnectionCount());
+      assertEquals(1, pool.getEvictionCount());
+      assertFalse(connection.isOpen());
+    }
+    finally {
+      pool.close();
+      server.shutdown();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testAcquire_Closed() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok("{}"));
+    final ConnectionPool pool = new ConnectionPool();
+    pool.close();
+    try {
+      pool.acquire(server.getUrl("/"));
+    }
+    finally {
+      server.shutdown();
+    }
+  }
+}
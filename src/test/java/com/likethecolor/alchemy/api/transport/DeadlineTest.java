@@ -0,0 +1,80 @@
+/**
+ * File: DeadlineTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTest {
+  @Test(expected = IllegalArgumentException.class)
+  public void testAfter_Zero() {
+    Deadline.after(0L);
+  }
+
+  @Test
+  public void testGetRemainingMillis() throws DeadlineExceededException {
+    final Deadline deadline = Deadline.after(60000L);
+
+    assertEquals(60000L, deadline.getBudgetMillis());
+    assertFalse(deadline.isExpired());
+    assertTrue(deadline.getRemainingMillis() > 0);
+    assertTrue(deadline.getRemainingMillis() <= 60000L);
+    deadline.check("testing");
+  }
+
+  @Test
+  public void testGetTimeoutMillis() throws DeadlineExceededException {
+    final Deadline deadline = Deadline.after(60000L);
+
+    // the configured timeout is used while it fits in the time left
+    assertEquals(500, deadline.getTimeoutMillis(500, "testing"));
+
+    // no timeout (0) or a longer one is cut down to the time left
+    assertTrue(deadline.getTimeoutMillis(0, "testing") <= 60000);
+    assertTrue(deadline.getTimeoutMillis(0, "testing") > 0);
+    assertTrue(deadline.getTimeoutMillis(120000, "testing") <= 60000);
+  }
+
+  @Test
+  public void testExpired() throws InterruptedException {
+    final Deadline deadline = Deadline.after(1L);
+    Thread.sleep(20L);
+
+    assertTrue(deadline.isExpired());
+    assertEquals(0L, deadline.getRemainingMillis());
+    try {
+      deadline.check("testing");
+      fail("Expected DeadlineExceededException");
+    }
+    catch(DeadlineExceededException e) {
+      assertEquals("Call deadline of 1 ms exceeded while testing.", e.getMessage());
+      assertEquals(1L, e.getBudgetMillis());
+    }
+    try {
+      deadline.getTimeoutMillis(1000, "testing");
+      fail("Expected DeadlineExceededException");
+    }
+    catch(DeadlineExceededException e) {
+      // expected
+    }
+  }
+}
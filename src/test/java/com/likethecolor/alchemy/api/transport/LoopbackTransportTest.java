@@ -0,0 +1,97 @@
+/**
+ * File: LoopbackTransportTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import com.likethecolor.alchemy.api.Constants;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoopbackTransportTest {
+  private static final String JSON = "{\"status\": \"OK\", \"title\": \"déjà vu\"}";
+
+  @Test
+  public void testGetCallName() {
+    assertEquals(Constants.CALL_NAME_TITLE, LoopbackTransport.getCallName("/calls/url/URLGetTitle"));
+    assertEquals(Constants.CALL_NAME_TEXT, LoopbackTransport.getCallName("/calls/text/TextGetText"));
+    assertEquals(Constants.CALL_NAME_RANKED_KEYWORDS, LoopbackTransport.getCallName("/calls/html/HTMLGetRankedKeywords"));
+    assertEquals(Constants.CALL_NAME_LANGUAGE, LoopbackTransport.getCallName("GetLanguage"));
+  }
+
+  @Test
+  public void testExecute() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, JSON);
+
+    final HttpRequest request = new HttpRequest(HttpRequest.METHOD_POST, new URL("http://access.alchemyapi.com/calls/html/HTMLGetTitle"))
+        .setBody("apikey=abcde".getBytes("UTF-8"));
+    final HttpResponse response = transport.execute(request);
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals(JSON, read(response.getInputStream()));
+    assertEquals(Integer.toString(JSON.getBytes("UTF-8").length), response.getHeader("content-length"));
+    assertEquals(1, transport.getRequestCount());
+    assertEquals(12, transport.getRequestBytes());
+  }
+
+  @Test(expected = IOException.class)
+  public void testExecute_NoResponseRegistered() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, JSON);
+
+    transport.execute(new HttpRequest(HttpRequest.METHOD_GET, new URL("http://access.alchemyapi.com/calls/url/URLGetAuthor")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetResponse_NullJson() {
+    new LoopbackTransport().setResponse(Constants.CALL_NAME_TITLE, null);
+  }
+
+  @Test
+  public void testSetLatencyMillis() throws IOException {
+    final LoopbackTransport transport = new LoopbackTransport()
+        .setResponse(Constants.CALL_NAME_TITLE, "{\"status\": \"OK\"}")
+        .setLatencyMillis(50L);
+
+    final long start = System.currentTimeMillis();
+    transport.execute(new HttpRequest(HttpRequest.METHOD_GET, new URL("http://access.alchemyapi.com/calls/url/URLGetTitle"))).close();
+
+    assertTrue(System.currentTimeMillis() - start >= 45L);
+    assertEquals(50L, transport.getLatencyMillis());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetLatencyMillis_Negative() {
+    new LoopbackTransport().setLatencyMillis(-1L);
+  }
+
+  private String read(final InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int b;
+    while((b = in.read()) != -1) {
+      out.write(b);
+    }
+    return new String(out.toByteArray(), "UTF-8");
+  }
+}
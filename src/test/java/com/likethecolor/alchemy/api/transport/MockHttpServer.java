@@ -0,0 +1,233 @@
+/**
+ * File: MockHttpServer.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tiny HTTP/1.1 server for tests.  Answers each request with the next canned
+ * raw response (status line, headers and body) and records what it received.
+ * A connection is closed after a response that contains "Connection: close".
+ */
+class MockHttpServer {
+  private final ServerSocket serverSocket;
+  private final List<String> responses;
+  private final AtomicInteger responseIndex = new AtomicInteger();
+  private final AtomicInteger connectionCount = new AtomicInteger();
+  private final List<RecordedRequest> requests = Collections.synchronizedList(new ArrayList<RecordedRequest>());
+  private volatile long responseDelayMillis;
+  private volatile boolean isClosingIdleConnections;
+  private volatile boolean isIgnoringRequests;
+
+  MockHttpServer(final String... responses) throws IOException {
+    this.responses = new ArrayList<String>();
+    Collections.addAll(this.responses, responses);
+    serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    final Thread acceptor = new Thread(new Runnable() {
+      public void run() {
+        accept();
+      }
+    });
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  static String ok(final String body) {
+    return "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+  }
+
+  /**
+   * Wait before answering each request, to simulate a slow server.
+   */
+  void setResponseDelayMillis(final long responseDelayMillis) {
+    this.responseDelayMillis = responseDelayMillis;
+  }
+
+  /**
+   * Close each connection after its response without saying so, like a
+   * server whose keep-alive timeout ran out.
+   */
+  void setClosingIdleConnections(final boolean isClosingIdleConnections) {
+    this.isClosingIdleConnections = isClosingIdleConnections;
+  }
+
+  /**
+   * Accept connections but never read from them, like a server that is stuck,
+   * so a large request body fills the socket buffers and blocks the writer.
+   */
+  void setIgnoringRequests(final boolean isIgnoringRequests) {
+    this.isIgnoringRequests = isIgnoringRequests;
+  }
+
+  URL getUrl(final String path) throws IOException {
+    return new URL("http://127.0.0.1:" + serverSocket.getLocalPort() + path);
+  }
+
+  int getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  List<RecordedRequest> getRequests() {
+    return requests;
+  }
+
+  void shutdown() {
+    try {
+      serverSocket.close();
+    }
+    catch(IOException e) {
+      // ignore
+    }
+  }
+
+  private void accept() {
+    while(!serverSocket.isClosed()) {
+      try {
+        final Socket socket = serverSocket.accept();
+        connectionCount.incrementAndGet();
+        final Thread worker = new Thread(new Runnable() {
+          public void run() {
+            serve(socket);
+          }
+        });
+        worker.setDaemon(true);
+        worker.start();
+      }
+      catch(IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void serve(final Socket socket) {
+    try {
+      final InputStream in = new BufferedInputStream(socket.getInputStream());
+      final OutputStream out = socket.getOutputStream();
+      while(isIgnoringRequests && !serverSocket.isClosed()) {
+        try {
+          Thread.sleep(50L);
+        }
+        catch(InterruptedException e) {
+          return;
+        }
+      }
+      while(true) {
+        final RecordedRequest request = readRequest(in);
+        if(request == null) {
+          break;
+        }
+        requests.add(request);
+        if(responseDelayMillis > 0) {
+          try {
+            Thread.sleep(responseDelayMillis);
+          }
+          catch(InterruptedException e) {
+            break;
+          }
+        }
+        final String response = responses.get(Math.min(responseIndex.getAndIncrement(), responses.size() - 1));
+        out.write(response.getBytes("ISO-8859-1"));
+        out.flush();
+        if(isClosingIdleConnections || response.toLowerCase().contains("connection: close")) {
+          break;
+        }
+      }
+    }
+    catch(IOException e) {
+      // client went away
+    }
+    finally {
+      try {
+        socket.close();
+      }
+      catch(IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  private RecordedRequest readRequest(final InputStream in) throws IOException {
+    final String requestLine = readLine(in);
+    if(requestLine == null || requestLine.length() == 0) {
+      return null;
+    }
+    final Map<String, String> headers = new LinkedHashMap<String, String>();
+    String line;
+    while((line = readLine(in)) != null && line.length() > 0) {
+      final int colon = line.indexOf(':');
+      headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+    }
+
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if(headers.containsKey("content-length")) {
+      final int length = Integer.parseInt(headers.get("content-length"));
+      for(int i = 0; i < length; i++) {
+        body.write(in.read());
+      }
+    }
+    else if("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+      int size;
+      while((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+        for(int i = 0; i < size; i++) {
+          body.write(in.read());
+        }
+        readLine(in);
+      }
+      readLine(in);
+    }
+    return new RecordedRequest(requestLine, headers, body.toByteArray());
+  }
+
+  private String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int b;
+    while((b = in.read()) != -1) {
+      if(b == '\n') {
+        return line.toString().trim();
+      }
+      line.append((char) b);
+    }
+    return line.length() == 0 ? null : line.toString();
+  }
+
+  static class RecordedRequest {
+    final String requestLine;
+    final Map<String, String> headers;
+    final byte[] body;
+
+    RecordedRequest(final String requestLine, final Map<String, String> headers, final byte[] body) {
+      this.requestLine = requestLine;
+      this.headers = headers;
+      this.body = body;
+    }
+  }
+}
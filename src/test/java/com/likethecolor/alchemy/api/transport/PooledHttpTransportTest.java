@@ -0,0 +1,562 @@
+/**
+ * File: PooledHttpTransportTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PooledHttpTransportTest {
+  private static final String JSON = "{\"status\": \"OK\"}";
+
+  @Test
+  public void testExecute_KeepAliveReusesConnection() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/calls/url/URLGetTitle")))));
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/calls/url/URLGetTitle")))));
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/calls/url/URLGetTitle")))));
+
+      assertEquals(1, server.getConnectionCount());
+      assertEquals(1, transport.getConnectionPool().getMissCount());
+      assertEquals(2, transport.getConnectionPool().getHitCount());
+      assertEquals(1, transport.getConnectionPool().getIdleConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_Chunked() throws IOException {
+    final String chunked = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                           + "5\r\n{\"sta\r\n"
+                           + "b;name=value\r\ntus\": \"OK\"}\r\n"
+                           + "0\r\n\r\n";
+    final MockHttpServer server = new MockHttpServer(chunked);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+
+      assertEquals(1, server.getConnectionCount());
+      assertEquals(1, transport.getConnectionPool().getHitCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_ConnectionCloseIsNotPooled() throws IOException {
+    final String close = "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: " + JSON.length() + "\r\n\r\n" + JSON;
+    final MockHttpServer server = new MockHttpServer(close);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+
+      assertEquals(2, server.getConnectionCount());
+      assertEquals(0, transport.getConnectionPool().getHitCount());
+      assertEquals(2, transport.getConnectionPool().getMissCount());
+      assertEquals(0, transport.getConnectionPool().getIdleConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_Post() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      final HttpRequest request = new HttpRequest(HttpRequest.METHOD_POST, server.getUrl("/calls/text/TextGetLanguage"))
+          .setHeader("Content-Type", "application/x-www-form-urlencoded")
+          .setBody("apikey=abcde&text=hello".getBytes("UTF-8"));
+      assertEquals(JSON, read(transport.execute(request)));
+
+      final MockHttpServer.RecordedRequest recorded = server.getRequests().get(0);
+      assertEquals("POST /calls/text/TextGetLanguage HTTP/1.1", recorded.requestLine);
+      assertEquals("23", recorded.headers.get("content-length"));
+      assertEquals("apikey=abcde&text=hello", new String(recorded.body, "UTF-8"));
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_PostChunked() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      final HttpRequest request = new HttpRequest(HttpRequest.METHOD_POST, server.getUrl("/calls/text/TextGetLanguage"))
+          .setHeader("Content-Type", "application/x-www-form-urlencoded")
+          .setBody(new RequestBody() {
+            public long getContentLength() {
+              return -1;
+            }
+
+            public void writeTo(final OutputStream out) throws IOException {
+              out.write("apikey=abcde".getBytes("UTF-8"));
+              out.write("&text=hello".getBytes("UTF-8"));
+            }
+          });
+      assertEquals(JSON, read(transport.execute(request)));
+
+      final MockHttpServer.RecordedRequest recorded = server.getRequests().get(0);
+      assertEquals("chunked", recorded.headers.get("transfer-encoding"));
+      assertNull(recorded.headers.get("content-length"));
+      assertEquals("apikey=abcde&text=hello", new String(recorded.body, "UTF-8"));
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_HttpErrorStatus() throws IOException {
+    final String error = "HTTP/1.1 503 Service Unavailable\r\nContent-Length: 4\r\n\r\nbusy";
+    final MockHttpServer server = new MockHttpServer(error, MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      try {
+        transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")));
+        fail("expected an IOException");
+      }
+      catch(HttpStatusException e) {
+        assertEquals(503, e.getStatusCode());
+        assertEquals("Server returned HTTP response code: 503 for URL: " + server.getUrl("/"), e.getMessage());
+      }
+      // the error body was drained so the connection is still usable
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+      assertEquals(1, server.getConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_ReadTimeout() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    server.setResponseDelayMillis(2000L);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")).setReadTimeoutMillis(100));
+      fail("Expected SocketTimeoutException");
+    }
+    catch(SocketTimeoutException e) {
+      // a slow read without a deadline is a plain socket timeout
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_DeadlineExceededWaitingForResponse() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    server.setResponseDelayMillis(2000L);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    final long start = System.currentTimeMillis();
+    try {
+      transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/"))
+          .setReadTimeoutMillis(10000)
+          .setDeadline(Deadline.after(150L)));
+      fail("Expected DeadlineExceededException");
+    }
+    catch(DeadlineExceededException e) {
+      assertEquals(150L, e.getBudgetMillis());
+      assertTrue(System.currentTimeMillis() - start < 1500L);
+      assertEquals(0, transport.getConnectionPool().getIdleConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_DeadlineExceededSendingBody() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    server.setIgnoringRequests(true);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    final long start = System.currentTimeMillis();
+    try {
+      // far more than the socket buffers hold, so the write blocks
+      transport.execute(new HttpRequest(HttpRequest.METHOD_POST, server.getUrl("/calls/text/TextGetTitle"))
+          .setReadTimeoutMillis(10000)
+          .setDeadline(Deadline.after(200L))
+          .setBody(new RequestBody() {
+            public long getContentLength() {
+              return 256L * 1024L * 1024L;
+            }
+
+            public void writeTo(final OutputStream out) throws IOException {
+              final byte[] chunk = new byte[64 * 1024];
+              for(long written = 0; written < getContentLength(); written += chunk.length) {
+                out.write(chunk);
+              }
+            }
+          }));
+      fail("Expected DeadlineExceededException");
+    }
+    catch(DeadlineExceededException e) {
+      assertEquals(200L, e.getBudgetMillis());
+      assertTrue(e.getMessage().contains("sending the request"));
+      assertTrue(System.currentTimeMillis() - start < 2000L);
+      assertEquals(0, transport.getConnectionPool().getIdleConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_DeadlineExceededReadingBody() throws IOException {
+    // promises 100 bytes but sends 2 and then stalls
+    final MockHttpServer server = new MockHttpServer("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n{}");
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    final HttpResponse response = transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/"))
+        .setDeadline(Deadline.after(200L)));
+    try {
+      read(response);
+      fail("Expected DeadlineExceededException");
+    }
+    catch(DeadlineExceededException e) {
+      assertTrue(e.getMessage().contains("reading the response"));
+    }
+    finally {
+      response.close();
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_StaleConnectionRetriedForGet() throws Exception {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    server.setClosingIdleConnections(true);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+      Thread.sleep(100L);
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+
+      assertEquals(2, server.getConnectionCount());
+      assertEquals(2, server.getRequests().size());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_StaleConnectionNotRetriedForPost() throws Exception {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    server.setClosingIdleConnections(true);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(post(server))));
+      Thread.sleep(100L);
+      try {
+        transport.execute(post(server));
+        fail("Expected IOException");
+      }
+      catch(IOException e) {
+        // the body may have reached the server, so it is not sent again
+      }
+      assertEquals(1, server.getConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_StaleConnectionCheckedBeforePostAfterIdle() throws Exception {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    server.setClosingIdleConnections(true);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(post(server))));
+      Thread.sleep(PooledHttpTransport.STALE_CHECK_AFTER_IDLE_MILLIS + 100L);
+      assertEquals(JSON, read(transport.execute(post(server))));
+
+      assertEquals(2, server.getConnectionCount());
+      assertEquals(2, server.getRequests().size());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_FollowsRedirect() throws IOException {
+    final MockHttpServer server = new MockHttpServer(redirect(302, "/moved"), MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/calls/url/URLGetTitle")))));
+
+      assertEquals(2, server.getRequests().size());
+      assertEquals("GET /moved HTTP/1.1", server.getRequests().get(1).requestLine);
+      // the redirect was read to the end so its connection was reused
+      assertEquals(1, server.getConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_PostRedirectedWithGet() throws IOException {
+    final MockHttpServer server = new MockHttpServer(redirect(302, "/moved"), MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(post(server).setHeader("Content-Type", "application/x-www-form-urlencoded"))));
+
+      final MockHttpServer.RecordedRequest redirected = server.getRequests().get(1);
+      assertEquals("GET /moved HTTP/1.1", redirected.requestLine);
+      assertNull(redirected.headers.get("content-length"));
+      assertNull(redirected.headers.get("content-type"));
+      assertEquals(0, redirected.body.length);
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_PostTemporaryRedirectKeepsBody() throws IOException {
+    final MockHttpServer server = new MockHttpServer(redirect(307, "/moved"), MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      assertEquals(JSON, read(transport.execute(post(server))));
+
+      final MockHttpServer.RecordedRequest redirected = server.getRequests().get(1);
+      assertEquals("POST /moved HTTP/1.1", redirected.requestLine);
+      assertEquals("text=Romney", new String(redirected.body, "UTF-8"));
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_TooManyRedirects() throws IOException {
+    final MockHttpServer server = new MockHttpServer(redirect(302, "/again"));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")));
+      fail("Expected ProtocolException");
+    }
+    catch(ProtocolException e) {
+      assertEquals(PooledHttpTransport.MAX_REDIRECTS + 1, server.getRequests().size());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_HttpProxy() throws IOException {
+    final MockHttpServer proxy = new MockHttpServer(MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    transport.getConnectionPool().setProxySelector(new FixedProxySelector(proxy));
+    try {
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, new URL("http://access.alchemyapi.com/calls/url/URLGetTitle?url=x")))));
+
+      assertEquals("GET http://access.alchemyapi.com/calls/url/URLGetTitle?url=x HTTP/1.1", proxy.getRequests().get(0).requestLine);
+      assertEquals("access.alchemyapi.com", proxy.getRequests().get(0).headers.get("host"));
+    }
+    finally {
+      transport.getConnectionPool().close();
+      proxy.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_HttpsProxyTunnelRefused() throws IOException {
+    final MockHttpServer proxy = new MockHttpServer("HTTP/1.1 407 Proxy Authentication Required\r\nContent-Length: 0\r\n\r\n");
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    transport.getConnectionPool().setProxySelector(new FixedProxySelector(proxy));
+    try {
+      transport.execute(new HttpRequest(HttpRequest.METHOD_GET, new URL("https://access.alchemyapi.com/calls/url/URLGetTitle")));
+      fail("Expected IOException");
+    }
+    catch(IOException e) {
+      assertTrue(e.getMessage().contains("tunnel"));
+      assertEquals("CONNECT access.alchemyapi.com:443 HTTP/1.1", proxy.getRequests().get(0).requestLine);
+    }
+    finally {
+      transport.getConnectionPool().close();
+      proxy.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_AbortedWaitingForResponse() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    server.setResponseDelayMillis(2000L);
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    final HttpRequest request = new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")).setReadTimeoutMillis(10000);
+    final Thread aborter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(150L);
+        }
+        catch(InterruptedException e) {
+          return;
+        }
+        request.abort();
+      }
+    };
+    final long start = System.currentTimeMillis();
+    aborter.start();
+    try {
+      transport.execute(request);
+      fail("Expected InterruptedIOException");
+    }
+    catch(InterruptedIOException e) {
+      assertTrue(e.getMessage().contains("aborted"));
+      assertTrue(System.currentTimeMillis() - start < 1500L);
+      assertEquals(0, transport.getConnectionPool().getIdleConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_AbortedBeforeSent() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    final HttpRequest request = new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/"));
+    request.abort();
+    try {
+      transport.execute(request);
+      fail("Expected InterruptedIOException");
+    }
+    catch(InterruptedIOException e) {
+      assertTrue(request.isAborted());
+      assertEquals(0, transport.getConnectionPool().getIdleConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecute_AbortAfterReadDoesNotCloseReleasedConnection() throws IOException {
+    final MockHttpServer server = new MockHttpServer(MockHttpServer.ok(JSON));
+    final PooledHttpTransport transport = new PooledHttpTransport();
+    try {
+      final HttpRequest request = new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/"));
+      assertEquals(JSON, read(transport.execute(request)));
+      request.abort();
+      assertEquals(JSON, read(transport.execute(new HttpRequest(HttpRequest.METHOD_GET, server.getUrl("/")))));
+
+      assertEquals(1, server.getConnectionCount());
+    }
+    finally {
+      transport.getConnectionPool().close();
+      server.shutdown();
+    }
+  }
+
+  private String redirect(final int statusCode, final String location) {
+    return "HTTP/1.1 " + statusCode + " Redirect\r\nLocation: " + location + "\r\nContent-Length: 0\r\n\r\n";
+  }
+
+  private HttpRequest post(final MockHttpServer server) throws IOException {
+    return new HttpRequest(HttpRequest.METHOD_POST, server.getUrl("/calls/text/TextGetTitle"))
+        .setBody("text=Romney".getBytes("UTF-8"));
+  }
+
+  private String read(final HttpResponse response) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final InputStream in = response.getInputStream();
+    final byte[] buffer = new byte[3];
+    int count;
+    while((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+    response.close();
+    return new String(out.toByteArray(), "UTF-8");
+  }
+
+  /**
+   * Sends every url through the mock server as an HTTP proxy.
+   */
+  private static class FixedProxySelector extends ProxySelector {
+    private final Proxy proxy;
+
+    private FixedProxySelector(final MockHttpServer server) throws IOException {
+      this.proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", server.getUrl("/").getPort()));
+    }
+
+    @Override
+    public List<Proxy> select(final URI uri) {
+      return Collections.singletonList(proxy);
+    }
+
+    @Override
+    public void connectFailed(final URI uri, final SocketAddress address, final IOException e) {
+    }
+  }
+}
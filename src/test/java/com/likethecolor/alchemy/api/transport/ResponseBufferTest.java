@@ -0,0 +1,93 @@
+/**
+ * File: ResponseBufferTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.transport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseBufferTest {
+  @Test
+  public void testReadFrom_PreservesWhitespaceAndUtf8() throws IOException {
+    final String json = "{\n  \"text\": \"  indented\\n\\ttext  \",\n  \"title\": \"café 日本\"\n}\n";
+    final ResponseBuffer buffer = ResponseBuffer.forCurrentThread();
+
+    buffer.readFrom(new ByteArrayInputStream(json.getBytes("UTF-8")), -1);
+
+    assertEquals(json, buffer.toString("UTF-8"));
+    assertEquals(json.getBytes("UTF-8").length, buffer.size());
+  }
+
+  @Test
+  public void testReadFrom_GrowsPastInitialCapacity() throws IOException {
+    final byte[] bytes = new byte[ResponseBuffer.INITIAL_CAPACITY * 3 + 7];
+    for(int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) ('a' + i % 26);
+    }
+    final ResponseBuffer buffer = ResponseBuffer.forCurrentThread();
+
+    buffer.readFrom(new ByteArrayInputStream(bytes), -1);
+
+    assertEquals(bytes.length, buffer.size());
+    assertEquals(new String(bytes, "US-ASCII"), buffer.toString("US-ASCII"));
+  }
+
+  @Test
+  public void testReadFrom_PresizeIsCapped() throws IOException {
+    final ResponseBuffer buffer = new ResponseBuffer();
+
+    // a Content-Length far larger than the body that is sent
+    buffer.readFrom(new ByteArrayInputStream("{}".getBytes("UTF-8")), Integer.MAX_VALUE - 2);
+
+    assertEquals("{}", buffer.toString("UTF-8"));
+    assertTrue(buffer.array().length <= ResponseBuffer.MAX_PRESIZE_CAPACITY * 2);
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadFrom_TooLarge() throws IOException {
+    new ResponseBuffer().readFrom(new ByteArrayInputStream(new byte[0]), Integer.MAX_VALUE + 1L);
+  }
+
+  @Test
+  public void testForCurrentThread_ReusesBuffer() throws IOException {
+    final ResponseBuffer buffer = ResponseBuffer.forCurrentThread();
+    buffer.readFrom(new ByteArrayInputStream("{}".getBytes("UTF-8")), 2);
+    final byte[] array = buffer.array();
+
+    final ResponseBuffer reused = ResponseBuffer.forCurrentThread();
+
+    assertSame(buffer, reused);
+    assertSame(array, reused.array());
+    assertEquals(0, reused.size());
+  }
+
+  @Test
+  public void testReset_ShrinksLargeBuffer() throws IOException {
+    final ResponseBuffer buffer = ResponseBuffer.forCurrentThread();
+    buffer.readFrom(new ByteArrayInputStream(new byte[ResponseBuffer.MAX_RETAINED_CAPACITY + 1]), -1);
+
+    buffer.reset();
+
+    assertEquals(ResponseBuffer.INITIAL_CAPACITY, buffer.array().length);
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * File: ContentHashTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ContentHashTest {
+  @Test
+  public void testToString_Empty() {
+    assertEquals("00000000000000000000000000000000", new ContentHash().toString());
+    assertEquals("00000000000000000000000000000000", new ContentHash().put(null).putNormalized(" \n\t").toString());
+  }
+
+  @Test
+  public void testToString_MurmurHash3() {
+    // MurmurHash3 x64 128 with seed 0 of the UTF-16LE bytes, h1 then h2
+    assertEquals("96a698500b4e98bdb278c9bfc754677d", new ContentHash().put("a").toString());
+    assertEquals("ee2ee18fe1bfd3877b927262d8c336c4", new ContentHash().put("hello").toString());
+    assertEquals("2803a5bc696daeb2a2b1eb7540d6d1fa", new ContentHash().put("abcdefgh").toString());
+    assertEquals("1ac6acfe7367072eceacd682c36f564a", new ContentHash().put("abcdefghi").toString());
+    assertEquals("c140d0495eb1907df6535ad3056ad355", new ContentHash().put("Romney was in Detroit.").toString());
+  }
+
+  @Test
+  public void testPut_InPieces() {
+    assertEquals(new ContentHash().put("Romney was in Detroit.").toString(),
+                 new ContentHash().put("Romney w").put("as in").put(" Detroit.").toString());
+  }
+
+  @Test
+  public void testPutNormalized() {
+    final String expected = new ContentHash().put("Romney was in Detroit.").toString();
+
+    assertEquals(expected, new ContentHash().putNormalized("Romney was in Detroit.").toString());
+    assertEquals(expected, new ContentHash().putNormalized("  Romney\twas\r\n\n in Detroit. \n").toString());
+  }
+
+  @Test
+  public void testPutNormalized_DifferentText() {
+    assertFalse(new ContentHash().putNormalized("Romney was in Detroit.").toString()
+                    .equals(new ContentHash().putNormalized("Romney was in Boston.").toString()));
+    assertFalse(new ContentHash().putNormalized("Romney was in Detroit.").toString()
+                    .equals(new ContentHash().putNormalized("Romneywas in Detroit.").toString()));
+  }
+
+  @Test
+  public void testPutField() {
+    assertFalse(new ContentHash().putField("ab").putField("c").toString()
+                    .equals(new ContentHash().putField("a").putField("bc").toString()));
+    assertEquals(new ContentHash().putNormalizedField(" Romney  was in\nDetroit. ").putField("").toString(),
+                 new ContentHash().putNormalizedField("Romney was in Detroit.").putField(null).toString());
+  }
+}
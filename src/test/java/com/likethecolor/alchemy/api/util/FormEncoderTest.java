@@ -0,0 +1,70 @@
+/**
+ * File: FormEncoderTest.java
+ * Original Author: Dan Brown <dan@likethecolor.com>
+ * Copyright 2012 Dan Brown <dan@likethecolor.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.likethecolor.alchemy.api.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+
+import static org.junit.Assert.assertEquals;
+
+public class FormEncoderTest {
+  @Test
+  public void testEncode_Ascii() throws IOException {
+    assertEncodedLikeUrlEncoder("Hello, World! a-b_c.d*e~f/g?h=i&j+k");
+  }
+
+  @Test
+  public void testEncode_Empty() throws IOException {
+    assertEncodedLikeUrlEncoder("");
+  }
+
+  @Test
+  public void testEncode_MultiByte() throws IOException {
+    // 2 byte, 3 byte and 4 byte (surrogate pair) UTF-8 sequences
+    assertEncodedLikeUrlEncoder("caf\u00e9 \u00fcber \u20ac5 \u4e2d\u6587 \ud83d\ude00");
+  }
+
+  @Test
+  public void testEncode_UnpairedSurrogate() throws IOException {
+    assertEncodedLikeUrlEncoder("a\ud83db");
+    assertEncodedLikeUrlEncoder("a\ude00b");
+    assertEncodedLikeUrlEncoder("a\ud83d");
+  }
+
+  @Test
+  public void testEncode_LargerThanBuffer() throws IOException {
+    final StringBuilder value = new StringBuilder();
+    for(int i = 0; i < 5000; i++) {
+      value.append("text \u00e9\u20ac\ud83d\ude00 <p>");
+    }
+    assertEncodedLikeUrlEncoder(value.toString());
+  }
+
+  private void assertEncodedLikeUrlEncoder(final String value) throws IOException {
+    final String expected = URLEncoder.encode(value, "UTF-8");
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FormEncoder.encode(value, out);
+
+    assertEquals(expected, out.toString("US-ASCII"));
+    assertEquals(expected.length(), FormEncoder.encodedLength(value));
+  }
+}
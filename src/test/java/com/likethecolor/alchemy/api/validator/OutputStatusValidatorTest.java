@@ -17,10 +17,15 @@
  */
 package com.likethecolor.alchemy.api.validator;
 
+import com.likethecolor.alchemy.api.AlchemyApiException;
+import com.likethecolor.alchemy.api.entity.Response;
 import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
 public class OutputStatusValidatorTest {
   @Test
   public void testValidate() throws IOException {
@@ -50,6 +55,52 @@ public class OutputStatusValidatorTest {
     OutputStatusValidator.validate(jsonString);
   }
 
+  @Test
+  public void testValidate_Response() throws IOException {
+    final Response response = new Response();
+    response.setStatus("OK");
+
+    OutputStatusValidator.validate(response, getJson());
+  }
+
+  @Test(expected = IOException.class)
+  public void testValidate_ResponseStatusError() throws IOException {
+    final Response response = new Response();
+    response.setStatus("ERROR");
+    response.setStatusInfo("Error doing some IO thing");
+
+    OutputStatusValidator.validate(response, getJsonStatusIsNotOkStatusInfoError());
+  }
+
+  @Test(expected = IOException.class)
+  public void testValidate_ResponseStatusUnset() throws IOException {
+    OutputStatusValidator.validate(new Response(), getJsonStatusIsMissing());
+  }
+
+  @Test(expected = IOException.class)
+  public void testValidate_ResponseIsNull() throws IOException {
+    OutputStatusValidator.validate(null, getJson());
+  }
+
+  @Test
+  public void testValidate_ResponseStatusErrorException() throws IOException {
+    final String jsonString = getJsonStatusIsNotOkStatusInfoError();
+    final Response response = new Response();
+    response.setStatus("ERROR");
+    response.setStatusInfo("daily-transaction-limit-exceeded");
+
+    try {
+      OutputStatusValidator.validate(response, jsonString);
+      fail("Expected AlchemyApiException");
+    }
+    catch(AlchemyApiException e) {
+      assertEquals(Response.STATUS.ERROR, e.getStatus());
+      assertEquals("daily-transaction-limit-exceeded", e.getStatusInfo());
+      assertEquals(jsonString, e.getJsonString());
+      assertEquals("Error making API call: daily-transaction-limit-exceeded", e.getMessage());
+    }
+  }
+
   private String getJson() {
     return "{"
            + "\"status\": \"OK\""